@@ -91,6 +91,22 @@ CREATE TABLE IF NOT EXISTS vital_signs (
     FOREIGN KEY (recorded_by) REFERENCES users(id) ON DELETE SET NULL
 );
 
+-- Vital signs rollups: min/max/sum/count per patient, metric and hour/day/week
+-- (weeks start on Monday), updated in the same transaction as each insert into
+-- vital_signs so trend queries read one row per bucket instead of every reading
+CREATE TABLE IF NOT EXISTS vital_signs_rollups (
+    patient_id VARCHAR(50) NOT NULL,
+    granularity ENUM('HOUR', 'DAY', 'WEEK') NOT NULL,
+    bucket_start DATETIME NOT NULL,
+    metric VARCHAR(20) NOT NULL,
+    min_value DOUBLE NOT NULL,
+    max_value DOUBLE NOT NULL,
+    sum_value DOUBLE NOT NULL,
+    sample_count INT NOT NULL,
+    PRIMARY KEY (patient_id, granularity, bucket_start, metric),
+    FOREIGN KEY (patient_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
 -- Diagnoses table
 CREATE TABLE IF NOT EXISTS diagnoses (
     id VARCHAR(50) PRIMARY KEY,
@@ -203,6 +219,40 @@ INSERT INTO vital_signs (id, patient_id, recorded_by, pulse_rate, body_temperatu
 ('vital003', 'pat003', 'pat003', 85, 98.4, 20, 130, 85, 80.2, 180.0, 'Self-recorded at home', '2025-10-13', '08:00:00'),
 ('vital004', 'pat001', 'pat001', 74, 98.7, 16, 118, 78, 75.3, 175.0, 'Morning readings', '2025-10-13', '07:30:00');
 
+-- Build the rollups from the readings above (rerun on an existing database to backfill);
+-- a reading with a metric left NULL (e.g. imported elsewhere) is skipped for that metric
+DELETE FROM vital_signs_rollups;
+INSERT INTO vital_signs_rollups (patient_id, granularity, bucket_start, metric, min_value, max_value, sum_value, sample_count)
+SELECT patient_id, 'HOUR', TIMESTAMP(recorded_date, MAKETIME(HOUR(recorded_time), 0, 0)), 'pulse', MIN(pulse_rate), MAX(pulse_rate), SUM(pulse_rate), COUNT(pulse_rate) FROM vital_signs WHERE pulse_rate IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'HOUR', TIMESTAMP(recorded_date, MAKETIME(HOUR(recorded_time), 0, 0)), 'temperature', MIN(body_temperature), MAX(body_temperature), SUM(body_temperature), COUNT(body_temperature) FROM vital_signs WHERE body_temperature IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'HOUR', TIMESTAMP(recorded_date, MAKETIME(HOUR(recorded_time), 0, 0)), 'respiration', MIN(respiration_rate), MAX(respiration_rate), SUM(respiration_rate), COUNT(respiration_rate) FROM vital_signs WHERE respiration_rate IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'HOUR', TIMESTAMP(recorded_date, MAKETIME(HOUR(recorded_time), 0, 0)), 'systolic', MIN(blood_pressure_systolic), MAX(blood_pressure_systolic), SUM(blood_pressure_systolic), COUNT(blood_pressure_systolic) FROM vital_signs WHERE blood_pressure_systolic IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'HOUR', TIMESTAMP(recorded_date, MAKETIME(HOUR(recorded_time), 0, 0)), 'diastolic', MIN(blood_pressure_diastolic), MAX(blood_pressure_diastolic), SUM(blood_pressure_diastolic), COUNT(blood_pressure_diastolic) FROM vital_signs WHERE blood_pressure_diastolic IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'DAY', TIMESTAMP(recorded_date), 'pulse', MIN(pulse_rate), MAX(pulse_rate), SUM(pulse_rate), COUNT(pulse_rate) FROM vital_signs WHERE pulse_rate IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'DAY', TIMESTAMP(recorded_date), 'temperature', MIN(body_temperature), MAX(body_temperature), SUM(body_temperature), COUNT(body_temperature) FROM vital_signs WHERE body_temperature IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'DAY', TIMESTAMP(recorded_date), 'respiration', MIN(respiration_rate), MAX(respiration_rate), SUM(respiration_rate), COUNT(respiration_rate) FROM vital_signs WHERE respiration_rate IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'DAY', TIMESTAMP(recorded_date), 'systolic', MIN(blood_pressure_systolic), MAX(blood_pressure_systolic), SUM(blood_pressure_systolic), COUNT(blood_pressure_systolic) FROM vital_signs WHERE blood_pressure_systolic IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'DAY', TIMESTAMP(recorded_date), 'diastolic', MIN(blood_pressure_diastolic), MAX(blood_pressure_diastolic), SUM(blood_pressure_diastolic), COUNT(blood_pressure_diastolic) FROM vital_signs WHERE blood_pressure_diastolic IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'WEEK', TIMESTAMP(DATE_SUB(recorded_date, INTERVAL WEEKDAY(recorded_date) DAY)), 'pulse', MIN(pulse_rate), MAX(pulse_rate), SUM(pulse_rate), COUNT(pulse_rate) FROM vital_signs WHERE pulse_rate IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'WEEK', TIMESTAMP(DATE_SUB(recorded_date, INTERVAL WEEKDAY(recorded_date) DAY)), 'temperature', MIN(body_temperature), MAX(body_temperature), SUM(body_temperature), COUNT(body_temperature) FROM vital_signs WHERE body_temperature IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'WEEK', TIMESTAMP(DATE_SUB(recorded_date, INTERVAL WEEKDAY(recorded_date) DAY)), 'respiration', MIN(respiration_rate), MAX(respiration_rate), SUM(respiration_rate), COUNT(respiration_rate) FROM vital_signs WHERE respiration_rate IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'WEEK', TIMESTAMP(DATE_SUB(recorded_date, INTERVAL WEEKDAY(recorded_date) DAY)), 'systolic', MIN(blood_pressure_systolic), MAX(blood_pressure_systolic), SUM(blood_pressure_systolic), COUNT(blood_pressure_systolic) FROM vital_signs WHERE blood_pressure_systolic IS NOT NULL GROUP BY 1, 3
+UNION ALL
+SELECT patient_id, 'WEEK', TIMESTAMP(DATE_SUB(recorded_date, INTERVAL WEEKDAY(recorded_date) DAY)), 'diastolic', MIN(blood_pressure_diastolic), MAX(blood_pressure_diastolic), SUM(blood_pressure_diastolic), COUNT(blood_pressure_diastolic) FROM vital_signs WHERE blood_pressure_diastolic IS NOT NULL GROUP BY 1, 3;
+
 -- Sample diagnoses
 INSERT INTO diagnoses (id, patient_id, doctor_id, appointment_id, icd_code, diagnosis_description, severity, notes, diagnosis_date) VALUES 
 ('diag001', 'pat001', 'doc001', 'app006', 'I10', 'Essential hypertension', 'MODERATE', 'Patient shows elevated blood pressure readings. Lifestyle modifications recommended along with medication.', '2025-10-12'),
@@ -227,6 +277,8 @@ SELECT 'Prescriptions', COUNT(*) FROM prescriptions
 UNION ALL
 SELECT 'Vital Signs', COUNT(*) FROM vital_signs
 UNION ALL
+SELECT 'Vital Signs Rollups', COUNT(*) FROM vital_signs_rollups
+UNION ALL
 SELECT 'Diagnoses', COUNT(*) FROM diagnoses
 UNION ALL
 SELECT 'Referrals', COUNT(*) FROM referrals;
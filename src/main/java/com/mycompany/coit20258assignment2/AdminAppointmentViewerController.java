@@ -1,15 +1,24 @@
 package com.mycompany.coit20258assignment2;
 
 import com.mycompany.coit20258assignment2.client.ClientService;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.beans.property.SimpleStringProperty;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Admin controller to view all appointments
@@ -17,17 +26,27 @@ import java.util.Map;
  */
 public class AdminAppointmentViewerController {
 
-    @FXML private TableView<Appointment> appointmentTable;
-    @FXML private TableColumn<Appointment, String> idColumn;
-    @FXML private TableColumn<Appointment, String> dateColumn;
-    @FXML private TableColumn<Appointment, String> timeColumn;
-    @FXML private TableColumn<Appointment, String> patientColumn;
-    @FXML private TableColumn<Appointment, String> doctorColumn;
-    @FXML private TableColumn<Appointment, String> statusColumn;
+    @FXML private TableView<AppointmentRow> appointmentTable;
+    @FXML private TableColumn<AppointmentRow, String> idColumn;
+    @FXML private TableColumn<AppointmentRow, String> dateColumn;
+    @FXML private TableColumn<AppointmentRow, String> timeColumn;
+    @FXML private TableColumn<AppointmentRow, String> patientColumn;
+    @FXML private TableColumn<AppointmentRow, String> doctorColumn;
+    @FXML private TableColumn<AppointmentRow, String> statusColumn;
     @FXML private Label totalLabel;
     
-    private ObservableList<Appointment> appointments;
+    private ObservableList<AppointmentRow> appointments;
     private final ClientService clientService = ClientService.getInstance();
+    // Names resolved so far on this screen; filled by page loads off the FX thread
+    private final Map<String, String> userNames = new ConcurrentHashMap<>();
+    
+    private static final int PAGE_SIZE = 100;
+    private static final int PREFETCH_ROWS = 20;
+    private static final int EXPORT_CHUNK = 200;
+    private String nextCursor;
+    private boolean hasMore;
+    private boolean loadingPage;
+    private int loadGeneration = 0;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMM dd, yyyy");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("hh:mm a");
@@ -47,37 +66,16 @@ public class AdminAppointmentViewerController {
     }
 
     private void setupTableColumns() {
-        idColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
-        
-        dateColumn.setCellValueFactory(cellData -> {
-            String formatted = cellData.getValue().getDate().format(DATE_FORMATTER);
-            return new SimpleStringProperty(formatted);
-        });
-        
-        timeColumn.setCellValueFactory(cellData -> {
-            String formatted = cellData.getValue().getTime().format(TIME_FORMATTER);
-            return new SimpleStringProperty(formatted);
-        });
-        
-        patientColumn.setCellValueFactory(cellData -> {
-            String patientId = cellData.getValue().getPatientId();
-            String patientName = findUserName(patientId);
-            return new SimpleStringProperty(patientName != null ? patientName : patientId);
-        });
-        
-        doctorColumn.setCellValueFactory(cellData -> {
-            String doctorId = cellData.getValue().getDoctorId();
-            String doctorName = findUserName(doctorId);
-            return new SimpleStringProperty(doctorName != null ? doctorName : doctorId);
-        });
-        
-        statusColumn.setCellValueFactory(cellData -> {
-            String status = cellData.getValue().getStatus().toString();
-            return new SimpleStringProperty(status);
-        });
+        // Cells only read the strings prepared in AppointmentRow; nothing is looked up or formatted while scrolling
+        idColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getId()));
+        dateColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDate()));
+        timeColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getTime()));
+        patientColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getPatient()));
+        doctorColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDoctor()));
+        statusColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getStatus()));
         
         // Color-code status
-        statusColumn.setCellFactory(column -> new TableCell<Appointment, String>() {
+        statusColumn.setCellFactory(column -> new TableCell<AppointmentRow, String>() {
             @Override
             protected void updateItem(String item, boolean empty) {
                 super.updateItem(item, empty);
@@ -108,45 +106,97 @@ public class AdminAppointmentViewerController {
             }
         });
         
+        // Rows are virtualized; when one near the end of what is loaded is shown, fetch the next page
+        appointmentTable.setRowFactory(table -> new TableRow<>() {
+            @Override
+            protected void updateItem(AppointmentRow item, boolean empty) {
+                super.updateItem(item, empty);
+                if (!empty && hasMore && getIndex() >= appointments.size() - PREFETCH_ROWS) {
+                    Platform.runLater(AdminAppointmentViewerController.this::loadNextPage);
+                }
+            }
+        });
+        
         appointmentTable.setItems(appointments);
     }
 
+    /**
+     * Start again from the newest appointments; older pages load as the table scrolls
+     */
     private void loadAppointments() {
         if (!clientService.isConnected()) {
             showError("Server not available");
             return;
         }
         
-        try {
-            System.out.println("📅 Admin loading all appointments from server...");
-            List<Appointment> list = clientService.getAppointments();
-            
-            appointments.clear();
-            appointments.addAll(list);
+        System.out.println("📅 Admin loading appointments from server...");
+        loadGeneration++; // results of a load still running are dropped
+        appointments.clear();
+        nextCursor = null;
+        hasMore = true;
+        loadingPage = false;
+        loadNextPage();
+    }
+    
+    /**
+     * Fetch the next page in the background and append its rows when ready
+     */
+    private void loadNextPage() {
+        if (loadingPage || !hasMore) {
+            return;
+        }
+        loadingPage = true;
+        String cursor = nextCursor;
+        int generation = loadGeneration;
+        AsyncLoader.load(() -> fetchPage(cursor), page -> {
+            if (generation != loadGeneration) {
+                return; // refreshed meanwhile
+            }
+            loadingPage = false;
+            appointments.addAll(page.getItems());
+            nextCursor = page.getNextCursor();
+            hasMore = page.hasMore();
             
-            totalLabel.setText("Total Appointments: " + list.size());
-            System.out.println("✅ Loaded " + list.size() + " appointments");
-        } catch (Exception e) {
-            showError("Failed to load appointments: " + e.getMessage());
-            e.printStackTrace();
+            totalLabel.setText("Total Appointments: " + appointments.size() + (hasMore ? "+" : ""));
+            System.out.println("✅ Loaded " + page.getItems().size() + " appointments ("
+                               + appointments.size() + " shown)");
+        }, error -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            loadingPage = false;
+            hasMore = false;
+            showError("Failed to load appointments: " + error.getMessage());
+        });
+    }
+    
+    /**
+     * Off the FX thread: one page of appointments turned into display rows,
+     * resolving only the names this screen has not seen yet, in one request
+     */
+    private ClientService.Page<AppointmentRow> fetchPage(String cursor) {
+        ClientService.Page<Appointment> page = clientService.getAppointmentsPage(cursor, PAGE_SIZE);
+        Set<String> unknown = new HashSet<>();
+        for (Appointment a : page.getItems()) {
+            if (!userNames.containsKey(a.getPatientId())) unknown.add(a.getPatientId());
+            if (!userNames.containsKey(a.getDoctorId())) unknown.add(a.getDoctorId());
         }
+        if (!unknown.isEmpty()) {
+            userNames.putAll(clientService.resolveUserNames(unknown));
+        }
+        
+        List<AppointmentRow> rows = new ArrayList<>(page.getItems().size());
+        for (Appointment a : page.getItems()) {
+            rows.add(new AppointmentRow(a, findUserName(a.getPatientId()), findUserName(a.getDoctorId())));
+        }
+        return new ClientService.Page<>(rows, page.getNextCursor());
     }
     
     /**
-     * Find user name by ID from server
+     * Find user name by ID from the names resolved with the appointments
      */
     private String findUserName(String userId) {
-        try {
-            List<User> users = clientService.getUsers();
-            for (User user : users) {
-                if (user.getId().equals(userId)) {
-                    return user.getName();
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error finding user name: " + e.getMessage());
-        }
-        return userId; // Return ID if name not found
+        return userNames.getOrDefault(userId, userId); // Return ID if name not found
     }
 
     @FXML
@@ -154,11 +204,104 @@ public class AdminAppointmentViewerController {
         loadAppointments();
     }
 
+    /**
+     * Write every appointment (not just the loaded pages) to a CSV file in the
+     * background, streaming them from the server so the full list is never held
+     * in memory
+     */
+    @FXML
+    private void onExportCsv() {
+        Path out = Path.of(System.getProperty("user.home"), "all_appointments.csv");
+        totalLabel.setText("Exporting appointments to " + out + "...");
+        AsyncLoader.load(() -> exportCsv(out),
+                         written -> totalLabel.setText("Exported " + written + " appointments to " + out),
+                         error -> showError("Export failed: " + error.getMessage()));
+    }
+    
+    /**
+     * Off the FX thread: stream the rows to a temporary file with raw ids, then
+     * resolve every name in one request once the stream has finished (a request
+     * sent mid-stream would wait behind its chunks) and write the CSV
+     */
+    private int exportCsv(Path out) throws IOException {
+        Path rawRows = Files.createTempFile("appointments", ".tsv");
+        try {
+            Set<String> ids = new HashSet<>();
+            int written = 0;
+            try (ClientService.RowStream<Appointment> rows = clientService.streamAppointments(EXPORT_CHUNK);
+                 BufferedWriter w = Files.newBufferedWriter(rawRows)) {
+                while (rows.hasNext()) {
+                    Appointment a = rows.next();
+                    ids.add(a.getPatientId());
+                    ids.add(a.getDoctorId());
+                    w.write(String.join("\t", a.getId(), a.getDate().toString(), a.getTime().toString(),
+                                        a.getPatientId(), a.getDoctorId(), a.getStatus().toString()));
+                    w.newLine();
+                    written++;
+                }
+                if (rows.getError() != null) {
+                    throw new IOException("stopped after " + written + " appointments: " + rows.getError());
+                }
+            }
+            
+            Map<String, String> names = clientService.resolveUserNames(ids);
+            try (BufferedReader r = Files.newBufferedReader(rawRows);
+                 BufferedWriter w = Files.newBufferedWriter(out)) {
+                w.write("ID,Date,Time,Patient,Doctor,Status");
+                w.newLine();
+                String line;
+                while ((line = r.readLine()) != null) {
+                    String[] f = line.split("\t", -1);
+                    w.write(String.join(",", f[0], f[1], f[2],
+                            csv(names.getOrDefault(f[3], f[3])),
+                            csv(names.getOrDefault(f[4], f[4])),
+                            f[5]));
+                    w.newLine();
+                }
+            }
+            return written;
+        } finally {
+            Files.deleteIfExists(rawRows);
+        }
+    }
+    
+    private static String csv(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
     @FXML
     private void onBack() {
         SceneNavigator.getInstance().goToAdminDashboard();
     }
 
+    /**
+     * One table row with every column already formatted
+     */
+    public static final class AppointmentRow {
+        private final String id;
+        private final String date;
+        private final String time;
+        private final String patient;
+        private final String doctor;
+        private final String status;
+        
+        AppointmentRow(Appointment appointment, String patientName, String doctorName) {
+            this.id = appointment.getId();
+            this.date = appointment.getDate().format(DATE_FORMATTER);
+            this.time = appointment.getTime().format(TIME_FORMATTER);
+            this.patient = patientName;
+            this.doctor = doctorName;
+            this.status = appointment.getStatus().toString();
+        }
+        
+        public String getId() { return id; }
+        public String getDate() { return date; }
+        public String getTime() { return time; }
+        public String getPatient() { return patient; }
+        public String getDoctor() { return doctor; }
+        public String getStatus() { return status; }
+    }
+
     private void showError(String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Error");
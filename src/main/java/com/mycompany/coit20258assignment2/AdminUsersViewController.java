@@ -107,19 +107,17 @@ public class AdminUsersViewController {
             return;
         }
         
-        try {
-            System.out.println("👥 Admin loading all users from server...");
-            List<User> list = clientService.getUsers();
-            
+        System.out.println("👥 Admin loading all users from server...");
+        AsyncLoader.load(clientService::getUsers, list -> {
             users.clear();
             users.addAll(list);
             
             totalLabel.setText("Total Users: " + list.size());
             System.out.println("✅ Loaded " + list.size() + " users");
-        } catch (Exception e) {
+        }, e -> {
             showError("Failed to load users: " + e.getMessage());
             e.printStackTrace();
-        }
+        });
     }
 
     @FXML
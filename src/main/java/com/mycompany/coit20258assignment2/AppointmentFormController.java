@@ -9,7 +9,10 @@ import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.IntStream;
 
 /**
@@ -24,6 +27,8 @@ public class AppointmentFormController {
     @FXML private Label message;
 
     private final ClientService clientService = ClientService.getInstance();
+    private static final int LOOKAHEAD_DAYS = 14;
+    private Set<String> freeTimes;              // free slots for the chosen doctor/date, null until loaded
 
     @FXML
     public void initialize() {
@@ -50,79 +55,89 @@ public class AppointmentFormController {
         });
         timeBox.setItems(times);
         
-        // Add listeners to check availability when doctor or date changes
-        doctorBox.setOnAction(e -> checkAvailability());
-        datePicker.setOnAction(e -> checkAvailability());
+        // Offer only the free slots once a doctor and date are chosen
+        doctorBox.setOnAction(e -> loadFreeSlots());
+        datePicker.setOnAction(e -> loadFreeSlots());
         timeBox.setOnAction(e -> checkAvailability());
     }
     
     /**
-     * Check if selected doctor is available at selected date/time
+     * Ask the server for the selected doctor's free slots on the selected date
+     * and offer only those; if the day is full, point at the next free slot
      */
-    private void checkAvailability() {
+    private void loadFreeSlots() {
         String doctorSel = doctorBox.getValue();
         LocalDate date = datePicker.getValue();
-        String timeSel = timeBox.getValue();
         
-        if (doctorSel == null || date == null || timeSel == null) {
-            message.setText("");
+        if (doctorSel == null || date == null || !clientService.isConnected()) {
+            freeTimes = null;
             return;
         }
         
         String doctorId = doctorSel.split(" - ")[0];
-        LocalTime time = LocalTime.parse(timeSel);
-        
-        // Check unavailability from server
-        List<java.util.Map<String, Object>> unavailabilities = clientService.getAllUnavailabilities();
-        
-        for (java.util.Map<String, Object> unavail : unavailabilities) {
-            String unavailDoctorId = (String) unavail.get("doctorId");
-            
-            // Skip if doctorId is null or doesn't match
-            if (unavailDoctorId == null || !unavailDoctorId.equals(doctorId)) {
-                continue;
+        freeTimes = null;
+        message.setText("Checking free slots...");
+        message.setStyle("");
+        AsyncLoader.load(() -> {
+            List<Map<String, Object>> slots = clientService.findAvailableSlots(doctorId, null, date, date, 100);
+            Set<String> times = new LinkedHashSet<>();
+            for (Map<String, Object> slot : slots) {
+                times.add((String) slot.get("time"));
             }
-            
-            String startDateStr = (String) unavail.get("startDate");
-            String endDateStr = (String) unavail.get("endDate");
-            
-            // Skip if dates are null
-            if (startDateStr == null || endDateStr == null) {
-                continue;
+            List<Map<String, Object>> next = times.isEmpty()
+                ? clientService.findAvailableSlots(doctorId, null, date.plusDays(1), date.plusDays(LOOKAHEAD_DAYS), 1)
+                : List.of();
+            return new FreeSlots(times, next);
+        }, result -> {
+            if (!doctorSel.equals(doctorBox.getValue()) || !date.equals(datePicker.getValue())) {
+                return; // the selection changed while this was loading
             }
+            List<Map<String, Object>> next = result.nextAvailable;
+            freeTimes = result.times;
+            timeBox.setItems(FXCollections.observableArrayList(freeTimes));
             
-            LocalDate startDate = LocalDate.parse(startDateStr);
-            LocalDate endDate = LocalDate.parse(endDateStr);
-            
-            // Check if date falls within unavailability period
-            if (!date.isBefore(startDate) && !date.isAfter(endDate)) {
-                String startTimeStr = (String) unavail.get("startTime");
-                String endTimeStr = (String) unavail.get("endTime");
-                Boolean isAllDay = (Boolean) unavail.get("isAllDay");
-                
-                // Check if this is an all-day unavailability
-                if (isAllDay != null && isAllDay) {
-                    String reason = (String) unavail.get("reason");
-                    message.setText("⚠️ Doctor unavailable: " + reason);
-                    message.setStyle("-fx-text-fill: orange; -fx-font-weight: bold;");
-                    return;
-                } else if (startTimeStr != null && endTimeStr != null) {
-                    // Check time range for partial day unavailability
-                    LocalTime startTime = LocalTime.parse(startTimeStr);
-                    LocalTime endTime = LocalTime.parse(endTimeStr);
-                    
-                    if (!time.isBefore(startTime) && !time.isAfter(endTime)) {
-                        String reason = (String) unavail.get("reason");
-                        message.setText("⚠️ Doctor unavailable: " + reason);
-                        message.setStyle("-fx-text-fill: orange; -fx-font-weight: bold;");
-                        return;
-                    }
-                }
+            if (freeTimes.isEmpty()) {
+                message.setText(next.isEmpty()
+                    ? "⚠️ No free slots on " + date
+                    : "⚠️ No free slots on " + date + ". Next available: " + next.get(0).get("date") + " at " + next.get(0).get("time"));
+                message.setStyle("-fx-text-fill: orange; -fx-font-weight: bold;");
+            } else {
+                message.setText("✅ " + freeTimes.size() + " free slot(s) on " + date);
+                message.setStyle("-fx-text-fill: green;");
             }
+        });
+    }
+    
+    /**
+     * Free times on the chosen day, and the next free slot after it when there are none
+     */
+    private static final class FreeSlots {
+        final Set<String> times;
+        final List<Map<String, Object>> nextAvailable;
+        
+        FreeSlots(Set<String> times, List<Map<String, Object>> nextAvailable) {
+            this.times = times;
+            this.nextAvailable = nextAvailable;
         }
+    }
+    
+    /**
+     * Check the selected time against the free slots loaded for the day
+     */
+    private void checkAvailability() {
+        String timeSel = timeBox.getValue();
         
-        message.setText("✅ Doctor is available at this time");
-        message.setStyle("-fx-text-fill: green;");
+        if (freeTimes == null || timeSel == null) {
+            return;
+        }
+        
+        if (freeTimes.contains(timeSel)) {
+            message.setText("✅ Doctor is available at this time");
+            message.setStyle("-fx-text-fill: green;");
+        } else {
+            message.setText("⚠️ Doctor is not available at this time");
+            message.setStyle("-fx-text-fill: orange; -fx-font-weight: bold;");
+        }
     }
 
     @FXML
@@ -146,52 +161,12 @@ public class AppointmentFormController {
         String doctorId = doctorSel.split(" - ")[0];
         LocalTime time = LocalTime.parse(timeSel);
         
-        // Check if doctor is available (server-side check)
-        List<java.util.Map<String, Object>> unavailabilities = clientService.getAllUnavailabilities();
-        for (java.util.Map<String, Object> unavail : unavailabilities) {
-            String unavailDoctorId = (String) unavail.get("doctorId");
-            
-            // Skip if doctorId is null or doesn't match
-            if (unavailDoctorId == null || !unavailDoctorId.equals(doctorId)) {
-                continue;
-            }
-            
-            String startDateStr = (String) unavail.get("startDate");
-            String endDateStr = (String) unavail.get("endDate");
-            
-            // Skip if dates are null
-            if (startDateStr == null || endDateStr == null) {
-                continue;
-            }
-            
-            LocalDate startDate = LocalDate.parse(startDateStr);
-            LocalDate endDate = LocalDate.parse(endDateStr);
-            
-            // Check if date falls within unavailability period
-            if (!date.isBefore(startDate) && !date.isAfter(endDate)) {
-                String startTimeStr = (String) unavail.get("startTime");
-                String endTimeStr = (String) unavail.get("endTime");
-                Boolean isAllDay = (Boolean) unavail.get("isAllDay");
-                
-                // Check if this is an all-day unavailability
-                if (isAllDay != null && isAllDay) {
-                    String reason = (String) unavail.get("reason");
-                    message.setText("❌ Cannot book: Doctor is unavailable (" + reason + ")");
-                    message.setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
-                    return;
-                } else if (startTimeStr != null && endTimeStr != null) {
-                    // Check time range for partial day unavailability
-                    LocalTime startTime = LocalTime.parse(startTimeStr);
-                    LocalTime endTime = LocalTime.parse(endTimeStr);
-                    
-                    if (!time.isBefore(startTime) && !time.isAfter(endTime)) {
-                        String reason = (String) unavail.get("reason");
-                        message.setText("❌ Cannot book: Doctor is unavailable (" + reason + ")");
-                        message.setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
-                        return;
-                    }
-                }
-            }
+        // Slots offered for the day come from the server's free-slot search; the
+        // server re-checks unavailability when the appointment is created
+        if (freeTimes != null && !freeTimes.contains(timeSel)) {
+            message.setText("❌ Cannot book: Doctor is not available at " + timeSel);
+            message.setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
+            return;
         }
 
         try {
@@ -0,0 +1,82 @@
+package com.mycompany.coit20258assignment2;
+
+import javafx.concurrent.Task;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Runs controller data loads off the JavaFX Application Thread.
+ *
+ * Each load is a javafx.concurrent.Task: the blocking ClientService call runs on a
+ * small daemon pool and its result (or error) is handed back on the FX thread, so
+ * the callbacks may touch controls directly. Independent loads started together
+ * run side by side and each fills its own control as soon as it is done.
+ *
+ * Loads belong to the screen that started them: SceneNavigator cancels every
+ * running load before switching scenes, and a cancelled load never calls back.
+ */
+public final class AsyncLoader {
+
+    private static final int THREADS = 4;
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "ths-ui-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Set<Task<?>> running = ConcurrentHashMap.newKeySet();
+
+    private AsyncLoader() {}
+
+    /**
+     * Run work in the background and pass its result to onLoaded on the FX thread;
+     * failures are logged
+     */
+    public static <T> Task<T> load(Callable<T> work, Consumer<T> onLoaded) {
+        return load(work, onLoaded, e -> {
+            System.err.println("❌ Background load failed: " + e.getMessage());
+            e.printStackTrace();
+        });
+    }
+
+    /**
+     * Run work in the background; onLoaded or onFailed is called on the FX thread
+     * unless the load is cancelled first
+     */
+    public static <T> Task<T> load(Callable<T> work, Consumer<T> onLoaded, Consumer<Throwable> onFailed) {
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return work.call();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            running.remove(task);
+            onLoaded.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            running.remove(task);
+            onFailed.accept(task.getException());
+        });
+        task.setOnCancelled(e -> running.remove(task));
+
+        running.add(task);
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * Cancel every load still running (called on navigation); must be called on the FX thread
+     */
+    public static void cancelAll() {
+        for (Task<?> task : running) {
+            task.cancel();
+        }
+        running.clear();
+    }
+}
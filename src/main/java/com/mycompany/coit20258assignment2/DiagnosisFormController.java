@@ -43,18 +43,20 @@ public class DiagnosisFormController {
         
         // Load patients from server by getting appointments
         System.out.println("Loading patients from appointments...");
-        List<Appointment> appointments = clientService.getAppointments();
-        
-        // Get unique patient IDs from appointments
-        List<String> patientIds = appointments.stream()
-                .map(Appointment::getPatientId)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
-        
-        System.out.println("Found " + patientIds.size() + " patients");
-        
-        patientChoice.setItems(FXCollections.observableArrayList(patientIds));
+        AsyncLoader.load(() -> {
+            List<Appointment> appointments = clientService.getAppointments();
+            
+            // Get unique patient IDs from appointments
+            return appointments.stream()
+                    .map(Appointment::getPatientId)
+                    .distinct()
+                    .sorted()
+                    .collect(Collectors.toList());
+        }, patientIds -> {
+            System.out.println("Found " + patientIds.size() + " patients");
+            
+            patientChoice.setItems(FXCollections.observableArrayList(patientIds));
+        });
     }
 
     @FXML
@@ -1,17 +1,41 @@
 package com.mycompany.coit20258assignment2;
 
+import com.mycompany.coit20258assignment2.client.ClientService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 
-public class DoctorDashboardController {
+public class DoctorDashboardController implements Refreshable {
 
     @FXML private Label welcome;
+    @FXML private Label alertBanner;
 
-    @FXML
-    public void initialize() {
+    /** Dashboards are kept between visits, so the greeting is set each time one is shown */
+    @Override
+    public void onShow() {
         if (Session.get() != null && welcome != null) {
             welcome.setText("Welcome, " + Session.get().getName());
         }
+        // Listeners are dropped on every navigation, so listen again for this visit
+        ClientService.getInstance().addChangeListener(event -> {
+            if ("vitals_alerts".equals(event.getEntity())) {
+                Platform.runLater(() -> showAlert(event));
+            }
+        });
+    }
+
+    /** Show the latest vital signs alert for one of this doctor's patients */
+    private void showAlert(ClientService.ChangeEvent event) {
+        alertBanner.setText("🚨 Patient " + event.getData("patientId") + ": " + event.getData("message")
+                + " (" + event.getData("recordedAt") + ")");
+        alertBanner.setVisible(true);
+        alertBanner.setManaged(true);
+    }
+
+    @FXML
+    public void dismissAlert() {
+        alertBanner.setVisible(false);
+        alertBanner.setManaged(false);
     }
 
     /* ==== Navigation actions wired from doctor_dashboard.fxml ==== */
@@ -38,36 +38,41 @@ public class DoctorDataViewController {
         }
 
         String doctorId = Session.id();
-        String doctorName = store.findDoctorName(doctorId);
+        message.setText("Loading...");
 
         // Appointments for this doctor – show with patient name and friendly date/time
-        var apptFmtDate = DateTimeFormatter.ISO_LOCAL_DATE;
-        var apptFmtTime = DateTimeFormatter.ofPattern("HH:mm");
-
-        var apptLines = store.getAppointments().stream()
-                .filter(a -> doctorId.equals(a.getDoctorId()))
-                .map(a -> {
-                    String pName = store.findPatientName(a.getPatientId());
-                    return a.getId() + " on " + a.getDate().format(apptFmtDate) +
-                           " at " + a.getTime().format(apptFmtTime) +
-                           " with " + pName + " — " + a.getStatus();
-                })
-                .toList();
+        AsyncLoader.load(() -> {
+            var apptFmtDate = DateTimeFormatter.ISO_LOCAL_DATE;
+            var apptFmtTime = DateTimeFormatter.ofPattern("HH:mm");
+
+            return store.getAppointments().stream()
+                    .filter(a -> doctorId.equals(a.getDoctorId()))
+                    .map(a -> {
+                        String pName = store.findPatientName(a.getPatientId());
+                        return a.getId() + " on " + a.getDate().format(apptFmtDate) +
+                               " at " + a.getTime().format(apptFmtTime) +
+                               " with " + pName + " — " + a.getStatus();
+                    })
+                    .toList();
+        }, apptLines -> {
+            appointmentsList.setItems(FXCollections.observableArrayList(apptLines));
+            message.setText("");
+        }, e -> message.setText("Load failed: " + e.getMessage()));
 
         // Prescriptions that belong to this doctor – show patient name and status
-        var rxFmtDate = DateTimeFormatter.ISO_LOCAL_DATE;
-        var rxLines = store.getPrescriptions().stream()
-                .filter(p -> doctorId.equals(p.getDoctorId()))
-                .map(p -> {
-                    String pName = store.findPatientName(p.getPatientId());
-                    return p.getDate().format(rxFmtDate) + " " + doctorName + " — " +
-                           pName + " — " + p.getMedication() + " (" + p.getStatus() + ")";
-                })
-                .toList();
-
-        appointmentsList.setItems(FXCollections.observableArrayList(apptLines));
-        prescriptionsList.setItems(FXCollections.observableArrayList(rxLines));
-        message.setText("");
+        AsyncLoader.load(() -> {
+            String doctorName = store.findDoctorName(doctorId);
+            var rxFmtDate = DateTimeFormatter.ISO_LOCAL_DATE;
+            return store.getPrescriptions().stream()
+                    .filter(p -> doctorId.equals(p.getDoctorId()))
+                    .map(p -> {
+                        String pName = store.findPatientName(p.getPatientId());
+                        return p.getDate().format(rxFmtDate) + " " + doctorName + " — " +
+                               pName + " — " + p.getMedication() + " (" + p.getStatus() + ")";
+                    })
+                    .toList();
+        }, rxLines -> prescriptionsList.setItems(FXCollections.observableArrayList(rxLines)),
+           e -> message.setText("Load failed: " + e.getMessage()));
     }
 
     /* ===== Top bar actions ===== */
@@ -234,18 +234,18 @@ public class DoctorUnavailabilityController {
     
     private void loadUnavailabilities() {
         // Load from server
-        unavailabilityData.clear();
         String doctorId = Session.get().getId();
         
         System.out.println("📅 Loading unavailabilities for doctor: " + doctorId);
         
-        List<Map<String, Object>> unavailabilities = clientService.getUnavailabilities(doctorId);
-        
-        for (Map<String, Object> data : unavailabilities) {
-            unavailabilityData.add(new UnavailabilityRow(data));
-        }
-        
-        System.out.println("✅ Loaded " + unavailabilityData.size() + " unavailability periods");
+        AsyncLoader.load(() -> clientService.getUnavailabilities(doctorId), unavailabilities -> {
+            unavailabilityData.clear();
+            for (Map<String, Object> data : unavailabilities) {
+                unavailabilityData.add(new UnavailabilityRow(data));
+            }
+            
+            System.out.println("✅ Loaded " + unavailabilityData.size() + " unavailability periods");
+        });
     }
     
     private void clearForm() {
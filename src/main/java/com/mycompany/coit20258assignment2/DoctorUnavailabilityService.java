@@ -3,38 +3,44 @@ package com.mycompany.coit20258assignment2;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Service for managing doctor unavailability periods
+ * Periods are grouped by doctor so checks only look at that doctor's periods.
+ * The server keeps its own index (server.UnavailabilityIndex) for bookings.
  */
 public class DoctorUnavailabilityService {
     
     // In-memory storage (in real system, would use database)
-    private static final List<DoctorUnavailability> unavailabilities = new ArrayList<>();
+    private static final Map<String, List<DoctorUnavailability>> byDoctor = new HashMap<>();
     
     /**
      * Add a new unavailability period
      */
     public static void addUnavailability(DoctorUnavailability unavailability) {
-        unavailabilities.add(unavailability);
+        byDoctor.computeIfAbsent(unavailability.getDoctorId(), d -> new ArrayList<>()).add(unavailability);
     }
     
     /**
      * Get all unavailability periods for a doctor
      */
     public static List<DoctorUnavailability> getUnavailabilities(String doctorId) {
-        return unavailabilities.stream()
-            .filter(u -> u.getDoctorId().equals(doctorId))
-            .collect(Collectors.toList());
+        return new ArrayList<>(byDoctor.getOrDefault(doctorId, List.of()));
     }
     
     /**
      * Delete an unavailability period by ID
      */
     public static boolean deleteUnavailability(String id) {
-        return unavailabilities.removeIf(u -> u.getId().equals(id));
+        boolean removed = false;
+        for (List<DoctorUnavailability> list : byDoctor.values()) {
+            removed |= list.removeIf(u -> u.getId().equals(id));
+        }
+        return removed;
     }
     
     /**
@@ -42,8 +48,7 @@ public class DoctorUnavailabilityService {
      * @return true if available, false if unavailable
      */
     public static boolean isDoctorAvailable(String doctorId, LocalDate date, LocalTime time) {
-        return unavailabilities.stream()
-            .filter(u -> u.getDoctorId().equals(doctorId))
+        return byDoctor.getOrDefault(doctorId, List.of()).stream()
             .noneMatch(u -> u.conflictsWith(date, time));
     }
     
@@ -52,8 +57,7 @@ public class DoctorUnavailabilityService {
      * @return reason string, or null if doctor is available
      */
     public static String getUnavailabilityReason(String doctorId, LocalDate date, LocalTime time) {
-        return unavailabilities.stream()
-            .filter(u -> u.getDoctorId().equals(doctorId))
+        return byDoctor.getOrDefault(doctorId, List.of()).stream()
             .filter(u -> u.conflictsWith(date, time))
             .findFirst()
             .map(DoctorUnavailability::getReason)
@@ -64,8 +68,7 @@ public class DoctorUnavailabilityService {
      * Get all unavailability periods that conflict with a date/time
      */
     public static List<DoctorUnavailability> getConflictingUnavailabilities(String doctorId, LocalDate date, LocalTime time) {
-        return unavailabilities.stream()
-            .filter(u -> u.getDoctorId().equals(doctorId))
+        return byDoctor.getOrDefault(doctorId, List.of()).stream()
             .filter(u -> u.conflictsWith(date, time))
             .collect(Collectors.toList());
     }
@@ -74,13 +77,13 @@ public class DoctorUnavailabilityService {
      * Clear all unavailabilities (for testing)
      */
     public static void clearAll() {
-        unavailabilities.clear();
+        byDoctor.clear();
     }
     
     /**
      * Get total count of unavailabilities
      */
     public static int count() {
-        return unavailabilities.size();
+        return byDoctor.values().stream().mapToInt(List::size).sum();
     }
 }
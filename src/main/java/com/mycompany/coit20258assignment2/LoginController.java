@@ -46,6 +46,7 @@ public class LoginController {
                 Session.set(result.getUser());
                 setMsg("Login successful!", false);
                 navigateToDashboard();
+                SceneNavigator.getInstance().prewarmAfterLogin();
                 return;
             } else {
                 setMsg("Server: " + result.getMessage() + "\n\nMake sure THSServer is running!", true);
@@ -1,12 +1,18 @@
 package com.mycompany.coit20258assignment2;
 
 import com.mycompany.coit20258assignment2.client.ClientService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import java.io.FileWriter;
 import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +34,13 @@ public class MyDataViewController {
 
     private final ClientService clientService = ClientService.getInstance();
     private final DateTimeFormatter D = DateTimeFormatter.ISO_LOCAL_DATE;
+    // Filled by background loads, read while formatting their rows
+    private final Map<String, String> userNames = new ConcurrentHashMap<>();
+    // Rows per list loaded so far (FX thread only)
+    private final Map<String, Integer> loadedCounts = new HashMap<>();
+    private static final List<String> SUMMARY_ORDER =
+            List.of("appointments", "prescriptions", "diagnoses", "referrals", "vital signs records");
+    private int expectedLists;
 
     // ---- lifecycle ---------------------------------------------------------
 
@@ -46,7 +59,10 @@ public class MyDataViewController {
         } else {
             message.setText("Please log in.");
             backBtn.setOnAction(e -> SceneNavigator.getInstance().goToLogin());
+            return;
         }
+        // Appointments and prescriptions changed by someone else (e.g. a cancellation) reload in place
+        clientService.addChangeListener(event -> Platform.runLater(this::refresh));
     }
 
     // ---- data loaders ------------------------------------------------------
@@ -59,42 +75,48 @@ public class MyDataViewController {
         }
         
         System.out.println("� Loading patient data from server...");
-        List<Appointment> appointments = clientService.getAppointments();
-        List<Prescription> prescriptions = clientService.getPrescriptions();
+        // Each list is loaded on its own in the background and filled as soon as it arrives
+        startLoading(5);
         
         // Appointments (patient view) - now with doctor names
-        List<String> appts = appointments.stream()
-                .filter(a -> a.getPatientId().equals(patientId))
-                .map(a -> {
-                    String doctorName = findUserName(a.getDoctorId());
-                    return String.format("%s on %s at %s with Dr. %s - Status: %s",
-                            a.getId(),
-                            a.getDate().format(D),
-                            a.getTime(),
-                            doctorName != null ? doctorName : a.getDoctorId(),
-                            a.getStatus());
-                })
-                .toList();
+        AsyncLoader.load(() -> {
+            List<Appointment> appointments = clientService.getAppointments().stream()
+                    .filter(a -> a.getPatientId().equals(patientId))
+                    .toList();
+            rememberNames(appointments.stream().map(Appointment::getDoctorId).toList());
+            return appointments.stream()
+                    .map(a -> {
+                        String doctorName = findUserName(a.getDoctorId());
+                        return String.format("%s on %s at %s with Dr. %s - Status: %s",
+                                a.getId(),
+                                a.getDate().format(D),
+                                a.getTime(),
+                                doctorName != null ? doctorName : a.getDoctorId(),
+                                a.getStatus());
+                    })
+                    .toList();
+        }, appts -> fill(appointmentsList, appts, "appointments"), this::loadFailed);
 
         // Prescriptions (patient view) - now with doctor names
-        List<String> rxs = prescriptions.stream()
-                .filter(p -> p.getPatientId().equals(patientId))
-                .map(p -> {
-                    String doctorName = findUserName(p.getDoctorId());
-                    return String.format("%s — %s (%s) by Dr. %s",
-                            p.getDate().format(D),
-                            p.getMedication(),
-                            p.getStatus(),
-                            doctorName != null ? doctorName : p.getDoctorId());
-                })
-                .toList();
-
-        appointmentsList.getItems().setAll(appts);
-        prescriptionsList.getItems().setAll(rxs);
+        AsyncLoader.load(() -> {
+            List<Prescription> prescriptions = clientService.getPrescriptions().stream()
+                    .filter(p -> p.getPatientId().equals(patientId))
+                    .toList();
+            rememberNames(prescriptions.stream().map(Prescription::getDoctorId).toList());
+            return prescriptions.stream()
+                    .map(p -> {
+                        String doctorName = findUserName(p.getDoctorId());
+                        return String.format("%s — %s (%s) by Dr. %s",
+                                p.getDate().format(D),
+                                p.getMedication(),
+                                p.getStatus(),
+                                doctorName != null ? doctorName : p.getDoctorId());
+                    })
+                    .toList();
+        }, rxs -> fill(prescriptionsList, rxs, "prescriptions"), this::loadFailed);
         
         // Get diagnoses from server
-        java.util.List<java.util.Map<String, Object>> diagnoses = clientService.getDiagnoses(patientId, null);
-        List<String> diags = diagnoses.stream()
+        AsyncLoader.load(() -> clientService.getDiagnoses(patientId, null).stream()
                 .map(d -> {
                     String date = (String) d.get("diagnosisDate");
                     String description = (String) d.get("diagnosisDescription");
@@ -120,12 +142,10 @@ public class MyDataViewController {
                     
                     return sb.toString();
                 })
-                .toList();
-        diagnosesList.getItems().setAll(diags);
+                .toList(), diags -> fill(diagnosesList, diags, "diagnoses"), this::loadFailed);
         
         // Get referrals from server
-        java.util.List<java.util.Map<String, Object>> referrals = clientService.getReferrals(patientId, null);
-        List<String> refs = referrals.stream()
+        AsyncLoader.load(() -> clientService.getReferrals(patientId, null).stream()
                 .map(r -> {
                     String date = (String) r.get("referral_date");
                     String specialty = (String) r.get("specialty_required");
@@ -136,12 +156,10 @@ public class MyDataViewController {
                     return String.format("%s - %s | %s | Status: %s (by Dr. %s)",
                             date, specialty, reason, status, doctorId);
                 })
-                .toList();
-        referralsList.getItems().setAll(refs);
+                .toList(), refs -> fill(referralsList, refs, "referrals"), this::loadFailed);
         
         // Get vital signs from server
-        List<VitalSigns> vitalSigns = clientService.getVitalSigns(patientId);
-        List<String> vitals = vitalSigns.stream()
+        AsyncLoader.load(() -> clientService.getVitalSigns(patientId).stream()
                 .map(v -> {
                     String date = v.getTimestamp().toLocalDate().format(D);
                     String time = v.getTimestamp().toLocalTime().toString();
@@ -153,12 +171,7 @@ public class MyDataViewController {
                     return String.format("%s %s - BP: %s, Pulse: %d bpm, Temp: %.1f°C, Resp: %d/min",
                             date, time, bp, pulse, temp, resp);
                 })
-                .toList();
-        vitalSignsList.getItems().setAll(vitals);
-        
-        message.setText(appts.size() + " appointments, " + rxs.size() + " prescriptions, " + 
-                       diags.size() + " diagnoses, " + refs.size() + " referrals, " + 
-                       vitals.size() + " vital signs records");
+                .toList(), vitals -> fill(vitalSignsList, vitals, "vital signs records"), this::loadFailed);
     }
 
     private void loadDoctorData(String doctorId) {
@@ -169,42 +182,48 @@ public class MyDataViewController {
         }
         
         System.out.println("� Loading doctor data from server...");
-        List<Appointment> appointments = clientService.getAppointments();
-        List<Prescription> prescriptions = clientService.getPrescriptions();
+        // Each list is loaded on its own in the background and filled as soon as it arrives
+        startLoading(4);
         
         // Appointments (doctor view) - now with patient names
-        List<String> appts = appointments.stream()
-                .filter(a -> a.getDoctorId().equals(doctorId))
-                .map(a -> {
-                    String patientName = findUserName(a.getPatientId());
-                    return String.format("%s on %s at %s - Patient: %s - Status: %s",
-                            a.getId(),
-                            a.getDate().format(D),
-                            a.getTime(),
-                            patientName != null ? patientName : a.getPatientId(),
-                            a.getStatus());
-                })
-                .toList();
+        AsyncLoader.load(() -> {
+            List<Appointment> appointments = clientService.getAppointments().stream()
+                    .filter(a -> a.getDoctorId().equals(doctorId))
+                    .toList();
+            rememberNames(appointments.stream().map(Appointment::getPatientId).toList());
+            return appointments.stream()
+                    .map(a -> {
+                        String patientName = findUserName(a.getPatientId());
+                        return String.format("%s on %s at %s - Patient: %s - Status: %s",
+                                a.getId(),
+                                a.getDate().format(D),
+                                a.getTime(),
+                                patientName != null ? patientName : a.getPatientId(),
+                                a.getStatus());
+                    })
+                    .toList();
+        }, appts -> fill(appointmentsList, appts, "appointments"), this::loadFailed);
 
         // Prescriptions (doctor view) - now with patient names
-        List<String> rxs = prescriptions.stream()
-                .filter(p -> p.getDoctorId().equals(doctorId))
-                .map(p -> {
-                    String patientName = findUserName(p.getPatientId());
-                    return String.format("%s Patient: %s — %s (%s)",
-                            p.getDate().format(D),
-                            patientName != null ? patientName : p.getPatientId(),
-                            p.getMedication(),
-                            p.getStatus());
-                })
-                .toList();
-
-        appointmentsList.getItems().setAll(appts);
-        prescriptionsList.getItems().setAll(rxs);
+        AsyncLoader.load(() -> {
+            List<Prescription> prescriptions = clientService.getPrescriptions().stream()
+                    .filter(p -> p.getDoctorId().equals(doctorId))
+                    .toList();
+            rememberNames(prescriptions.stream().map(Prescription::getPatientId).toList());
+            return prescriptions.stream()
+                    .map(p -> {
+                        String patientName = findUserName(p.getPatientId());
+                        return String.format("%s Patient: %s — %s (%s)",
+                                p.getDate().format(D),
+                                patientName != null ? patientName : p.getPatientId(),
+                                p.getMedication(),
+                                p.getStatus());
+                    })
+                    .toList();
+        }, rxs -> fill(prescriptionsList, rxs, "prescriptions"), this::loadFailed);
         
         // Get diagnoses from server
-        java.util.List<java.util.Map<String, Object>> diagnoses = clientService.getDiagnoses(null, doctorId);
-        List<String> diags = diagnoses.stream()
+        AsyncLoader.load(() -> clientService.getDiagnoses(null, doctorId).stream()
                 .map(d -> {
                     String date = (String) d.get("diagnosisDate");
                     String description = (String) d.get("diagnosisDescription");
@@ -228,12 +247,10 @@ public class MyDataViewController {
                     
                     return sb.toString();
                 })
-                .toList();
-        diagnosesList.getItems().setAll(diags);
+                .toList(), diags -> fill(diagnosesList, diags, "diagnoses"), this::loadFailed);
         
         // Get referrals created by this doctor
-        java.util.List<java.util.Map<String, Object>> referrals = clientService.getReferrals(null, doctorId);
-        List<String> refs = referrals.stream()
+        AsyncLoader.load(() -> clientService.getReferrals(null, doctorId).stream()
                 .map(r -> {
                     String date = (String) r.get("referral_date");
                     String specialty = (String) r.get("specialty_required");
@@ -244,11 +261,37 @@ public class MyDataViewController {
                     return String.format("%s - Patient: %s | %s | %s | Status: %s",
                             date, patientId, specialty, reason, status);
                 })
-                .toList();
-        referralsList.getItems().setAll(refs);
-        
-        message.setText(appts.size() + " appointments, " + rxs.size() + " prescriptions, " + 
-                       diags.size() + " diagnoses, " + refs.size() + " referrals");
+                .toList(), refs -> fill(referralsList, refs, "referrals"), this::loadFailed);
+    }
+
+    /**
+     * Reset the progress summary before a set of lists starts loading
+     */
+    private void startLoading(int lists) {
+        expectedLists = lists;
+        loadedCounts.clear();
+        message.setText("Loading...");
+    }
+
+    /**
+     * Show one list as soon as it has loaded; the summary is written once all have
+     */
+    private void fill(ListView<String> view, List<String> lines, String label) {
+        view.getItems().setAll(lines);
+        loadedCounts.put(label, lines.size());
+        if (loadedCounts.size() < expectedLists) {
+            message.setText("Loading... (" + loadedCounts.size() + " of " + expectedLists + ")");
+            return;
+        }
+        message.setText(SUMMARY_ORDER.stream()
+                .filter(loadedCounts::containsKey)
+                .map(key -> loadedCounts.get(key) + " " + key)
+                .collect(Collectors.joining(", ")));
+    }
+
+    private void loadFailed(Throwable e) {
+        message.setText("❌ Failed to load data: " + e.getMessage());
+        e.printStackTrace();
     }
 
     /**
@@ -324,17 +367,18 @@ public class MyDataViewController {
      * Find user name by ID from server
      */
     private String findUserName(String userId) {
-        try {
-            List<User> users = clientService.getUsers();
-            for (User user : users) {
-                if (user.getId().equals(userId)) {
-                    return user.getName();
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error finding user name: " + e.getMessage());
+        return userNames.getOrDefault(userId, userId); // Return ID if name not found
+    }
+
+    /**
+     * Resolve the names this screen has not seen yet, in one request; runs on a loader thread
+     */
+    private void rememberNames(List<String> userIds) {
+        Set<String> unknown = new HashSet<>(userIds);
+        unknown.removeAll(userNames.keySet());
+        if (!unknown.isEmpty()) {
+            userNames.putAll(clientService.resolveUserNames(unknown));
         }
-        return userId; // Return ID if name not found
     }
 
     private static String escapeCsv(String s) {
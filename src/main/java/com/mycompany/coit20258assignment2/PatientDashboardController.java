@@ -3,12 +3,13 @@ package com.mycompany.coit20258assignment2;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 
-public class PatientDashboardController {
+public class PatientDashboardController implements Refreshable {
 
     @FXML private Label welcome;
 
-    @FXML
-    public void initialize() {
+    /** Dashboards are kept between visits, so the greeting is set each time one is shown */
+    @Override
+    public void onShow() {
         if (Session.get() != null && welcome != null) {
             welcome.setText("Welcome, " + Session.get().getName());
         }
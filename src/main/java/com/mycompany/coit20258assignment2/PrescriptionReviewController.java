@@ -1,11 +1,14 @@
 package com.mycompany.coit20258assignment2;
 
 import com.mycompany.coit20258assignment2.client.ClientService;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Controller for doctors to view, approve, and reject prescriptions.
@@ -18,6 +21,8 @@ public class PrescriptionReviewController {
     @FXML private Label message;
 
     private final ClientService clientService = ClientService.getInstance();
+    // Filled by the background load, read while formatting its rows
+    private final Map<String, String> userNames = new ConcurrentHashMap<>();
 
     @FXML
     public void initialize() {
@@ -27,6 +32,12 @@ public class PrescriptionReviewController {
             return;
         }
         refresh();
+        // Refill requests and decisions made elsewhere show up without reopening the page
+        clientService.addChangeListener(event -> {
+            if ("prescriptions".equals(event.getEntity())) {
+                Platform.runLater(this::refresh);
+            }
+        });
     }
 
     /** Refresh list based on current doctor session */
@@ -46,29 +57,38 @@ public class PrescriptionReviewController {
         String doctorId = Session.id();
         System.out.println("Loading prescriptions for doctor: " + doctorId);
 
-        // Get all prescriptions from server and filter by doctor
-        List<Prescription> all = clientService.getPrescriptions().stream()
-                .filter(p -> p.getDoctorId().equals(doctorId))
-                .toList();
+        AsyncLoader.load(() -> {
+            // Get all prescriptions from server and filter by doctor
+            List<Prescription> all = clientService.getPrescriptions().stream()
+                    .filter(p -> p.getDoctorId().equals(doctorId))
+                    .toList();
 
-        if (all.isEmpty()) {
-            message.setText("No prescriptions found for you.");
-            list.setItems(FXCollections.observableArrayList());
-            return;
-        }
-
-        List<String> rows = all.stream().map(p -> {
-            String patientName = findUserName(p.getPatientId());
-            return String.format("%s | Patient: %s | %s | %s",
-                    p.getId(), 
-                    patientName != null ? patientName : p.getPatientId(), 
-                    p.getMedication(), 
-                    p.getStatus());
-        }).toList();
+            // One name lookup for every patient on the list
+            if (!all.isEmpty()) {
+                userNames.putAll(clientService.resolveUserNames(all.stream().map(Prescription::getPatientId).toList()));
+            }
 
-        list.setItems(FXCollections.observableArrayList(rows));
-        message.setText(all.size() + " prescription(s) found.");
-        message.setStyle("-fx-text-fill: green;");
+            return all.stream().map(p -> {
+                String patientName = findUserName(p.getPatientId());
+                return String.format("%s | Patient: %s | %s | %s",
+                        p.getId(), 
+                        patientName != null ? patientName : p.getPatientId(), 
+                        p.getMedication(), 
+                        p.getStatus());
+            }).toList();
+        }, rows -> {
+            if (rows.isEmpty()) {
+                message.setText("No prescriptions found for you.");
+                list.setItems(FXCollections.observableArrayList());
+                return;
+            }
+            list.setItems(FXCollections.observableArrayList(rows));
+            message.setText(rows.size() + " prescription(s) found.");
+            message.setStyle("-fx-text-fill: green;");
+        }, e -> {
+            message.setText("Error: " + e.getMessage());
+            message.setStyle("-fx-text-fill: red;");
+        });
     }
 
     @FXML public void onApprove() {
@@ -138,20 +158,10 @@ public class PrescriptionReviewController {
     }
     
     /**
-     * Find user name by ID from server
+     * Find user name by ID from the names resolved in refresh()
      */
     private String findUserName(String userId) {
-        try {
-            List<User> users = clientService.getUsers();
-            for (User user : users) {
-                if (user.getId().equals(userId)) {
-                    return user.getName();
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error finding user name: " + e.getMessage());
-        }
-        return userId; // Return ID if name not found
+        return userNames.getOrDefault(userId, userId); // Return ID if name not found
     }
 
     @FXML public void onBack() { SceneNavigator.getInstance().goToDoctorDashboard(); }
@@ -0,0 +1,11 @@
+package com.mycompany.coit20258assignment2;
+
+/**
+ * Controller of a view that SceneNavigator keeps and shows again instead of
+ * reloading. onShow() is called every time the view is put on screen, including
+ * the first, so anything that depends on the session or on server data belongs
+ * there rather than in initialize().
+ */
+public interface Refreshable {
+    void onShow();
+}
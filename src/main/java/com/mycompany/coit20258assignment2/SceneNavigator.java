@@ -1,11 +1,33 @@
 package com.mycompany.coit20258assignment2;
 
+import com.mycompany.coit20258assignment2.client.ClientService;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Switches the stage between the FXML views.
+ *
+ * Dashboards are parsed once per login and kept: going back to one reuses its
+ * scene and controller, and a Refreshable controller gets onShow() each time.
+ * Logging out drops them, so nothing shown to one user (such as a doctor's
+ * patient alert) survives into the next user's session. Views in
+ * PREWARMED are parsed ahead of time on a background thread and used once by the
+ * next navigation to them, after which a fresh copy is prepared; these are views
+ * whose initialize() neither calls the server nor depends on who is logged in.
+ * Everything else is loaded from its FXML on every visit, as before.
+ */
 public class SceneNavigator {
 
     private static SceneNavigator instance;
@@ -16,6 +38,32 @@ public class SceneNavigator {
     private static final String VIEW_ROOT = "/com/mycompany/coit20258assignment2/view/";
     private static final String CSS_IN_VIEW = VIEW_ROOT + "styles.css";
 
+    private static final Set<String> CACHED = Set.of(
+            "patient_dashboard.fxml", "doctor_dashboard.fxml", "admin_dashboard.fxml");
+    private static final Set<String> PREWARMED = Set.of(
+            "appointment_form.fxml", "vitals_form.fxml", "prescription_form.fxml", "health_tips.fxml");
+
+    // FX thread only: kept dashboards, and prepared one-use views
+    private final Map<String, LoadedView> cached = new HashMap<>();
+    private final Map<String, LoadedView> prepared = new HashMap<>();
+
+    private final ExecutorService preloader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ths-view-preload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** A parsed view ready to be put on the stage */
+    private static final class LoadedView {
+        final Scene scene;
+        final Object controller;
+
+        LoadedView(Scene scene, Object controller) {
+            this.scene = scene;
+            this.controller = controller;
+        }
+    }
+
     private SceneNavigator() {}
 
     public static SceneNavigator getInstance() {
@@ -28,6 +76,8 @@ public class SceneNavigator {
         this.width = width;
         this.height = height;
         this.stage.centerOnScreen();
+        // Dashboards do no work in initialize(), so they can be parsed while the user logs in
+        preload(new ArrayList<>(CACHED));
     }
 
     private void attachStyles(Scene scene) {
@@ -46,24 +96,85 @@ public class SceneNavigator {
     }
 
     private void go(String fxmlFile) {
+        // Loads and change listeners of the screen being left must not call back into it
+        AsyncLoader.cancelAll();
+        ClientService.getInstance().clearChangeListeners();
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(VIEW_ROOT + fxmlFile));
-            if (loader.getLocation() == null) throw new IllegalStateException("Missing FXML: " + VIEW_ROOT + fxmlFile);
-
-            Parent root = loader.load();
-            Scene scene = new Scene(root, width, height);
-            attachStyles(scene);
-
-            stage.setScene(scene);
+            LoadedView view = cached.get(fxmlFile);
+            if (view == null) {
+                view = prepared.remove(fxmlFile);
+                if (view != null && PREWARMED.contains(fxmlFile)) {
+                    preload(List.of(fxmlFile)); // a fresh copy for the next visit
+                }
+            }
+            if (view == null) {
+                FXMLLoader loader = loaderFor(fxmlFile);
+                Parent root = loader.load();
+                view = new LoadedView(newScene(root), loader.getController());
+            }
+            if (CACHED.contains(fxmlFile)) {
+                cached.put(fxmlFile, view);
+            }
+
+            stage.setScene(view.scene);
             stage.centerOnScreen();
             stage.show();
+            if (view.controller instanceof Refreshable) {
+                ((Refreshable) view.controller).onShow();
+            }
         } catch (Exception e) {
             showError(fxmlFile, e);
         }
     }
 
+    private FXMLLoader loaderFor(String fxmlFile) {
+        FXMLLoader loader = new FXMLLoader(getClass().getResource(VIEW_ROOT + fxmlFile));
+        if (loader.getLocation() == null) throw new IllegalStateException("Missing FXML: " + VIEW_ROOT + fxmlFile);
+        return loader;
+    }
+
+    private Scene newScene(Parent root) {
+        Scene scene = new Scene(root, width, height);
+        attachStyles(scene);
+        return scene;
+    }
+
+    /**
+     * Parse views on the preload thread; the scene is created back on the FX thread.
+     * A view already kept or prepared by then is left alone.
+     */
+    private void preload(List<String> fxmlFiles) {
+        for (String fxmlFile : fxmlFiles) {
+            preloader.execute(() -> {
+                try {
+                    FXMLLoader loader = loaderFor(fxmlFile);
+                    Parent root = loader.load();
+                    Object controller = loader.getController();
+                    Platform.runLater(() -> {
+                        if (!cached.containsKey(fxmlFile) && !prepared.containsKey(fxmlFile)) {
+                            prepared.put(fxmlFile, new LoadedView(newScene(root), controller));
+                        }
+                    });
+                } catch (Exception e) {
+                    System.err.println("⚠️ Could not preload " + fxmlFile + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Prepare the screens the logged-in user is likely to open next
+     */
+    public void prewarmAfterLogin() {
+        if (Session.isPatient()) {
+            preload(List.of("appointment_form.fxml", "vitals_form.fxml", "prescription_form.fxml", "health_tips.fxml"));
+        } else {
+            preload(List.of("health_tips.fxml"));
+        }
+    }
+
     // ===== Routes =====
-    public void goToLogin()                { go("Login.fxml"); }
+    public void goToLogin()                { cached.clear(); prepared.clear(); go("Login.fxml"); }
     public void goToPatientDashboard()     { go("patient_dashboard.fxml"); }
     public void goToDoctorDashboard()      { go("doctor_dashboard.fxml"); }
     public void goToAdminDashboard()       { go("admin_dashboard.fxml"); }
@@ -9,6 +9,8 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Doctor's appointment management screen
@@ -23,6 +25,8 @@ public class StaffBookingEditorController {
 
     private final ClientService clientService = ClientService.getInstance();
     private final DateTimeFormatter time12 = DateTimeFormatter.ofPattern("h:mm a");
+    // Filled by the background load, read by the cell renderer
+    private final Map<String, String> userNames = new ConcurrentHashMap<>();
 
     @FXML
     public void initialize() {
@@ -61,17 +65,27 @@ public class StaffBookingEditorController {
             
             System.out.println("📥 Loading appointments for doctor: " + Session.id());
             
-            // Get all appointments from server and filter by doctor
-            List<Appointment> allAppointments = clientService.getAppointments();
-            List<Appointment> doctorAppointments = allAppointments.stream()
-                    .filter(a -> a.getDoctorId().equals(Session.id()))
-                    .toList();
-            
-            System.out.println("✅ Loaded " + doctorAppointments.size() + " appointments for doctor");
-            
-            appointmentList.setItems(FXCollections.observableArrayList(doctorAppointments));
-            message.setText("Loaded " + doctorAppointments.size() + " appointment(s).");
-            message.setStyle("-fx-text-fill: green;");
+            String doctorId = Session.id();
+            AsyncLoader.load(() -> {
+                // Get all appointments from server and filter by doctor
+                List<Appointment> doctorAppointments = clientService.getAppointments().stream()
+                        .filter(a -> a.getDoctorId().equals(doctorId))
+                        .toList();
+                
+                // Resolve patient names once so the cell renderer never goes to the server
+                userNames.putAll(clientService.resolveUserNames(
+                        doctorAppointments.stream().map(Appointment::getPatientId).toList()));
+                return doctorAppointments;
+            }, doctorAppointments -> {
+                System.out.println("✅ Loaded " + doctorAppointments.size() + " appointments for doctor");
+                
+                appointmentList.setItems(FXCollections.observableArrayList(doctorAppointments));
+                message.setText("Loaded " + doctorAppointments.size() + " appointment(s).");
+                message.setStyle("-fx-text-fill: green;");
+            }, e -> {
+                message.setText("Load error: " + e.getMessage());
+                message.setStyle("-fx-text-fill: red;");
+            });
             
         } catch (Exception e) { 
             message.setText("Load error: " + e.getMessage());
@@ -178,19 +192,9 @@ public class StaffBookingEditorController {
     @FXML public void onLogout() { Session.logout(); SceneNavigator.getInstance().goToLogin(); }
     
     /**
-     * Find user name by ID from server
+     * Find user name by ID from the names resolved in onLoad()
      */
     private String findUserName(String userId) {
-        try {
-            List<User> users = clientService.getUsers();
-            for (User user : users) {
-                if (user.getId().equals(userId)) {
-                    return user.getName();
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error finding user name: " + e.getMessage());
-        }
-        return userId; // Return ID if name not found
+        return userNames.getOrDefault(userId, userId); // Return ID if name not found
     }
 }
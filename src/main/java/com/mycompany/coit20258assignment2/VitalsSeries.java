@@ -0,0 +1,210 @@
+package com.mycompany.coit20258assignment2;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * One patient's vital signs held column by column.
+ *
+ * Each metric is a primitive array (blood pressure as two int columns, temperature
+ * in hundredths of a degree, timestamps as epoch seconds of the local time), so a
+ * long history costs a few bytes per reading instead of a VitalSigns object, a
+ * LocalDateTime and a "120/80" string each. BinaryCodec sends the columns
+ * delta-encoded, which shrinks readings taken at regular intervals to a byte or
+ * two per value.
+ *
+ * The series is also a List of VitalSigns, so code that works with lists of
+ * readings can use it unchanged: get(i) builds the reading on demand.
+ */
+public class VitalsSeries extends AbstractList<VitalSigns> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String patientId;
+    private String[] ids;
+    private long[] times;
+    private int[] pulse;
+    private int[] temperature;
+    private int[] respiration;
+    private int[] systolic;
+    private int[] diastolic;
+    private int size;
+
+    public VitalsSeries(String patientId) {
+        this(patientId, 16);
+    }
+
+    public VitalsSeries(String patientId, int capacity) {
+        this.patientId = patientId;
+        int initial = Math.max(capacity, 1);
+        this.ids = new String[initial];
+        this.times = new long[initial];
+        this.pulse = new int[initial];
+        this.temperature = new int[initial];
+        this.respiration = new int[initial];
+        this.systolic = new int[initial];
+        this.diastolic = new int[initial];
+    }
+
+    /**
+     * Copy readings of one patient into a new series, keeping their order
+     */
+    public static VitalsSeries of(String patientId, Collection<VitalSigns> readings) {
+        VitalsSeries series = new VitalsSeries(patientId, readings.size());
+        series.addAll(readings);
+        return series;
+    }
+
+    public String getPatientId() { return patientId; }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public VitalSigns get(int index) {
+        checkIndex(index);
+        return new VitalSigns(ids[index], patientId, pulse[index], temperatureAt(index),
+                              respiration[index], systolic[index] + "/" + diastolic[index], timeAt(index));
+    }
+
+    /**
+     * Append a reading; its blood pressure must be in "120/80" form
+     */
+    @Override
+    public boolean add(VitalSigns vitals) {
+        insert(size, vitals);
+        return true;
+    }
+
+    /**
+     * Insert a reading at the given position, shifting later readings along
+     */
+    public void insert(int index, VitalSigns vitals) {
+        String[] bp = vitals.getBloodPressure().split("/");
+        if (bp.length != 2) {
+            throw new IllegalArgumentException("Malformed blood pressure: " + vitals.getBloodPressure());
+        }
+        insertRaw(index, vitals.getId(), epochSecond(vitals.getTimestamp()), vitals.getPulse(),
+                  (int) Math.round(vitals.getTemperature() * 100), vitals.getRespiration(),
+                  Integer.parseInt(bp[0].trim()), Integer.parseInt(bp[1].trim()));
+        modCount++;
+    }
+
+    /**
+     * Append a reading given as column values
+     *
+     * @param epochSecond          local timestamp as seconds since 1970-01-01T00:00
+     * @param temperatureHundredths temperature times 100
+     */
+    public void appendRaw(String id, long epochSecond, int pulse, int temperatureHundredths,
+                          int respiration, int systolic, int diastolic) {
+        insertRaw(size, id, epochSecond, pulse, temperatureHundredths, respiration, systolic, diastolic);
+        modCount++;
+    }
+
+    private void insertRaw(int index, String id, long epochSecond, int pulse, int temperatureHundredths,
+                           int respiration, int systolic, int diastolic) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        if (size == times.length) {
+            grow(size * 2);
+        }
+        int tail = size - index;
+        if (tail > 0) {
+            System.arraycopy(ids, index, ids, index + 1, tail);
+            System.arraycopy(times, index, times, index + 1, tail);
+            System.arraycopy(this.pulse, index, this.pulse, index + 1, tail);
+            System.arraycopy(temperature, index, temperature, index + 1, tail);
+            System.arraycopy(this.respiration, index, this.respiration, index + 1, tail);
+            System.arraycopy(this.systolic, index, this.systolic, index + 1, tail);
+            System.arraycopy(this.diastolic, index, this.diastolic, index + 1, tail);
+        }
+        ids[index] = id;
+        times[index] = epochSecond;
+        this.pulse[index] = pulse;
+        temperature[index] = temperatureHundredths;
+        this.respiration[index] = respiration;
+        this.systolic[index] = systolic;
+        this.diastolic[index] = diastolic;
+        size++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        int tail = size - toIndex;
+        System.arraycopy(ids, toIndex, ids, fromIndex, tail);
+        System.arraycopy(times, toIndex, times, fromIndex, tail);
+        System.arraycopy(pulse, toIndex, pulse, fromIndex, tail);
+        System.arraycopy(temperature, toIndex, temperature, fromIndex, tail);
+        System.arraycopy(respiration, toIndex, respiration, fromIndex, tail);
+        System.arraycopy(systolic, toIndex, systolic, fromIndex, tail);
+        System.arraycopy(diastolic, toIndex, diastolic, fromIndex, tail);
+        int newSize = size - (toIndex - fromIndex);
+        Arrays.fill(ids, newSize, size, null);
+        size = newSize;
+        modCount++;
+    }
+
+    /**
+     * Independent copy of the series (arrays only, no readings are built)
+     */
+    public VitalsSeries copy() {
+        VitalsSeries copy = new VitalsSeries(patientId, 0);
+        copy.ids = Arrays.copyOf(ids, Math.max(size, 1));
+        copy.times = Arrays.copyOf(times, Math.max(size, 1));
+        copy.pulse = Arrays.copyOf(pulse, Math.max(size, 1));
+        copy.temperature = Arrays.copyOf(temperature, Math.max(size, 1));
+        copy.respiration = Arrays.copyOf(respiration, Math.max(size, 1));
+        copy.systolic = Arrays.copyOf(systolic, Math.max(size, 1));
+        copy.diastolic = Arrays.copyOf(diastolic, Math.max(size, 1));
+        copy.size = size;
+        return copy;
+    }
+
+    public String idAt(int index) { checkIndex(index); return ids[index]; }
+    public long epochSecondAt(int index) { checkIndex(index); return times[index]; }
+    public LocalDateTime timeAt(int index) { return LocalDateTime.ofEpochSecond(epochSecondAt(index), 0, ZoneOffset.UTC); }
+    public int pulseAt(int index) { checkIndex(index); return pulse[index]; }
+    public int temperatureHundredthsAt(int index) { checkIndex(index); return temperature[index]; }
+    public double temperatureAt(int index) { return temperatureHundredthsAt(index) / 100.0; }
+    public int respirationAt(int index) { checkIndex(index); return respiration[index]; }
+    public int systolicAt(int index) { checkIndex(index); return systolic[index]; }
+    public int diastolicAt(int index) { checkIndex(index); return diastolic[index]; }
+
+    /**
+     * Seconds since 1970-01-01T00:00 of a local timestamp, as the series stores it
+     */
+    public static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        times = Arrays.copyOf(times, capacity);
+        pulse = Arrays.copyOf(pulse, capacity);
+        temperature = Arrays.copyOf(temperature, capacity);
+        respiration = Arrays.copyOf(respiration, capacity);
+        systolic = Arrays.copyOf(systolic, capacity);
+        diastolic = Arrays.copyOf(diastolic, capacity);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        grow(Math.max(size, 1));
+        out.defaultWriteObject();
+    }
+}
@@ -2,9 +2,23 @@ package com.mycompany.coit20258assignment2.client;
 
 import com.mycompany.coit20258assignment2.*;
 import com.mycompany.coit20258assignment2.common.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 
 public class ClientService {
@@ -12,8 +26,25 @@ public class ClientService {
     private ServerConnection connection;
     private User currentUser;
     
+    // Display names already resolved this session (names change rarely; cleared on logout)
+    private final Map<String, String> userNameCache = new ConcurrentHashMap<>();
+    
+    // Lists refreshed with GET_CHANGES deltas instead of full reloads (cleared on login/logout)
+    private final EntityCache<Appointment> appointmentCache = new EntityCache<>(Appointment::getId,
+            Comparator.comparing(Appointment::getDate).thenComparing(Appointment::getTime).reversed());
+    private final EntityCache<Prescription> prescriptionCache = new EntityCache<>(Prescription::getId,
+            Comparator.comparing(Prescription::getDate).reversed());
+    private final Map<String, EntityCache<VitalSigns>> vitalSignsCaches = new ConcurrentHashMap<>();
+    
+    // Views told about server-pushed changes (called on the connection's reader thread)
+    private final List<Consumer<ChangeEvent>> changeListeners = new CopyOnWriteArrayList<>();
+    
+    // RECORD_VITALS_BATCH tries before a busy answer is passed on to the caller
+    private static final int MAX_INGEST_ATTEMPTS = 3;
+    
     private ClientService() {
         connection = ServerConnection.getInstance();
+        connection.addPushListener(this::onPush);
     }
     
     public static ClientService getInstance() {
@@ -60,6 +91,8 @@ public class ClientService {
                         case "ADMINISTRATOR" -> new Administrator(userId, fullName, email != null ? email : username + "@email.com", username, password);
                         default -> new User(userId, fullName, username, password);
                     };
+                    clearCaches();
+                    subscribeToChanges();
                     
                     return new LoginResult(true, "Login successful", currentUser);
                 }
@@ -133,20 +166,8 @@ public class ClientService {
         if (currentUser == null) return new ArrayList<>();
         
         try {
-            GenericRequest request = new GenericRequest("GET_APPOINTMENTS", currentUser.getId());
-            request.addData("userType", currentUser.getUserType().toString());
-            
-            BaseResponse response = connection.sendRequest(request);
-            
-            if (response != null && response.isSuccess() && response instanceof GenericResponse) {
-                GenericResponse genResp = (GenericResponse) response;
-                Object appointmentsObj = genResp.getData("appointments");
-                
-                if (appointmentsObj instanceof List) {
-                    return (List<Appointment>) appointmentsObj;
-                }
-            }
-            
+            return fromChanges(appointmentCache, connection.sendRequest(changesRequest("appointments", appointmentCache, null)),
+                               this::appointmentsRequest, ClientService::parseAppointments);
         } catch (Exception e) {
             System.err.println("Error getting appointments: " + e.getMessage());
         }
@@ -154,6 +175,23 @@ public class ClientService {
         return new ArrayList<>();
     }
     
+    private GenericRequest appointmentsRequest() {
+        GenericRequest request = new GenericRequest("GET_APPOINTMENTS", currentUser.getId());
+        request.addData("userType", currentUser.getUserType().toString());
+        return request;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Appointment> parseAppointments(BaseResponse response) {
+        if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+            Object appointmentsObj = ((GenericResponse) response).getData("appointments");
+            if (appointmentsObj instanceof List) {
+                return (List<Appointment>) appointmentsObj;
+            }
+        }
+        return new ArrayList<>();
+    }
+    
     /**
      * Create new appointment
      */
@@ -254,26 +292,46 @@ public class ClientService {
     }
     
     /**
-     * Get prescriptions for current user
+     * Next free booking slots for a doctor, or across all doctors of a
+     * specialization when doctorId is null (both null searches every doctor).
+     * Each slot has doctorId, doctorName, date ("yyyy-MM-dd") and time ("HH:mm").
      */
-    public List<Prescription> getPrescriptions() {
-        if (currentUser == null) return new ArrayList<>();
-        
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> findAvailableSlots(String doctorId, String specialization,
+                                                        java.time.LocalDate fromDate, java.time.LocalDate toDate,
+                                                        int limit) {
         try {
-            GenericRequest request = new GenericRequest("GET_PRESCRIPTIONS", currentUser.getId());
-            request.addData("userType", currentUser.getUserType().toString());
+            GenericRequest request = new GenericRequest("FIND_AVAILABLE_SLOTS", currentUser.getId());
+            request.addData("doctorId", doctorId);
+            request.addData("specialization", specialization);
+            request.addData("fromDate", fromDate.toString());
+            request.addData("toDate", toDate.toString());
+            request.addData("limit", limit);
             
             BaseResponse response = connection.sendRequest(request);
             
             if (response != null && response.isSuccess() && response instanceof GenericResponse) {
-                GenericResponse genResp = (GenericResponse) response;
-                Object prescriptionsObj = genResp.getData("prescriptions");
-                
-                if (prescriptionsObj instanceof List) {
-                    return (List<Prescription>) prescriptionsObj;
+                Object slotsObj = ((GenericResponse) response).getData("slots");
+                if (slotsObj instanceof List) {
+                    return (List<Map<String, Object>>) slotsObj;
                 }
             }
-            
+        } catch (Exception e) {
+            System.err.println("Error finding available slots: " + e.getMessage());
+        }
+        
+        return new ArrayList<>();
+    }
+    
+    /**
+     * Get prescriptions for current user
+     */
+    public List<Prescription> getPrescriptions() {
+        if (currentUser == null) return new ArrayList<>();
+        
+        try {
+            return fromChanges(prescriptionCache, connection.sendRequest(changesRequest("prescriptions", prescriptionCache, null)),
+                               this::prescriptionsRequest, ClientService::parsePrescriptions);
         } catch (Exception e) {
             System.err.println("Error getting prescriptions: " + e.getMessage());
         }
@@ -281,6 +339,23 @@ public class ClientService {
         return new ArrayList<>();
     }
     
+    private GenericRequest prescriptionsRequest() {
+        GenericRequest request = new GenericRequest("GET_PRESCRIPTIONS", currentUser.getId());
+        request.addData("userType", currentUser.getUserType().toString());
+        return request;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Prescription> parsePrescriptions(BaseResponse response) {
+        if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+            Object prescriptionsObj = ((GenericResponse) response).getData("prescriptions");
+            if (prescriptionsObj instanceof List) {
+                return (List<Prescription>) prescriptionsObj;
+            }
+        }
+        return new ArrayList<>();
+    }
+    
     /**
      * Create new prescription
      */
@@ -422,53 +497,201 @@ public class ClientService {
         }
     }
     
+    /**
+     * Record many readings in one request, e.g. a monitoring device catching up.
+     * When the server is too busy to queue them it answers with retryAfterMs;
+     * the request is then sent again after that delay, up to MAX_INGEST_ATTEMPTS times.
+     */
+    @SuppressWarnings("unchecked")
+    public IngestResult recordVitalSignsBatch(List<VitalSigns> readings) {
+        try {
+            for (int attempt = 1; ; attempt++) {
+                GenericRequest request = new GenericRequest("RECORD_VITALS_BATCH", currentUser.getId());
+                request.addData("vitals", new ArrayList<>(readings));
+                BaseResponse response = connection.sendRequest(request);
+                if (!(response instanceof GenericResponse)) {
+                    return new IngestResult(false, 0, List.of(), response != null ? response.getMessage() : "No response");
+                }
+                
+                GenericResponse genResp = (GenericResponse) response;
+                Object retryAfter = genResp.getData("retryAfterMs");
+                if (retryAfter instanceof Number && attempt < MAX_INGEST_ATTEMPTS) {
+                    System.out.println("⏳ " + response.getMessage() + " (attempt " + attempt + ")");
+                    Thread.sleep(((Number) retryAfter).longValue());
+                    continue;
+                }
+                Object stored = genResp.getData("stored");
+                Object failedIds = genResp.getData("failedIds");
+                return new IngestResult(response.isSuccess(), stored instanceof Integer ? (Integer) stored : 0,
+                                        failedIds instanceof List ? (List<String>) failedIds : List.of(),
+                                        response.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new IngestResult(false, 0, List.of(), "Interrupted");
+        } catch (Exception e) {
+            System.err.println("Error recording vitals batch: " + e.getMessage());
+            return new IngestResult(false, 0, List.of(), "Error: " + e.getMessage());
+        }
+    }
+    
     /**
      * Get vital signs for patient
      */
     public List<VitalSigns> getVitalSigns(String patientId) {
         try {
-            GenericRequest request = new GenericRequest("GET_VITALS", currentUser.getId());
+            EntityCache<VitalSigns> cache = vitalSignsCache(patientId);
+            return fromChanges(cache, connection.sendRequest(changesRequest("vitals", cache, patientId)),
+                               () -> vitalSignsRequest(patientId), ClientService::parseVitalSigns);
+        } catch (Exception e) {
+            System.err.println("Error getting vital signs: " + e.getMessage());
+        }
+        
+        return new ArrayList<>();
+    }
+    
+    private GenericRequest vitalSignsRequest(String patientId) {
+        GenericRequest request = new GenericRequest("GET_VITALS", currentUser.getId());
+        request.addData("patientId", patientId);
+        return request;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<VitalSigns> parseVitalSigns(BaseResponse response) {
+        if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+            Object vitalsObj = ((GenericResponse) response).getData("vitals");
+            if (vitalsObj instanceof List) {
+                return (List<VitalSigns>) vitalsObj;
+            }
+        }
+        return new ArrayList<>();
+    }
+    
+    private EntityCache<VitalSigns> vitalSignsCache(String patientId) {
+        return vitalSignsCaches.computeIfAbsent(patientId, id -> new EntityCache<>(VitalSigns::getId,
+                Comparator.comparing(VitalSigns::getTimestamp).reversed()));
+    }
+    
+    /**
+     * Get vital signs trend analysis
+     */
+    public String getVitalSignsTrend(String patientId, int daysBack) {
+        try {
+            GenericRequest request = new GenericRequest("GET_VITALS_TREND", currentUser.getId());
             request.addData("patientId", patientId);
+            request.addData("daysBack", daysBack);
             
             BaseResponse response = connection.sendRequest(request);
             
             if (response != null && response.isSuccess() && response instanceof GenericResponse) {
                 GenericResponse genResp = (GenericResponse) response;
-                Object vitalsObj = genResp.getData("vitals");
-                
-                if (vitalsObj instanceof List) {
-                    return (List<VitalSigns>) vitalsObj;
-                }
+                return (String) genResp.getData("analysis");
             }
             
         } catch (Exception e) {
-            System.err.println("Error getting vital signs: " + e.getMessage());
+            System.err.println("Error getting vital signs trend: " + e.getMessage());
         }
         
-        return new ArrayList<>();
+        return "No data available";
     }
     
     /**
-     * Get vital signs trend analysis
+     * Trend of a patient's vital signs as per-metric series of rollup buckets
+     *
+     * @param granularity "HOUR", "DAY", "WEEK", or null to let the server pick one for the window
+     * @return the trend, or null if it could not be fetched
      */
-    public String getVitalSignsTrend(String patientId, int daysBack) {
+    @SuppressWarnings("unchecked")
+    public VitalsTrend getVitalSignsTrendSeries(String patientId, int daysBack, String granularity) {
         try {
             GenericRequest request = new GenericRequest("GET_VITALS_TREND", currentUser.getId());
             request.addData("patientId", patientId);
             request.addData("daysBack", daysBack);
+            if (granularity != null) {
+                request.addData("granularity", granularity);
+            }
             
             BaseResponse response = connection.sendRequest(request);
             
             if (response != null && response.isSuccess() && response instanceof GenericResponse) {
                 GenericResponse genResp = (GenericResponse) response;
-                return (String) genResp.getData("analysis");
+                Object series = genResp.getData("series");
+                return new VitalsTrend(
+                    (String) genResp.getData("granularity"),
+                    series instanceof Map ? (Map<String, List<Map<String, Object>>>) series : Map.of(),
+                    (String) genResp.getData("analysis"));
             }
             
         } catch (Exception e) {
             System.err.println("Error getting vital signs trend: " + e.getMessage());
         }
         
-        return "No data available";
+        return null;
+    }
+    
+    /**
+     * Recent abnormal-reading alerts for a patient, newest first; each has
+     * "metric", "kind" (HIGH, LOW, DEVIATION, RISING, FALLING), "value",
+     * "usual", "recordedAt" and "message"
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> getVitalsAlerts(String patientId) {
+        try {
+            GenericRequest request = new GenericRequest("GET_VITALS_ALERTS", currentUser.getId());
+            request.addData("patientId", patientId);
+            
+            BaseResponse response = connection.sendRequest(request);
+            if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+                Object alerts = ((GenericResponse) response).getData("alerts");
+                if (alerts instanceof List) {
+                    return (List<Map<String, Object>>) alerts;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error getting vitals alerts: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    /**
+     * A patient's alerting rules: "zThreshold", "alpha" and per metric
+     * ("pulse", "temperature", "respiration", "systolic", "diastolic") a map
+     * of "low", "high" and "maxRatePerHour"
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getAlertRules(String patientId) {
+        try {
+            GenericRequest request = new GenericRequest("GET_ALERT_RULES", currentUser.getId());
+            request.addData("patientId", patientId);
+            
+            BaseResponse response = connection.sendRequest(request);
+            if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+                Object rules = ((GenericResponse) response).getData("rules");
+                if (rules instanceof Map) {
+                    return (Map<String, Object>) rules;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error getting alert rules: " + e.getMessage());
+        }
+        return new HashMap<>();
+    }
+    
+    /**
+     * Replace a patient's alerting rules (same shape as getAlertRules; entries left out keep their defaults)
+     */
+    public boolean setAlertRules(String patientId, Map<String, Object> rules) {
+        try {
+            GenericRequest request = new GenericRequest("SET_ALERT_RULES", currentUser.getId());
+            request.addData("patientId", patientId);
+            request.addData("rules", new HashMap<>(rules));
+            
+            BaseResponse response = connection.sendRequest(request);
+            return response != null && response.isSuccess();
+        } catch (Exception e) {
+            System.err.println("Error setting alert rules: " + e.getMessage());
+            return false;
+        }
     }
     
     /**
@@ -476,9 +699,64 @@ public class ClientService {
      */
     public void logout() {
         currentUser = null;
+        clearCaches();
+        connection.unsubscribe();
         connection.disconnect();
     }
     
+    private void clearCaches() {
+        userNameCache.clear();
+        appointmentCache.clear();
+        prescriptionCache.clear();
+        vitalSignsCaches.clear();
+    }
+    
+    // ==================== Change Notifications ====================
+    
+    /**
+     * Ask the server to push changes to the logged-in user's appointments and
+     * prescriptions (administrators: everyone's) instead of the views polling
+     */
+    private void subscribeToChanges() {
+        GenericRequest request = new GenericRequest("SUBSCRIBE", currentUser.getId());
+        request.addData("userType", currentUser.getUserType().toString());
+        if (!connection.subscribe(request)) {
+            System.out.println("ℹ️ Legacy connection: change notifications are not available");
+        }
+    }
+    
+    /**
+     * Be told when the server reports a change; the listener runs on the
+     * connection's reader thread and must hand UI work to the FX thread
+     */
+    public void addChangeListener(Consumer<ChangeEvent> listener) {
+        changeListeners.add(listener);
+    }
+    
+    public void removeChangeListener(Consumer<ChangeEvent> listener) {
+        changeListeners.remove(listener);
+    }
+    
+    /**
+     * Forget every change listener (the screens that added them are gone)
+     */
+    public void clearChangeListeners() {
+        changeListeners.clear();
+    }
+    
+    private void onPush(BaseResponse response) {
+        if (!(response instanceof GenericResponse)) {
+            return;
+        }
+        Map<String, Object> data = ((GenericResponse) response).getData();
+        ChangeEvent event = new ChangeEvent((String) data.get("entity"), (String) data.get("id"),
+                                            (String) data.get("action"), (String) data.get("status"), data);
+        System.out.println("🔔 Change: " + event.getEntity() + " " + event.getId() + " " + event.getAction());
+        for (Consumer<ChangeEvent> listener : changeListeners) {
+            listener.accept(event);
+        }
+    }
+    
     /**
      * Get current logged-in user
      */
@@ -615,48 +893,98 @@ public class ClientService {
     public java.util.List<User> getUsers() {
         try {
             System.out.println("Getting all users from server...");
-            GenericRequest request = new GenericRequest("GET_USERS", currentUser.getId());
-            
-            BaseResponse response = connection.sendRequest(request);
-            
-            if (response != null && response.isSuccess() && response instanceof GenericResponse) {
-                GenericResponse genResp = (GenericResponse) response;
-                @SuppressWarnings("unchecked")
-                java.util.List<java.util.Map<String, Object>> usersData = 
-                    (java.util.List<java.util.Map<String, Object>>) genResp.getData().get("users");
+            return parseUsers(connection.sendRequest(usersRequest()));
+        } catch (Exception e) {
+            System.err.println("Error getting users: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return new java.util.ArrayList<>();
+    }
+    
+    private GenericRequest usersRequest() {
+        return new GenericRequest("GET_USERS", currentUser.getId());
+    }
+    
+    private static java.util.List<User> parseUsers(BaseResponse response) {
+        if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+            GenericResponse genResp = (GenericResponse) response;
+            @SuppressWarnings("unchecked")
+            java.util.List<java.util.Map<String, Object>> usersData = 
+                (java.util.List<java.util.Map<String, Object>>) genResp.getData().get("users");
+            
+            if (usersData != null) {
+                // Convert Map data to User objects
+                java.util.List<User> users = new java.util.ArrayList<>();
+                for (java.util.Map<String, Object> data : usersData) {
+                    String userType = (String) data.get("user_type");
+                    String id = (String) data.get("id");
+                    String name = (String) data.get("name");
+                    String email = (String) data.get("email");
+                    String username = (String) data.get("username");
+                    String specialization = (String) data.get("specialization");
+                    
+                    // Create appropriate user type
+                    User user = switch (userType) {
+                        case "PATIENT" -> new Patient(id, name, email, username, "");
+                        case "DOCTOR" -> new Doctor(id, name, email, username, "", specialization);
+                        case "ADMINISTRATOR" -> new Administrator(id, name, email, username, "");
+                        default -> null;
+                    };
+                    
+                    if (user != null) {
+                        users.add(user);
+                    }
+                }
+                System.out.println("✅ Retrieved " + users.size() + " users");
+                return users;
+            }
+        }
+        return new java.util.ArrayList<>();
+    }
+    
+    /**
+     * Resolve display names for a set of user ids in one RESOLVE_USER_NAMES call.
+     * Names seen earlier in the session are answered locally; ids the server does
+     * not know map to themselves.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> resolveUserNames(Collection<String> userIds) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String id : userIds) {
+            if (id != null && !userNameCache.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        
+        if (!missing.isEmpty() && currentUser != null) {
+            try {
+                GenericRequest request = new GenericRequest("RESOLVE_USER_NAMES", currentUser.getId());
+                request.addData("userIds", new ArrayList<>(missing));
                 
-                if (usersData != null) {
-                    // Convert Map data to User objects
-                    java.util.List<User> users = new java.util.ArrayList<>();
-                    for (java.util.Map<String, Object> data : usersData) {
-                        String userType = (String) data.get("user_type");
-                        String id = (String) data.get("id");
-                        String name = (String) data.get("name");
-                        String email = (String) data.get("email");
-                        String username = (String) data.get("username");
-                        String specialization = (String) data.get("specialization");
-                        
-                        // Create appropriate user type
-                        User user = switch (userType) {
-                            case "PATIENT" -> new Patient(id, name, email, username, "");
-                            case "DOCTOR" -> new Doctor(id, name, email, username, "", specialization);
-                            case "ADMINISTRATOR" -> new Administrator(id, name, email, username, "");
-                            default -> null;
-                        };
-                        
-                        if (user != null) {
-                            users.add(user);
+                BaseResponse response = connection.sendRequest(request);
+                
+                if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+                    Object namesObj = ((GenericResponse) response).getData("names");
+                    if (namesObj instanceof Map) {
+                        for (Map.Entry<String, Object> entry : ((Map<String, Object>) namesObj).entrySet()) {
+                            if (entry.getValue() != null) {
+                                userNameCache.put(entry.getKey(), entry.getValue().toString());
+                            }
                         }
                     }
-                    System.out.println("✅ Retrieved " + users.size() + " users");
-                    return users;
                 }
+            } catch (Exception e) {
+                System.err.println("Error resolving user names: " + e.getMessage());
             }
-        } catch (Exception e) {
-            System.err.println("Error getting users: " + e.getMessage());
-            e.printStackTrace();
         }
-        return new java.util.ArrayList<>();
+        
+        Map<String, String> names = new HashMap<>();
+        for (String id : userIds) {
+            if (id != null) {
+                names.put(id, userNameCache.getOrDefault(id, id));
+            }
+        }
+        return names;
     }
     
     /**
@@ -700,27 +1028,7 @@ public class ClientService {
     public java.util.List<java.util.Map<String, Object>> getReferrals(String patientId, String doctorId) {
         try {
             System.out.println("Getting referrals from server...");
-            GenericRequest request = new GenericRequest("GET_REFERRALS", currentUser.getId());
-            if (patientId != null) {
-                request.addData("patientId", patientId);
-            }
-            if (doctorId != null) {
-                request.addData("doctorId", doctorId);
-            }
-            
-            BaseResponse response = connection.sendRequest(request);
-            
-            if (response != null && response.isSuccess() && response instanceof GenericResponse) {
-                GenericResponse genResp = (GenericResponse) response;
-                @SuppressWarnings("unchecked")
-                java.util.List<java.util.Map<String, Object>> referrals = 
-                    (java.util.List<java.util.Map<String, Object>>) genResp.getData().get("referrals");
-                
-                if (referrals != null) {
-                    System.out.println("✅ Retrieved " + referrals.size() + " referrals");
-                    return referrals;
-                }
-            }
+            return parseReferrals(connection.sendRequest(referralsRequest(patientId, doctorId)));
         } catch (Exception e) {
             System.err.println("Error getting referrals: " + e.getMessage());
             e.printStackTrace();
@@ -728,6 +1036,32 @@ public class ClientService {
         return new java.util.ArrayList<>();
     }
     
+    private GenericRequest referralsRequest(String patientId, String doctorId) {
+        GenericRequest request = new GenericRequest("GET_REFERRALS", currentUser.getId());
+        if (patientId != null) {
+            request.addData("patientId", patientId);
+        }
+        if (doctorId != null) {
+            request.addData("doctorId", doctorId);
+        }
+        return request;
+    }
+    
+    private static java.util.List<java.util.Map<String, Object>> parseReferrals(BaseResponse response) {
+        if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+            GenericResponse genResp = (GenericResponse) response;
+            @SuppressWarnings("unchecked")
+            java.util.List<java.util.Map<String, Object>> referrals = 
+                (java.util.List<java.util.Map<String, Object>>) genResp.getData().get("referrals");
+            
+            if (referrals != null) {
+                System.out.println("✅ Retrieved " + referrals.size() + " referrals");
+                return referrals;
+            }
+        }
+        return new java.util.ArrayList<>();
+    }
+    
     /**
      * Create a diagnosis record (legacy - uses old Diagnosis class)
      */
@@ -798,33 +1132,409 @@ public class ClientService {
     public java.util.List<java.util.Map<String, Object>> getDiagnoses(String patientId, String doctorId) {
         try {
             System.out.println("📥 Requesting diagnoses from server...");
-            GenericRequest request = new GenericRequest("GET_DIAGNOSES", currentUser.getId());
-            
-            if (patientId != null) {
-                request.addData("patientId", patientId);
-            }
-            if (doctorId != null) {
-                request.addData("doctorId", doctorId);
+            return parseDiagnoses(connection.sendRequest(diagnosesRequest(patientId, doctorId)));
+        } catch (Exception e) {
+            System.err.println("❌ Error retrieving diagnoses: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return new java.util.ArrayList<>();
+    }
+    
+    private GenericRequest diagnosesRequest(String patientId, String doctorId) {
+        GenericRequest request = new GenericRequest("GET_DIAGNOSES", currentUser.getId());
+        
+        if (patientId != null) {
+            request.addData("patientId", patientId);
+        }
+        if (doctorId != null) {
+            request.addData("doctorId", doctorId);
+        }
+        return request;
+    }
+    
+    private static java.util.List<java.util.Map<String, Object>> parseDiagnoses(BaseResponse response) {
+        if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+            GenericResponse genResp = (GenericResponse) response;
+            @SuppressWarnings("unchecked")
+            java.util.List<java.util.Map<String, Object>> diagnoses = 
+                (java.util.List<java.util.Map<String, Object>>) genResp.getData().get("diagnoses");
+            
+            System.out.println("✅ Retrieved " + (diagnoses != null ? diagnoses.size() : 0) + " diagnoses");
+            return diagnoses != null ? diagnoses : new java.util.ArrayList<>();
+        }
+        return new java.util.ArrayList<>();
+    }
+    
+    // ==================== Server Metrics ====================
+    
+    /**
+     * Server latency and error counters: "requests" and "dao" lists of
+     * per-operation maps ("name", "count", "errors", "inFlight", "p50Ms",
+     * "p99Ms", ...), "pool" and "uptimeSeconds"; empty if unavailable
+     */
+    public Map<String, Object> getServerMetrics() {
+        try {
+            BaseResponse response = connection.sendRequest(new GenericRequest("METRICS",
+                    currentUser != null ? currentUser.getId() : null));
+            if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+                return ((GenericResponse) response).getData();
             }
-            
+        } catch (Exception e) {
+            System.err.println("Error getting server metrics: " + e.getMessage());
+        }
+        return new HashMap<>();
+    }
+    
+    // ==================== Streamed Lists ====================
+    
+    /**
+     * Every appointment visible to the current user, newest first, read
+     * incrementally as the server streams it; close the stream when done
+     */
+    public RowStream<Appointment> streamAppointments(int chunkSize) {
+        GenericRequest request = new GenericRequest("STREAM_APPOINTMENTS", currentUser.getId());
+        request.addData("userType", currentUser.getUserType().toString());
+        request.addData("chunkSize", chunkSize);
+        return new RowStream<>(connection.openStream(request), "appointments");
+    }
+    
+    /**
+     * A patient's full vital signs history, newest first, read incrementally
+     */
+    public RowStream<VitalSigns> streamVitalSigns(String patientId, int chunkSize) {
+        GenericRequest request = new GenericRequest("STREAM_VITALS", currentUser.getId());
+        request.addData("patientId", patientId);
+        request.addData("chunkSize", chunkSize);
+        return new RowStream<>(connection.openStream(request), "vitals");
+    }
+    
+    // ==================== Paged Lists ====================
+    
+    /**
+     * One page of the current user's appointments, newest first; pass the previous
+     * page's next cursor (or null for the first page)
+     */
+    public Page<Appointment> getAppointmentsPage(String cursor, int pageSize) {
+        if (currentUser == null) return new Page<>(new ArrayList<>(), null);
+        return fetchPage(appointmentsRequest(), "appointments", cursor, pageSize);
+    }
+    
+    public Page<Prescription> getPrescriptionsPage(String cursor, int pageSize) {
+        if (currentUser == null) return new Page<>(new ArrayList<>(), null);
+        return fetchPage(prescriptionsRequest(), "prescriptions", cursor, pageSize);
+    }
+    
+    public Page<VitalSigns> getVitalSignsPage(String patientId, String cursor, int pageSize) {
+        if (currentUser == null) return new Page<>(new ArrayList<>(), null);
+        return fetchPage(vitalSignsRequest(patientId), "vitals", cursor, pageSize);
+    }
+    
+    public Page<Map<String, Object>> getDiagnosesPage(String patientId, String doctorId, String cursor, int pageSize) {
+        if (currentUser == null) return new Page<>(new ArrayList<>(), null);
+        return fetchPage(diagnosesRequest(patientId, doctorId), "diagnoses", cursor, pageSize);
+    }
+    
+    public Page<Map<String, Object>> getReferralsPage(String patientId, String doctorId, String cursor, int pageSize) {
+        if (currentUser == null) return new Page<>(new ArrayList<>(), null);
+        return fetchPage(referralsRequest(patientId, doctorId), "referrals", cursor, pageSize);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> Page<T> fetchPage(GenericRequest request, String listKey, String cursor, int pageSize) {
+        request.addData("pageSize", pageSize);
+        if (cursor != null) {
+            request.addData("cursor", cursor);
+        }
+        try {
             BaseResponse response = connection.sendRequest(request);
-            
             if (response != null && response.isSuccess() && response instanceof GenericResponse) {
                 GenericResponse genResp = (GenericResponse) response;
-                @SuppressWarnings("unchecked")
-                java.util.List<java.util.Map<String, Object>> diagnoses = 
-                    (java.util.List<java.util.Map<String, Object>>) genResp.getData().get("diagnoses");
-                
-                System.out.println("✅ Retrieved " + (diagnoses != null ? diagnoses.size() : 0) + " diagnoses");
-                return diagnoses != null ? diagnoses : new java.util.ArrayList<>();
+                Object items = genResp.getData(listKey);
+                if (items instanceof List) {
+                    return new Page<>((List<T>) items, (String) genResp.getData("nextCursor"));
+                }
             }
-            
         } catch (Exception e) {
-            System.err.println("❌ Error retrieving diagnoses: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("Error getting " + listKey + " page: " + e.getMessage());
+        }
+        return new Page<>(new ArrayList<>(), null);
+    }
+    
+    // ==================== Delta Refresh ====================
+    
+    /**
+     * GET_CHANGES for one cached list; an unprimed cache asks for everything
+     */
+    private GenericRequest changesRequest(String entity, EntityCache<?> cache, String patientId) {
+        GenericRequest request = new GenericRequest("GET_CHANGES", currentUser.getId());
+        request.addData("entity", entity);
+        request.addData("userType", currentUser.getUserType().toString());
+        request.addData("since", cache.getWatermark());
+        request.addData("deleteCursor", cache.getDeleteCursor());
+        if (patientId != null) {
+            request.addData("patientId", patientId);
         }
+        return request;
+    }
+    
+    /**
+     * Apply a CHANGES_RESPONSE to the cache and return its contents. If the server
+     * could not answer with changes (e.g. an older server) the list is fetched in full.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> fromChanges(EntityCache<T> cache, BaseResponse response,
+                                    Supplier<GenericRequest> fullRequest,
+                                    Function<BaseResponse, List<T>> parser) {
+        if (response != null && response.isSuccess() && response instanceof GenericResponse) {
+            GenericResponse changes = (GenericResponse) response;
+            Object upserts = changes.getData("upserts");
+            Object deleted = changes.getData("deleted");
+            if (upserts instanceof List && deleted instanceof List) {
+                cache.apply(Boolean.TRUE.equals(changes.getData("fullReload")),
+                            (List<T>) upserts, (List<String>) deleted,
+                            (LocalDateTime) changes.getData("watermark"),
+                            (String) changes.getData("deleteCursor"));
+                return cache.snapshot();
+            }
+        }
+        cache.clear();
+        return parser.apply(connection.sendRequest(fullRequest.get()));
+    }
+    
+    // ==================== Batch Methods ====================
+    
+    /**
+     * Send several requests in one BATCH round trip; the responses come back in
+     * the same order. If the batch itself fails every entry gets that error.
+     */
+    @SuppressWarnings("unchecked")
+    public List<BaseResponse> sendBatch(List<GenericRequest> requests) {
+        List<BaseResponse> results = new ArrayList<>();
+        GenericRequest batch = new GenericRequest(BatchEnvelope.REQUEST_TYPE,
+                                                  currentUser != null ? currentUser.getId() : null);
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (GenericRequest request : requests) {
+            entries.add(BatchEnvelope.wrapRequest(request));
+        }
+        batch.addData("requests", entries);
         
-        return new java.util.ArrayList<>();
+        BaseResponse response = connection.sendRequest(batch);
+        Object responsesObj = response instanceof GenericResponse
+                ? ((GenericResponse) response).getData("responses") : null;
+        
+        if (response != null && response.isSuccess() && responsesObj instanceof List
+                && ((List<?>) responsesObj).size() == requests.size()) {
+            for (Map<String, Object> entry : (List<Map<String, Object>>) responsesObj) {
+                results.add(BatchEnvelope.unwrapResponse(entry));
+            }
+        } else {
+            String message = response != null ? response.getMessage() : "No response";
+            for (GenericRequest request : requests) {
+                results.add(new GenericResponse(request.getRequestId(), "ERROR", false, message));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Everything the My Data screen shows, fetched in one BATCH round trip.
+     * Pass patientId for the patient view (includes vitals) or doctorId for the doctor view.
+     */
+    public MyDataResult loadMyData(String patientId, String doctorId) {
+        if (currentUser == null) {
+            return new MyDataResult(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                                    new ArrayList<>(), new ArrayList<>());
+        }
+        
+        List<GenericRequest> requests = new ArrayList<>();
+        requests.add(changesRequest("appointments", appointmentCache, null));
+        requests.add(changesRequest("prescriptions", prescriptionCache, null));
+        requests.add(diagnosesRequest(patientId, doctorId));
+        requests.add(referralsRequest(patientId, doctorId));
+        if (patientId != null) {
+            requests.add(changesRequest("vitals", vitalSignsCache(patientId), patientId));
+        }
+        
+        List<BaseResponse> responses = sendBatch(requests);
+        return new MyDataResult(fromChanges(appointmentCache, responses.get(0),
+                                            this::appointmentsRequest, ClientService::parseAppointments),
+                                fromChanges(prescriptionCache, responses.get(1),
+                                            this::prescriptionsRequest, ClientService::parsePrescriptions),
+                                parseDiagnoses(responses.get(2)),
+                                parseReferrals(responses.get(3)),
+                                patientId != null
+                                        ? fromChanges(vitalSignsCache(patientId), responses.get(4),
+                                                      () -> vitalSignsRequest(patientId), ClientService::parseVitalSigns)
+                                        : new ArrayList<>());
+    }
+    
+    /**
+     * My Data screen contents
+     */
+    public static class MyDataResult {
+        private final List<Appointment> appointments;
+        private final List<Prescription> prescriptions;
+        private final List<Map<String, Object>> diagnoses;
+        private final List<Map<String, Object>> referrals;
+        private final List<VitalSigns> vitalSigns;
+        
+        public MyDataResult(List<Appointment> appointments, List<Prescription> prescriptions,
+                            List<Map<String, Object>> diagnoses, List<Map<String, Object>> referrals,
+                            List<VitalSigns> vitalSigns) {
+            this.appointments = appointments;
+            this.prescriptions = prescriptions;
+            this.diagnoses = diagnoses;
+            this.referrals = referrals;
+            this.vitalSigns = vitalSigns;
+        }
+        
+        public List<Appointment> getAppointments() { return appointments; }
+        public List<Prescription> getPrescriptions() { return prescriptions; }
+        public List<Map<String, Object>> getDiagnoses() { return diagnoses; }
+        public List<Map<String, Object>> getReferrals() { return referrals; }
+        public List<VitalSigns> getVitalSigns() { return vitalSigns; }
+    }
+    
+    /**
+     * One page of a list and the cursor for the page after it
+     */
+    public static class Page<T> {
+        private final List<T> items;
+        private final String nextCursor;
+        
+        public Page(List<T> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+        
+        public List<T> getItems() { return items; }
+        public String getNextCursor() { return nextCursor; }
+        public boolean hasMore() { return nextCursor != null; }
+    }
+    
+    /**
+     * Rows of a streamed list, fetched a chunk at a time as iteration reaches them
+     */
+    public static class RowStream<T> implements Iterator<T>, AutoCloseable {
+        private final ResponseStream chunks;
+        private final String listKey;
+        private Iterator<T> current = Collections.emptyIterator();
+        private String error;
+        
+        RowStream(ResponseStream chunks, String listKey) {
+            this.chunks = chunks;
+            this.listKey = listKey;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                BaseResponse chunk = chunks.nextChunk();
+                if (chunk == null) {
+                    return false;
+                }
+                if (!chunk.isSuccess() || !(chunk instanceof GenericResponse)) {
+                    error = chunk.getMessage();
+                    return false;
+                }
+                Object rows = ((GenericResponse) chunk).getData(listKey);
+                if (rows instanceof List) {
+                    current = ((List<T>) rows).iterator();
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+        
+        /** Why the stream ended early, or null if it ran to completion */
+        public String getError() { return error; }
+        
+        @Override
+        public void close() {
+            chunks.close();
+        }
+    }
+    
+    /**
+     * One pushed change: which row of which list ("appointments",
+     * "prescriptions") was "created", "updated" or "deleted", and its status
+     * afterwards (null for deletions). The row itself comes with the next refresh.
+     * A "vitals_alerts" event is a new alert and carries all of its fields.
+     */
+    public static class ChangeEvent {
+        private final String entity;
+        private final String id;
+        private final String action;
+        private final String status;
+        private final Map<String, Object> data;
+        
+        public ChangeEvent(String entity, String id, String action, String status, Map<String, Object> data) {
+            this.entity = entity;
+            this.id = id;
+            this.action = action;
+            this.status = status;
+            this.data = data;
+        }
+        
+        public String getEntity() { return entity; }
+        public String getId() { return id; }
+        public String getAction() { return action; }
+        public String getStatus() { return status; }
+        public Object getData(String key) { return data.get(key); }
+    }
+    
+    /**
+     * Outcome of recordVitalSignsBatch: how many readings were stored and the
+     * ids of any that were not
+     */
+    public static class IngestResult {
+        private final boolean success;
+        private final int stored;
+        private final List<String> failedIds;
+        private final String message;
+        
+        public IngestResult(boolean success, int stored, List<String> failedIds, String message) {
+            this.success = success;
+            this.stored = stored;
+            this.failedIds = failedIds;
+            this.message = message;
+        }
+        
+        public boolean isSuccess() { return success; }
+        public int getStored() { return stored; }
+        public List<String> getFailedIds() { return failedIds; }
+        public String getMessage() { return message; }
+    }
+    
+    /**
+     * Vital signs trend: for each metric ("pulse", "temperature", "respiration",
+     * "systolic", "diastolic") its buckets oldest first, each with "start",
+     * "min", "max", "avg" and "count"
+     */
+    public static class VitalsTrend {
+        private final String granularity;
+        private final Map<String, List<Map<String, Object>>> series;
+        private final String analysis;
+        
+        public VitalsTrend(String granularity, Map<String, List<Map<String, Object>>> series, String analysis) {
+            this.granularity = granularity;
+            this.series = series;
+            this.analysis = analysis;
+        }
+        
+        public String getGranularity() { return granularity; }
+        public Map<String, List<Map<String, Object>>> getSeries() { return series; }
+        public List<Map<String, Object>> getSeries(String metric) { return series.getOrDefault(metric, List.of()); }
+        public String getAnalysis() { return analysis; }
     }
     
     /**
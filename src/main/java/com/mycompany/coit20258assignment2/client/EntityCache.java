@@ -0,0 +1,77 @@
+package com.mycompany.coit20258assignment2.client;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Client-side copy of one server list, kept current with GET_CHANGES deltas.
+ * Entries are keyed by id. The cache remembers the server's watermark and
+ * tombstone cursor from the last refresh; until the first refresh it is
+ * unprimed and the server answers with the full list.
+ */
+public class EntityCache<T> {
+    private final Function<T, String> idOf;
+    private final Comparator<T> order;
+    private final Map<String, T> entries = new HashMap<>();
+    private LocalDateTime watermark;
+    private String deleteCursor;
+    
+    /**
+     * @param order the order the server returns full lists in, reapplied to snapshots
+     */
+    public EntityCache(Function<T, String> idOf, Comparator<T> order) {
+        this.idOf = idOf;
+        this.order = order;
+    }
+    
+    /** Watermark to send with the next GET_CHANGES; null until primed */
+    public synchronized LocalDateTime getWatermark() {
+        return watermark;
+    }
+    
+    public synchronized String getDeleteCursor() {
+        return deleteCursor;
+    }
+    
+    /**
+     * Apply one CHANGES_RESPONSE: a full reload replaces everything, otherwise
+     * upserts overwrite by id and deleted ids are dropped
+     */
+    public synchronized void apply(boolean fullReload, List<T> upserts, List<String> deleted,
+                                   LocalDateTime newWatermark, String newDeleteCursor) {
+        if (fullReload) {
+            entries.clear();
+        }
+        for (T entity : upserts) {
+            entries.put(idOf.apply(entity), entity);
+        }
+        for (String id : deleted) {
+            entries.remove(id);
+        }
+        watermark = newWatermark;
+        deleteCursor = newDeleteCursor;
+    }
+    
+    /**
+     * Current contents in server order
+     */
+    public synchronized List<T> snapshot() {
+        List<T> list = new ArrayList<>(entries.values());
+        list.sort(order);
+        return list;
+    }
+    
+    /**
+     * Forget everything; the next refresh is a full reload
+     */
+    public synchronized void clear() {
+        entries.clear();
+        watermark = null;
+        deleteCursor = null;
+    }
+}
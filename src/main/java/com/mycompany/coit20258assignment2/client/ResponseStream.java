@@ -0,0 +1,89 @@
+package com.mycompany.coit20258assignment2.client;
+
+import com.mycompany.coit20258assignment2.common.BaseResponse;
+import com.mycompany.coit20258assignment2.common.GenericResponse;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The chunk responses of one STREAM_* request, in arrival order.
+ * The connection's reader thread never waits for a stream: chunks the consumer
+ * has not taken yet are queued here, so a slow consumer cannot hold up the
+ * other responses and pushes on the same connection (or a request it sends
+ * while reading the stream). Close the stream when done with it, even part way
+ * through; unread chunks are dropped.
+ */
+public class ResponseStream implements AutoCloseable {
+    private final BlockingQueue<BaseResponse> chunks = new LinkedBlockingQueue<>();
+    private final Runnable onClose;
+    private volatile boolean closed = false;
+    private boolean finished = false;
+    private volatile boolean ended = false;
+    
+    /**
+     * @param onClose run when the stream is closed before its last chunk arrived
+     */
+    ResponseStream(Runnable onClose) {
+        this.onClose = onClose;
+    }
+    
+    /**
+     * Whether a response ends its stream: anything but a chunk marked last=false,
+     * so errors and single-response answers (legacy connections) end it too
+     */
+    static boolean isLast(BaseResponse response) {
+        return !(response instanceof GenericResponse)
+            || !Boolean.FALSE.equals(((GenericResponse) response).getData("last"));
+    }
+    
+    /**
+     * Next chunk, waiting for it to arrive; null after the last chunk or once closed
+     */
+    public BaseResponse nextChunk() {
+        if (finished || closed) {
+            return null;
+        }
+        try {
+            BaseResponse chunk = chunks.take();
+            finished = isLast(chunk);
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            return null;
+        }
+    }
+    
+    /**
+     * Hand over a received chunk without waiting; dropped if the consumer has
+     * closed the stream
+     */
+    void deliver(BaseResponse chunk) {
+        if (isLast(chunk)) {
+            ended = true;
+        }
+        if (!closed) {
+            chunks.add(chunk);
+        }
+    }
+    
+    /**
+     * End the stream with a final response that did not come from the reader
+     * (an error, or a legacy connection's single answer)
+     */
+    void end(BaseResponse response) {
+        ended = true;
+        chunks.add(response);
+    }
+    
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            chunks.clear();
+            if (!finished && !ended) {
+                onClose.run();
+            }
+        }
+    }
+}
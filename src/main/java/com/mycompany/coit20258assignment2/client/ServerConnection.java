@@ -4,6 +4,11 @@ import com.mycompany.coit20258assignment2.common.*;
 import java.io.*;
 import java.net.Socket;
 import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 
 public class ServerConnection {
@@ -11,15 +16,64 @@ public class ServerConnection {
     private Socket socket;
     private ObjectOutputStream out;
     private ObjectInputStream in;
+    private DataOutputStream frameOut;
+    private DataInputStream frameIn;
+    private boolean framed = false;
+    private byte codec = FrameCodec.CODEC_JAVA;
     private String serverHost = "localhost";
     private int serverPort = 8080;
-    private boolean connected = false;
+    private volatile boolean connected = false;
+    
+    // Framed mode: in-flight requests by requestId, completed by the reader thread in any order
+    private volatile Map<String, CompletableFuture<BaseResponse>> pending = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    // Framed mode: open STREAM_* requests by requestId, fed chunk by chunk by the reader thread
+    private volatile Map<String, ResponseStream> streams = new ConcurrentHashMap<>();
+    // Framed mode: CHANGE_EVENT pushes go to these (on the reader thread); the SUBSCRIBE is re-sent after a reconnect
+    private final List<Consumer<BaseResponse>> pushListeners = new CopyOnWriteArrayList<>();
+    private volatile BaseRequest subscription;
+    private Thread readerThread;
+    
+    // Legacy mode is strictly request/response, so async calls queue behind one thread
+    private final ExecutorService legacyExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ths-legacy-request");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    // Framed protocol is used unless -Dths.protocol=legacy or the server answers the handshake with an object stream
+    private boolean preferFramed = !"legacy".equalsIgnoreCase(System.getProperty("ths.protocol"));
+    private static final int HANDSHAKE_TIMEOUT_MS = 3000;
+    private static final int OBJECT_STREAM_MAGIC = ObjectStreamConstants.STREAM_MAGIC & 0xFFFF;
+    private static final String PUSH_TYPE = "CHANGE_EVENT";
+    
+    // Compact binary payloads unless -Dths.codec=java; the server may still answer with Java
+    private static final byte PREFERRED_CODEC = "java".equalsIgnoreCase(System.getProperty("ths.codec"))
+            ? FrameCodec.CODEC_JAVA : FrameCodec.CODEC_BINARY;
+    
+    // A request not answered within -Dths.requestTimeoutSeconds gets an ERROR response,
+    // so a response the server lost never blocks its caller for good
+    private static final long REQUEST_TIMEOUT_SECONDS = Long.getLong("ths.requestTimeoutSeconds", 30L);
+    
+    // The server closes sessions it has not heard from for its session timeout, so an idle
+    // connection PINGs every -Dths.heartbeatSeconds (0 turns heartbeats off)
+    private static final long HEARTBEAT_SECONDS = Long.getLong("ths.heartbeatSeconds", 60L);
+    private volatile long lastSentAt = 0;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ths-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
     
     private ServerConnection() {
         // Private constructor for singleton
+        if (HEARTBEAT_SECONDS > 0) {
+            heartbeat.scheduleWithFixedDelay(this::sendHeartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS,
+                                             TimeUnit.SECONDS);
+        }
     }
     
-    public static ServerConnection getInstance() {
+    public static synchronized ServerConnection getInstance() {
         if (instance == null) {
             instance = new ServerConnection();
         }
@@ -29,16 +83,31 @@ public class ServerConnection {
     /**
      * Connect to the server
      */
-    public boolean connect() {
+    public synchronized boolean connect() {
         try {
             System.out.println("🔌 Connecting to server at " + serverHost + ":" + serverPort);
+            if (socket != null && !socket.isClosed()) {
+                socket.close();
+            }
             
-            socket = new Socket(serverHost, serverPort);
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+            framed = preferFramed && openFramed();
+            if (!framed) {
+                socket = new Socket(serverHost, serverPort);
+                socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(REQUEST_TIMEOUT_SECONDS));
+                out = new ObjectOutputStream(socket.getOutputStream());
+                in = new ObjectInputStream(socket.getInputStream());
+            }
             
             connected = true;
-            System.out.println("✅ Connected to server successfully!");
+            if (framed) {
+                pending = new ConcurrentHashMap<>();
+                streams = new ConcurrentHashMap<>();
+                startReader(socket, frameIn, pending, streams);
+                if (subscription != null) {
+                    sendRequestAsync(subscription);
+                }
+            }
+            System.out.println("✅ Connected to server successfully!" + (framed ? (codec == FrameCodec.CODEC_BINARY ? " (framed, binary)" : " (framed)") : " (legacy)"));
             return true;
             
         } catch (ConnectException e) {
@@ -53,13 +122,134 @@ public class ServerConnection {
         }
     }
     
+    /**
+     * Open a socket and exchange the FrameCodec handshake. Returns false (with the
+     * socket closed) when the handshake does not complete. Only an object stream
+     * header in reply turns framing off for good; a slow or silent server is tried
+     * framed again on the next connect.
+     */
+    private boolean openFramed() throws IOException {
+        socket = new Socket(serverHost, serverPort);
+        socket.setTcpNoDelay(true);
+        frameOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        frameIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        FrameCodec.writeHandshake(frameOut, PREFERRED_CODEC);
+        
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        try {
+            int reply = frameIn.readInt();
+            if (reply == FrameCodec.MAGIC) {
+                codec = FrameCodec.readHandshakeCodec(frameIn);
+                socket.setSoTimeout(0);
+                return true;
+            }
+            // A legacy server answers with the object stream header instead
+            if ((reply >>> 16) == OBJECT_STREAM_MAGIC) {
+                System.out.println("↩️ Server does not support framed protocol, using legacy object stream");
+                preferFramed = false;
+            } else {
+                System.err.println("⚠️ Unexpected handshake reply, using legacy object stream for this connection");
+            }
+        } catch (SocketTimeoutException | EOFException e) {
+            System.err.println("⚠️ No framed handshake from server, using legacy object stream for this connection");
+        }
+        
+        socket.close();
+        frameIn = null;
+        frameOut = null;
+        return false;
+    }
+    
+    /**
+     * Reader thread for a framed socket: routes each response to the future
+     * registered under its requestId
+     */
+    private void startReader(Socket readerSocket, DataInputStream input,
+                             Map<String, CompletableFuture<BaseResponse>> inFlight,
+                             Map<String, ResponseStream> openStreams) {
+        readerThread = new Thread(() -> {
+            try {
+                while (!readerSocket.isClosed()) {
+                    Object message = FrameCodec.decode(FrameCodec.readFrame(input));
+                    if (!(message instanceof BaseResponse)) {
+                        System.err.println("❌ Unknown message type: " + message.getClass());
+                        continue;
+                    }
+                    BaseResponse response = (BaseResponse) message;
+                    if (PUSH_TYPE.equals(response.getResponseType())) {
+                        deliverPush(response);
+                        continue;
+                    }
+                    CompletableFuture<BaseResponse> future = inFlight.remove(response.getRequestId());
+                    ResponseStream stream = future == null ? openStreams.get(response.getRequestId()) : null;
+                    if (future != null) {
+                        System.out.println("📥 Received: " + response.getResponseType());
+                        future.complete(response);
+                    } else if (stream != null) {
+                        if (ResponseStream.isLast(response)) {
+                            openStreams.remove(response.getRequestId());
+                            System.out.println("📥 Stream complete: " + response.getResponseType());
+                        }
+                        stream.deliver(response);
+                    } else {
+                        System.err.println("⚠️ Response for unknown request: " + response.getRequestId());
+                    }
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                if (!readerSocket.isClosed()) {
+                    System.err.println("❌ Communication error: " + e.getMessage());
+                }
+            } finally {
+                connectionLost(readerSocket, inFlight, openStreams, "Connection to server lost");
+            }
+        }, "ths-response-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+    
+    private void deliverPush(BaseResponse event) {
+        for (Consumer<BaseResponse> listener : pushListeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("❌ Change listener failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Fail every in-flight request and open stream once the socket they were sent on is gone
+     */
+    private void connectionLost(Socket lostSocket, Map<String, CompletableFuture<BaseResponse>> inFlight,
+                                Map<String, ResponseStream> openStreams, String reason) {
+        synchronized (this) {
+            if (socket == lostSocket) {
+                connected = false;
+            }
+        }
+        for (String requestId : inFlight.keySet()) {
+            CompletableFuture<BaseResponse> future = inFlight.remove(requestId);
+            if (future != null) {
+                future.complete(createErrorResponse(requestId, reason));
+            }
+        }
+        for (String requestId : openStreams.keySet()) {
+            ResponseStream stream = openStreams.remove(requestId);
+            if (stream != null) {
+                stream.end(createErrorResponse(requestId, reason));
+            }
+        }
+    }
+    
     /**
      * Disconnect from the server
      */
-    public void disconnect() {
+    public synchronized void disconnect() {
         try {
             if (in != null) in.close();
             if (out != null) out.close();
+            if (frameIn != null) frameIn.close();
+            if (frameOut != null) frameOut.close();
             if (socket != null) socket.close();
             connected = false;
             System.out.println("🔌 Disconnected from server");
@@ -69,9 +259,154 @@ public class ServerConnection {
     }
     
     /**
-     * Send request to server and receive response
+     * Send request to server and wait for its response
      */
     public BaseResponse sendRequest(BaseRequest request) {
+        if (!ensureConnected()) {
+            return createErrorResponse(request.getRequestId(), "Not connected to server");
+        }
+        if (framed) {
+            try {
+                return sendRequestAsync(request).get();
+            } catch (InterruptedException e) {
+                // e.g. AsyncLoader.cancelAll(); the late response is dropped by the reader
+                Thread.currentThread().interrupt();
+                return createErrorResponse(request.getRequestId(), "Request cancelled");
+            } catch (ExecutionException e) {
+                return createErrorResponse(request.getRequestId(), "Request failed: " + e.getMessage());
+            }
+        }
+        return sendLegacyRequest(request);
+    }
+    
+    /**
+     * Send a request without waiting. On a framed connection any number of
+     * requests can be in flight and responses are matched by requestId, so
+     * independent loads overlap instead of queuing behind each other.
+     * The future always completes normally; failures, and requests left
+     * unanswered for REQUEST_TIMEOUT_SECONDS, become an ERROR response.
+     */
+    public CompletableFuture<BaseResponse> sendRequestAsync(BaseRequest request) {
+        if (!ensureConnected()) {
+            return CompletableFuture.completedFuture(
+                    createErrorResponse(request.getRequestId(), "Not connected to server"));
+        }
+        if (!framed) {
+            return CompletableFuture.supplyAsync(() -> sendLegacyRequest(request), legacyExecutor);
+        }
+        
+        Map<String, CompletableFuture<BaseResponse>> inFlight = pending;
+        DataOutputStream output = frameOut;
+        CompletableFuture<BaseResponse> future = new CompletableFuture<>();
+        inFlight.put(request.getRequestId(), future);
+        future.completeOnTimeout(createErrorResponse(request.getRequestId(), "Server did not respond in time"),
+                                 REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+              .whenComplete((response, error) -> inFlight.remove(request.getRequestId(), future));
+        try {
+            writeRequest(output, request);
+        } catch (IOException e) {
+            System.err.println("❌ Communication error: " + e.getMessage());
+            inFlight.remove(request.getRequestId());
+            connected = false;
+            future.complete(createErrorResponse(request.getRequestId(), "Communication error: " + e.getMessage()));
+        }
+        return future;
+    }
+    
+    /**
+     * Send a STREAM_* request and read its rows chunk by chunk as they arrive.
+     * A legacy connection carries one response per request, so there the
+     * server answers with everything in a single (last) chunk.
+     */
+    public ResponseStream openStream(BaseRequest request) {
+        String requestId = request.getRequestId();
+        // Closing early asks the server to stop; the chunks still on their way are dropped
+        ResponseStream stream = new ResponseStream(() -> {
+            GenericRequest cancel = new GenericRequest("CANCEL_STREAM", request.getUserId());
+            cancel.addData("streamId", requestId);
+            sendRequestAsync(cancel);
+        });
+        if (!ensureConnected()) {
+            stream.end(createErrorResponse(requestId, "Not connected to server"));
+            return stream;
+        }
+        if (!framed) {
+            stream.end(sendLegacyRequest(request));
+            return stream;
+        }
+        
+        request.addData("streamed", true);
+        Map<String, ResponseStream> openStreams = streams;
+        DataOutputStream output = frameOut;
+        openStreams.put(requestId, stream);
+        try {
+            writeRequest(output, request);
+        } catch (IOException e) {
+            System.err.println("❌ Communication error: " + e.getMessage());
+            openStreams.remove(requestId);
+            connected = false;
+            stream.end(createErrorResponse(requestId, "Communication error: " + e.getMessage()));
+        }
+        return stream;
+    }
+    
+    /**
+     * Ask the server to push CHANGE_EVENTs for this connection's user, and again
+     * after every reconnect until unsubscribe(). Legacy connections cannot carry
+     * pushes; there this returns false and nothing is sent.
+     */
+    public boolean subscribe(BaseRequest request) {
+        if (!ensureConnected() || !framed) {
+            return false;
+        }
+        subscription = request;
+        sendRequestAsync(request);
+        return true;
+    }
+    
+    /**
+     * Stop CHANGE_EVENT pushes (e.g. on logout)
+     */
+    public void unsubscribe() {
+        BaseRequest current = subscription;
+        subscription = null;
+        if (current != null && isConnected()) {
+            sendRequestAsync(new GenericRequest("UNSUBSCRIBE", current.getUserId()));
+        }
+    }
+    
+    public void addPushListener(Consumer<BaseResponse> listener) {
+        pushListeners.add(listener);
+    }
+    
+    public void removePushListener(Consumer<BaseResponse> listener) {
+        pushListeners.remove(listener);
+    }
+    
+    /**
+     * PING if nothing has been sent for a heartbeat interval; never reconnects by itself
+     */
+    private void sendHeartbeat() {
+        if (!isConnected() || System.currentTimeMillis() - lastSentAt < TimeUnit.SECONDS.toMillis(HEARTBEAT_SECONDS)) {
+            return;
+        }
+        sendRequestAsync(new GenericRequest("PING", "system"));
+    }
+    
+    private void writeRequest(DataOutputStream output, BaseRequest request) throws IOException {
+        byte[] payload = FrameCodec.encode(request, codec);
+        synchronized (writeLock) {
+            FrameCodec.writeFrame(output, payload);
+        }
+        lastSentAt = System.currentTimeMillis();
+        System.out.println("📤 Sent: " + request.getRequestType());
+    }
+    
+    private synchronized boolean ensureConnected() {
+        return connected || connect();
+    }
+    
+    private synchronized BaseResponse sendLegacyRequest(BaseRequest request) {
         if (!connected) {
             if (!connect()) {
                 return createErrorResponse(request.getRequestId(), "Not connected to server");
@@ -82,6 +417,7 @@ public class ServerConnection {
             // Send request
             out.writeObject(request);
             out.flush();
+            lastSentAt = System.currentTimeMillis();
             System.out.println("📤 Sent: " + request.getRequestType());
             
             // Receive response
@@ -0,0 +1,79 @@
+package com.mycompany.coit20258assignment2.common;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Packing helpers for the BATCH request type
+ * Server Lead responsibility: Define communication protocol
+ *
+ * A BATCH request carries its sub-requests under "requests" and the composite
+ * response carries one entry per sub-request, in the same order, under
+ * "responses". Entries are plain maps so they travel through either payload
+ * codec without extra schema.
+ */
+public final class BatchEnvelope {
+    public static final String REQUEST_TYPE = "BATCH";
+    public static final String RESPONSE_TYPE = "BATCH_RESPONSE";
+    public static final int MAX_SUB_REQUESTS = 32;
+    
+    private BatchEnvelope() {}
+    
+    /**
+     * Read-only request types can run in parallel; anything else is a write and
+     * runs on its own, after every earlier sub-request has finished
+     */
+    public static boolean isReadOnly(String requestType) {
+        return requestType != null && (requestType.startsWith("GET_") || requestType.startsWith("FIND_")
+                                       || requestType.startsWith("STREAM_")
+                                       || requestType.equals("PING")
+                                       || requestType.equals("METRICS")
+                                       || requestType.equals("RESOLVE_USER_NAMES"));
+    }
+    
+    public static Map<String, Object> wrapRequest(BaseRequest request) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("requestId", request.getRequestId());
+        entry.put("requestType", request.getRequestType());
+        entry.put("data", new HashMap<>(request.getData()));
+        return entry;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public static GenericRequest unwrapRequest(Map<String, Object> entry, String userId) {
+        GenericRequest request = new GenericRequest((String) entry.get("requestType"), userId);
+        if (entry.get("requestId") != null) {
+            request.setRequestId((String) entry.get("requestId"));
+        }
+        Object data = entry.get("data");
+        if (data instanceof Map) {
+            request.getData().putAll((Map<String, Object>) data);
+        }
+        return request;
+    }
+    
+    public static Map<String, Object> wrapResponse(BaseResponse response) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("requestId", response.getRequestId());
+        entry.put("responseType", response.getResponseType());
+        entry.put("success", response.isSuccess());
+        entry.put("message", response.getMessage());
+        if (response instanceof GenericResponse) {
+            entry.put("data", ((GenericResponse) response).getData());
+        }
+        return entry;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public static GenericResponse unwrapResponse(Map<String, Object> entry) {
+        GenericResponse response = new GenericResponse((String) entry.get("requestId"),
+                                                       (String) entry.get("responseType"),
+                                                       Boolean.TRUE.equals(entry.get("success")),
+                                                       (String) entry.get("message"));
+        Object data = entry.get("data");
+        if (data instanceof Map) {
+            response.getData().putAll((Map<String, Object>) data);
+        }
+        return response;
+    }
+}
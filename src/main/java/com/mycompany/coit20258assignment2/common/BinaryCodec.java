@@ -0,0 +1,642 @@
+package com.mycompany.coit20258assignment2.common;
+
+import com.mycompany.coit20258assignment2.*;
+import java.io.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Compact binary encoding for framed messages
+ * Server Lead responsibility: Define communication protocol
+ *
+ * Replaces Java serialization once both sides agree on it in the FrameCodec
+ * handshake. Requests and responses are written field by field; data map values
+ * carry a one-byte tag, and the model classes (Appointment, Prescription,
+ * VitalSigns, Diagnosis, Referral) have fixed-schema records with no field names
+ * or class descriptors. Lists whose elements share a model type are written as a
+ * typed list so the tag is sent once. Every string goes through a per-message
+ * table, so repeated patient/doctor ids cost one or two bytes after first use.
+ * A VitalsSeries is written column by column, each value as the zig-zag varint
+ * difference from the previous reading's, so regular readings take a byte or two
+ * per metric.
+ *
+ * Values with no binary schema are embedded as a Java-serialized blob, so any
+ * payload the old protocol could carry still round-trips.
+ */
+public final class BinaryCodec {
+    
+    // Message kinds
+    private static final byte KIND_REQUEST = 1;
+    private static final byte KIND_RESPONSE = 2;
+    
+    // Value tags
+    private static final byte T_NULL = 0;
+    private static final byte T_STRING = 1;
+    private static final byte T_TRUE = 2;
+    private static final byte T_FALSE = 3;
+    private static final byte T_INT = 4;
+    private static final byte T_LONG = 5;
+    private static final byte T_DOUBLE = 6;
+    private static final byte T_DATE = 7;
+    private static final byte T_TIME = 8;
+    private static final byte T_DATETIME = 9;
+    private static final byte T_LIST = 10;
+    private static final byte T_TYPED_LIST = 11;
+    private static final byte T_MAP = 12;
+    private static final byte T_APPOINTMENT = 20;
+    private static final byte T_PRESCRIPTION = 21;
+    private static final byte T_VITAL_SIGNS = 22;
+    private static final byte T_DIAGNOSIS = 23;
+    private static final byte T_REFERRAL = 24;
+    private static final byte T_VITALS_SERIES = 25;
+    private static final byte T_SERIALIZED = 127;
+    
+    private static final AppointmentStatus[] APPOINTMENT_STATUSES = AppointmentStatus.values();
+    private static final PrescriptionStatus[] PRESCRIPTION_STATUSES = PrescriptionStatus.values();
+    
+    private BinaryCodec() {}
+    
+    /**
+     * True if the message can be written by {@link #encode(Object)}; anything else
+     * is sent with Java serialization
+     */
+    public static boolean supports(Object message) {
+        return message instanceof GenericRequest || message instanceof GenericResponse;
+    }
+    
+    public static byte[] encode(Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        Writer out = new Writer(new DataOutputStream(bytes));
+        
+        if (message instanceof GenericRequest) {
+            GenericRequest request = (GenericRequest) message;
+            out.out.writeByte(KIND_REQUEST);
+            out.writeString(request.getRequestType());
+            out.writeString(request.getRequestId());
+            out.writeString(request.getUserId());
+            out.out.writeLong(request.getTimestamp());
+            out.writeMap(request.getData());
+        } else if (message instanceof GenericResponse) {
+            GenericResponse response = (GenericResponse) message;
+            out.out.writeByte(KIND_RESPONSE);
+            out.writeString(response.getResponseType());
+            out.writeString(response.getRequestId());
+            out.out.writeBoolean(response.isSuccess());
+            out.writeString(response.getMessage());
+            out.writeMap(response.getData());
+        } else {
+            throw new NotSerializableException("No binary schema for " + message.getClass().getName());
+        }
+        
+        out.out.flush();
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Decode a binary payload; malformed input (a bad tag, ordinal or date)
+     * fails with StreamCorruptedException rather than a RuntimeException
+     */
+    public static Object decode(byte[] payload) throws IOException {
+        try {
+            return decodeMessage(payload);
+        } catch (RuntimeException e) {
+            StreamCorruptedException corrupted = new StreamCorruptedException("Malformed message: " + e);
+            corrupted.initCause(e);
+            throw corrupted;
+        }
+    }
+    
+    private static Object decodeMessage(byte[] payload) throws IOException {
+        Reader in = new Reader(new DataInputStream(new ByteArrayInputStream(payload)));
+        byte kind = in.in.readByte();
+        
+        switch (kind) {
+            case KIND_REQUEST: {
+                GenericRequest request = new GenericRequest(in.readString(), null);
+                request.setRequestId(in.readString());
+                request.setUserId(in.readString());
+                in.in.readLong(); // timestamp, reassigned on construction
+                in.readMapInto(request.getData());
+                return request;
+            }
+            case KIND_RESPONSE: {
+                String responseType = in.readString();
+                String requestId = in.readString();
+                boolean success = in.in.readBoolean();
+                String message = in.readString();
+                GenericResponse response = new GenericResponse(requestId, responseType, success, message);
+                in.readMapInto(response.getData());
+                return response;
+            }
+            default:
+                throw new StreamCorruptedException("Unknown message kind: " + kind);
+        }
+    }
+    
+    /**
+     * The requestId from the header of an encoded request, or null if the
+     * header itself is unreadable; lets the server answer a request whose data
+     * could not be decoded
+     */
+    public static String peekRequestId(byte[] payload) {
+        try {
+            Reader in = new Reader(new DataInputStream(new ByteArrayInputStream(payload)));
+            if (in.in.readByte() != KIND_REQUEST) {
+                return null;
+            }
+            in.readString(); // request type
+            return in.readString();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * The enum constant written as index (negative for null)
+     */
+    private static <T> T ordinal(T[] values, byte index) throws StreamCorruptedException {
+        if (index < 0) {
+            return null;
+        }
+        if (index >= values.length) {
+            throw new StreamCorruptedException("Bad ordinal " + index);
+        }
+        return values[index];
+    }
+    
+    private static byte modelTag(Object value) {
+        if (value instanceof Appointment) return T_APPOINTMENT;
+        if (value instanceof Prescription) return T_PRESCRIPTION;
+        if (value instanceof VitalSigns) return T_VITAL_SIGNS;
+        if (value instanceof Diagnosis) return T_DIAGNOSIS;
+        if (value instanceof Referral) return T_REFERRAL;
+        return T_NULL;
+    }
+    
+    /**
+     * Encoder state for one message (the string table)
+     */
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+        
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+        
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+        
+        /** Zig-zag so small negative numbers stay small */
+        void writeSignedVarLong(long value) throws IOException {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+        
+        /**
+         * 0 = null, odd = back-reference to string table entry, even = new string of length n
+         */
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt((index << 1) | 1);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] utf8 = value.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            writeVarInt((utf8.length + 1) << 1);
+            out.write(utf8);
+        }
+        
+        void writeDate(LocalDate date) throws IOException {
+            writeSignedVarLong(date.toEpochDay());
+        }
+        
+        void writeTime(LocalTime time) throws IOException {
+            writeVarInt(time.toSecondOfDay());
+            writeVarInt(time.getNano());
+        }
+        
+        void writeDateTime(LocalDateTime dateTime) throws IOException {
+            writeDate(dateTime.toLocalDate());
+            writeTime(dateTime.toLocalTime());
+        }
+        
+        void writeMap(Map<?, ?> map) throws IOException {
+            writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue());
+            }
+        }
+        
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(T_NULL);
+            } else if (value instanceof String) {
+                out.writeByte(T_STRING);
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? T_TRUE : T_FALSE);
+            } else if (value instanceof Integer) {
+                out.writeByte(T_INT);
+                writeSignedVarLong((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(T_LONG);
+                writeSignedVarLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(T_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof LocalDate) {
+                out.writeByte(T_DATE);
+                writeDate((LocalDate) value);
+            } else if (value instanceof LocalTime) {
+                out.writeByte(T_TIME);
+                writeTime((LocalTime) value);
+            } else if (value instanceof LocalDateTime) {
+                out.writeByte(T_DATETIME);
+                writeDateTime((LocalDateTime) value);
+            } else if (value instanceof VitalsSeries) {
+                out.writeByte(T_VITALS_SERIES);
+                writeSeries((VitalsSeries) value);
+            } else if (value instanceof List) {
+                writeList((List<?>) value);
+            } else if (value instanceof Map) {
+                out.writeByte(T_MAP);
+                writeMap((Map<?, ?>) value);
+            } else if (modelTag(value) != T_NULL) {
+                out.writeByte(modelTag(value));
+                writeModel(modelTag(value), value);
+            } else {
+                out.writeByte(T_SERIALIZED);
+                byte[] blob = FrameCodec.encode(value);
+                writeVarInt(blob.length);
+                out.write(blob);
+            }
+        }
+        
+        void writeList(List<?> list) throws IOException {
+            byte elementTag = list.isEmpty() ? T_NULL : modelTag(list.get(0));
+            if (elementTag != T_NULL) {
+                for (Object element : list) {
+                    if (element == null || modelTag(element) != elementTag) {
+                        elementTag = T_NULL;
+                        break;
+                    }
+                }
+            }
+            
+            if (elementTag == T_NULL) {
+                out.writeByte(T_LIST);
+                writeVarInt(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else {
+                out.writeByte(T_TYPED_LIST);
+                out.writeByte(elementTag);
+                writeVarInt(list.size());
+                for (Object element : list) {
+                    writeModel(elementTag, element);
+                }
+            }
+        }
+        
+        void writeSeries(VitalsSeries series) throws IOException {
+            int size = series.size();
+            writeString(series.getPatientId());
+            writeVarInt(size);
+            for (int i = 0; i < size; i++) {
+                writeString(series.idAt(i));
+            }
+            long previousTime = 0;
+            int previousPulse = 0, previousTemperature = 0, previousRespiration = 0;
+            int previousSystolic = 0, previousDiastolic = 0;
+            for (int i = 0; i < size; i++) {
+                writeSignedVarLong(series.epochSecondAt(i) - previousTime);
+                writeSignedVarLong(series.pulseAt(i) - previousPulse);
+                writeSignedVarLong(series.temperatureHundredthsAt(i) - previousTemperature);
+                writeSignedVarLong(series.respirationAt(i) - previousRespiration);
+                writeSignedVarLong(series.systolicAt(i) - previousSystolic);
+                writeSignedVarLong(series.diastolicAt(i) - previousDiastolic);
+                previousTime = series.epochSecondAt(i);
+                previousPulse = series.pulseAt(i);
+                previousTemperature = series.temperatureHundredthsAt(i);
+                previousRespiration = series.respirationAt(i);
+                previousSystolic = series.systolicAt(i);
+                previousDiastolic = series.diastolicAt(i);
+            }
+        }
+        
+        void writeModel(byte tag, Object value) throws IOException {
+            switch (tag) {
+                case T_APPOINTMENT: {
+                    Appointment a = (Appointment) value;
+                    writeString(a.getId());
+                    writeString(a.getPatientId());
+                    writeString(a.getDoctorId());
+                    writeNullableDate(a.getDate());
+                    writeNullableTime(a.getTime());
+                    out.writeByte(a.getStatus() == null ? -1 : a.getStatus().ordinal());
+                    break;
+                }
+                case T_PRESCRIPTION: {
+                    Prescription p = (Prescription) value;
+                    writeString(p.getId());
+                    writeString(p.getPatientId());
+                    writeString(p.getDoctorId());
+                    writeString(p.getMedication());
+                    writeString(p.getDosage());
+                    writeNullableDate(p.getDate());
+                    out.writeByte(p.getStatus() == null ? -1 : p.getStatus().ordinal());
+                    break;
+                }
+                case T_VITAL_SIGNS: {
+                    VitalSigns v = (VitalSigns) value;
+                    writeString(v.getId());
+                    writeString(v.getPatientId());
+                    writeSignedVarLong(v.getPulse());
+                    out.writeDouble(v.getTemperature());
+                    writeSignedVarLong(v.getRespiration());
+                    writeString(v.getBloodPressure());
+                    writeNullableDateTime(v.getTimestamp());
+                    break;
+                }
+                case T_DIAGNOSIS: {
+                    Diagnosis d = (Diagnosis) value;
+                    writeString(d.getId());
+                    writeString(d.getPatientId());
+                    writeString(d.getDoctorId());
+                    writeString(d.getNotes());
+                    writeString(d.getTreatmentPlan());
+                    writeNullableDateTime(d.getTimestamp());
+                    break;
+                }
+                case T_REFERRAL: {
+                    Referral r = (Referral) value;
+                    writeString(r.getId());
+                    writeString(r.getPatientId());
+                    writeString(r.getDoctorId());
+                    writeString(r.getClinicName());
+                    writeString(r.getReason());
+                    writeNullableDate(r.getDate());
+                    break;
+                }
+                default:
+                    throw new NotSerializableException("No binary schema for tag " + tag);
+            }
+        }
+        
+        void writeNullableDate(LocalDate date) throws IOException {
+            out.writeBoolean(date != null);
+            if (date != null) writeDate(date);
+        }
+        
+        void writeNullableTime(LocalTime time) throws IOException {
+            out.writeBoolean(time != null);
+            if (time != null) writeTime(time);
+        }
+        
+        void writeNullableDateTime(LocalDateTime dateTime) throws IOException {
+            out.writeBoolean(dateTime != null);
+            if (dateTime != null) writeDateTime(dateTime);
+        }
+    }
+    
+    /**
+     * Decoder state for one message (the string table)
+     */
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+        
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+        
+        long readVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new StreamCorruptedException("Malformed varint");
+        }
+        
+        long readSignedVarLong() throws IOException {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+        
+        String readString() throws IOException {
+            int header = readVarInt();
+            if (header == 0) {
+                return null;
+            }
+            if ((header & 1) == 1) {
+                int index = header >>> 1;
+                if (index >= strings.size()) {
+                    throw new StreamCorruptedException("Bad string reference " + index);
+                }
+                return strings.get(index);
+            }
+            int length = (header >>> 1) - 1;
+            FrameCodec.checkLength(length);
+            byte[] utf8 = new byte[length];
+            in.readFully(utf8);
+            String value = new String(utf8, java.nio.charset.StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+        
+        LocalDate readDate() throws IOException {
+            return LocalDate.ofEpochDay(readSignedVarLong());
+        }
+        
+        LocalTime readTime() throws IOException {
+            return LocalTime.ofSecondOfDay(readVarInt()).withNano(readVarInt());
+        }
+        
+        LocalDateTime readDateTime() throws IOException {
+            return LocalDateTime.of(readDate(), readTime());
+        }
+        
+        void readMapInto(Map<String, Object> map) throws IOException {
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                map.put(key, readValue());
+            }
+        }
+        
+        Object readValue() throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+                case T_NULL: return null;
+                case T_STRING: return readString();
+                case T_TRUE: return Boolean.TRUE;
+                case T_FALSE: return Boolean.FALSE;
+                case T_INT: return (int) readSignedVarLong();
+                case T_LONG: return readSignedVarLong();
+                case T_DOUBLE: return in.readDouble();
+                case T_DATE: return readDate();
+                case T_TIME: return readTime();
+                case T_DATETIME: return readDateTime();
+                case T_LIST: {
+                    int size = readVarInt();
+                    List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case T_TYPED_LIST: {
+                    byte elementTag = in.readByte();
+                    int size = readVarInt();
+                    List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                    for (int i = 0; i < size; i++) {
+                        list.add(readModel(elementTag));
+                    }
+                    return list;
+                }
+                case T_VITALS_SERIES:
+                    return readSeries();
+                case T_MAP: {
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    readMapInto(map);
+                    return map;
+                }
+                case T_SERIALIZED: {
+                    int length = readVarInt();
+                    FrameCodec.checkLength(length);
+                    byte[] blob = new byte[length];
+                    in.readFully(blob);
+                    try {
+                        return FrameCodec.decode(blob);
+                    } catch (ClassNotFoundException e) {
+                        throw new InvalidClassException(e.getMessage());
+                    }
+                }
+                default:
+                    return readModel(tag);
+            }
+        }
+        
+        VitalsSeries readSeries() throws IOException {
+            String patientId = readString();
+            int size = readVarInt();
+            FrameCodec.checkLength(size);
+            String[] ids = new String[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = readString();
+            }
+            VitalsSeries series = new VitalsSeries(patientId, size);
+            long time = 0;
+            long pulse = 0, temperature = 0, respiration = 0, systolic = 0, diastolic = 0;
+            for (int i = 0; i < size; i++) {
+                time += readSignedVarLong();
+                pulse += readSignedVarLong();
+                temperature += readSignedVarLong();
+                respiration += readSignedVarLong();
+                systolic += readSignedVarLong();
+                diastolic += readSignedVarLong();
+                series.appendRaw(ids[i], time, (int) pulse, (int) temperature, (int) respiration,
+                                 (int) systolic, (int) diastolic);
+            }
+            return series;
+        }
+        
+        Object readModel(byte tag) throws IOException {
+            switch (tag) {
+                case T_APPOINTMENT: {
+                    String id = readString();
+                    String patientId = readString();
+                    String doctorId = readString();
+                    LocalDate date = readNullableDate();
+                    LocalTime time = readNullableTime();
+                    byte status = in.readByte();
+                    return new Appointment(id, patientId, doctorId, date, time,
+                                           ordinal(APPOINTMENT_STATUSES, status));
+                }
+                case T_PRESCRIPTION: {
+                    String id = readString();
+                    String patientId = readString();
+                    String doctorId = readString();
+                    String medication = readString();
+                    String dosage = readString();
+                    LocalDate date = readNullableDate();
+                    byte status = in.readByte();
+                    return new Prescription(id, patientId, doctorId, medication, dosage, date,
+                                            ordinal(PRESCRIPTION_STATUSES, status));
+                }
+                case T_VITAL_SIGNS: {
+                    String id = readString();
+                    String patientId = readString();
+                    int pulse = (int) readSignedVarLong();
+                    double temperature = in.readDouble();
+                    int respiration = (int) readSignedVarLong();
+                    String bloodPressure = readString();
+                    LocalDateTime timestamp = readNullableDateTime();
+                    return new VitalSigns(id, patientId, pulse, temperature, respiration, bloodPressure, timestamp);
+                }
+                case T_DIAGNOSIS: {
+                    String id = readString();
+                    String patientId = readString();
+                    String doctorId = readString();
+                    String notes = readString();
+                    String treatmentPlan = readString();
+                    LocalDateTime timestamp = readNullableDateTime();
+                    return new Diagnosis(id, patientId, doctorId, notes, treatmentPlan, timestamp);
+                }
+                case T_REFERRAL: {
+                    String id = readString();
+                    String patientId = readString();
+                    String doctorId = readString();
+                    String clinicName = readString();
+                    String reason = readString();
+                    LocalDate date = readNullableDate();
+                    return new Referral(id, patientId, doctorId, clinicName, reason, date);
+                }
+                default:
+                    throw new StreamCorruptedException("Unknown value tag: " + tag);
+            }
+        }
+        
+        LocalDate readNullableDate() throws IOException {
+            return in.readBoolean() ? readDate() : null;
+        }
+        
+        LocalTime readNullableTime() throws IOException {
+            return in.readBoolean() ? readTime() : null;
+        }
+        
+        LocalDateTime readNullableDateTime() throws IOException {
+            return in.readBoolean() ? readDateTime() : null;
+        }
+    }
+}
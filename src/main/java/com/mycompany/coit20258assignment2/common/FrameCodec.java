@@ -0,0 +1,142 @@
+package com.mycompany.coit20258assignment2.common;
+
+import java.io.*;
+
+/**
+ * Length-prefixed framing for client-server messages
+ * Server Lead responsibility: Define communication protocol
+ *
+ * A framed connection starts with a handshake: the client sends MAGIC, its protocol
+ * VERSION and the payload codec it would like to use; the server answers with the
+ * same seven bytes carrying the codec it accepted. After that every message is sent
+ * as [int length][payload], where the payload is one self-contained message.
+ * Self-contained frames are what lets the NIO front end decode messages off a
+ * non-blocking channel.
+ *
+ * Payloads are either Java-serialized (CODEC_JAVA) or BinaryCodec (CODEC_BINARY).
+ * A Java serialization stream always starts with 0xAC, so decode() can tell them
+ * apart per frame; a binary session still sends Java frames for message classes
+ * BinaryCodec has no schema for.
+ *
+ * Clients that skip the handshake are served with the original continuous
+ * ObjectOutputStream protocol.
+ */
+public final class FrameCodec {
+    /** "THSF" - first four bytes sent by a framed client */
+    public static final int MAGIC = 0x54485346;
+    public static final short VERSION = 2;
+    public static final int HANDSHAKE_LENGTH = 7;
+    
+    public static final byte CODEC_JAVA = 0;
+    public static final byte CODEC_BINARY = 1;
+    
+    /** Upper bound on a single frame, guards against corrupt length prefixes */
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    
+    private FrameCodec() {}
+    
+    /**
+     * Write the seven-byte handshake (sent by both sides)
+     */
+    public static void writeHandshake(DataOutputStream out, byte codec) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(codec);
+        out.flush();
+    }
+    
+    /**
+     * Read the remainder of a handshake after MAGIC; returns the peer's codec
+     */
+    public static byte readHandshakeCodec(DataInputStream in) throws IOException {
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+        return in.readByte();
+    }
+    
+    /**
+     * Codec the server agrees to for a client's request; -Dths.codec=java turns binary off
+     */
+    public static byte negotiateCodec(byte requested) {
+        if (requested == CODEC_BINARY && !"java".equalsIgnoreCase(System.getProperty("ths.codec"))) {
+            return CODEC_BINARY;
+        }
+        return CODEC_JAVA;
+    }
+    
+    /**
+     * Encode one message with the session codec
+     */
+    public static byte[] encode(Object message, byte codec) throws IOException {
+        if (codec == CODEC_BINARY && BinaryCodec.supports(message)) {
+            return BinaryCodec.encode(message);
+        }
+        return encode(message);
+    }
+    
+    /**
+     * Serialize one message into a self-contained Java serialization payload
+     */
+    public static byte[] encode(Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Decode a payload produced by either codec; malformed payloads fail with an IOException
+     */
+    public static Object decode(byte[] payload) throws IOException, ClassNotFoundException {
+        if (payload.length > 0 && payload[0] != (byte) 0xAC) {
+            return BinaryCodec.decode(payload);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return in.readObject();
+        } catch (RuntimeException e) {
+            StreamCorruptedException corrupted = new StreamCorruptedException("Malformed message: " + e);
+            corrupted.initCause(e);
+            throw corrupted;
+        }
+    }
+    
+    /**
+     * The requestId of a request payload that failed to decode, if it can still
+     * be read (binary payloads only); otherwise null
+     */
+    public static String peekRequestId(byte[] payload) {
+        if (payload.length > 0 && payload[0] != (byte) 0xAC) {
+            return BinaryCodec.peekRequestId(payload);
+        }
+        return null;
+    }
+    
+    /**
+     * Write [length][payload] and flush
+     */
+    public static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+    
+    /**
+     * Read one [length][payload] frame; throws EOFException when the peer closes
+     */
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkLength(length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+    
+    public static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Invalid frame length: " + length);
+        }
+    }
+}
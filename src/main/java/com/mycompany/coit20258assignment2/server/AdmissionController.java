@@ -0,0 +1,232 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.common.BaseRequest;
+import com.mycompany.coit20258assignment2.common.BaseResponse;
+import com.mycompany.coit20258assignment2.common.BatchEnvelope;
+import com.mycompany.coit20258assignment2.common.GenericResponse;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a request is run now or turned away
+ * Server Lead responsibility: Degrade gracefully under overload
+ *
+ * The connection cap only limits sockets; once connected, clients could queue
+ * unlimited work and every request slowed down together. Two checks run before
+ * a request is dispatched:
+ *
+ * - Each user (or connection, before login) has a token bucket refilled at
+ *   USER_RATE requests per second, holding up to USER_BURST. An empty bucket
+ *   means "rate limited".
+ * - All users share an adaptive concurrency limit (AIMD). The limit grows by
+ *   one per limit requests completed while it is in use, and shrinks by BACKOFF
+ *   (at most once per ADJUST_WINDOW_MS) when a request takes longer than
+ *   TARGET_MS or the connection pool has threads waiting or timing out.
+ *
+ * Priority decides how much of the limit a request may use. Clinical writes
+ * (RECORD_VITALS, CREATE_PRESCRIPTION, ...) may fill all of it, ordinary
+ * requests NORMAL_SHARE and bulk reads (the ANALYTICS bulkhead) BULK_SHARE, so
+ * under pressure bulk reads are shed first and clinical writes last. PING,
+ * METRICS and CANCEL_STREAM are never turned away. A BATCH is not admitted as
+ * a whole; RequestDispatcher admits each of its entries instead.
+ *
+ * A turned-away request gets a failed "Server busy" response with
+ * "retryAfterMs" and "reason" ("rate limited" or "overloaded"). Settings are
+ * ths.admission.* system properties.
+ */
+public class AdmissionController {
+    
+    public enum Priority { CLINICAL, NORMAL, BULK }
+    
+    public static final int MIN_LIMIT = Integer.getInteger("ths.admission.minLimit", 4);
+    public static final int MAX_LIMIT = Integer.getInteger("ths.admission.maxLimit", 256);
+    public static final long TARGET_MS = Long.getLong("ths.admission.targetMs", 1_000L);
+    public static final double USER_RATE = Double.parseDouble(System.getProperty("ths.admission.userRate", "20"));
+    public static final double USER_BURST = Double.parseDouble(System.getProperty("ths.admission.userBurst", "40"));
+    private static final double BACKOFF = 0.9;
+    private static final double NORMAL_SHARE = 0.85;
+    private static final double BULK_SHARE = 0.5;
+    private static final long ADJUST_WINDOW_MS = 100L;
+    private static final long MAX_RETRY_AFTER_MS = 5_000L;
+    private static final long MIN_RETRY_AFTER_MS = 50L;
+    /** Buckets kept before idle (full) ones are dropped */
+    private static final int MAX_TRACKED_USERS = 10_000;
+    
+    private static final Set<String> EXEMPT_TYPES = Set.of("PING", "METRICS", "CANCEL_STREAM",
+                                                           BatchEnvelope.REQUEST_TYPE);
+    private static final Set<String> CLINICAL_TYPES = Set.of(
+        "RECORD_VITALS", "RECORD_VITALS_BATCH", "CREATE_PRESCRIPTION", "UPDATE_PRESCRIPTION",
+        "UPDATE_PRESCRIPTION_STATUS", "REFILL_PRESCRIPTION", "CREATE_DIAGNOSIS", "CREATE_DIAGNOSIS_EXTENDED",
+        "CREATE_REFERRAL", "SET_ALERT_RULES");
+    
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    
+    private volatile double limit = Integer.getInteger("ths.admission.initialLimit", 32);
+    private double latencyMs = 0;
+    private long lastDecreaseAt = 0;
+    private long lastPoolCheckAt = 0;
+    private long lastPoolTimeouts = 0;
+    private boolean poolSaturated = false;
+    
+    public static Priority priorityOf(String requestType) {
+        if (CLINICAL_TYPES.contains(requestType)) {
+            return Priority.CLINICAL;
+        }
+        return RequestBulkheads.categoryOf(requestType) == RequestBulkheads.Category.ANALYTICS
+               ? Priority.BULK : Priority.NORMAL;
+    }
+    
+    /**
+     * @return null if the request may run now (call done when it has finished),
+     *         otherwise the response to send instead of running it
+     */
+    public BaseResponse admit(BaseRequest request, String clientId) {
+        String type = request.getRequestType();
+        if (type == null || EXEMPT_TYPES.contains(type)) {
+            return null;
+        }
+        
+        String user = request.getUserId() != null ? request.getUserId() : clientId;
+        long waitMs = bucketOf(user).tryAcquire();
+        if (waitMs > 0) {
+            rateLimited.increment();
+            Log.debug("🚦 Rate limited {} for {}", type, user);
+            return busy(request, "rate limited", waitMs);
+        }
+        
+        Priority priority = priorityOf(type);
+        double share = priority == Priority.CLINICAL ? 1.0 : priority == Priority.NORMAL ? NORMAL_SHARE : BULK_SHARE;
+        int allowed = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                shed.increment();
+                Log.debug("🚦 Shed {} ({}) at {} in flight", type, priority, current);
+                return busy(request, "overloaded", overloadRetryAfterMs(priority));
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.increment();
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * Report that an admitted request has finished after the given time
+     */
+    public void done(BaseRequest request, long elapsedNanos) {
+        String type = request.getRequestType();
+        if (type == null || EXEMPT_TYPES.contains(type)) {
+            return;
+        }
+        int wasInFlight = inFlight.getAndDecrement();
+        // Bulk reads are expected to be slow, so their latency says nothing about overload
+        adjust(elapsedNanos / 1_000_000.0, wasInFlight, priorityOf(type) != Priority.BULK);
+    }
+    
+    private synchronized void adjust(double elapsedMs, int wasInFlight, boolean latencySignal) {
+        long now = System.currentTimeMillis();
+        if (now - lastPoolCheckAt >= ADJUST_WINDOW_MS) {
+            lastPoolCheckAt = now;
+            PoolStats pool = DatabaseManager.getInstance().getPoolStats();
+            poolSaturated = pool.getWaiting() > 0 || pool.getTimeoutCount() > lastPoolTimeouts;
+            lastPoolTimeouts = pool.getTimeoutCount();
+        }
+        if (latencySignal) {
+            latencyMs = latencyMs == 0 ? elapsedMs : 0.9 * latencyMs + 0.1 * elapsedMs;
+        }
+        
+        if (poolSaturated || (latencySignal && elapsedMs > TARGET_MS)) {
+            if (now - lastDecreaseAt >= ADJUST_WINDOW_MS) {
+                lastDecreaseAt = now;
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF);
+            }
+        } else if (wasInFlight >= limit / 2) {
+            limit = Math.min(MAX_LIMIT, limit + 1.0 / limit);
+        }
+    }
+    
+    private synchronized long overloadRetryAfterMs(Priority priority) {
+        double base = latencyMs > 0 ? latencyMs : ADJUST_WINDOW_MS;
+        long estimate = (long) (priority == Priority.BULK ? base * 4 : base);
+        return Math.min(Math.max(estimate, MIN_RETRY_AFTER_MS), MAX_RETRY_AFTER_MS);
+    }
+    
+    private TokenBucket bucketOf(String user) {
+        TokenBucket bucket = buckets.get(user);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= MAX_TRACKED_USERS) {
+            buckets.values().removeIf(TokenBucket::isFull);
+        }
+        return buckets.computeIfAbsent(user, u -> new TokenBucket());
+    }
+    
+    private static BaseResponse busy(BaseRequest request, String reason, long retryAfterMs) {
+        GenericResponse response = new GenericResponse(request.getRequestId(), request.getRequestType() + "_RESPONSE",
+                                                       false, "Server busy, retry after " + retryAfterMs + "ms");
+        response.addData("retryAfterMs", retryAfterMs);
+        response.addData("reason", reason);
+        return response;
+    }
+    
+    /**
+     * Current limit and counters, for the METRICS response
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", (int) limit);
+        synchronized (this) {
+            stats.put("latencyMs", latencyMs);
+            stats.put("poolSaturated", poolSaturated);
+        }
+        stats.put("inFlight", inFlight.get());
+        stats.put("admitted", admitted.sum());
+        stats.put("shed", shed.sum());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("trackedUsers", buckets.size());
+        return stats;
+    }
+    
+    /**
+     * USER_BURST tokens, refilled at USER_RATE per second
+     */
+    private static final class TokenBucket {
+        private double tokens = USER_BURST;
+        private long refilledAt = System.nanoTime();
+        
+        /**
+         * Take a token; 0 if one was taken, otherwise ms until one is available
+         */
+        synchronized long tryAcquire() {
+            refill();
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / USER_RATE * 1000));
+        }
+        
+        synchronized boolean isFull() {
+            refill();
+            return tokens >= USER_BURST;
+        }
+        
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(USER_BURST, tokens + (now - refilledAt) / (double) TimeUnit.SECONDS.toNanos(1) * USER_RATE);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.mycompany.coit20258assignment2.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Recent deletions, for GET_CHANGES
+ * Server Lead responsibility: Let clients refresh cached lists with a delta
+ *
+ * Inserts and updates are found through the updated_at columns, but a deleted
+ * row leaves nothing behind, so deletions are recorded here as tombstones with
+ * a sequence number. Clients hold a cursor ("epoch:seq") and get back the ids
+ * deleted after it. The log is bounded and lives in memory: if a cursor is
+ * from an earlier server run or older than the oldest tombstone kept, the
+ * client is told to reload in full instead.
+ */
+public class ChangeLog {
+    private static final int MAX_TOMBSTONES = Integer.getInteger("ths.changes.maxTombstones", 10_000);
+    private static ChangeLog instance;
+    
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Deque<Tombstone> tombstones = new ArrayDeque<>();
+    private long lastSeq = 0;
+    
+    private ChangeLog() {
+    }
+    
+    public static synchronized ChangeLog getInstance() {
+        if (instance == null) {
+            instance = new ChangeLog();
+        }
+        return instance;
+    }
+    
+    /**
+     * Record that a row of the given entity ("appointments", "prescriptions", ...) was deleted
+     */
+    public synchronized void recordDeletion(String entity, String id) {
+        tombstones.addLast(new Tombstone(++lastSeq, entity, id));
+        while (tombstones.size() > MAX_TOMBSTONES) {
+            tombstones.removeFirst();
+        }
+    }
+    
+    /**
+     * Cursor covering every deletion recorded so far
+     */
+    public synchronized String currentCursor() {
+        return epoch + ":" + lastSeq;
+    }
+    
+    /**
+     * Ids of the entity deleted after the cursor, or null if the cursor cannot
+     * be honoured and the client has to reload in full
+     */
+    public synchronized List<String> deletedSince(String entity, String cursor) {
+        long seq = parseSeq(cursor);
+        if (seq < 0 || seq > lastSeq) {
+            return null;
+        }
+        Tombstone oldest = tombstones.peekFirst();
+        long firstKept = oldest != null ? oldest.seq : lastSeq + 1;
+        if (firstKept > seq + 1) {
+            return null; // trimmed past the cursor
+        }
+        List<String> ids = new ArrayList<>();
+        for (Tombstone tombstone : tombstones) {
+            if (tombstone.seq > seq && tombstone.entity.equals(entity)) {
+                ids.add(tombstone.id);
+            }
+        }
+        return ids;
+    }
+    
+    private long parseSeq(String cursor) {
+        if (cursor == null) {
+            return -1;
+        }
+        int colon = cursor.indexOf(':');
+        if (colon < 0 || !cursor.substring(0, colon).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(cursor.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private static final class Tombstone {
+        final long seq;
+        final String entity;
+        final String id;
+        
+        Tombstone(long seq, String entity, String id) {
+            this.seq = seq;
+            this.entity = entity;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.common.GenericResponse;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes change notifications to subscribed connections
+ * Server Lead responsibility: Tell clients what changed instead of having them poll
+ *
+ * A framed connection sends SUBSCRIBE once its user has logged in and is then
+ * registered here under that user's id (administrators receive every change).
+ * After an appointment or prescription write succeeds, the dispatcher publishes
+ * a compact CHANGE_EVENT ("entity", "id", "action", "status") to the sessions of
+ * the patient and doctor it belongs to. The event carries no row data: clients
+ * fetch the row itself with their usual GET_CHANGES delta. The connection the
+ * write came from is skipped, as it refreshes after its own writes anyway.
+ * Vital signs alerts, which have no row to fetch, carry their details instead.
+ *
+ * Sinks registered here must not block; a sink that fails is dropped.
+ */
+public class ChangeNotifier {
+    public static final String EVENT_TYPE = "CHANGE_EVENT";
+    
+    private static ChangeNotifier instance;
+    
+    private final Map<ResponseSink, Subscription> bySink = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscription>> byUser = new ConcurrentHashMap<>();
+    private final Set<Subscription> allChanges = ConcurrentHashMap.newKeySet();
+    
+    private ChangeNotifier() {
+    }
+    
+    public static synchronized ChangeNotifier getInstance() {
+        if (instance == null) {
+            instance = new ChangeNotifier();
+        }
+        return instance;
+    }
+    
+    /**
+     * Register a connection for its user's changes, replacing any earlier
+     * subscription of the same connection
+     *
+     * @param subscriptionId requestId of the SUBSCRIBE; every event is sent under it
+     * @param everything     whether the user sees every change (administrators)
+     */
+    public synchronized void subscribe(String subscriptionId, String userId, boolean everything,
+                                       String clientId, ResponseSink sink) {
+        unsubscribe(sink);
+        Subscription subscription = new Subscription(subscriptionId, userId, clientId, sink);
+        bySink.put(sink, subscription);
+        if (everything) {
+            allChanges.add(subscription);
+        } else {
+            byUser.computeIfAbsent(userId, u -> ConcurrentHashMap.newKeySet()).add(subscription);
+        }
+        Log.info("🔔 {} subscribed to changes for {}", clientId, (everything ? "all users" : userId));
+    }
+    
+    /**
+     * Drop a connection's subscription (UNSUBSCRIBE or disconnect); no-op if it has none
+     */
+    public synchronized void unsubscribe(ResponseSink sink) {
+        Subscription subscription = bySink.remove(sink);
+        if (subscription == null) {
+            return;
+        }
+        allChanges.remove(subscription);
+        Set<Subscription> userSubscriptions = byUser.get(subscription.userId);
+        if (userSubscriptions != null) {
+            userSubscriptions.remove(subscription);
+            if (userSubscriptions.isEmpty()) {
+                byUser.remove(subscription.userId);
+            }
+        }
+    }
+    
+    /**
+     * Whether anyone is subscribed, so publishers can skip looking up who a change affects
+     */
+    public boolean hasSubscribers() {
+        return !bySink.isEmpty();
+    }
+    
+    /**
+     * Send one change to the subscriptions of the given users and to those that see everything
+     *
+     * @param entity         list the row belongs to ("appointments", "prescriptions")
+     * @param action         "created", "updated" or "deleted"
+     * @param status         the row's status after the change, or null
+     * @param originClientId connection that made the change; it is not notified
+     */
+    public void publish(String entity, String id, String action, String status,
+                        String originClientId, String... userIds) {
+        Map<String, Object> details = new HashMap<>();
+        if (status != null) {
+            details.put("status", status);
+        }
+        publishDetails(entity, id, action, details, originClientId, userIds);
+    }
+    
+    /**
+     * Send one change whose event also carries the given fields
+     *
+     * @param originClientId connection that made the change, or null to notify everyone
+     */
+    public void publishDetails(String entity, String id, String action, Map<String, Object> details,
+                               String originClientId, String... userIds) {
+        List<Subscription> targets = new ArrayList<>(allChanges);
+        for (String userId : userIds) {
+            Set<Subscription> userSubscriptions = userId == null ? null : byUser.get(userId);
+            if (userSubscriptions != null) {
+                targets.addAll(userSubscriptions);
+            }
+        }
+        
+        int sent = 0;
+        for (Subscription subscription : targets) {
+            if (subscription.clientId.equals(originClientId)) {
+                continue;
+            }
+            GenericResponse event = new GenericResponse(subscription.id, EVENT_TYPE, true, entity + " " + action);
+            details.forEach(event::addData);
+            event.addData("entity", entity);
+            event.addData("id", id);
+            event.addData("action", action);
+            try {
+                subscription.sink.send(event);
+                sent++;
+            } catch (IOException e) {
+                Log.warn("⚠️ Dropping change subscription of {}: {}", subscription.clientId, e.getMessage());
+                unsubscribe(subscription.sink);
+            }
+        }
+        if (sent > 0) {
+            Log.debug("🔔 {} {} {} pushed to {} session(s)", entity, id, action, sent);
+        }
+    }
+    
+    private static final class Subscription {
+        final String id;
+        final String userId;
+        final String clientId;
+        final ResponseSink sink;
+        
+        Subscription(String id, String userId, String clientId, ResponseSink sink) {
+            this.id = id;
+            this.userId = userId;
+            this.clientId = clientId;
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.util.Log;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded JDBC connection pool used behind DatabaseManager
+ * Server Lead responsibility: Keep database handshakes off the request path
+ *
+ * Features:
+ * - Fixed upper bound on open connections (a semaphore of maxSize permits)
+ * - Max-wait timeout when every connection is checked out
+ * - Validation on borrow for connections that sat idle past the validation interval,
+ *   and on return for checkouts where a statement failed to execute
+ * - Idle eviction and max-lifetime retirement by a background housekeeper
+ * - Leak detection for connections held longer than the leak threshold
+ * - Live counters (borrowed, idle, wait time histogram) via {@link #getStats()}
+ * - Per-DAO-method latency and error counts in ServerMetrics under the operation
+ *   name the DAO passes, timed from the moment a connection is handed out to its
+ *   return (the wait for one has its own histogram); a checkout counts as failed
+ *   if a statement or commit on it threw
+ *
+ * DAOs keep using try-with-resources: close() on a borrowed connection hands it
+ * back to the pool instead of closing the socket.
+ */
+public class ConnectionPool {
+    
+    /** Upper bounds (ms) of the wait time histogram buckets; the last bucket is open-ended. */
+    private static final long[] WAIT_BUCKETS_MS = {1, 5, 10, 50, 100, 500, 1000, 5000};
+    
+    private final String url;
+    private final Properties properties;
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long validationIntervalMillis;
+    private final long leakThresholdMillis;
+    
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledEntry> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger openConnections = new AtomicInteger(0);
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+    
+    // Metrics
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaksDetected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLongArray waitHistogram = new AtomicLongArray(WAIT_BUCKETS_MS.length + 1);
+    
+    public ConnectionPool(String url, Properties properties, int maxSize, int minIdle,
+                          long maxWaitMillis, long idleTimeoutMillis, long maxLifetimeMillis,
+                          long validationIntervalMillis, long leakThresholdMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.url = url;
+        this.properties = properties;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+        
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ths-db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, 5, 5, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Borrow a connection, waiting up to maxWaitMillis if the pool is exhausted
+     *
+     * @param operation metrics and leak report name of the borrower ("VitalSignsDAO.getVitalsSeries")
+     */
+    public Connection borrow(String operation) throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        
+        if (!acquired) {
+            timeoutCount.increment();
+            recordWait(System.nanoTime() - start);
+            throw new SQLTimeoutException("Timed out after " + maxWaitMillis
+                + "ms waiting for a database connection (borrowed=" + borrowed.size()
+                + ", max=" + maxSize + ")");
+        }
+        
+        ServerMetrics.Operation metrics = ServerMetrics.getInstance().dao(operation);
+        long metricsStart = metrics.start();
+        try {
+            PooledEntry entry = takeIdle();
+            if (entry == null) {
+                entry = createEntry();
+            }
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.borrower = operation + " [" + Thread.currentThread().getName() + "]";
+            entry.leakReported = false;
+            entry.metrics = metrics;
+            entry.metricsStart = metricsStart;
+            borrowed.add(entry);
+            
+            borrowCount.increment();
+            recordWait(System.nanoTime() - start);
+            return entry.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            metrics.finish(metricsStart, false);
+            throw e;
+        }
+    }
+    
+    /**
+     * Pop the most recently returned idle connection, validating it if it has been idle a while
+     */
+    private PooledEntry takeIdle() {
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (now - entry.createdAt > maxLifetimeMillis) {
+                destroy(entry);
+                continue;
+            }
+            if (now - entry.lastReturnedAt > validationIntervalMillis && !entry.isValid()) {
+                validationFailures.increment();
+                destroy(entry);
+                continue;
+            }
+            return entry;
+        }
+        return null;
+    }
+    
+    private PooledEntry createEntry() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, properties);
+        openConnections.incrementAndGet();
+        createdCount.increment();
+        return new PooledEntry(raw);
+    }
+    
+    /**
+     * Return a connection to the pool; called by the proxy's close()
+     *
+     * @param ok false if a statement of this checkout failed; the connection is
+     *           then validated, since a dead socket often only shows up there
+     */
+    private void release(PooledEntry entry, boolean ok) {
+        entry.metrics.finish(entry.metricsStart, ok);
+        borrowed.remove(entry);
+        try {
+            if (shutdown || entry.broken || entry.raw.isClosed()) {
+                destroy(entry);
+                return;
+            }
+            if (!ok && !entry.isValid()) {
+                validationFailures.increment();
+                destroy(entry);
+                return;
+            }
+            entry.reset();
+            entry.lastReturnedAt = System.currentTimeMillis();
+            idle.offerFirst(entry);
+        } catch (SQLException e) {
+            destroy(entry);
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private void destroy(PooledEntry entry) {
+        try {
+            entry.raw.close();
+        } catch (SQLException e) {
+            Log.error("Error closing pooled connection: {}", e.getMessage());
+        }
+        openConnections.decrementAndGet();
+        destroyedCount.increment();
+    }
+    
+    /**
+     * Evict idle/expired connections and report leaked ones
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        
+        // Idle eviction: oldest idle connections sit at the tail of the deque
+        int idleCount = idle.size();
+        for (int i = 0; i < idleCount && idle.size() > minIdle; i++) {
+            PooledEntry entry = idle.pollLast();
+            if (entry == null) {
+                break;
+            }
+            boolean expired = now - entry.lastReturnedAt > idleTimeoutMillis
+                           || now - entry.createdAt > maxLifetimeMillis;
+            if (expired) {
+                destroy(entry);
+            } else {
+                idle.offerLast(entry);
+                break;
+            }
+        }
+        
+        // Leak detection
+        for (PooledEntry entry : borrowed) {
+            long heldFor = now - entry.borrowedAt;
+            if (!entry.leakReported && heldFor > leakThresholdMillis) {
+                entry.leakReported = true;
+                leaksDetected.increment();
+                Log.warn("⚠️ Possible connection leak: held for {}ms by {}", heldFor, entry.borrower);
+            }
+        }
+    }
+    
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        int bucket = WAIT_BUCKETS_MS.length;
+        for (int i = 0; i < WAIT_BUCKETS_MS.length; i++) {
+            if (waitMillis < WAIT_BUCKETS_MS[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        waitHistogram.incrementAndGet(bucket);
+    }
+    
+    /**
+     * Snapshot of the pool counters
+     */
+    public PoolStats getStats() {
+        long[] histogram = new long[waitHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = waitHistogram.get(i);
+        }
+        return new PoolStats(
+            maxSize,
+            openConnections.get(),
+            borrowed.size(),
+            idle.size(),
+            permits.getQueueLength(),
+            borrowCount.sum(),
+            timeoutCount.sum(),
+            createdCount.sum(),
+            destroyedCount.sum(),
+            validationFailures.sum(),
+            leaksDetected.sum(),
+            totalWaitNanos.sum(),
+            WAIT_BUCKETS_MS.clone(),
+            histogram
+        );
+    }
+    
+    /**
+     * Close idle connections and stop the housekeeper; borrowed connections are closed on return
+     */
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+    }
+    
+    /**
+     * A physical connection plus its bookkeeping
+     */
+    private final class PooledEntry {
+        private final Connection raw;
+        private final long createdAt;
+        private volatile long lastReturnedAt;
+        private volatile long borrowedAt;
+        private volatile String borrower;
+        private volatile boolean leakReported;
+        private volatile boolean broken;
+        private volatile ServerMetrics.Operation metrics;
+        private volatile long metricsStart;
+        
+        PooledEntry(Connection raw) {
+            this.raw = raw;
+            this.createdAt = System.currentTimeMillis();
+            this.lastReturnedAt = createdAt;
+        }
+        
+        boolean isValid() {
+            try {
+                return raw.isValid(2);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+        
+        void reset() throws SQLException {
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            raw.clearWarnings();
+        }
+        
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new Lease(this));
+        }
+    }
+    
+    /**
+     * Proxy handler for one checkout; close() returns the connection exactly once.
+     * Statements it creates are wrapped so a failed execute marks the checkout
+     * failed (and the connection broken on an 08xxx SQLState), and so their
+     * getConnection() hands back this lease rather than the raw connection.
+     * Result sets are not wrapped, keeping row reads at driver speed; a link that
+     * dropped mid-read leaves the raw connection closed, which release() checks.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledEntry entry;
+        private volatile boolean returned = false;
+        private volatile boolean failed = false;
+        
+        Lease(PooledEntry entry) {
+            this.entry = entry;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (!returned) {
+                            returned = true;
+                            release(entry, !failed);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.raw + "]";
+                default:
+                    break;
+            }
+            
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            
+            Object result;
+            try {
+                result = method.invoke(entry.raw, args);
+            } catch (InvocationTargetException e) {
+                throw noteFailure(e.getCause());
+            }
+            if (result instanceof Statement && method.getReturnType().isInterface()) {
+                return track(result, method.getReturnType(), proxy);
+            }
+            return result;
+        }
+        
+        /**
+         * Wrap a statement so failed executes are noted and getConnection() returns the lease
+         */
+        private Object track(Object target, Class<?> type, Object connection) {
+            return Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { type },
+                (p, m, a) -> {
+                    String name = m.getName();
+                    if (name.equals("getConnection")) {
+                        return connection;
+                    }
+                    try {
+                        return m.invoke(target, a);
+                    } catch (InvocationTargetException e) {
+                        throw name.startsWith("execute") ? noteFailure(e.getCause()) : e.getCause();
+                    }
+                });
+        }
+        
+        private Throwable noteFailure(Throwable cause) {
+            if (cause instanceof SQLException sqlException) {
+                failed = true;
+                String state = sqlException.getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    entry.broken = true; // connection-level failure, don't reuse
+                }
+            }
+            return cause;
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.mycompany.coit20258assignment2.server;
 
+import com.mycompany.coit20258assignment2.util.Log;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
 import java.util.Properties;
 
 /**
  * Database Connection Manager for THS-Enhanced Server
  * Server Lead responsibility: Handle all database connections
+ *
+ * Connections come from a bounded ConnectionPool, so a DAO call costs a pooled
+ * checkout instead of a full MySQL handshake. Pool sizing can be tuned with
+ * -Dths.db.pool.maxSize, -Dths.db.pool.minIdle and -Dths.db.pool.maxWaitMs.
  */
 public class DatabaseManager {
     private static DatabaseManager instance;
@@ -15,12 +22,36 @@ public class DatabaseManager {
     private static final String DB_USER = "root";
     private static final String DB_PASSWORD = "root";
     
+    // Pool settings
+    private static final int POOL_MAX_SIZE = Integer.getInteger("ths.db.pool.maxSize", 20);
+    private static final int POOL_MIN_IDLE = Integer.getInteger("ths.db.pool.minIdle", 2);
+    private static final long POOL_MAX_WAIT_MS = Long.getLong("ths.db.pool.maxWaitMs", 5_000L);
+    private static final long POOL_IDLE_TIMEOUT_MS = 10 * 60 * 1000L;
+    private static final long POOL_MAX_LIFETIME_MS = 30 * 60 * 1000L;
+    private static final long POOL_VALIDATION_INTERVAL_MS = 500L;
+    private static final long POOL_LEAK_THRESHOLD_MS = 30_000L;
+    
+    private final ConnectionPool pool;
+    
     private DatabaseManager() {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("MySQL JDBC Driver not found", e);
         }
+        
+        Properties props = new Properties();
+        props.setProperty("user", DB_USER);
+        props.setProperty("password", DB_PASSWORD);
+        props.setProperty("useSSL", "false");
+        props.setProperty("allowPublicKeyRetrieval", "true");
+        props.setProperty("serverTimezone", "UTC");
+        // Lets the driver send JDBC batches (vitals ingestion) as multi-row INSERTs
+        props.setProperty("rewriteBatchedStatements", "true");
+        
+        this.pool = new ConnectionPool(DB_URL, props, POOL_MAX_SIZE, POOL_MIN_IDLE,
+                                       POOL_MAX_WAIT_MS, POOL_IDLE_TIMEOUT_MS, POOL_MAX_LIFETIME_MS,
+                                       POOL_VALIDATION_INTERVAL_MS, POOL_LEAK_THRESHOLD_MS);
     }
     
     public static synchronized DatabaseManager getInstance() {
@@ -30,23 +61,46 @@ public class DatabaseManager {
         return instance;
     }
     
-    public Connection getConnection() throws SQLException {
-        Properties props = new Properties();
-        props.setProperty("user", DB_USER);
-        props.setProperty("password", DB_PASSWORD);
-        props.setProperty("useSSL", "false");
-        props.setProperty("allowPublicKeyRetrieval", "true");
-        props.setProperty("serverTimezone", "UTC");
-        
-        return DriverManager.getConnection(DB_URL, props);
+    /**
+     * Borrow a pooled connection; close() returns it to the pool
+     *
+     * @param operation the borrowing DAO method ("VitalSignsDAO.getVitalsSeries"),
+     *                  under which its latency and errors are recorded
+     */
+    public Connection getConnection(String operation) throws SQLException {
+        return pool.borrow(operation);
+    }
+    
+    /**
+     * Live pool counters (borrowed, idle, wait time histogram)
+     */
+    public PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+    
+    /**
+     * The database clock, which stamps updated_at; null if the database is unreachable
+     */
+    public LocalDateTime getDatabaseTime() {
+        try (Connection conn = getConnection("DatabaseManager.getDatabaseTime");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP")) {
+            if (rs.next()) {
+                return rs.getTimestamp(1).toLocalDateTime();
+            }
+        } catch (SQLException e) {
+            Log.error("Database error reading current time: {}", e.getMessage());
+        }
+        return null;
     }
     
     public void testConnection() {
-        try (Connection conn = getConnection()) {
-            System.out.println("Database connection successful!");
-            System.out.println("Connected to: " + conn.getMetaData().getURL());
+        try (Connection conn = getConnection("DatabaseManager.testConnection")) {
+            Log.info("Database connection successful!");
+            Log.info("Connected to: {}", conn.getMetaData().getURL());
+            Log.info("Connection pool: max {} connections, {}ms max wait", POOL_MAX_SIZE, POOL_MAX_WAIT_MS);
         } catch (SQLException e) {
-            System.err.println("Database connection failed: " + e.getMessage());
+            Log.error("Database connection failed: {}", e.getMessage());
             e.printStackTrace();
         }
     }
@@ -56,8 +110,16 @@ public class DatabaseManager {
             try {
                 conn.close();
             } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
+                Log.error("Error closing connection: {}", e.getMessage());
             }
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Close all pooled connections (server shutdown)
+     */
+    public void shutdown() {
+        Log.info("📊 {}", pool.getStats());
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,101 @@
+package com.mycompany.coit20258assignment2.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (HdrHistogram style)
+ * Server Lead responsibility: Measure request and query latency cheaply
+ *
+ * Latencies are kept in microseconds. Values below 64 µs get a bucket each;
+ * above that every power of two is split into 32 equal buckets, so any recorded
+ * value is within about 3% of its bucket's upper bound, from 1 µs up to about
+ * 70 minutes (longer values are clamped). Recording is one index computation
+ * and one atomic increment, cheap enough for every request and query.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_MICROS = (1L << 32) - 1;
+    private static final int BUCKETS = indexOf(MAX_MICROS) + 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+    
+    public void recordNanos(long nanos) {
+        long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0), MAX_MICROS);
+        counts.incrementAndGet(indexOf(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    public long getTotalMicros() {
+        return totalMicros.sum();
+    }
+    
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+    
+    /**
+     * Latency (µs) at the given quantile (0..1): the upper bound of the bucket
+     * holding that rank, never more than the largest value recorded
+     */
+    public long percentileMicros(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+    
+    /**
+     * How many recorded values were at most the given number of microseconds
+     * (to bucket precision), for cumulative Prometheus buckets
+     */
+    public long countAtOrBelow(long micros) {
+        int last = indexOf(Math.min(micros, MAX_MICROS));
+        if (upperBound(last) > micros && last > 0) {
+            last--;
+        }
+        long seen = 0;
+        for (int i = 0; i <= last; i++) {
+            seen += counts.get(i);
+        }
+        return seen;
+    }
+    
+    private static int indexOf(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (micros >>> shift);
+    }
+    
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long base = (long) (index - shift * SUB_BUCKETS) << shift;
+        return base + (1L << shift) - 1;
+    }
+}
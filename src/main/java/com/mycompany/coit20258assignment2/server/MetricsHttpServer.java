@@ -0,0 +1,79 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.util.Log;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves ServerMetrics to Prometheus at http://127.0.0.1:PORT/metrics
+ * Server Lead responsibility: Let operations graph latency per request type
+ *
+ * Bound to the loopback interface only, so the counters are not exposed to
+ * clients; a local Prometheus agent or an SSH tunnel scrapes them. The port is
+ * ths.metrics.port (default 9464); 0 or less turns the endpoint off.
+ */
+public class MetricsHttpServer {
+    public static final int PORT = Integer.getInteger("ths.metrics.port", 9464);
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private HttpServer server;
+    private ExecutorService executor;
+    
+    /**
+     * Start serving unless disabled; a port that is taken is reported, not fatal
+     */
+    public synchronized void start() {
+        if (PORT <= 0 || server != null) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), PORT), 0);
+        } catch (IOException e) {
+            Log.warn("⚠️ Metrics endpoint not started on port {}: {}", PORT, e.getMessage());
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ths-metrics-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        Log.info("📊 Metrics at http://127.0.0.1:{}/metrics", server.getAddress().getPort());
+    }
+    
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = ServerMetrics.getInstance().toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.common.*;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking front end for THSServer
+ * Server Lead responsibility: Serve many idle clients without a thread each
+ *
+ * One acceptor thread hands new channels round-robin to a small set of event
+ * loops. Each loop owns a Selector and only does socket I/O and framing; frames
+ * are decoded on the worker pool and the requests run on the bulkhead of their
+ * category (see RequestBulkheads), so a slow DAO call never stalls other clients.
+ * Responses are queued back on the owning loop, which writes them when the
+ * channel is writable. A STREAM_* response is produced chunk by chunk and its
+ * worker waits whenever STREAM_WINDOW_CHUNKS chunks are still unwritten, so a
+ * slow reader holds the stream back instead of filling the write queue. A
+ * client that keeps sending requests without reading its responses is no
+ * longer read once WRITE_HIGH_WATER bytes are queued for it, until the queue
+ * drains below WRITE_LOW_WATER. The read buffer grows to fit a large frame and
+ * goes back to READ_BUFFER_SIZE once the frame has been consumed.
+ * CHANGE_EVENT pushes for a subscribed session are queued on its loop like
+ * any other response.
+ * Sessions silent for longer than the session timeout are closed on their
+ * loop by the SessionReaper.
+ *
+ * Clients that do not open with the FrameCodec handshake (older builds using the
+ * continuous object stream) are switched back to blocking mode and handed to a
+ * regular ClientHandler, so both protocols share one port.
+ */
+public class NioServer {
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    /** Unwritten response bytes at which a connection stops being read, and at which reading resumes */
+    private static final int WRITE_HIGH_WATER = Integer.getInteger("ths.nio.writeHighWater", 1024 * 1024);
+    private static final int WRITE_LOW_WATER = Integer.getInteger("ths.nio.writeLowWater", 256 * 1024);
+    /** Chunk frames of a STREAM_* response allowed to wait unwritten per connection */
+    private static final int STREAM_WINDOW_CHUNKS = 4;
+    
+    private final THSServer server;
+    private final RequestDispatcher dispatcher;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final ExecutorService workers;
+    private final ExecutorService legacyPool;
+    private final AtomicInteger nextLoop = new AtomicInteger(0);
+    private volatile boolean isRunning = false;
+    
+    public NioServer(THSServer server, int port, RequestDispatcher dispatcher,
+                     int eventLoops, ExecutorService workers) throws IOException {
+        this(server, port, dispatcher, eventLoops, workers,
+             Executors.newCachedThreadPool(r -> new Thread(r, "ths-legacy-client")));
+    }
+    
+    /**
+     * @param legacyPool runs blocking ClientHandlers for clients without the framed handshake
+     */
+    public NioServer(THSServer server, int port, RequestDispatcher dispatcher, int eventLoops,
+                     ExecutorService workers, ExecutorService legacyPool) throws IOException {
+        this.server = server;
+        this.dispatcher = dispatcher;
+        this.workers = workers;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(port));
+        this.loops = new EventLoop[Math.max(1, eventLoops)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("ths-nio-loop-" + i);
+        }
+        this.legacyPool = legacyPool;
+    }
+    
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+    
+    /**
+     * Start the event loops and accept connections on the calling thread until stopped
+     */
+    public void start() {
+        isRunning = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+        Log.info("⚡ NIO front end running with {} event loop(s)", loops.length);
+        
+        while (isRunning) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                server.clientConnected(channel.socket().getInetAddress());
+                
+                EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                loop.register(channel);
+                
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                if (isRunning) {
+                    Log.error("Error accepting client connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+    
+    public void stop() {
+        isRunning = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            Log.error("Error closing server channel: {}", e.getMessage());
+        }
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+        if (legacyPool != workers) {
+            legacyPool.shutdownNow();
+        }
+    }
+    
+    /**
+     * A selector thread plus the tasks other threads ask it to run
+     */
+    private class EventLoop implements Runnable {
+        private final Thread thread;
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean running = true;
+        
+        EventLoop(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+        
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    NioSession session = new NioSession(this, channel);
+                    session.key = channel.register(selector, SelectionKey.OP_READ, session);
+                } catch (IOException e) {
+                    Log.error("❌ Failed to register channel: {}", e.getMessage());
+                    closeQuietly(channel);
+                    server.clientDisconnected();
+                }
+            });
+        }
+        
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+        
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+        
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.run();
+                        } catch (RuntimeException e) {
+                            Log.error("❌ Event loop task failed: {}", e.toString());
+                        }
+                    }
+                    
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        NioSession session = (NioSession) key.attachment();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        try {
+                            if (key.isReadable()) {
+                                session.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                session.onWritable();
+                            }
+                        } catch (IOException e) {
+                            session.close();
+                        } catch (RuntimeException e) {
+                            // A bug handling one connection must not take the loop's other sessions down
+                            Log.error("❌ Closing {} after an unexpected error: {}", session.clientId, e.toString());
+                            session.close();
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Log.error("❌ Event loop error: {}", e.toString());
+                }
+            }
+            
+            for (SelectionKey key : selector.keys()) {
+                Object attachment = key.attachment();
+                if (attachment instanceof NioSession) {
+                    ((NioSession) attachment).close();
+                }
+            }
+            closeQuietly(selector);
+        }
+    }
+    
+    /**
+     * Per-connection state; touched only by its event loop thread
+     */
+    private class NioSession {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final String clientId;
+        private final Queue<Outgoing> pendingWrites = new ArrayDeque<>();
+        private long pendingBytes = 0;
+        private boolean readPaused = false;
+        private final Semaphore streamWindow = new Semaphore(STREAM_WINDOW_CHUNKS);
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private SelectionKey key;
+        private boolean handshakeDone = false;
+        private volatile byte codec = FrameCodec.CODEC_JAVA;
+        private volatile boolean closed = false;
+        private final ResponseSink pushSink = this::push;
+        /** Closes the connection on its loop once the client has been silent for the session timeout */
+        private final SessionReaper.Session reaperSession;
+        
+        NioSession(EventLoop loop, SocketChannel channel) throws IOException {
+            this.loop = loop;
+            this.channel = channel;
+            this.clientId = "Client-" + channel.getRemoteAddress();
+            this.reaperSession = server.getSessionReaper().register(clientId, () -> loop.execute(this::close));
+        }
+        
+        void onReadable() throws IOException {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            reaperSession.touch();
+            readBuffer.flip();
+            
+            if (!handshakeDone) {
+                if (readBuffer.remaining() < 4) {
+                    readBuffer.compact();
+                    return;
+                }
+                if (readBuffer.getInt(readBuffer.position()) != FrameCodec.MAGIC) {
+                    handOffToLegacy();
+                    return;
+                }
+                if (readBuffer.remaining() < FrameCodec.HANDSHAKE_LENGTH) {
+                    readBuffer.compact();
+                    return;
+                }
+                readBuffer.getInt();
+                short version = readBuffer.getShort();
+                if (version != FrameCodec.VERSION) {
+                    Log.warn("❌ Unsupported protocol version {} from {}", version, clientId);
+                    close();
+                    return;
+                }
+                codec = FrameCodec.negotiateCodec(readBuffer.get());
+                handshakeDone = true;
+                ByteBuffer reply = ByteBuffer.allocate(FrameCodec.HANDSHAKE_LENGTH);
+                reply.putInt(FrameCodec.MAGIC).putShort(FrameCodec.VERSION).put(codec).flip();
+                enqueue(reply, false);
+                Log.info("📡 Client session started for: {} (nio{}", clientId,
+                         (codec == FrameCodec.CODEC_BINARY ? ", binary)" : ")"));
+            }
+            
+            int partialFrame = 0;
+            while (readBuffer.remaining() >= 4) {
+                int length = readBuffer.getInt(readBuffer.position());
+                FrameCodec.checkLength(length);
+                if (readBuffer.remaining() < 4 + length) {
+                    partialFrame = 4 + length;
+                    ensureCapacity(partialFrame);
+                    break;
+                }
+                readBuffer.getInt();
+                byte[] payload = new byte[length];
+                readBuffer.get(payload);
+                dispatch(payload);
+            }
+            readBuffer.compact();
+            if (readBuffer.capacity() > READ_BUFFER_SIZE && partialFrame <= READ_BUFFER_SIZE) {
+                shrinkReadBuffer();
+            }
+        }
+        
+        /**
+         * Grow the read buffer so a whole frame fits (buffer is in read mode)
+         */
+        private void ensureCapacity(int frameSize) {
+            if (readBuffer.capacity() < frameSize) {
+                ByteBuffer bigger = ByteBuffer.allocate(frameSize);
+                bigger.put(readBuffer);
+                bigger.flip();
+                readBuffer = bigger;
+            }
+        }
+        
+        /**
+         * Go back to the default buffer once a large frame has been consumed, so
+         * idle sessions do not keep their peak size (buffer is in write mode)
+         */
+        private void shrinkReadBuffer() {
+            if (readBuffer.position() > READ_BUFFER_SIZE) {
+                return;
+            }
+            ByteBuffer smaller = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            readBuffer.flip();
+            smaller.put(readBuffer);
+            readBuffer = smaller;
+        }
+        
+        private void dispatch(byte[] payload) {
+            workers.execute(() -> {
+                try {
+                    Object message = FrameCodec.decode(payload);
+                    if (!(message instanceof BaseRequest)) {
+                        Log.warn("❌ Unknown message type from {}: {}", clientId, message.getClass());
+                        return;
+                    }
+                    BaseRequest request = (BaseRequest) message;
+                    dispatcher.getBulkheads().execute(request, () -> process(request), this::respond);
+                } catch (IOException | ClassNotFoundException e) {
+                    Log.error("❌ Failed to process frame from {}: {}", clientId, e.getMessage());
+                    String requestId = FrameCodec.peekRequestId(payload);
+                    if (requestId != null) {
+                        respond(RequestDispatcher.errorResponse(requestId, "Request could not be decoded"));
+                    }
+                }
+            });
+        }
+        
+        /**
+         * Run a decoded request; called on its category's bulkhead (see RequestBulkheads)
+         */
+        private void process(BaseRequest request) {
+            try {
+                if (RequestDispatcher.isStreaming(request)) {
+                    dispatcher.processStreamingRequest(request, clientId, this::streamChunk);
+                    return;
+                }
+                respond(RequestDispatcher.isSubscription(request)
+                        ? dispatcher.processSubscription(request, clientId, pushSink)
+                        : dispatcher.processRequest(request, clientId));
+            } catch (IOException e) {
+                Log.error("❌ Failed to process frame from {}: {}", clientId, e.getMessage());
+            }
+        }
+        
+        private void respond(BaseResponse response) {
+            ByteBuffer frame;
+            try {
+                frame = toFrame(response);
+            } catch (IOException e) {
+                Log.error("❌ Failed to encode response to {}: {}", clientId, e.getMessage());
+                try {
+                    frame = toFrame(RequestDispatcher.errorResponse(response.getRequestId(),
+                                                                    "Response could not be encoded"));
+                } catch (IOException again) {
+                    return;
+                }
+            }
+            ByteBuffer queued = frame;
+            loop.execute(() -> enqueue(queued, false));
+            Log.debug("📤 Response queued: {} to {}", response.getResponseType(), clientId);
+        }
+        
+        private ByteBuffer toFrame(BaseResponse response) throws IOException {
+            byte[] body = FrameCodec.encode(response, codec);
+            ByteBuffer frame = ByteBuffer.allocate(4 + body.length);
+            frame.putInt(body.length).put(body).flip();
+            return frame;
+        }
+        
+        /**
+         * Queue one chunk of a streamed response, first waiting (on the worker
+         * thread) for room in the stream window
+         */
+        private void streamChunk(BaseResponse chunk) throws IOException {
+            ByteBuffer frame = toFrame(chunk);
+            try {
+                while (!streamWindow.tryAcquire(1, TimeUnit.SECONDS)) {
+                    if (closed) {
+                        throw new IOException("Connection closed");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new java.io.InterruptedIOException("Interrupted while streaming");
+            }
+            loop.execute(() -> enqueue(frame, true));
+        }
+        
+        /**
+         * Queue a CHANGE_EVENT without waiting; called from whichever thread published it
+         */
+        private void push(BaseResponse event) throws IOException {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            ByteBuffer frame = toFrame(event);
+            loop.execute(() -> enqueue(frame, false));
+        }
+        
+        /**
+         * @param streamed a stream chunk, whose window permit is returned once it is written
+         */
+        private void enqueue(ByteBuffer buffer, boolean streamed) {
+            if (closed) {
+                return;
+            }
+            pendingWrites.add(new Outgoing(buffer, streamed));
+            pendingBytes += buffer.remaining();
+            try {
+                onWritable();
+            } catch (IOException e) {
+                close();
+            }
+        }
+        
+        void onWritable() throws IOException {
+            Outgoing head;
+            while ((head = pendingWrites.peek()) != null) {
+                pendingBytes -= channel.write(head.buffer);
+                if (head.buffer.hasRemaining()) {
+                    break;
+                }
+                pendingWrites.poll();
+                if (head.streamed) {
+                    streamWindow.release();
+                }
+            }
+            
+            // Stop reading a client that is not reading its responses
+            if (pendingBytes > WRITE_HIGH_WATER) {
+                readPaused = true;
+            } else if (pendingBytes <= WRITE_LOW_WATER) {
+                readPaused = false;
+            }
+            key.interestOps((readPaused ? 0 : SelectionKey.OP_READ)
+                            | (pendingWrites.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+        }
+        
+        /**
+         * Legacy object-stream client: return the channel to blocking mode and
+         * replay the bytes already read into a ClientHandler thread
+         */
+        private void handOffToLegacy() throws IOException {
+            byte[] preface = new byte[readBuffer.remaining()];
+            readBuffer.get(preface);
+            key.cancel();
+            closed = true;
+            reaperSession.cancel();
+            Log.info("↩️ Legacy client detected, switching to blocking handler: {}", clientId);
+            
+            // The key is only deregistered by the next select, so finish the switch as a loop task
+            loop.execute(() -> {
+                try {
+                    loop.selector.selectNow();
+                    channel.configureBlocking(true);
+                    legacyPool.execute(new ClientHandler(channel.socket(), server, dispatcher, preface));
+                } catch (IOException e) {
+                    Log.error("❌ Failed to switch {} to blocking mode: {}", clientId, e.getMessage());
+                    closeQuietly(channel);
+                    server.clientDisconnected();
+                }
+            });
+        }
+        
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            reaperSession.cancel();
+            ChangeNotifier.getInstance().unsubscribe(pushSink);
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(channel);
+            server.clientDisconnected();
+        }
+    }
+    
+    /**
+     * A frame waiting to be written
+     */
+    private static final class Outgoing {
+        final ByteBuffer buffer;
+        final boolean streamed;
+        
+        Outgoing(ByteBuffer buffer, boolean streamed) {
+            this.buffer = buffer;
+            this.streamed = streamed;
+        }
+    }
+    
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.mycompany.coit20258assignment2.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of ConnectionPool counters
+ * Server Lead responsibility: Expose database pool health
+ */
+public class PoolStats {
+    private final int maxSize;
+    private final int open;
+    private final int borrowed;
+    private final int idle;
+    private final int waiting;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long createdCount;
+    private final long destroyedCount;
+    private final long validationFailures;
+    private final long leaksDetected;
+    private final long totalWaitNanos;
+    private final long[] waitBucketsMillis;
+    private final long[] waitHistogram;
+    
+    public PoolStats(int maxSize, int open, int borrowed, int idle, int waiting,
+                     long borrowCount, long timeoutCount, long createdCount, long destroyedCount,
+                     long validationFailures, long leaksDetected, long totalWaitNanos,
+                     long[] waitBucketsMillis, long[] waitHistogram) {
+        this.maxSize = maxSize;
+        this.open = open;
+        this.borrowed = borrowed;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.borrowCount = borrowCount;
+        this.timeoutCount = timeoutCount;
+        this.createdCount = createdCount;
+        this.destroyedCount = destroyedCount;
+        this.validationFailures = validationFailures;
+        this.leaksDetected = leaksDetected;
+        this.totalWaitNanos = totalWaitNanos;
+        this.waitBucketsMillis = waitBucketsMillis;
+        this.waitHistogram = waitHistogram;
+    }
+    
+    public int getMaxSize() { return maxSize; }
+    public int getOpen() { return open; }
+    public int getBorrowed() { return borrowed; }
+    public int getIdle() { return idle; }
+    public int getWaiting() { return waiting; }
+    public long getBorrowCount() { return borrowCount; }
+    public long getTimeoutCount() { return timeoutCount; }
+    public long getCreatedCount() { return createdCount; }
+    public long getDestroyedCount() { return destroyedCount; }
+    public long getValidationFailures() { return validationFailures; }
+    public long getLeaksDetected() { return leaksDetected; }
+    public long[] getWaitBucketsMillis() { return waitBucketsMillis.clone(); }
+    public long[] getWaitHistogram() { return waitHistogram.clone(); }
+    
+    /** Fraction of the pool currently checked out, 0.0 - 1.0 */
+    public double getUtilization() {
+        return maxSize == 0 ? 0.0 : (double) borrowed / maxSize;
+    }
+    
+    public double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / borrowCount;
+    }
+    
+    /**
+     * Wait histogram keyed by bucket label, e.g. "<5ms" or ">=5000ms"
+     */
+    public Map<String, Long> getWaitHistogramByLabel() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < waitBucketsMillis.length; i++) {
+            result.put("<" + waitBucketsMillis[i] + "ms", waitHistogram[i]);
+        }
+        result.put(">=" + waitBucketsMillis[waitBucketsMillis.length - 1] + "ms",
+                   waitHistogram[waitHistogram.length - 1]);
+        return result;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+            "Pool[open=%d/%d, borrowed=%d, idle=%d, waiting=%d, borrows=%d, timeouts=%d, "
+            + "created=%d, destroyed=%d, validationFailures=%d, leaks=%d, avgWait=%.2fms, wait=%s]",
+            open, maxSize, borrowed, idle, waiting, borrowCount, timeoutCount,
+            createdCount, destroyedCount, validationFailures, leaksDetected,
+            getAverageWaitMillis(), getWaitHistogramByLabel());
+    }
+}
@@ -0,0 +1,191 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.common.BaseRequest;
+import com.mycompany.coit20258assignment2.common.BaseResponse;
+import com.mycompany.coit20258assignment2.common.BatchEnvelope;
+import com.mycompany.coit20258assignment2.common.GenericResponse;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Separate bounded thread pools per request category
+ * Server Lead responsibility: Keep logins responsive while heavy reports run
+ *
+ * Framed requests used to share one pool, so an administrator pulling every
+ * unavailability or streaming a long export could occupy all of its threads
+ * and patients' LOGINs queued behind them. Each Category now has its own
+ * threads, its own queue limit and its own queue timeout; a category that is
+ * saturated only turns away its own requests.
+ *
+ * A request that finds its queue full, or that waited in it longer than the
+ * timeout, is not run. The caller gets a failed response instead, with
+ * "retryAfterMs" estimated from the queue length and the category's recent
+ * service time, and "bulkhead" naming the category. Sizes come from
+ * ths.bulkhead.NAME.threads, .queue and .timeoutMs (NAME in lower case).
+ */
+public class RequestBulkheads {
+    
+    public enum Category {
+        /** Sign-in and cheap control requests: LOGIN, SIGNUP, RESET_PASSWORD, PING, METRICS, CANCEL_STREAM */
+        AUTH(4, 64, 2_000),
+        /** Ordinary lookups for one user or patient */
+        READS(8, 128, 5_000),
+        /** Anything that changes data */
+        WRITES(4, 128, 5_000),
+        /** Whole-table reads, trends, streamed exports and batches */
+        ANALYTICS(2, 16, 10_000);
+        
+        final int threads;
+        final int queueLimit;
+        final long timeoutMs;
+        
+        Category(int threads, int queueLimit, long timeoutMs) {
+            String prefix = "ths.bulkhead." + name().toLowerCase() + ".";
+            this.threads = Math.max(1, Integer.getInteger(prefix + "threads", threads));
+            this.queueLimit = Math.max(0, Integer.getInteger(prefix + "queue", queueLimit));
+            this.timeoutMs = Long.getLong(prefix + "timeoutMs", timeoutMs);
+        }
+    }
+    
+    private static final Set<String> AUTH_TYPES = Set.of(
+        "LOGIN", "SIGNUP", "RESET_PASSWORD", "PING", "METRICS", "CANCEL_STREAM");
+    private static final Set<String> ANALYTICS_TYPES = Set.of(
+        "GET_ALL_UNAVAILABILITIES", "GET_USERS", "GET_VITALS_TREND", "FIND_AVAILABLE_SLOTS",
+        "STREAM_APPOINTMENTS", "STREAM_VITALS", BatchEnvelope.REQUEST_TYPE);
+    private static final long MIN_RETRY_AFTER_MS = 50L;
+    /** Service time assumed for the retry hint until one has been measured */
+    private static final double ASSUMED_SERVICE_MS = 20.0;
+    
+    private final Map<Category, Bulkhead> bulkheads = new EnumMap<>(Category.class);
+    
+    public RequestBulkheads() {
+        for (Category category : Category.values()) {
+            bulkheads.put(category, new Bulkhead(category));
+        }
+    }
+    
+    public static Category categoryOf(String requestType) {
+        if (requestType == null || AUTH_TYPES.contains(requestType)) {
+            return Category.AUTH;
+        }
+        if (ANALYTICS_TYPES.contains(requestType)) {
+            return Category.ANALYTICS;
+        }
+        return BatchEnvelope.isReadOnly(requestType) || requestType.equals("SUBSCRIBE")
+               || requestType.equals("UNSUBSCRIBE") ? Category.READS : Category.WRITES;
+    }
+    
+    /**
+     * Run task on the request's category pool, or hand a "Server busy" response
+     * to onRejected if the category is saturated (never both)
+     */
+    public void execute(BaseRequest request, Runnable task, Consumer<BaseResponse> onRejected) {
+        bulkheads.get(categoryOf(request.getRequestType())).execute(request, task, onRejected);
+    }
+    
+    /**
+     * One map per category ("name", "threads", "active", "queued", "queueLimit",
+     * "rejected", "timedOut"), for the METRICS response
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        bulkheads.values().forEach(bulkhead -> stats.add(bulkhead.stats()));
+        return stats;
+    }
+    
+    public void shutdown() {
+        bulkheads.values().forEach(bulkhead -> bulkhead.pool.shutdown());
+    }
+    
+    private static final class Bulkhead {
+        private final Category category;
+        private final ThreadPoolExecutor pool;
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private volatile double serviceMs = 0;
+        
+        Bulkhead(Category category) {
+            this.category = category;
+            AtomicInteger threadCount = new AtomicInteger();
+            BlockingQueue<Runnable> queue = category.queueLimit > 0
+                    ? new ArrayBlockingQueue<>(category.queueLimit) : new SynchronousQueue<>();
+            String threadPrefix = "ths-" + category.name().toLowerCase() + "-";
+            this.pool = new ThreadPoolExecutor(category.threads, category.threads, 0L, TimeUnit.MILLISECONDS,
+                                               queue, r -> {
+                Thread t = new Thread(r, threadPrefix + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        
+        void execute(BaseRequest request, Runnable task, Consumer<BaseResponse> onRejected) {
+            long queuedAt = System.nanoTime();
+            try {
+                pool.execute(() -> {
+                    long started = System.nanoTime();
+                    if (TimeUnit.NANOSECONDS.toMillis(started - queuedAt) > category.timeoutMs) {
+                        timedOut.increment();
+                        onRejected.accept(busy(request, "waited too long"));
+                        return;
+                    }
+                    try {
+                        task.run();
+                    } finally {
+                        double ms = (System.nanoTime() - started) / 1_000_000.0;
+                        serviceMs = serviceMs == 0 ? ms : 0.9 * serviceMs + 0.1 * ms;
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                onRejected.accept(busy(request, pool.isShutdown() ? "shutting down" : "queue full"));
+            }
+        }
+        
+        private BaseResponse busy(BaseRequest request, String reason) {
+            long retryAfterMs = retryAfterMs();
+            Log.warn("⏳ {} bulkhead {}, turned away {} (retry after {}ms)", category, reason,
+                     request.getRequestType(), retryAfterMs);
+            GenericResponse response = new GenericResponse(request.getRequestId(),
+                                                           request.getRequestType() + "_RESPONSE", false,
+                                                           "Server busy, retry after " + retryAfterMs + "ms");
+            response.addData("retryAfterMs", retryAfterMs);
+            response.addData("bulkhead", category.name());
+            return response;
+        }
+        
+        /**
+         * Time for the queue ahead to drain at the recent service time
+         */
+        private long retryAfterMs() {
+            double perTask = serviceMs > 0 ? serviceMs : ASSUMED_SERVICE_MS;
+            long estimate = (long) (perTask * (pool.getQueue().size() + 1) / category.threads);
+            return Math.min(Math.max(estimate, MIN_RETRY_AFTER_MS), Math.max(category.timeoutMs, MIN_RETRY_AFTER_MS));
+        }
+        
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", category.name());
+            stats.put("threads", category.threads);
+            stats.put("active", pool.getActiveCount());
+            stats.put("queued", pool.getQueue().size());
+            stats.put("queueLimit", category.queueLimit);
+            stats.put("rejected", rejected.sum());
+            stats.put("timedOut", timedOut.sum());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,1801 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.*;
+import com.mycompany.coit20258assignment2.common.*;
+import com.mycompany.coit20258assignment2.server.dao.*;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Dispatches client requests to their handlers
+ * Server Lead responsibility: Process client requests and build responses
+ *
+ * Shared by every connection regardless of how it is served (blocking
+ * ClientHandler threads or the NIO front end); the DAOs it holds are stateless.
+ */
+public class RequestDispatcher {
+    /** Sub-requests of one BATCH that may run at the same time; each borrows its own pooled connection */
+    private static final int BATCH_PARALLELISM = Integer.getInteger("ths.batch.parallelism", 8);
+    /** GET_CHANGES watermarks are moved back this far; rows re-sent in the overlap are harmless upserts */
+    private static final int CHANGES_OVERLAP_SECONDS = 2;
+    /** Requests slower than this are always logged, at WARN */
+    private static final long SLOW_REQUEST_MICROS = Long.getLong("ths.log.slowMs", 500L) * 1000L;
+    /** One successful, fast request in this many gets a "request" log event */
+    private static final int REQUEST_LOG_SAMPLE = Integer.getInteger("ths.log.requestSample", 1);
+    
+    // DAO instances
+    private final AuthDAO authDAO;
+    private final AppointmentDAO appointmentDAO;
+    private final PrescriptionDAO prescriptionDAO;
+    private final VitalSignsDAO vitalSignsDAO;
+    private final SlotFinder slotFinder;
+    private final VitalsAlertEngine alertEngine;
+    private final VitalsIngestQueue vitalsQueue;
+    private final VitalsSeriesCache vitalsCache;
+    
+    /** requestIds of streams being written, mapped to whether CANCEL_STREAM has asked them to stop */
+    private final Map<String, Boolean> activeStreams = new ConcurrentHashMap<>();
+    
+    private final ExecutorService batchExecutor = Executors.newFixedThreadPool(BATCH_PARALLELISM, r -> {
+        Thread t = new Thread(r, "ths-batch-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    /** Pools that connections run framed requests on, one per request category */
+    private final RequestBulkheads bulkheads = new RequestBulkheads();
+    /** Per-user rate limits and the adaptive concurrency limit, checked before every request */
+    private final AdmissionController admission = new AdmissionController();
+    
+    public RequestDispatcher() {
+        // Initialize DAOs
+        this.authDAO = new AuthDAO();
+        this.appointmentDAO = new AppointmentDAO();
+        this.prescriptionDAO = new PrescriptionDAO();
+        this.vitalSignsDAO = new VitalSignsDAO();
+        this.slotFinder = new SlotFinder(appointmentDAO, UnavailabilityIndex.getInstance());
+        this.alertEngine = new VitalsAlertEngine(this::doctorsOfPatient);
+        this.vitalsCache = new VitalsSeriesCache(vitalSignsDAO);
+        this.vitalsQueue = new VitalsIngestQueue(vitalSignsDAO, reading -> {
+            vitalsCache.onStored(reading);
+            alertEngine.onReading(reading);
+        });
+    }
+    
+    /**
+     * Route a decoded request to its handler and build the response to send back,
+     * or a "Server busy" response if AdmissionController turns it away
+     */
+    public BaseResponse processRequest(BaseRequest request, String clientId) {
+        BaseResponse refused = admission.admit(request, clientId);
+        if (refused != null) {
+            return refused;
+        }
+        long start = System.nanoTime();
+        try {
+            return timed(request, clientId);
+        } finally {
+            admission.done(request, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Dispatch a request that has been admitted; its latency and outcome are
+     * recorded in ServerMetrics under its type and logged as a "request" event
+     */
+    private BaseResponse timed(BaseRequest request, String clientId) {
+        ServerMetrics.Operation metrics = ServerMetrics.getInstance().request(request.getRequestType());
+        long start = metrics.start();
+        BaseResponse response = null;
+        try {
+            response = dispatch(request, clientId);
+            return response;
+        } finally {
+            boolean ok = response != null && response.isSuccess();
+            metrics.finish(start, ok);
+            logRequest(request, clientId, start, ok);
+        }
+    }
+    
+    /**
+     * One key=value event per request: failed and slow ones always, successful
+     * ones sampled (ths.log.requestSample) so a busy server is not flooded
+     */
+    private static void logRequest(BaseRequest request, String clientId, long startNanos, boolean ok) {
+        long micros = (System.nanoTime() - startNanos) / 1000L;
+        boolean slow = micros >= SLOW_REQUEST_MICROS;
+        Log.Level level = slow ? Log.Level.WARN : Log.Level.INFO;
+        if (!Log.isEnabled(level) || (ok && !slow && !Log.sampled(REQUEST_LOG_SAMPLE))) {
+            return;
+        }
+        Log.log(level, "request", "id", request.getRequestId(), "type", request.getRequestType(),
+                "user", request.getUserId(), "client", clientId, "ok", ok, "durationUs", micros);
+    }
+    
+    private BaseResponse dispatch(BaseRequest request, String clientId) {
+        Log.debug("📨 Processing request: {} from {}", request.getRequestType(), clientId);
+        
+        try {
+            BaseResponse response = null;
+            
+            switch (request.getRequestType()) {
+                case "LOGIN":
+                    response = handleLogin(request);
+                    break;
+                case "GET_CHANGES":
+                    response = handleGetChanges(request);
+                    break;
+                case "GET_APPOINTMENTS":
+                    response = handleGetAppointments(request);
+                    break;
+                case "CREATE_APPOINTMENT":
+                    response = handleCreateAppointment(request, clientId);
+                    break;
+                case "FIND_AVAILABLE_SLOTS":
+                    response = handleFindAvailableSlots(request);
+                    break;
+                case "UPDATE_APPOINTMENT":
+                    response = handleUpdateAppointment(request, clientId);
+                    break;
+                case "UPDATE_APPOINTMENT_STATUS":
+                    response = handleUpdateAppointmentStatus(request, clientId);
+                    break;
+                case "DELETE_APPOINTMENT":
+                    response = handleDeleteAppointment(request, clientId);
+                    break;
+                case "GET_PRESCRIPTIONS":
+                    response = handleGetPrescriptions(request);
+                    break;
+                case "CREATE_PRESCRIPTION":
+                    response = handleCreatePrescription(request, clientId);
+                    break;
+                case "UPDATE_PRESCRIPTION":
+                    response = handleUpdatePrescription(request, clientId);
+                    break;
+                case "UPDATE_PRESCRIPTION_STATUS":
+                    response = handleUpdatePrescriptionStatus(request, clientId);
+                    break;
+                case "REQUEST_REFILL":
+                    response = handleRequestRefill(request, clientId);
+                    break;
+                case "REFILL_PRESCRIPTION":
+                    response = handleRefillPrescription(request, clientId);
+                    break;
+                case "REJECT_PRESCRIPTION_REFILL":
+                    response = handleRejectPrescriptionRefill(request, clientId);
+                    break;
+                case "RECORD_VITALS":
+                    response = handleRecordVitals(request);
+                    break;
+                case "RECORD_VITALS_BATCH":
+                    response = handleRecordVitalsBatch(request);
+                    break;
+                case "GET_VITALS":
+                    response = handleGetVitals(request);
+                    break;
+                case "STREAM_APPOINTMENTS":
+                case "STREAM_VITALS":
+                    response = collectStream(request, clientId);
+                    break;
+                case "CANCEL_STREAM":
+                    response = handleCancelStream(request);
+                    break;
+                case "GET_VITALS_TREND":
+                    response = handleGetVitalsTrend(request);
+                    break;
+                case "GET_VITALS_ALERTS":
+                    response = handleGetVitalsAlerts(request);
+                    break;
+                case "GET_ALERT_RULES":
+                    response = handleGetAlertRules(request);
+                    break;
+                case "SET_ALERT_RULES":
+                    response = handleSetAlertRules(request);
+                    break;
+                case "CREATE_DIAGNOSIS":
+                    response = handleCreateDiagnosis(request);
+                    break;
+                case "CREATE_DIAGNOSIS_EXTENDED":
+                    response = handleCreateDiagnosisExtended(request);
+                    break;
+                case "GET_DIAGNOSES":
+                    response = handleGetDiagnoses(request);
+                    break;
+                case "CREATE_REFERRAL":
+                    response = handleCreateReferral(request);
+                    break;
+                case "GET_REFERRALS":
+                    response = handleGetReferrals(request);
+                    break;
+                case "CREATE_UNAVAILABILITY":
+                    response = handleCreateUnavailability(request);
+                    break;
+                case "GET_UNAVAILABILITIES":
+                    response = handleGetUnavailabilities(request);
+                    break;
+                case "GET_ALL_UNAVAILABILITIES":
+                    response = handleGetAllUnavailabilities(request);
+                    break;
+                case "DELETE_UNAVAILABILITY":
+                    response = handleDeleteUnavailability(request);
+                    break;
+                case "GET_USERS":
+                    response = handleGetUsers(request);
+                    break;
+                case "RESOLVE_USER_NAMES":
+                    response = handleResolveUserNames(request);
+                    break;
+                case "SIGNUP":
+                    response = handleSignup(request);
+                    break;
+                case "RESET_PASSWORD":
+                    response = handleResetPassword(request);
+                    break;
+                case "PING":
+                    response = handlePing(request);
+                    break;
+                case "METRICS":
+                    response = handleMetrics(request);
+                    break;
+                case "SUBSCRIBE":
+                case "UNSUBSCRIBE":
+                    // Needs a connection to push on; see processSubscription
+                    response = new GenericResponse(request.getRequestId(), request.getRequestType() + "_RESPONSE",
+                                                   false, "Change notifications need a framed connection");
+                    break;
+                case BatchEnvelope.REQUEST_TYPE:
+                    response = handleBatch(request, clientId);
+                    break;
+                default:
+                    response = new GenericResponse(request.getRequestId(), "UNKNOWN", false, 
+                                                 "Unknown request type: " + request.getRequestType());
+            }
+            
+            return response;
+            
+        } catch (Exception e) {
+            Log.error("❌ Error processing request: {}", e.getMessage());
+            e.printStackTrace();
+            return new GenericResponse(request.getRequestId(), "ERROR", false, 
+                                       "Server error: " + e.getMessage());
+        }
+    }
+    
+    private BaseResponse handleLogin(BaseRequest request) {
+        Log.debug("🔐 Processing login request");
+        
+        Map<String, Object> data = request.getData();
+        String username = (String) data.get("username");
+        String password = (String) data.get("password");
+        
+        Optional<User> userOpt = authDAO.authenticateUser(username, password);
+        
+        if (userOpt.isPresent()) {
+            User user = userOpt.get();
+            Log.info("✅ Login successful for: {}", username);
+            
+            GenericResponse response = new GenericResponse(
+                request.getRequestId(), 
+                "LOGIN_RESPONSE", 
+                true, 
+                "Login successful"
+            );
+            response.addData("userId", user.getId());
+            response.addData("username", user.getUsername());
+            response.addData("userType", user.getUserType().toString());
+            response.addData("fullName", user.getFullName());
+            response.addData("email", user.getEmail());
+            
+            // Add specialization for doctors
+            if (user instanceof Doctor) {
+                response.addData("specialization", ((Doctor) user).getSpecialization());
+            }
+            
+            return response;
+        } else {
+            Log.warn("❌ Login failed for: {}", username);
+            return new GenericResponse(
+                request.getRequestId(), 
+                "LOGIN_RESPONSE", 
+                false, 
+                "Invalid username or password"
+            );
+        }
+    }
+    
+    /**
+     * Handle SIGNUP request
+     */
+    private BaseResponse handleSignup(BaseRequest request) {
+        Log.debug("📝 Processing signup request");
+        
+        Map<String, Object> data = request.getData();
+        String name = (String) data.get("name");
+        String email = (String) data.get("email");
+        String username = (String) data.get("username");
+        String password = (String) data.get("password");
+        String userType = (String) data.get("userType"); // "PATIENT", "DOCTOR", etc.
+        String specialization = (String) data.get("specialization"); // for doctors
+        
+        // Validate required fields
+        if (name == null || name.trim().isEmpty() || 
+            email == null || email.trim().isEmpty() ||
+            username == null || username.trim().isEmpty() ||
+            password == null || password.isEmpty()) {
+            return new GenericResponse(
+                request.getRequestId(),
+                "SIGNUP_RESPONSE",
+                false,
+                "All fields are required"
+            );
+        }
+        
+        // Check if email or username already exists
+        if (authDAO.userExists(username, email)) {
+            return new GenericResponse(
+                request.getRequestId(),
+                "SIGNUP_RESPONSE",
+                false,
+                "Username or email already exists"
+            );
+        }
+        
+        // Create user ID
+        String userId = generateUserId(userType);
+        
+        // Create appropriate user object
+        User newUser;
+        if ("DOCTOR".equals(userType)) {
+            newUser = new Doctor(userId, name, email, username, password, specialization);
+        } else if ("ADMINISTRATOR".equals(userType)) {
+            newUser = new Administrator(userId, name, email, username, password);
+        } else {
+            // Default to PATIENT
+            newUser = new Patient(userId, name, email, username, password);
+            userType = "PATIENT";
+        }
+        
+        // Create user in database
+        boolean success = authDAO.createUser(newUser, userType);
+        
+        if (success) {
+            Log.info("✅ Account created successfully: {} ({})", username, userId);
+            UserDirectory.getInstance().userCreated(newUser, userType);
+            return new GenericResponse(
+                request.getRequestId(),
+                "SIGNUP_RESPONSE",
+                true,
+                "Account created successfully. Please login with your credentials."
+            );
+        } else {
+            Log.warn("❌ Failed to create account: {}", username);
+            return new GenericResponse(
+                request.getRequestId(),
+                "SIGNUP_RESPONSE",
+                false,
+                "Failed to create account. Please try again."
+            );
+        }
+    }
+    
+    /**
+     * Generate unique user ID based on type
+     */
+    private String generateUserId(String userType) {
+        String prefix;
+        switch (userType) {
+            case "DOCTOR" -> prefix = "doc";
+            case "ADMINISTRATOR" -> prefix = "adm";
+            default -> prefix = "pat";
+        }
+        return prefix + String.format("%03d", (int)(Math.random() * 1000));
+    }
+    
+    /**
+     * Handle password reset request
+     */
+    private BaseResponse handleResetPassword(BaseRequest request) {
+        Log.debug("🔑 Handling password reset");
+        
+        try {
+            if (!(request instanceof GenericRequest)) {
+                return new GenericResponse(request.getRequestId(), "RESET_PASSWORD_RESPONSE", 
+                    false, "Invalid request format");
+            }
+            
+            GenericRequest genReq = (GenericRequest) request;
+            Map<String, Object> data = genReq.getData();
+            
+            String identifier = (String) data.get("identifier"); // username or email
+            String newPassword = "reset123"; // Temporary default password
+            
+            if (identifier == null || identifier.trim().isEmpty()) {
+                return new GenericResponse(request.getRequestId(), "RESET_PASSWORD_RESPONSE", 
+                    false, "Username or email is required");
+            }
+            
+            AuthDAO authDAO = new AuthDAO();
+            boolean success = authDAO.resetPassword(identifier.trim(), newPassword);
+            
+            if (success) {
+                UserDirectory.getInstance().userUpdated(identifier.trim());
+                return new GenericResponse(request.getRequestId(), "RESET_PASSWORD_RESPONSE", 
+                    true, "Password reset successfully. Temporary password: reset123");
+            } else {
+                return new GenericResponse(request.getRequestId(), "RESET_PASSWORD_RESPONSE", 
+                    false, "User not found");
+            }
+            
+        } catch (Exception e) {
+            Log.error("Error resetting password: {}", e.getMessage());
+            e.printStackTrace();
+            return new GenericResponse(request.getRequestId(), "RESET_PASSWORD_RESPONSE", 
+                false, "Error resetting password: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Rows of one entity changed since the client's watermark, plus ids deleted
+     * since its tombstone cursor. With no watermark, or a cursor the ChangeLog
+     * can no longer honour, the full list is returned with fullReload set.
+     */
+    private BaseResponse handleGetChanges(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        String entity = (String) data.get("entity");
+        String userId = request.getUserId();
+        String userType = (String) data.get("userType");
+        LocalDateTime since = (LocalDateTime) data.get("since");
+        String cursor = (String) data.get("deleteCursor");
+        Log.debug("🔄 Getting changes to {} since {}", entity, since);
+        
+        // Take both watermarks before reading so anything written meanwhile is picked up next time
+        String nextCursor = ChangeLog.getInstance().currentCursor();
+        LocalDateTime now = DatabaseManager.getInstance().getDatabaseTime();
+        if (now == null) {
+            return new GenericResponse(request.getRequestId(), "CHANGES_RESPONSE", false, "Database unavailable");
+        }
+        
+        List<String> deleted = since == null ? null : ChangeLog.getInstance().deletedSince(entity, cursor);
+        boolean fullReload = deleted == null;
+        String patientId = "PATIENT".equals(userType) ? userId : null;
+        
+        List<?> upserts;
+        if ("appointments".equals(entity)) {
+            String doctorId = "DOCTOR".equals(userType) ? userId : null;
+            if (fullReload) {
+                upserts = patientId != null ? appointmentDAO.getAppointmentsByPatient(patientId)
+                        : doctorId != null ? appointmentDAO.getAppointmentsByDoctor(doctorId)
+                        : appointmentDAO.getAllAppointments();
+            } else {
+                upserts = appointmentDAO.getAppointmentsChangedSince(patientId, doctorId, since);
+            }
+        } else if ("prescriptions".equals(entity)) {
+            String doctorId = patientId == null ? userId : null;
+            if (fullReload) {
+                upserts = patientId != null ? prescriptionDAO.getPrescriptionsByPatient(patientId)
+                        : prescriptionDAO.getPrescriptionsByDoctor(doctorId);
+            } else {
+                upserts = prescriptionDAO.getPrescriptionsChangedSince(patientId, doctorId, since);
+            }
+        } else if ("vitals".equals(entity)) {
+            String vitalsPatientId = (String) data.get("patientId");
+            upserts = fullReload ? vitalsCache.get(vitalsPatientId)
+                                 : vitalSignsDAO.getVitalSignsRecordedSince(vitalsPatientId, since);
+        } else {
+            return new GenericResponse(request.getRequestId(), "CHANGES_RESPONSE", false,
+                                       "Unknown entity: " + entity);
+        }
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(),
+            "CHANGES_RESPONSE",
+            true,
+            fullReload ? "Full reload" : "Changes retrieved"
+        );
+        response.addData("entity", entity);
+        response.addData("fullReload", fullReload);
+        // a VitalsSeries goes out as is, in its columnar wire form
+        response.addData("upserts", upserts instanceof VitalsSeries ? upserts : new ArrayList<>(upserts));
+        response.addData("deleted", fullReload ? new ArrayList<String>() : deleted);
+        // updated_at has one-second resolution; overlap so same-second writes are not skipped
+        response.addData("watermark", now.minusSeconds(CHANGES_OVERLAP_SECONDS));
+        response.addData("deleteCursor", nextCursor);
+        
+        return response;
+    }
+    
+    private BaseResponse handleGetAppointments(BaseRequest request) {
+        Log.debug("📅 Getting appointments");
+        
+        String userId = request.getUserId();
+        String userType = (String) request.getData().get("userType");
+        
+        List<Appointment> appointments;
+        KeysetPage page = pageOf(request, AppointmentDAO.PAGE_KEYS);
+        
+        if (page != null) {
+            appointments = appointmentDAO.getAppointmentsPage("PATIENT".equals(userType) ? userId : null,
+                                                              "DOCTOR".equals(userType) ? userId : null, page);
+        } else if ("PATIENT".equals(userType)) {
+            appointments = appointmentDAO.getAppointmentsByPatient(userId);
+        } else if ("DOCTOR".equals(userType)) {
+            appointments = appointmentDAO.getAppointmentsByDoctor(userId);
+        } else {
+            appointments = appointmentDAO.getAllAppointments();
+        }
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(), 
+            "APPOINTMENTS_RESPONSE", 
+            true, 
+            "Appointments retrieved"
+        );
+        addPageInfo(response, page, appointments, a -> List.of(a.getDate(), a.getTime(), a.getId()));
+        response.addData("appointments", appointments);
+        response.addData("count", appointments.size());
+        
+        return response;
+    }
+    
+    private BaseResponse handleCreateAppointment(BaseRequest request, String clientId) {
+        Log.debug("➕ Creating appointment");
+        
+        Map<String, Object> data = request.getData();
+        
+        String doctorId = (String) data.get("doctorId");
+        LocalDate date = LocalDate.parse((String) data.get("date"));
+        LocalTime time = LocalTime.parse((String) data.get("time"));
+        
+        // Check if doctor is available
+        Optional<UnavailabilityIndex.Window> conflict =
+            UnavailabilityIndex.getInstance().findConflict(doctorId, date, time);
+        if (conflict.isPresent()) {
+            String reason = conflict.get().getReason();
+            if (conflict.get().isAllDay()) {
+                Log.warn("❌ Cannot create appointment: Doctor is unavailable (all day) - {}", reason);
+                return new GenericResponse(
+                    request.getRequestId(),
+                    "CREATE_APPOINTMENT_RESPONSE",
+                    false,
+                    "Cannot book: Doctor is unavailable on " + date + " (" + reason + ")"
+                );
+            }
+            Log.warn("❌ Cannot create appointment: Doctor is unavailable during time slot - {}", reason);
+            return new GenericResponse(
+                request.getRequestId(),
+                "CREATE_APPOINTMENT_RESPONSE",
+                false,
+                "Cannot book: Doctor is unavailable at " + time + " (" + reason + ")"
+            );
+        }
+        
+        // Doctor is available, proceed with creating appointment
+        Appointment appointment = new Appointment(
+            (String) data.get("id"),
+            (String) data.get("patientId"),
+            doctorId,
+            date,
+            time,
+            AppointmentStatus.valueOf((String) data.get("status"))
+        );
+        
+        boolean success = appointmentDAO.createAppointment(appointment);
+        if (success) {
+            ChangeNotifier.getInstance().publish("appointments", appointment.getId(), "created",
+                    appointment.getStatus().name(), clientId, appointment.getPatientId(), doctorId);
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "CREATE_APPOINTMENT_RESPONSE", 
+            success, 
+            success ? "Appointment created successfully" : "Failed to create appointment"
+        );
+    }
+    
+    /**
+     * Next free slots for one doctor, or for every doctor (optionally of one
+     * specialization), between fromDate and toDate
+     */
+    private BaseResponse handleFindAvailableSlots(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        String doctorId = (String) data.get("doctorId");
+        String specialization = (String) data.get("specialization");
+        LocalDate fromDate = data.get("fromDate") != null ? LocalDate.parse((String) data.get("fromDate")) : LocalDate.now();
+        LocalDate toDate = data.get("toDate") != null ? LocalDate.parse((String) data.get("toDate")) : fromDate.plusDays(13);
+        int limit = data.get("limit") != null ? (Integer) data.get("limit") : 10;
+        Log.debug("🔎 Finding available slots: {} {} to {}", (doctorId != null ? doctorId : specialization),
+                  fromDate, toDate);
+        
+        java.util.LinkedHashMap<String, String> doctorNames = new java.util.LinkedHashMap<>();
+        if (doctorId != null) {
+            doctorNames.put(doctorId, UserDirectory.getInstance().findById(doctorId)
+                    .map(u -> (String) u.get("name")).orElse(doctorId));
+        } else {
+            for (Map<String, Object> doctor : UserDirectory.getInstance().findDoctors(specialization)) {
+                doctorNames.put((String) doctor.get("id"), (String) doctor.get("name"));
+            }
+        }
+        
+        List<Map<String, Object>> slots = slotFinder.findSlots(doctorNames, fromDate, toDate, limit, LocalDateTime.now());
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(),
+            "AVAILABLE_SLOTS_RESPONSE",
+            true,
+            slots.size() + " available slots"
+        );
+        response.addData("slots", new ArrayList<>(slots));
+        response.addData("count", slots.size());
+        
+        return response;
+    }
+    
+    private BaseResponse handleUpdateAppointment(BaseRequest request, String clientId) {
+        Map<String, Object> data = request.getData();
+        String appointmentId = (String) data.get("appointmentId");
+        LocalDate newDate = LocalDate.parse((String) data.get("date"));
+        LocalTime newTime = LocalTime.parse((String) data.get("time"));
+        String statusStr = (String) data.get("status");
+        
+        Log.debug("🔄 Updating appointment (reschedule)", "appointmentId", appointmentId, "newDate", newDate,
+                  "newTime", newTime, "newStatus", statusStr);
+        
+        // First, get the appointment details to retrieve the doctor ID
+        Optional<Appointment> appointmentOpt = appointmentDAO.getAppointmentById(appointmentId);
+        if (appointmentOpt.isEmpty()) {
+            return new GenericResponse(
+                request.getRequestId(),
+                "UPDATE_APPOINTMENT_RESPONSE",
+                false,
+                "Appointment not found: " + appointmentId
+            );
+        }
+        
+        Appointment appointment = appointmentOpt.get();
+        String doctorId = appointment.getDoctorId();
+        
+        // Check if doctor is available at the new date/time
+        Optional<UnavailabilityIndex.Window> conflict =
+            UnavailabilityIndex.getInstance().findConflict(doctorId, newDate, newTime);
+        if (conflict.isPresent()) {
+            String reason = conflict.get().getReason();
+            if (conflict.get().isAllDay()) {
+                Log.warn("❌ Cannot reschedule appointment: Doctor is unavailable (all day) - {}", reason);
+                return new GenericResponse(
+                    request.getRequestId(),
+                    "UPDATE_APPOINTMENT_RESPONSE",
+                    false,
+                    "Cannot reschedule: Doctor is unavailable on " + newDate + " (" + reason + ")"
+                );
+            }
+            Log.warn("❌ Cannot reschedule appointment: Doctor is unavailable during time slot - {}", reason);
+            return new GenericResponse(
+                request.getRequestId(),
+                "UPDATE_APPOINTMENT_RESPONSE",
+                false,
+                "Cannot reschedule: Doctor is unavailable at " + newTime + " (" + reason + ")"
+            );
+        }
+        
+        // Doctor is available, proceed with updating appointment
+        boolean success = appointmentDAO.updateAppointment(
+            appointmentId, 
+            newDate, 
+            newTime, 
+            AppointmentStatus.valueOf(statusStr)
+        );
+        
+        if (success) {
+            Log.debug("✅ Appointment rescheduled successfully");
+            ChangeNotifier.getInstance().publish("appointments", appointmentId, "updated", statusStr, clientId,
+                                                 appointment.getPatientId(), doctorId);
+        } else {
+            Log.warn("❌ Failed to reschedule appointment");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "UPDATE_APPOINTMENT_RESPONSE", 
+            success, 
+            success ? "Appointment updated successfully" : "Failed to update appointment"
+        );
+    }
+    
+    private BaseResponse handleUpdateAppointmentStatus(BaseRequest request, String clientId) {
+        Map<String, Object> data = request.getData();
+        String appointmentId = (String) data.get("appointmentId");
+        String statusStr = (String) data.get("status");
+        
+        Log.debug("🔄 Updating appointment status only", "appointmentId", appointmentId, "newStatus", statusStr);
+        
+        boolean success = appointmentDAO.updateAppointmentStatus(
+            appointmentId, 
+            AppointmentStatus.valueOf(statusStr)
+        );
+        
+        if (success) {
+            Log.debug("✅ Appointment status updated successfully");
+            publishAppointmentChange(appointmentId, "updated", clientId);
+        } else {
+            Log.warn("❌ Failed to update appointment status");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "UPDATE_APPOINTMENT_STATUS_RESPONSE", 
+            success, 
+            success ? "Appointment status updated successfully" : "Failed to update appointment status"
+        );
+    }
+    
+    private BaseResponse handleDeleteAppointment(BaseRequest request, String clientId) {
+        Log.debug("🗑️ Deleting appointment");
+        
+        String appointmentId = (String) request.getData().get("appointmentId");
+        // Who to tell has to be read before the row is gone
+        Optional<Appointment> deleted = ChangeNotifier.getInstance().hasSubscribers()
+                ? appointmentDAO.getAppointmentById(appointmentId) : Optional.empty();
+        boolean success = appointmentDAO.deleteAppointment(appointmentId);
+        if (success) {
+            ChangeLog.getInstance().recordDeletion("appointments", appointmentId);
+            deleted.ifPresent(a -> ChangeNotifier.getInstance().publish("appointments", appointmentId, "deleted",
+                    null, clientId, a.getPatientId(), a.getDoctorId()));
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "DELETE_APPOINTMENT_RESPONSE", 
+            success, 
+            success ? "Appointment deleted successfully" : "Failed to delete appointment"
+        );
+    }
+    
+    /**
+     * Push an appointment update to its patient and doctor, reading the row
+     * back for who they are (skipped when nobody is subscribed)
+     */
+    private void publishAppointmentChange(String appointmentId, String action, String clientId) {
+        ChangeNotifier notifier = ChangeNotifier.getInstance();
+        if (notifier.hasSubscribers()) {
+            appointmentDAO.getAppointmentById(appointmentId).ifPresent(a -> notifier.publish(
+                    "appointments", appointmentId, action, a.getStatus().name(), clientId,
+                    a.getPatientId(), a.getDoctorId()));
+        }
+    }
+    
+    /**
+     * Push a prescription update (status change, refill request or decision)
+     * to its patient and doctor
+     */
+    private void publishPrescriptionChange(String prescriptionId, String clientId) {
+        ChangeNotifier notifier = ChangeNotifier.getInstance();
+        if (notifier.hasSubscribers()) {
+            prescriptionDAO.getPrescriptionById(prescriptionId).ifPresent(p -> notifier.publish(
+                    "prescriptions", prescriptionId, "updated", p.getStatus().name(), clientId,
+                    p.getPatientId(), p.getDoctorId()));
+        }
+    }
+    
+    private BaseResponse handleGetPrescriptions(BaseRequest request) {
+        Log.debug("💊 Getting prescriptions");
+        
+        String userId = request.getUserId();
+        String userType = (String) request.getData().get("userType");
+        
+        List<Prescription> prescriptions;
+        KeysetPage page = pageOf(request, PrescriptionDAO.PAGE_KEYS);
+        
+        if (page != null) {
+            prescriptions = "PATIENT".equals(userType)
+                    ? prescriptionDAO.getPrescriptionsPage(userId, null, page)
+                    : prescriptionDAO.getPrescriptionsPage(null, userId, page);
+        } else if ("PATIENT".equals(userType)) {
+            prescriptions = prescriptionDAO.getPrescriptionsByPatient(userId);
+        } else {
+            prescriptions = prescriptionDAO.getPrescriptionsByDoctor(userId);
+        }
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(), 
+            "PRESCRIPTIONS_RESPONSE", 
+            true, 
+            "Prescriptions retrieved"
+        );
+        addPageInfo(response, page, prescriptions, p -> List.of(p.getDate(), p.getId()));
+        response.addData("prescriptions", prescriptions);
+        response.addData("count", prescriptions.size());
+        
+        return response;
+    }
+    
+    private BaseResponse handleCreatePrescription(BaseRequest request, String clientId) {
+        Log.debug("➕ Creating prescription");
+        
+        Map<String, Object> data = request.getData();
+        
+        Prescription prescription = new Prescription(
+            (String) data.get("id"),
+            (String) data.get("patientId"),
+            (String) data.get("doctorId"),
+            (String) data.get("medication"),
+            (String) data.get("dosage"),
+            LocalDate.parse((String) data.get("date")),
+            PrescriptionStatus.valueOf((String) data.get("status"))
+        );
+        
+        boolean success = prescriptionDAO.createPrescription(prescription);
+        if (success) {
+            ChangeNotifier.getInstance().publish("prescriptions", prescription.getId(), "created",
+                    prescription.getStatus().name(), clientId, prescription.getPatientId(), prescription.getDoctorId());
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "CREATE_PRESCRIPTION_RESPONSE", 
+            success, 
+            success ? "Prescription created successfully" : "Failed to create prescription"
+        );
+    }
+    
+    private BaseResponse handleUpdatePrescription(BaseRequest request, String clientId) {
+        Log.debug("Updating prescription");
+        
+        Map<String, Object> data = request.getData();
+        String prescriptionId = (String) data.get("prescriptionId");
+        String statusStr = (String) data.get("status");
+        
+        boolean success = prescriptionDAO.updatePrescriptionStatus(prescriptionId, PrescriptionStatus.valueOf(statusStr));
+        if (success) {
+            publishPrescriptionChange(prescriptionId, clientId);
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "UPDATE_PRESCRIPTION_RESPONSE", 
+            success, 
+            success ? "Prescription updated successfully" : "Failed to update prescription"
+        );
+    }
+    
+    private BaseResponse handleUpdatePrescriptionStatus(BaseRequest request, String clientId) {
+        Map<String, Object> data = request.getData();
+        String prescriptionId = (String) data.get("prescriptionId");
+        String statusStr = (String) data.get("status");
+        
+        Log.debug("Updating prescription status", "prescriptionId", prescriptionId, "newStatus", statusStr);
+        
+        boolean success = prescriptionDAO.updatePrescriptionStatus(prescriptionId, PrescriptionStatus.valueOf(statusStr));
+        
+        if (success) {
+            Log.debug("Prescription status updated successfully");
+            publishPrescriptionChange(prescriptionId, clientId);
+        } else {
+            Log.warn("Failed to update prescription status");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "UPDATE_PRESCRIPTION_STATUS_RESPONSE", 
+            success, 
+            success ? "Prescription status updated successfully" : "Failed to update prescription status"
+        );
+    }
+    
+    private BaseResponse handleRequestRefill(BaseRequest request, String clientId) {
+        Log.debug("Requesting prescription refill");
+        
+        String prescriptionId = (String) request.getData().get("prescriptionId");
+        boolean success = prescriptionDAO.requestRefill(prescriptionId);
+        if (success) {
+            publishPrescriptionChange(prescriptionId, clientId);
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "REQUEST_REFILL_RESPONSE", 
+            success, 
+            success ? "Refill requested successfully" : "Failed to request refill (no refills remaining)"
+        );
+    }
+    
+    private BaseResponse handleRefillPrescription(BaseRequest request, String clientId) {
+        String prescriptionId = (String) request.getData().get("prescriptionId");
+        
+        Log.debug("Approving prescription refill", "prescriptionId", prescriptionId);
+        
+        boolean success = prescriptionDAO.approveRefill(prescriptionId);
+        
+        if (success) {
+            Log.debug("Prescription refilled successfully");
+            publishPrescriptionChange(prescriptionId, clientId);
+        } else {
+            Log.warn("Failed to refill prescription");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "REFILL_PRESCRIPTION_RESPONSE", 
+            success, 
+            success ? "Prescription refilled successfully" : "Failed to refill prescription"
+        );
+    }
+    
+    private BaseResponse handleRejectPrescriptionRefill(BaseRequest request, String clientId) {
+        String prescriptionId = (String) request.getData().get("prescriptionId");
+        
+        Log.debug("Rejecting prescription refill", "prescriptionId", prescriptionId);
+        
+        boolean success = prescriptionDAO.rejectRefill(prescriptionId);
+        
+        if (success) {
+            Log.debug("Prescription refill rejected successfully");
+            publishPrescriptionChange(prescriptionId, clientId);
+        } else {
+            Log.warn("Failed to reject prescription refill");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "REJECT_PRESCRIPTION_REFILL_RESPONSE", 
+            success, 
+            success ? "Prescription refill rejected successfully" : "Failed to reject prescription refill"
+        );
+    }
+    
+    private BaseResponse handleRecordVitals(BaseRequest request) {
+        Log.debug("📊 Recording vital signs");
+        
+        Map<String, Object> data = request.getData();
+        
+        VitalSigns vitals = new VitalSigns(
+            (String) data.get("id"),
+            (String) data.get("patientId"),
+            (Integer) data.get("pulse"),
+            (Double) data.get("temperature"),
+            (Integer) data.get("respiration"),
+            (String) data.get("bloodPressure"),
+            LocalDateTime.now()
+        );
+        
+        // Written with whatever other readings arrive at the same time
+        CompletableFuture<boolean[]> written = vitalsQueue.submit(List.of(vitals));
+        if (written == null) {
+            return ingestBusy(request, "RECORD_VITALS_RESPONSE");
+        }
+        boolean success = written.join()[0];
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "RECORD_VITALS_RESPONSE", 
+            success, 
+            success ? "Vital signs recorded successfully" : "Failed to record vital signs"
+        );
+    }
+    
+    /**
+     * Many readings at once (e.g. a monitoring device's backlog): "vitals" is a
+     * list of VitalSigns, each keeping its own timestamp. Answered once all are
+     * written with "stored" and the ids that could not be ("failedIds"); when
+     * the ingestion queue is full nothing is stored and "retryAfterMs" says
+     * when to send the request again.
+     */
+    @SuppressWarnings("unchecked")
+    private BaseResponse handleRecordVitalsBatch(BaseRequest request) {
+        Object vitalsObj = request.getData().get("vitals");
+        if (!(vitalsObj instanceof List)) {
+            return new GenericResponse(request.getRequestId(), "RECORD_VITALS_BATCH_RESPONSE", false,
+                                       "vitals is required");
+        }
+        List<VitalSigns> readings = new ArrayList<>();
+        for (VitalSigns v : (List<VitalSigns>) vitalsObj) {
+            readings.add(v.getTimestamp() != null ? v : new VitalSigns(v.getId(), v.getPatientId(), v.getPulse(),
+                    v.getTemperature(), v.getRespiration(), v.getBloodPressure(), LocalDateTime.now()));
+        }
+        Log.debug("📊 Recording {} vital signs readings", readings.size());
+        
+        CompletableFuture<boolean[]> written = vitalsQueue.submit(readings);
+        if (written == null) {
+            return ingestBusy(request, "RECORD_VITALS_BATCH_RESPONSE");
+        }
+        boolean[] stored = written.join();
+        List<String> failedIds = new ArrayList<>();
+        for (int i = 0; i < stored.length; i++) {
+            if (!stored[i]) {
+                failedIds.add(readings.get(i).getId());
+            }
+        }
+        
+        int count = stored.length - failedIds.size();
+        GenericResponse response = new GenericResponse(request.getRequestId(), "RECORD_VITALS_BATCH_RESPONSE",
+                                                       failedIds.isEmpty(),
+                                                       "Recorded " + count + " of " + stored.length + " readings");
+        response.addData("stored", count);
+        response.addData("failedIds", failedIds);
+        return response;
+    }
+    
+    /**
+     * The ingestion queue is full: store nothing and tell the client when to retry
+     */
+    private BaseResponse ingestBusy(BaseRequest request, String responseType) {
+        long retryAfterMs = vitalsQueue.retryAfterMs();
+        Log.warn("⏳ Vitals queue full ({} waiting), retry after {}ms", vitalsQueue.getBacklog(), retryAfterMs);
+        GenericResponse response = new GenericResponse(request.getRequestId(), responseType, false,
+                                                       "Server busy, retry after " + retryAfterMs + "ms");
+        response.addData("stored", 0);
+        response.addData("retryAfterMs", retryAfterMs);
+        return response;
+    }
+    
+    private BaseResponse handleGetVitals(BaseRequest request) {
+        Log.debug("📊 Getting vital signs");
+        
+        String patientId = (String) request.getData().get("patientId");
+        KeysetPage page = pageOf(request, VitalSignsDAO.PAGE_KEYS);
+        List<VitalSigns> vitals = page != null ? vitalSignsDAO.getVitalSignsPage(patientId, page)
+                                               : vitalsCache.get(patientId);
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(), 
+            "VITALS_RESPONSE", 
+            true, 
+            "Vital signs retrieved"
+        );
+        addPageInfo(response, page, vitals, v -> List.of(v.getTimestamp().toLocalDate(),
+                                                         v.getTimestamp().toLocalTime(), v.getId()));
+        response.addData("vitals", vitals);
+        response.addData("count", vitals.size());
+        
+        return response;
+    }
+    
+    /**
+     * Trend of a patient's vital signs over the last "daysBack" days, read from
+     * the rollups. "granularity" (HOUR, DAY or WEEK) defaults to the finest that
+     * keeps the window to a few hundred buckets. Besides the "analysis" text the
+     * response carries "series": for each metric, its buckets oldest first, each
+     * with "start", "min", "max", "avg" and "count".
+     */
+    private BaseResponse handleGetVitalsTrend(BaseRequest request) {
+        Log.debug("📈 Analyzing vital signs trend");
+        
+        String patientId = (String) request.getData().get("patientId");
+        int daysBack = (Integer) request.getData().getOrDefault("daysBack", 30);
+        Object granularityObj = request.getData().get("granularity");
+        VitalsRollup.Granularity granularity = granularityObj == null
+            ? VitalsRollup.Granularity.forWindow(daysBack)
+            : VitalsRollup.Granularity.valueOf(granularityObj.toString().toUpperCase());
+        LocalDateTime from = granularity.bucketStart(LocalDateTime.now().minusDays(daysBack));
+        
+        List<VitalsRollup> rollups = vitalSignsDAO.getVitalsRollups(patientId, granularity, from);
+        Map<String, List<Map<String, Object>>> series = new LinkedHashMap<>();
+        for (String metric : VitalsRollup.METRICS) {
+            series.put(metric, new ArrayList<>());
+        }
+        for (VitalsRollup rollup : rollups) {
+            series.computeIfAbsent(rollup.getMetric(), m -> new ArrayList<>()).add(rollup.toMap());
+        }
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(), 
+            "VITALS_TREND_RESPONSE", 
+            true, 
+            "Vital signs trend analysis complete"
+        );
+        response.addData("analysis", VitalSignsDAO.describeTrend(daysBack, rollups));
+        response.addData("granularity", granularity.name());
+        response.addData("from", from);
+        response.addData("series", series);
+        
+        return response;
+    }
+    
+    /**
+     * Recent alerts the VitalsAlertEngine raised for a patient, newest first
+     */
+    private BaseResponse handleGetVitalsAlerts(BaseRequest request) {
+        String patientId = (String) request.getData().get("patientId");
+        List<Map<String, Object>> alerts = alertEngine.getAlerts(patientId);
+        
+        GenericResponse response = new GenericResponse(request.getRequestId(), "VITALS_ALERTS_RESPONSE", true,
+                                                       alerts.size() + " alerts");
+        response.addData("alerts", new ArrayList<>(alerts));
+        response.addData("count", alerts.size());
+        return response;
+    }
+    
+    private BaseResponse handleGetAlertRules(BaseRequest request) {
+        String patientId = (String) request.getData().get("patientId");
+        GenericResponse response = new GenericResponse(request.getRequestId(), "ALERT_RULES_RESPONSE", true,
+                                                       "Alert rules retrieved");
+        response.addData("rules", alertEngine.getRules(patientId).toMap());
+        return response;
+    }
+    
+    /**
+     * Replace a patient's alerting rules ("rules", see VitalsAlertEngine.Rules.fromMap)
+     */
+    @SuppressWarnings("unchecked")
+    private BaseResponse handleSetAlertRules(BaseRequest request) {
+        String patientId = (String) request.getData().get("patientId");
+        Object rulesObj = request.getData().get("rules");
+        if (patientId == null || !(rulesObj instanceof Map)) {
+            return new GenericResponse(request.getRequestId(), "SET_ALERT_RULES_RESPONSE", false,
+                                       "patientId and rules are required");
+        }
+        try {
+            alertEngine.setRules(patientId, VitalsAlertEngine.Rules.fromMap((Map<String, Object>) rulesObj));
+        } catch (IllegalArgumentException e) {
+            return new GenericResponse(request.getRequestId(), "SET_ALERT_RULES_RESPONSE", false, e.getMessage());
+        }
+        Log.info("🚨 Alert rules updated for patient {} by {}", patientId, request.getUserId());
+        return new GenericResponse(request.getRequestId(), "SET_ALERT_RULES_RESPONSE", true, "Alert rules updated");
+    }
+    
+    /**
+     * Doctors to alert about a patient: those the patient has appointments with
+     */
+    private Collection<String> doctorsOfPatient(String patientId) {
+        return appointmentDAO.getAppointmentsByPatient(patientId).stream()
+                .map(Appointment::getDoctorId)
+                .distinct()
+                .toList();
+    }
+    
+    private BaseResponse handleCreateDiagnosis(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        
+        String diagnosisId = (String) data.get("diagnosisId");
+        String patientId = (String) data.get("patientId");
+        String doctorId = (String) data.get("doctorId");
+        String notes = (String) data.get("notes");
+        String treatmentPlan = (String) data.get("treatmentPlan");
+        String timestamp = (String) data.get("timestamp");
+        
+        Log.debug("🩺 Creating diagnosis record", "diagnosisId", diagnosisId, "patient", patientId, "doctor",
+                  doctorId);
+        
+        // Create DiagnosisDAO if needed
+        DiagnosisDAO diagnosisDAO = new DiagnosisDAO();
+        
+        boolean success = diagnosisDAO.createDiagnosis(
+            diagnosisId, 
+            patientId, 
+            doctorId, 
+            notes, 
+            treatmentPlan, 
+            timestamp
+        );
+        
+        if (success) {
+            Log.debug("✅ Diagnosis saved to database");
+        } else {
+            Log.warn("❌ Failed to save diagnosis");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "CREATE_DIAGNOSIS_RESPONSE", 
+            success, 
+            success ? "Diagnosis created successfully" : "Failed to create diagnosis"
+        );
+    }
+    
+    private BaseResponse handleCreateDiagnosisExtended(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        
+        String diagnosisId = (String) data.get("diagnosisId");
+        String patientId = (String) data.get("patientId");
+        String doctorId = (String) data.get("doctorId");
+        String diagnosisCode = (String) data.get("diagnosisCode");
+        String diagnosisDescription = (String) data.get("diagnosisDescription");
+        String severity = (String) data.get("severity");
+        String notes = (String) data.get("notes");
+        String timestamp = (String) data.get("timestamp");
+        
+        Log.debug("Creating extended diagnosis record", "diagnosisId", diagnosisId, "patient", patientId,
+                  "doctor", doctorId, "code", diagnosisCode, "severity", severity);
+        
+        // Create DiagnosisDAO
+        DiagnosisDAO diagnosisDAO = new DiagnosisDAO();
+        
+        boolean success = diagnosisDAO.createDiagnosisExtended(
+            diagnosisId, 
+            patientId, 
+            doctorId, 
+            diagnosisCode,
+            diagnosisDescription,
+            severity,
+            notes, 
+            timestamp
+        );
+        
+        if (success) {
+            Log.debug("Extended diagnosis saved to database");
+        } else {
+            Log.warn("Failed to save extended diagnosis");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "CREATE_DIAGNOSIS_EXTENDED_RESPONSE", 
+            success, 
+            success ? "Diagnosis created successfully" : "Failed to create diagnosis"
+        );
+    }
+    
+    private BaseResponse handleGetDiagnoses(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        String userId = request.getUserId();
+        
+        DiagnosisDAO diagnosisDAO = new DiagnosisDAO();
+        java.util.List<java.util.Map<String, Object>> diagnoses;
+        
+        // Check if filtering by specific patient or doctor
+        String patientId = (String) data.get("patientId");
+        String doctorId = (String) data.get("doctorId");
+        KeysetPage page = pageOf(request, DiagnosisDAO.PAGE_KEYS);
+        
+        if (page != null) {
+            diagnoses = diagnosisDAO.getDiagnosesPage(patientId != null || doctorId != null ? patientId : userId,
+                                                      doctorId, page);
+        } else if (patientId != null) {
+            diagnoses = diagnosisDAO.getDiagnosesByPatient(patientId);
+            Log.debug("🩺 Retrieved diagnoses", "patient", patientId);
+        } else if (doctorId != null) {
+            diagnoses = diagnosisDAO.getDiagnosesByDoctor(doctorId);
+            Log.debug("🩺 Retrieved diagnoses", "doctor", doctorId);
+        } else {
+            // Default: get for the requesting user
+            // Try to determine if user is patient or doctor
+            diagnoses = diagnosisDAO.getDiagnosesByPatient(userId);
+            Log.debug("🩺 Retrieved diagnoses", "user", userId);
+        }
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(), 
+            "DIAGNOSES_RESPONSE", 
+            true, 
+            "Diagnoses retrieved"
+        );
+        addPageInfo(response, page, diagnoses, d -> List.of(d.get("diagnosisDate"), d.get("createdAt"), d.get("id")));
+        response.addData("diagnoses", diagnoses);
+        response.addData("count", diagnoses.size());
+        
+        return response;
+    }
+    
+    private BaseResponse handleCreateReferral(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        
+        String referralId = (String) data.get("referralId");
+        String patientId = (String) data.get("patientId");
+        String doctorId = (String) data.get("doctorId");
+        String destination = (String) data.get("destination");
+        String specialty = (String) data.get("specialty");
+        String reason = (String) data.get("reason");
+        String referralDate = (String) data.get("referralDate");
+        
+        Log.debug("Creating referral", "referralId", referralId, "patient", patientId, "doctor", doctorId,
+                  "destination", destination, "specialty", specialty);
+        
+        // Create ReferralDAO
+        ReferralDAO referralDAO = new ReferralDAO();
+        
+        boolean success = referralDAO.createReferral(
+            referralId, patientId, doctorId, destination, specialty, reason, referralDate
+        );
+        
+        if (success) {
+            Log.debug("Referral saved to database");
+        } else {
+            Log.warn("Failed to save referral");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(), 
+            "CREATE_REFERRAL_RESPONSE", 
+            success, 
+            success ? "Referral created successfully" : "Failed to create referral"
+        );
+    }
+    
+    /**
+     * Handle GET_REFERRALS request
+     */
+    private BaseResponse handleGetReferrals(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        String patientId = (String) data.get("patientId");
+        String doctorId = (String) data.get("doctorId");
+        
+        Log.debug("Getting referrals", "patientId", patientId, "doctorId", doctorId);
+        
+        ReferralDAO referralDAO = new ReferralDAO();
+        KeysetPage page = pageOf(request, ReferralDAO.PAGE_KEYS);
+        java.util.List<java.util.Map<String, Object>> referrals = 
+            referralDAO.getReferrals(patientId, doctorId, page);
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(),
+            "REFERRALS_RESPONSE",
+            true,
+            "Retrieved " + referrals.size() + " referrals"
+        );
+        addPageInfo(response, page, referrals, r -> List.of(r.get("referral_date"), r.get("id")));
+        response.addData("referrals", referrals);
+        
+        return response;
+    }
+    
+    // ==================== Unavailability Handlers ====================
+    
+    private BaseResponse handleCreateUnavailability(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        
+        String id = (String) data.get("id");
+        String doctorId = (String) data.get("doctorId");
+        String startDate = (String) data.get("startDate");
+        String endDate = (String) data.get("endDate");
+        String startTime = (String) data.get("startTime");
+        String endTime = (String) data.get("endTime");
+        Boolean isAllDay = (Boolean) data.get("isAllDay");
+        String reason = (String) data.get("reason");
+        
+        Log.debug("Creating doctor unavailability", "id", id, "doctor", doctorId, "period",
+                  startDate + " to " + endDate, "allDay", isAllDay, "reason", reason);
+        
+        DoctorUnavailabilityDAO unavailabilityDAO = new DoctorUnavailabilityDAO();
+        
+        boolean success = unavailabilityDAO.createUnavailability(
+            id, doctorId, startDate, endDate, startTime, endTime, 
+            isAllDay != null ? isAllDay : true, reason
+        );
+        
+        if (success) {
+            Log.debug("Unavailability saved to database");
+            boolean allDay = (isAllDay == null || isAllDay) || startTime == null || startTime.isEmpty();
+            UnavailabilityIndex.getInstance().windowAdded(
+                id, doctorId, LocalDate.parse(startDate), LocalDate.parse(endDate),
+                allDay ? null : LocalTime.parse(startTime), allDay ? null : LocalTime.parse(endTime), reason
+            );
+        } else {
+            Log.warn("Failed to save unavailability");
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(),
+            "CREATE_UNAVAILABILITY_RESPONSE",
+            success,
+            success ? "Unavailability created successfully" : "Failed to create unavailability"
+        );
+    }
+    
+    private BaseResponse handleGetUnavailabilities(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        String doctorId = (String) data.get("doctorId");
+        
+        Log.debug("Getting unavailabilities", "doctorId", doctorId);
+        
+        DoctorUnavailabilityDAO unavailabilityDAO = new DoctorUnavailabilityDAO();
+        List<Map<String, Object>> unavailabilities = unavailabilityDAO.getUnavailabilitiesByDoctor(doctorId);
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(),
+            "UNAVAILABILITIES_RESPONSE",
+            true,
+            "Retrieved " + unavailabilities.size() + " unavailability periods"
+        );
+        response.addData("unavailabilities", unavailabilities);
+        
+        return response;
+    }
+    
+    private BaseResponse handleGetAllUnavailabilities(BaseRequest request) {
+        DoctorUnavailabilityDAO unavailabilityDAO = new DoctorUnavailabilityDAO();
+        List<Map<String, Object>> unavailabilities = unavailabilityDAO.getAllUnavailabilities();
+        
+        Log.debug("Getting all unavailabilities", "found", unavailabilities.size());
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(),
+            "ALL_UNAVAILABILITIES_RESPONSE",
+            true,
+            "Retrieved all unavailability periods"
+        );
+        response.addData("unavailabilities", unavailabilities);
+        
+        return response;
+    }
+    
+    private BaseResponse handleDeleteUnavailability(BaseRequest request) {
+        Map<String, Object> data = request.getData();
+        String id = (String) data.get("id");
+        
+        Log.debug("Deleting unavailability", "id", id);
+        
+        DoctorUnavailabilityDAO unavailabilityDAO = new DoctorUnavailabilityDAO();
+        boolean success = unavailabilityDAO.deleteUnavailability(id);
+        if (success) {
+            UnavailabilityIndex.getInstance().windowRemoved(id);
+        }
+        
+        return new GenericResponse(
+            request.getRequestId(),
+            "DELETE_UNAVAILABILITY_RESPONSE",
+            success,
+            success ? "Unavailability deleted successfully" : "Failed to delete unavailability"
+        );
+    }
+    
+    // ==================== End Unavailability Handlers ====================
+    
+    /**
+     * Handle GET_USERS request
+     */
+    private BaseResponse handleGetUsers(BaseRequest request) {
+        Log.debug("Getting all users");
+        
+        java.util.List<java.util.Map<String, Object>> users = UserDirectory.getInstance().getAllUsers();
+        
+        GenericResponse response = new GenericResponse(
+            request.getRequestId(),
+            "USERS_RESPONSE",
+            true,
+            "Retrieved " + users.size() + " users"
+        );
+        response.addData("users", users);
+        
+        return response;
+    }
+    
+    /**
+     * Display names for a set of user ids, answered from the UserDirectory
+     */
+    @SuppressWarnings("unchecked")
+    private BaseResponse handleResolveUserNames(BaseRequest request) {
+        Object idsObj = request.getData().get("userIds");
+        if (!(idsObj instanceof java.util.Collection)) {
+            return new GenericResponse(request.getRequestId(), "USER_NAMES_RESPONSE", false,
+                                       "userIds is required");
+        }
+        
+        Map<String, String> names = UserDirectory.getInstance()
+                .resolveNames((java.util.Collection<String>) idsObj);
+        
+        GenericResponse response = new GenericResponse(request.getRequestId(), "USER_NAMES_RESPONSE", true,
+                                                       "Resolved " + names.size() + " names");
+        response.addData("names", new java.util.HashMap<String, Object>(names));
+        return response;
+    }
+    
+    /**
+     * Keyset page requested with "pageSize" (and "cursor" after the first page);
+     * null for the original unpaged form of the request
+     */
+    private static KeysetPage pageOf(BaseRequest request, String[] keyColumns) {
+        Object pageSize = request.getData().get("pageSize");
+        if (!(pageSize instanceof Integer)) {
+            return null;
+        }
+        return new KeysetPage(keyColumns, (String) request.getData().get("cursor"), (Integer) pageSize);
+    }
+    
+    /**
+     * Trim a fetched page to size and add nextCursor/hasMore to the response
+     */
+    private static <T> void addPageInfo(GenericResponse response, KeysetPage page, List<T> rows,
+                                        java.util.function.Function<T, List<Object>> keyOf) {
+        if (page == null) {
+            return;
+        }
+        String nextCursor = page.finish(rows, keyOf);
+        response.addData("nextCursor", nextCursor);
+        response.addData("hasMore", nextCursor != null);
+    }
+    
+    /**
+     * Whether the request (un)registers the connection for CHANGE_EVENT pushes;
+     * such requests go to processSubscription along with the connection's sink
+     */
+    public static boolean isSubscription(BaseRequest request) {
+        return "SUBSCRIBE".equals(request.getRequestType()) || "UNSUBSCRIBE".equals(request.getRequestType());
+    }
+    
+    /**
+     * SUBSCRIBE registers the connection's push sink for changes to the
+     * requesting user's appointments and prescriptions ("userType"
+     * ADMINISTRATOR: everyone's); events arrive under the SUBSCRIBE's requestId.
+     * UNSUBSCRIBE removes it. The sink must not block.
+     */
+    public BaseResponse processSubscription(BaseRequest request, String clientId, ResponseSink sink) {
+        ServerMetrics.Operation metrics = ServerMetrics.getInstance().request(request.getRequestType());
+        long start = metrics.start();
+        BaseResponse response = subscribe(request, clientId, sink);
+        metrics.finish(start, response.isSuccess());
+        return response;
+    }
+    
+    private BaseResponse subscribe(BaseRequest request, String clientId, ResponseSink sink) {
+        String responseType = request.getRequestType() + "_RESPONSE";
+        if ("UNSUBSCRIBE".equals(request.getRequestType())) {
+            ChangeNotifier.getInstance().unsubscribe(sink);
+            return new GenericResponse(request.getRequestId(), responseType, true, "Unsubscribed");
+        }
+        if (request.getUserId() == null) {
+            return new GenericResponse(request.getRequestId(), responseType, false, "Login required");
+        }
+        boolean everything = "ADMINISTRATOR".equals(request.getData().get("userType"));
+        ChangeNotifier.getInstance().subscribe(request.getRequestId(), request.getUserId(), everything, clientId, sink);
+        return new GenericResponse(request.getRequestId(), responseType, true, "Subscribed");
+    }
+    
+    public RequestBulkheads getBulkheads() {
+        return bulkheads;
+    }
+    
+    /**
+     * A failed ERROR response, for a request that could not be decoded or
+     * answered, so its sender is not left waiting
+     */
+    public static BaseResponse errorResponse(String requestId, String message) {
+        return new GenericResponse(requestId, "ERROR", false, message);
+    }
+    
+    /**
+     * Whether the request is to be answered as a sequence of chunk responses
+     * (see processStreamingRequest): a STREAM_* request whose sender asked for
+     * chunks with "streamed"=true. Otherwise it gets one collected response.
+     */
+    public static boolean isStreaming(BaseRequest request) {
+        String requestType = request.getRequestType();
+        return ("STREAM_APPOINTMENTS".equals(requestType) || "STREAM_VITALS".equals(requestType))
+            && Boolean.TRUE.equals(request.getData().get("streamed"));
+    }
+    
+    /**
+     * Answer a STREAM_* request as a series of chunk responses sharing its
+     * requestId. Each chunk ("appointments"/"vitals", "chunk", "last"=false) is
+     * written to the sink as soon as it has been read from the database; the
+     * final response has "last"=true, no rows and the total "count". Sent with
+     * "chunkSize" (default RowStreamer.DEFAULT_CHUNK_SIZE). A stream that
+     * AdmissionController turns away gets a single "Server busy" response.
+     *
+     * @throws IOException if the sink failed; the rest of the stream is dropped
+     */
+    public void processStreamingRequest(BaseRequest request, String clientId, ResponseSink sink) throws IOException {
+        Log.debug("📨 Streaming request: {} from {}", request.getRequestType(), clientId);
+        BaseResponse refused = admission.admit(request, clientId);
+        if (refused != null) {
+            sink.send(refused);
+            return;
+        }
+        long admittedAt = System.nanoTime();
+        try {
+            streamAdmitted(request, clientId, sink);
+        } finally {
+            admission.done(request, System.nanoTime() - admittedAt);
+        }
+    }
+    
+    private void streamAdmitted(BaseRequest request, String clientId, ResponseSink sink) throws IOException {
+        ServerMetrics.Operation metrics = ServerMetrics.getInstance().request(request.getRequestType());
+        long start = metrics.start();
+        boolean ok = false;
+        activeStreams.put(request.getRequestId(), Boolean.FALSE);
+        ChunkWriter writer;
+        try {
+            try {
+                writer = streamRows(request, sink);
+            } finally {
+                activeStreams.remove(request.getRequestId());
+            }
+            writer.finish();
+            ok = writer.count >= 0;
+        } finally {
+            metrics.finish(start, ok);
+            logRequest(request, clientId, start, ok);
+        }
+        Log.debug("📤 Streamed {} rows in {} chunks to {}", writer.count, writer.chunks, clientId);
+    }
+    
+    /**
+     * A STREAM_* request on a connection that takes one response per request
+     * (legacy clients, BATCH entries): the same rows, collected into the final response
+     */
+    private BaseResponse collectStream(BaseRequest request, String clientId) throws IOException {
+        Log.debug("📨 Collecting stream: {} for {}", request.getRequestType(), clientId);
+        return streamRows(request, null).finalResponse();
+    }
+    
+    /**
+     * CANCEL_STREAM: the client closed a stream early ("streamId"); it ends
+     * after the chunk being written with a final "Stream cancelled" response
+     */
+    private BaseResponse handleCancelStream(BaseRequest request) {
+        String streamId = (String) request.getData().get("streamId");
+        boolean cancelled = streamId != null && activeStreams.replace(streamId, Boolean.TRUE) != null;
+        return new GenericResponse(request.getRequestId(), "CANCEL_STREAM_RESPONSE", cancelled,
+                                   cancelled ? "Stream cancelled" : "No such stream");
+    }
+    
+    private ChunkWriter streamRows(BaseRequest request, ResponseSink sink) {
+        Object requested = request.getData().get("chunkSize");
+        int chunkSize = RowStreamer.clampChunkSize(requested instanceof Integer ? (Integer) requested : 0);
+        
+        if ("STREAM_VITALS".equals(request.getRequestType())) {
+            ChunkWriter writer = new ChunkWriter(request, "VITALS_CHUNK", "vitals", sink);
+            String patientId = (String) request.getData().get("patientId");
+            writer.count = vitalSignsDAO.streamVitalSignsByPatient(patientId, chunkSize, writer::write);
+            return writer;
+        }
+        
+        ChunkWriter writer = new ChunkWriter(request, "APPOINTMENTS_CHUNK", "appointments", sink);
+        String userId = request.getUserId();
+        String userType = (String) request.getData().get("userType");
+        writer.count = appointmentDAO.streamAppointments("PATIENT".equals(userType) ? userId : null,
+                                                         "DOCTOR".equals(userType) ? userId : null,
+                                                         chunkSize, writer::write);
+        return writer;
+    }
+    
+    /**
+     * Turns the row chunks of one stream into chunk responses; without a sink
+     * the rows are kept for the final response instead
+     */
+    private final class ChunkWriter {
+        private final BaseRequest request;
+        private final String responseType;
+        private final String listKey;
+        private final ResponseSink sink;
+        private final List<Object> collected = new ArrayList<>();
+        private IOException failure;
+        private boolean cancelled = false;
+        private int chunks = 0;
+        private int count = 0;
+        
+        ChunkWriter(BaseRequest request, String responseType, String listKey, ResponseSink sink) {
+            this.request = request;
+            this.responseType = responseType;
+            this.listKey = listKey;
+            this.sink = sink;
+        }
+        
+        <T> boolean write(List<T> rows) {
+            if (sink == null) {
+                collected.addAll(rows);
+                return true;
+            }
+            if (Boolean.TRUE.equals(activeStreams.get(request.getRequestId()))) {
+                cancelled = true;
+                return false;
+            }
+            GenericResponse chunk = new GenericResponse(request.getRequestId(), responseType, true,
+                                                        "Chunk " + chunks);
+            chunk.addData(listKey, rows);
+            chunk.addData("chunk", chunks++);
+            chunk.addData("last", false);
+            try {
+                sink.send(chunk);
+                return true;
+            } catch (IOException e) {
+                failure = e;
+                return false;
+            }
+        }
+        
+        GenericResponse finalResponse() {
+            boolean success = count >= 0;
+            String message = cancelled ? "Stream cancelled" : success ? "Stream complete" : "Failed to read " + listKey;
+            GenericResponse response = new GenericResponse(request.getRequestId(), responseType, success, message);
+            response.addData(listKey, sink == null ? collected : new ArrayList<>());
+            response.addData("chunk", chunks);
+            response.addData("last", true);
+            response.addData("count", Math.max(count, 0));
+            return response;
+        }
+        
+        void finish() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            sink.send(finalResponse());
+        }
+    }
+    
+    private BaseResponse handlePing(BaseRequest request) {
+        return new GenericResponse(request.getRequestId(), "PONG", true, "Server is alive");
+    }
+    
+    /**
+     * METRICS: latency percentiles, counts, errors and in-flight gauges per
+     * request type ("requests") and per DAO operation ("dao"), plus the
+     * connection pool counters ("pool"); see ServerMetrics.snapshot
+     */
+    private BaseResponse handleMetrics(BaseRequest request) {
+        GenericResponse response = new GenericResponse(request.getRequestId(), "METRICS_RESPONSE", true,
+                                                       "Server metrics");
+        ServerMetrics.getInstance().snapshot().forEach(response::addData);
+        PoolStats pool = DatabaseManager.getInstance().getPoolStats();
+        Map<String, Object> poolData = new LinkedHashMap<>();
+        poolData.put("maxSize", pool.getMaxSize());
+        poolData.put("open", pool.getOpen());
+        poolData.put("borrowed", pool.getBorrowed());
+        poolData.put("idle", pool.getIdle());
+        poolData.put("waiting", pool.getWaiting());
+        response.addData("pool", poolData);
+        response.addData("bulkheads", bulkheads.getStats());
+        response.addData("admission", admission.getStats());
+        return response;
+    }
+    
+    /**
+     * Run the sub-requests of a BATCH and answer with one composite response.
+     * Consecutive read-only sub-requests run in parallel; a write waits for
+     * everything before it and finishes before anything after it starts, so the
+     * batch behaves as if its entries had been sent one by one. Each entry is
+     * admitted on its own (rate limit and priority of its type); an entry that
+     * is turned away gets its "Server busy" response in the composite.
+     */
+    @SuppressWarnings("unchecked")
+    private BaseResponse handleBatch(BaseRequest request, String clientId) {
+        Object entriesObj = request.getData().get("requests");
+        if (!(entriesObj instanceof List)) {
+            return new GenericResponse(request.getRequestId(), BatchEnvelope.RESPONSE_TYPE, false,
+                                       "Batch has no requests");
+        }
+        List<Map<String, Object>> entries = (List<Map<String, Object>>) entriesObj;
+        if (entries.size() > BatchEnvelope.MAX_SUB_REQUESTS) {
+            return new GenericResponse(request.getRequestId(), BatchEnvelope.RESPONSE_TYPE, false,
+                                       "Batch exceeds " + BatchEnvelope.MAX_SUB_REQUESTS + " requests");
+        }
+        
+        Log.debug("📦 Processing batch of {} requests from {}", entries.size(), clientId);
+        
+        List<CompletableFuture<BaseResponse>> results = new ArrayList<>();
+        List<CompletableFuture<BaseResponse>> runningReads = new ArrayList<>();
+        for (Map<String, Object> entry : entries) {
+            GenericRequest sub = BatchEnvelope.unwrapRequest(entry, request.getUserId());
+            if (BatchEnvelope.REQUEST_TYPE.equals(sub.getRequestType())) {
+                results.add(CompletableFuture.completedFuture(new GenericResponse(
+                        sub.getRequestId(), "ERROR", false, "Nested batches are not supported")));
+            } else if (BatchEnvelope.isReadOnly(sub.getRequestType())) {
+                CompletableFuture<BaseResponse> future = CompletableFuture.supplyAsync(
+                        () -> processRequest(sub, clientId), batchExecutor);
+                runningReads.add(future);
+                results.add(future);
+            } else {
+                CompletableFuture.allOf(runningReads.toArray(new CompletableFuture<?>[0])).join();
+                runningReads.clear();
+                results.add(CompletableFuture.completedFuture(processRequest(sub, clientId)));
+            }
+        }
+        
+        List<Map<String, Object>> responses = new ArrayList<>();
+        boolean allSucceeded = true;
+        for (CompletableFuture<BaseResponse> result : results) {
+            BaseResponse subResponse = result.join();
+            allSucceeded &= subResponse.isSuccess();
+            responses.add(BatchEnvelope.wrapResponse(subResponse));
+        }
+        
+        GenericResponse response = new GenericResponse(request.getRequestId(), BatchEnvelope.RESPONSE_TYPE, true,
+                                                       allSucceeded ? "All requests succeeded"
+                                                                    : "Some requests failed");
+        response.addData("responses", responses);
+        return response;
+    }
+}
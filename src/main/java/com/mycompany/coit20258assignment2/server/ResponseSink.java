@@ -0,0 +1,17 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.common.BaseResponse;
+import java.io.IOException;
+
+/**
+ * Where a streamed request's chunk responses are written, in order
+ * Server Lead responsibility: Deliver large results incrementally
+ *
+ * send() may block while the client catches up, which is what bounds the
+ * memory a stream uses; an IOException means the client is gone and the
+ * stream is abandoned.
+ */
+@FunctionalInterface
+public interface ResponseSink {
+    void send(BaseResponse response) throws IOException;
+}
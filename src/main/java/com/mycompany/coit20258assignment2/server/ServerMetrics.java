@@ -0,0 +1,207 @@
+package com.mycompany.coit20258assignment2.server;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation latency, throughput, error and in-flight counters
+ * Server Lead responsibility: Show which requests and queries degrade under load
+ *
+ * Two families of operations are tracked: requests by type (timed by
+ * RequestDispatcher around each request) and database operations by the DAO
+ * method that borrowed the connection (named by the DAO and timed by
+ * ConnectionPool from hand-out to return). Each operation has a LatencyHistogram, a request counter, an error
+ * counter and an in-flight gauge. An error is a request answered with
+ * success=false or a thrown exception, or a query whose statement failed.
+ *
+ * The METRICS request returns a snapshot with percentiles; MetricsHttpServer
+ * serves the same counters in Prometheus text format. At most MAX_OPERATIONS
+ * names are kept per family; further names are counted under "OTHER", so bogus
+ * request types cannot grow the registry without bound.
+ */
+public class ServerMetrics {
+    public static final int MAX_OPERATIONS = 256;
+    private static final String OVERFLOW = "OTHER";
+    /** Upper bounds (seconds) of the buckets exported to Prometheus */
+    private static final double[] EXPORTED_BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+                                                      0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    
+    private static ServerMetrics instance;
+    
+    private final Family requests = new Family("request", "type", "requests");
+    private final Family queries = new Family("dao", "operation", "DAO calls");
+    private final long startedAt = System.currentTimeMillis();
+    
+    private ServerMetrics() {
+    }
+    
+    public static synchronized ServerMetrics getInstance() {
+        if (instance == null) {
+            instance = new ServerMetrics();
+        }
+        return instance;
+    }
+    
+    /**
+     * Stats of one request type
+     */
+    public Operation request(String requestType) {
+        return requests.get(requestType);
+    }
+    
+    /**
+     * Stats of one database operation ("VitalSignsDAO.getVitalsSeries")
+     */
+    public Operation dao(String operation) {
+        return queries.get(operation);
+    }
+    
+    /**
+     * Everything, for the METRICS response: "uptimeSeconds", and "requests" and
+     * "dao" lists of per-operation maps ("name", "count", "errors", "inFlight",
+     * "meanMs", "p50Ms", "p90Ms", "p99Ms", "maxMs"), busiest first
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("uptimeSeconds", (System.currentTimeMillis() - startedAt) / 1000L);
+        snapshot.put("requests", requests.snapshot());
+        snapshot.put("dao", queries.snapshot());
+        return snapshot;
+    }
+    
+    /**
+     * All counters in Prometheus text exposition format (version 0.0.4)
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(8192);
+        out.append("# HELP ths_uptime_seconds Seconds since the server started\n");
+        out.append("# TYPE ths_uptime_seconds gauge\n");
+        out.append("ths_uptime_seconds ").append((System.currentTimeMillis() - startedAt) / 1000L).append('\n');
+        requests.appendPrometheus(out);
+        queries.appendPrometheus(out);
+        return out.toString();
+    }
+    
+    /**
+     * Counters of one named operation
+     */
+    public static final class Operation {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        
+        /**
+         * Mark the operation as started; pass the result to finish
+         */
+        public long start() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+        
+        public void finish(long startNanos, boolean ok) {
+            inFlight.decrementAndGet();
+            latency.recordNanos(System.nanoTime() - startNanos);
+            if (!ok) {
+                errors.increment();
+            }
+        }
+        
+        Map<String, Object> snapshot(String name) {
+            long count = latency.getCount();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", name);
+            stats.put("count", count);
+            stats.put("errors", errors.sum());
+            stats.put("inFlight", inFlight.get());
+            stats.put("meanMs", count == 0 ? 0.0 : latency.getTotalMicros() / 1000.0 / count);
+            stats.put("p50Ms", latency.percentileMicros(0.50) / 1000.0);
+            stats.put("p90Ms", latency.percentileMicros(0.90) / 1000.0);
+            stats.put("p99Ms", latency.percentileMicros(0.99) / 1000.0);
+            stats.put("maxMs", latency.getMaxMicros() / 1000.0);
+            return stats;
+        }
+    }
+    
+    /**
+     * The operations of one kind, by name
+     */
+    private static final class Family {
+        private final String prefix;
+        private final String label;
+        private final String what;
+        private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+        
+        Family(String prefix, String label, String what) {
+            this.prefix = prefix;
+            this.label = label;
+            this.what = what;
+        }
+        
+        Operation get(String name) {
+            String key = name == null ? OVERFLOW : name;
+            Operation operation = operations.get(key);
+            if (operation != null) {
+                return operation;
+            }
+            if (operations.size() >= MAX_OPERATIONS) {
+                key = OVERFLOW;
+            }
+            return operations.computeIfAbsent(key, k -> new Operation());
+        }
+        
+        List<Map<String, Object>> snapshot() {
+            List<Map<String, Object>> list = new ArrayList<>();
+            operations.forEach((name, operation) -> list.add(operation.snapshot(name)));
+            list.sort((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")));
+            return list;
+        }
+        
+        void appendPrometheus(StringBuilder out) {
+            Map<String, Operation> sorted = new TreeMap<>(operations);
+            String metric = "ths_" + prefix;
+            
+            out.append("# HELP ").append(metric).append("_duration_seconds Latency of ").append(what)
+               .append(" by ").append(label).append('\n');
+            out.append("# TYPE ").append(metric).append("_duration_seconds histogram\n");
+            sorted.forEach((name, operation) -> {
+                String labels = label + "=\"" + escape(name) + "\"";
+                LatencyHistogram latency = operation.latency;
+                for (double bound : EXPORTED_BUCKETS) {
+                    out.append(metric).append("_duration_seconds_bucket{").append(labels)
+                       .append(",le=\"").append(BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString()).append("\"} ")
+                       .append(latency.countAtOrBelow((long) (bound * 1_000_000))).append('\n');
+                }
+                out.append(metric).append("_duration_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ")
+                   .append(latency.getCount()).append('\n');
+                out.append(metric).append("_duration_seconds_sum{").append(labels).append("} ")
+                   .append(latency.getTotalMicros() / 1_000_000.0).append('\n');
+                out.append(metric).append("_duration_seconds_count{").append(labels).append("} ")
+                   .append(latency.getCount()).append('\n');
+            });
+            
+            out.append("# HELP ").append(metric).append("_errors_total Failed ").append(what)
+               .append(" by ").append(label).append('\n');
+            out.append("# TYPE ").append(metric).append("_errors_total counter\n");
+            sorted.forEach((name, operation) -> out.append(metric).append("_errors_total{").append(label)
+                .append("=\"").append(escape(name)).append("\"} ").append(operation.errors.sum()).append('\n'));
+            
+            out.append("# HELP ").append(metric).append("_in_flight ")
+               .append(Character.toUpperCase(what.charAt(0))).append(what, 1, what.length())
+               .append(" in progress by ").append(label).append('\n');
+            out.append("# TYPE ").append(metric).append("_in_flight gauge\n");
+            sorted.forEach((name, operation) -> out.append(metric).append("_in_flight{").append(label)
+                .append("=\"").append(escape(name)).append("\"} ").append(operation.inFlight.get()).append('\n'));
+        }
+        
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+}
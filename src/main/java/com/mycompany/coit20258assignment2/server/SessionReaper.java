@@ -0,0 +1,183 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes client sessions that have been silent for longer than the session timeout
+ * Server Lead responsibility: Give capacity held by abandoned clients back to active users
+ *
+ * A client that vanishes without closing its socket (crashed, put to sleep,
+ * network gone) used to keep its handler thread, its socket and its change
+ * subscription forever. Clients now send a heartbeat PING every minute or so,
+ * and every session registered here notes when it last received anything.
+ *
+ * Sessions sit in a hashed timing wheel of WHEEL_SLOTS one-second slots, in the
+ * slot of the second they would expire. The wheel thread visits one slot per
+ * tick: a session that has heard from its client since is moved to the slot of
+ * its new expiry, one that has not is closed. Traffic therefore only writes a
+ * timestamp (touch), and each tick only looks at the sessions due in it, no
+ * matter how many are connected.
+ *
+ * The timeout is the session_timeout system setting (minutes), read when the
+ * server starts, unless ths.session.timeoutSeconds overrides it.
+ */
+public class SessionReaper {
+    private static final int WHEEL_SLOTS = 512;
+    private static final long TICK_MILLIS = 1_000L;
+    
+    private final List<List<Session>> wheel = new ArrayList<>(WHEEL_SLOTS);
+    private volatile long timeoutMillis;
+    private long currentTick;
+    private Thread thread;
+    
+    public SessionReaper(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.currentTick = tickOf(System.currentTimeMillis());
+    }
+    
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+    
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+    
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "ths-session-reaper");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+    
+    /**
+     * Watch a session from now on
+     *
+     * @param close closes the session's connection; called on the reaper thread
+     */
+    public Session register(String clientId, Runnable close) {
+        Session session = new Session(clientId, close);
+        synchronized (this) {
+            schedule(session, currentTick);
+        }
+        return session;
+    }
+    
+    /**
+     * Put a session in the slot of the tick it expires in, at least one after afterTick
+     */
+    private void schedule(Session session, long afterTick) {
+        long due = Math.max(tickOf(session.lastActivity + timeoutMillis), afterTick + 1);
+        session.dueTick = due;
+        wheel.get((int) (due % WHEEL_SLOTS)).add(session);
+    }
+    
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(TICK_MILLIS);
+                List<Session> expired = advance(tickOf(System.currentTimeMillis()));
+                for (Session session : expired) {
+                    long idleMillis = System.currentTimeMillis() - session.lastActivity;
+                    long idleSeconds = TimeUnit.MILLISECONDS.toSeconds(idleMillis);
+                    Log.info("⏰ Closing idle session {} (silent for {}s)", session.clientId, idleSeconds);
+                    try {
+                        session.close.run();
+                    } catch (RuntimeException e) {
+                        Log.error("❌ Failed to close idle session {}: {}", session.clientId, e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Visit every slot up to the given tick; returns the sessions to close
+     */
+    private synchronized List<Session> advance(long toTick) {
+        List<Session> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        // After a long pause (e.g. a suspended VM) one lap visits every slot
+        long from = Math.max(currentTick + 1, toTick - WHEEL_SLOTS + 1);
+        for (long tick = from; tick <= toTick; tick++) {
+            List<Session> slot = wheel.get((int) (tick % WHEEL_SLOTS));
+            List<Session> due = new ArrayList<>();
+            slot.removeIf(session -> {
+                if (session.cancelled) {
+                    return true;
+                }
+                if (session.dueTick > toTick) {
+                    return false;
+                }
+                due.add(session);
+                return true;
+            });
+            for (Session session : due) {
+                if (now - session.lastActivity >= timeoutMillis) {
+                    session.reaped = true;
+                    expired.add(session);
+                } else {
+                    schedule(session, tick);
+                }
+            }
+        }
+        currentTick = toTick;
+        return expired;
+    }
+    
+    private static long tickOf(long millis) {
+        return millis / TICK_MILLIS;
+    }
+    
+    /**
+     * A watched session; touch it whenever its client sends something
+     */
+    public static final class Session {
+        private final String clientId;
+        private final Runnable close;
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile boolean cancelled;
+        private volatile boolean reaped;
+        private long dueTick;
+        
+        private Session(String clientId, Runnable close) {
+            this.clientId = clientId;
+            this.close = close;
+        }
+        
+        public void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+        
+        /**
+         * Stop watching (the session has ended on its own)
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        /**
+         * Whether the reaper closed this session for being idle
+         */
+        public boolean isReaped() {
+            return reaped;
+        }
+    }
+}
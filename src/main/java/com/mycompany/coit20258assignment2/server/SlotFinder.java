@@ -0,0 +1,137 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.Appointment;
+import com.mycompany.coit20258assignment2.server.dao.AppointmentDAO;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Free appointment slot search for FIND_AVAILABLE_SLOTS
+ * Server Lead responsibility: Offer bookable times instead of trial-and-error booking
+ *
+ * Slots are the booking form's grid (every 30 minutes, 08:00 to 18:30). For each
+ * day, every doctor's booked appointments (one ranged query for the whole search)
+ * and unavailability windows (from UnavailabilityIndex) are turned into busy
+ * intervals, sorted, and swept once alongside the slot grid. Results come back in
+ * date, time, doctor order and the search stops as soon as enough are found.
+ */
+public class SlotFinder {
+    public static final int SLOT_MINUTES = 30;
+    public static final LocalTime FIRST_SLOT = LocalTime.of(8, 0);
+    public static final LocalTime LAST_SLOT = LocalTime.of(18, 30);
+    public static final int MAX_DAYS = 90;
+    public static final int MAX_RESULTS = 200;
+    
+    private final AppointmentDAO appointmentDAO;
+    private final UnavailabilityIndex unavailabilityIndex;
+    
+    public SlotFinder(AppointmentDAO appointmentDAO, UnavailabilityIndex unavailabilityIndex) {
+        this.appointmentDAO = appointmentDAO;
+        this.unavailabilityIndex = unavailabilityIndex;
+    }
+    
+    /**
+     * The first free slots across the given doctors between two dates inclusive.
+     * Slots earlier than now are skipped.
+     *
+     * @param doctorNames doctor ids to search, in tie-break order, mapped to display names
+     */
+    public List<Map<String, Object>> findSlots(LinkedHashMap<String, String> doctorNames, LocalDate fromDate,
+                                               LocalDate toDate, int limit, LocalDateTime now) {
+        List<Map<String, Object>> slots = new ArrayList<>();
+        limit = Math.min(Math.max(limit, 1), MAX_RESULTS);
+        if (fromDate.isBefore(now.toLocalDate())) {
+            fromDate = now.toLocalDate();
+        }
+        if (toDate.isAfter(fromDate.plusDays(MAX_DAYS - 1))) {
+            toDate = fromDate.plusDays(MAX_DAYS - 1);
+        }
+        if (doctorNames.isEmpty() || toDate.isBefore(fromDate)) {
+            return slots;
+        }
+        
+        List<String> doctorIds = new ArrayList<>(doctorNames.keySet());
+        Map<String, List<Appointment>> bookedByDoctorDay = new HashMap<>();
+        for (Appointment a : appointmentDAO.getBookedAppointments(doctorIds, fromDate, toDate)) {
+            bookedByDoctorDay.computeIfAbsent(a.getDoctorId() + "|" + a.getDate(), k -> new ArrayList<>()).add(a);
+        }
+        
+        int first = FIRST_SLOT.toSecondOfDay() / 60;
+        int last = LAST_SLOT.toSecondOfDay() / 60;
+        for (LocalDate day = fromDate; !day.isAfter(toDate); day = day.plusDays(1)) {
+            int earliest = day.equals(now.toLocalDate()) ? now.toLocalTime().toSecondOfDay() / 60 + 1 : first;
+            
+            Sweep[] sweeps = new Sweep[doctorIds.size()];
+            for (int d = 0; d < sweeps.length; d++) {
+                String doctorId = doctorIds.get(d);
+                sweeps[d] = new Sweep(busyIntervals(doctorId, day,
+                        bookedByDoctorDay.getOrDefault(doctorId + "|" + day, List.of())));
+            }
+            
+            for (int minute = first; minute <= last; minute += SLOT_MINUTES) {
+                for (int d = 0; d < sweeps.length; d++) {
+                    if (sweeps[d].isFree(minute) && minute >= earliest) {
+                        Map<String, Object> slot = new HashMap<>();
+                        slot.put("doctorId", doctorIds.get(d));
+                        slot.put("doctorName", doctorNames.get(doctorIds.get(d)));
+                        slot.put("date", day.toString());
+                        slot.put("time", LocalTime.ofSecondOfDay(minute * 60L).toString());
+                        slots.add(slot);
+                        if (slots.size() >= limit) {
+                            return slots;
+                        }
+                    }
+                }
+            }
+        }
+        return slots;
+    }
+    
+    /**
+     * Busy intervals for one doctor and day as [start, end) minutes of the day a
+     * slot may not start in, sorted by start
+     */
+    private List<int[]> busyIntervals(String doctorId, LocalDate day, List<Appointment> booked) {
+        List<int[]> busy = new ArrayList<>();
+        for (Appointment a : booked) {
+            // A slot starting within SLOT_MINUTES either side would overlap the appointment
+            int start = a.getTime().toSecondOfDay() / 60;
+            busy.add(new int[] {start - SLOT_MINUTES + 1, start + SLOT_MINUTES});
+        }
+        for (UnavailabilityIndex.Window window : unavailabilityIndex.windowsOn(doctorId, day)) {
+            if (window.isAllDay()) {
+                busy.add(new int[] {0, 24 * 60});
+            } else {
+                // Same inclusive start/end rule as the CREATE_APPOINTMENT check
+                busy.add(new int[] {window.getStartTime().toSecondOfDay() / 60,
+                                    window.getEndTime().toSecondOfDay() / 60 + 1});
+            }
+        }
+        busy.sort(Comparator.comparingInt(interval -> interval[0]));
+        return busy;
+    }
+    
+    /**
+     * Walks a sorted busy list forwards as slot times increase; a time is busy if
+     * any interval starting at or before it ends after it
+     */
+    private static final class Sweep {
+        private final List<int[]> busy;
+        private int next = 0;
+        private int coveredUntil = Integer.MIN_VALUE;
+        
+        Sweep(List<int[]> busy) {
+            this.busy = busy;
+        }
+        
+        boolean isFree(int minute) {
+            while (next < busy.size() && busy.get(next)[0] <= minute) {
+                coveredUntil = Math.max(coveredUntil, busy.get(next)[1]);
+                next++;
+            }
+            return coveredUntil <= minute;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.mycompany.coit20258assignment2.server;
 
+import com.mycompany.coit20258assignment2.server.dao.SystemSettingsDAO;
+import com.mycompany.coit20258assignment2.util.Log;
 import java.io.*;
+import java.lang.reflect.Method;
 import java.net.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -14,13 +17,29 @@ import java.util.concurrent.atomic.AtomicInteger;
  * - Connection pooling
  * - Graceful shutdown
  * - Client session management
+ * - Optional non-blocking NIO front end (--nio) for large numbers of idle clients
+ * - Optional virtual-thread execution (--virtual-threads) on runtimes that support it
+ * - Prometheus metrics on a loopback HTTP port (see MetricsHttpServer)
+ * - Idle sessions closed after the session_timeout setting (see SessionReaper)
  */
 public class THSServer {
     private static final int DEFAULT_PORT = 8080;
     private static final int MAX_CLIENTS = 100;
+    private static final int MAX_VIRTUAL_CLIENTS = Integer.getInteger("ths.server.maxVirtualClients", 10_000);
+    private static final int DEFAULT_WORKERS = 32;
+    /** Used when system_settings has no session_timeout */
+    private static final int DEFAULT_SESSION_TIMEOUT_MINUTES = 30;
     
     private ServerSocket serverSocket;
     private ExecutorService clientThreadPool;
+    private ExecutorService requestThreadPool;
+    private NioServer nioServer;
+    private final boolean nioMode;
+    private final int maxClients;
+    private final RequestDispatcher dispatcher = new RequestDispatcher();
+    private final MetricsHttpServer metricsServer = new MetricsHttpServer();
+    private final SessionReaper sessionReaper =
+            new SessionReaper(TimeUnit.MINUTES.toMillis(DEFAULT_SESSION_TIMEOUT_MINUTES));
     private final AtomicInteger activeConnections = new AtomicInteger(0);
     private volatile boolean isRunning = false;
     
@@ -29,10 +48,44 @@ public class THSServer {
     }
     
     public THSServer(int port) {
+        this(port, false, DEFAULT_WORKERS);
+    }
+    
+    /**
+     * @param nioMode serve clients from selector event loops instead of one thread each
+     * @param workerThreads request-processing threads (NIO requests, pipelined framed requests)
+     */
+    public THSServer(int port, boolean nioMode, int workerThreads) {
+        this(port, nioMode, workerThreads, false);
+    }
+    
+    /**
+     * @param virtualThreads run each connection (blocking mode) or each request (NIO mode)
+     *                       on its own virtual thread; ignored if the runtime lacks them
+     */
+    public THSServer(int port, boolean nioMode, int workerThreads, boolean virtualThreads) {
+        this.nioMode = nioMode;
+        ExecutorService virtualExecutor = virtualThreads ? createVirtualThreadExecutor() : null;
+        // Virtual threads are cheap, so the session cap is bounded by the DB pool instead of thread count
+        this.maxClients = virtualExecutor != null ? MAX_VIRTUAL_CLIENTS : MAX_CLIENTS;
         try {
-            this.serverSocket = new ServerSocket(port);
-            this.clientThreadPool = Executors.newFixedThreadPool(MAX_CLIENTS);
-            System.out.println("THS-Enhanced Server initialized on port " + port);
+            if (nioMode) {
+                this.clientThreadPool = virtualExecutor != null
+                        ? virtualExecutor : Executors.newFixedThreadPool(workerThreads);
+                int eventLoops = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+                this.nioServer = virtualExecutor != null
+                        ? new NioServer(this, port, dispatcher, eventLoops, clientThreadPool, clientThreadPool)
+                        : new NioServer(this, port, dispatcher, eventLoops, clientThreadPool);
+            } else {
+                this.serverSocket = new ServerSocket(port);
+                this.clientThreadPool = virtualExecutor != null
+                        ? virtualExecutor : Executors.newFixedThreadPool(MAX_CLIENTS);
+                this.requestThreadPool = virtualExecutor != null
+                        ? virtualExecutor : Executors.newFixedThreadPool(workerThreads);
+            }
+            Log.info("THS-Enhanced Server initialized on port {}{}{}", port,
+                     (nioMode ? " (NIO, " + (virtualExecutor != null ? "virtual" : workerThreads) + " workers)" : ""),
+                     (virtualExecutor != null ? " with virtual threads" : ""));
         } catch (IOException e) {
             throw new RuntimeException("Failed to start server", e);
         }
@@ -40,76 +93,160 @@ public class THSServer {
     
     public void start() {
         isRunning = true;
-        System.out.println("🚀 THS-Enhanced Server starting...");
+        Log.info("🚀 THS-Enhanced Server starting...");
         
         // Test database connection
         DatabaseManager.getInstance().testConnection();
+        metricsServer.start();
+        startSessionReaper();
+        
+        if (nioMode) {
+            Log.info("✅ Server ready for client connections on port {}", nioServer.getLocalPort());
+            nioServer.start();
+            return;
+        }
         
-        System.out.println("✅ Server ready for client connections on port " + serverSocket.getLocalPort());
+        Log.info("✅ Server ready for client connections on port {}", serverSocket.getLocalPort());
         
         while (isRunning) {
             try {
                 Socket clientSocket = serverSocket.accept();
                 
-                if (activeConnections.get() >= MAX_CLIENTS) {
-                    System.out.println("❌ Maximum clients reached. Rejecting connection from: " 
-                                     + clientSocket.getInetAddress());
+                if (activeConnections.get() >= maxClients) {
+                    Log.warn("❌ Maximum clients reached. Rejecting connection from: {}",
+                             clientSocket.getInetAddress());
                     clientSocket.close();
                     continue;
                 }
                 
-                activeConnections.incrementAndGet();
-                System.out.println("✅ New client connected: " + clientSocket.getInetAddress() 
-                                 + " (Active connections: " + activeConnections.get() + ")");
+                clientConnected(clientSocket.getInetAddress());
                 
                 // Handle client in separate thread
-                clientThreadPool.submit(new ClientHandler(clientSocket, this));
+                clientThreadPool.submit(new ClientHandler(clientSocket, this, dispatcher));
                 
             } catch (IOException e) {
                 if (isRunning) {
-                    System.err.println("Error accepting client connection: " + e.getMessage());
+                    Log.error("Error accepting client connection: {}", e.getMessage());
                 }
             }
         }
     }
     
     public void stop() {
-        System.out.println("🛑 Shutting down THS-Enhanced Server...");
+        Log.info("🛑 Shutting down THS-Enhanced Server...");
         isRunning = false;
         
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
+            if (nioServer != null) {
+                nioServer.stop();
+            }
+            metricsServer.stop();
+            sessionReaper.stop();
             
             clientThreadPool.shutdown();
             if (!clientThreadPool.awaitTermination(30, TimeUnit.SECONDS)) {
                 clientThreadPool.shutdownNow();
             }
+            if (requestThreadPool != null && requestThreadPool != clientThreadPool) {
+                requestThreadPool.shutdown();
+            }
+            dispatcher.getBulkheads().shutdown();
+            
+            DatabaseManager.getInstance().shutdown();
             
-            System.out.println("✅ Server shutdown complete");
+            Log.info("✅ Server shutdown complete");
         } catch (Exception e) {
-            System.err.println("Error during server shutdown: " + e.getMessage());
+            Log.error("Error during server shutdown: {}", e.getMessage());
+        }
+        Log.flush();
+    }
+    
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up reflectively so the
+     * server still builds and runs on Java 17; returns null when unavailable.
+     * Database access stays bounded by the ConnectionPool's fair semaphore, which
+     * parks excess virtual threads instead of opening more MySQL sessions.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Log.warn("⚠️ Virtual threads need Java 21+ (running {}), using platform threads", Runtime.version());
+            return null;
+        }
+    }
+    
+    /**
+     * Close sessions idle for longer than session_timeout (minutes, from
+     * system_settings) or ths.session.timeoutSeconds if set
+     */
+    private void startSessionReaper() {
+        long timeoutSeconds = Long.getLong("ths.session.timeoutSeconds", -1L);
+        if (timeoutSeconds <= 0) {
+            int minutes = new SystemSettingsDAO().getIntSetting("session_timeout", DEFAULT_SESSION_TIMEOUT_MINUTES);
+            timeoutSeconds = TimeUnit.MINUTES.toSeconds(minutes > 0 ? minutes : DEFAULT_SESSION_TIMEOUT_MINUTES);
         }
+        sessionReaper.setTimeoutMillis(TimeUnit.SECONDS.toMillis(timeoutSeconds));
+        sessionReaper.start();
+        Log.info("⏰ Idle sessions close after {}s without traffic", timeoutSeconds);
+    }
+    
+    /**
+     * Watches client sessions for idleness; handlers register with it
+     */
+    public SessionReaper getSessionReaper() {
+        return sessionReaper;
+    }
+    
+    /**
+     * Pool that framed ClientHandlers write CHANGE_EVENT pushes on
+     */
+    public ExecutorService getRequestExecutor() {
+        return requestThreadPool != null ? requestThreadPool : clientThreadPool;
+    }
+    
+    public void clientConnected(InetAddress address) {
+        int current = activeConnections.incrementAndGet();
+        Log.info("✅ New client connected: {} (Active connections: {})", address, current);
     }
     
     public void clientDisconnected() {
         int current = activeConnections.decrementAndGet();
-        System.out.println("📤 Client disconnected (Active connections: " + current + ")");
+        Log.info("📤 Client disconnected (Active connections: {})", current);
     }
     
     public static void main(String[] args) {
         int port = DEFAULT_PORT;
+        boolean nio = false;
+        boolean virtualThreads = false;
+        int workers = DEFAULT_WORKERS;
         
-        if (args.length > 0) {
-            try {
-                port = Integer.parseInt(args[0]);
-            } catch (NumberFormatException e) {
-                System.err.println("Invalid port number. Using default: " + DEFAULT_PORT);
+        // Usage: THSServer [port] [--nio] [--workers N] [--virtual-threads]
+        for (int i = 0; i < args.length; i++) {
+            if ("--nio".equals(args[i])) {
+                nio = true;
+            } else if ("--virtual-threads".equals(args[i])) {
+                virtualThreads = true;
+            } else if ("--workers".equals(args[i]) && i + 1 < args.length) {
+                try {
+                    workers = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    Log.warn("Invalid worker count. Using default: {}", DEFAULT_WORKERS);
+                }
+            } else {
+                try {
+                    port = Integer.parseInt(args[i]);
+                } catch (NumberFormatException e) {
+                    Log.warn("Invalid port number. Using default: {}", DEFAULT_PORT);
+                }
             }
         }
         
-        THSServer server = new THSServer(port);
+        THSServer server = new THSServer(port, nio, workers, virtualThreads);
         
         // Add shutdown hook for graceful shutdown
         Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
@@ -0,0 +1,252 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.server.dao.DoctorUnavailabilityDAO;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of doctor unavailability windows
+ * Server Lead responsibility: Answer booking availability checks without a database scan
+ *
+ * Each doctor's windows are kept in an interval tree over their date ranges
+ * (an array sorted by start date, read as a balanced tree, with the latest end
+ * date of every subtree), so finding the windows covering a date is
+ * O(log n + matches). Trees are immutable and swapped whole when
+ * CREATE_UNAVAILABILITY or DELETE_UNAVAILABILITY changes a doctor's windows;
+ * lookups never lock.
+ */
+public class UnavailabilityIndex {
+    private static UnavailabilityIndex instance;
+    
+    private final DoctorUnavailabilityDAO unavailabilityDAO = new DoctorUnavailabilityDAO();
+    private final Map<String, WindowTree> byDoctor = new ConcurrentHashMap<>();
+    private final Map<String, String> doctorByWindowId = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+    
+    private UnavailabilityIndex() {
+    }
+    
+    public static synchronized UnavailabilityIndex getInstance() {
+        if (instance == null) {
+            instance = new UnavailabilityIndex();
+        }
+        return instance;
+    }
+    
+    /**
+     * Load every window once; later calls are no-ops
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            Map<String, List<Window>> grouped = new HashMap<>();
+            List<Map<String, Object>> rows = unavailabilityDAO.getAllUnavailabilities();
+            for (Map<String, Object> row : rows) {
+                Window window = Window.fromRow(row);
+                grouped.computeIfAbsent(window.doctorId, d -> new ArrayList<>()).add(window);
+                doctorByWindowId.put(window.id, window.doctorId);
+            }
+            byDoctor.clear();
+            grouped.forEach((doctorId, windows) -> byDoctor.put(doctorId, new WindowTree(windows)));
+            // No rows is normal; only retry if the database could not be read at all
+            loaded = !rows.isEmpty() || DatabaseManager.getInstance().getDatabaseTime() != null;
+            Log.info("📆 Unavailability index loaded: {} windows for {} doctors", rows.size(), byDoctor.size());
+        }
+    }
+    
+    /**
+     * First window that makes the doctor unavailable at the given date and time, if any
+     */
+    public Optional<Window> findConflict(String doctorId, LocalDate date, LocalTime time) {
+        for (Window window : windowsOn(doctorId, date)) {
+            if (window.covers(time)) {
+                return Optional.of(window);
+            }
+        }
+        return Optional.empty();
+    }
+    
+    public boolean isAvailable(String doctorId, LocalDate date, LocalTime time) {
+        return findConflict(doctorId, date, time).isEmpty();
+    }
+    
+    /**
+     * Windows of one doctor whose date range includes the date
+     */
+    public List<Window> windowsOn(String doctorId, LocalDate date) {
+        ensureLoaded();
+        WindowTree tree = doctorId == null ? null : byDoctor.get(doctorId);
+        return tree == null ? List.of() : tree.covering(date);
+    }
+    
+    /**
+     * Called after CREATE_UNAVAILABILITY has inserted the row
+     */
+    public synchronized void windowAdded(String id, String doctorId, LocalDate startDate, LocalDate endDate,
+                                         LocalTime startTime, LocalTime endTime, String reason) {
+        if (!loaded) {
+            return; // picked up by the initial load
+        }
+        Window window = new Window(id, doctorId, startDate, endDate, startTime, endTime, reason);
+        List<Window> windows = new ArrayList<>();
+        WindowTree current = byDoctor.get(doctorId);
+        if (current != null) {
+            for (Window existing : current.windows) {
+                if (!existing.id.equals(id)) {
+                    windows.add(existing);
+                }
+            }
+        }
+        windows.add(window);
+        byDoctor.put(doctorId, new WindowTree(windows));
+        doctorByWindowId.put(id, doctorId);
+    }
+    
+    /**
+     * Called after DELETE_UNAVAILABILITY has removed the row
+     */
+    public synchronized void windowRemoved(String id) {
+        if (!loaded) {
+            return;
+        }
+        String doctorId = doctorByWindowId.remove(id);
+        WindowTree current = doctorId == null ? null : byDoctor.get(doctorId);
+        if (current == null) {
+            return;
+        }
+        List<Window> windows = new ArrayList<>();
+        for (Window existing : current.windows) {
+            if (!existing.id.equals(id)) {
+                windows.add(existing);
+            }
+        }
+        if (windows.isEmpty()) {
+            byDoctor.remove(doctorId);
+        } else {
+            byDoctor.put(doctorId, new WindowTree(windows));
+        }
+    }
+    
+    /**
+     * One unavailability period: a date range, either all day or the same time
+     * range on each of its days
+     */
+    public static final class Window {
+        private final String id;
+        private final String doctorId;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final LocalTime startTime;
+        private final LocalTime endTime;
+        private final String reason;
+        
+        Window(String id, String doctorId, LocalDate startDate, LocalDate endDate,
+               LocalTime startTime, LocalTime endTime, String reason) {
+            this.id = id;
+            this.doctorId = doctorId;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.reason = reason;
+        }
+        
+        static Window fromRow(Map<String, Object> row) {
+            String startTime = (String) row.get("startTime");
+            String endTime = (String) row.get("endTime");
+            return new Window((String) row.get("id"), (String) row.get("doctorId"),
+                              LocalDate.parse((String) row.get("startDate")),
+                              LocalDate.parse((String) row.get("endDate")),
+                              startTime != null ? LocalTime.parse(startTime) : null,
+                              endTime != null ? LocalTime.parse(endTime) : null,
+                              (String) row.get("reason"));
+        }
+        
+        public boolean isAllDay() {
+            return startTime == null || endTime == null;
+        }
+        
+        /**
+         * Whether the window blocks this time on a day inside its date range
+         */
+        public boolean covers(LocalTime time) {
+            return isAllDay() || (!time.isBefore(startTime) && !time.isAfter(endTime));
+        }
+        
+        public String getId() { return id; }
+        public String getDoctorId() { return doctorId; }
+        public LocalDate getStartDate() { return startDate; }
+        public LocalDate getEndDate() { return endDate; }
+        public LocalTime getStartTime() { return startTime; }
+        public LocalTime getEndTime() { return endTime; }
+        public String getReason() { return reason; }
+    }
+    
+    /**
+     * Immutable interval tree over date ranges. windows is sorted by start date and
+     * read as an implicit balanced tree (the middle element is the root);
+     * maxEnd[i] is the latest end date in the subtree rooted at i.
+     */
+    private static final class WindowTree {
+        private final Window[] windows;
+        private final LocalDate[] maxEnd;
+        
+        WindowTree(List<Window> list) {
+            windows = list.toArray(new Window[0]);
+            Arrays.sort(windows, Comparator.comparing((Window w) -> w.startDate));
+            maxEnd = new LocalDate[windows.length];
+            build(0, windows.length - 1);
+        }
+        
+        private LocalDate build(int lo, int hi) {
+            if (lo > hi) {
+                return LocalDate.MIN;
+            }
+            int mid = (lo + hi) >>> 1;
+            LocalDate max = windows[mid].endDate;
+            LocalDate left = build(lo, mid - 1);
+            LocalDate right = build(mid + 1, hi);
+            if (left.isAfter(max)) {
+                max = left;
+            }
+            if (right.isAfter(max)) {
+                max = right;
+            }
+            maxEnd[mid] = max;
+            return max;
+        }
+        
+        List<Window> covering(LocalDate date) {
+            List<Window> result = new ArrayList<>();
+            collect(0, windows.length - 1, date, result);
+            return result;
+        }
+        
+        private void collect(int lo, int hi, LocalDate date, List<Window> result) {
+            if (lo > hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (maxEnd[mid].isBefore(date)) {
+                return; // everything here ended before the date
+            }
+            collect(lo, mid - 1, date, result);
+            Window window = windows[mid];
+            if (window.startDate.isAfter(date)) {
+                return; // this and everything to the right start after the date
+            }
+            if (!window.endDate.isBefore(date)) {
+                result.add(window);
+            }
+            collect(mid + 1, hi, date, result);
+        }
+    }
+}
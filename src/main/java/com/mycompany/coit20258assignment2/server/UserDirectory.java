@@ -0,0 +1,189 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.*;
+import com.mycompany.coit20258assignment2.server.dao.AuthDAO;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared in-memory directory of user profiles
+ * Server Lead responsibility: Serve user lookups without re-reading the users table
+ *
+ * Loaded from the database on first use and kept coherent by the request
+ * handlers that change users (SIGNUP adds an entry, RESET_PASSWORD refreshes
+ * one). Indexed by id, username and email; entries use the same map shape as
+ * AuthDAO.getAllUsers() and never hold passwords.
+ */
+public class UserDirectory {
+    private static UserDirectory instance;
+    
+    private final AuthDAO authDAO = new AuthDAO();
+    private final Map<String, Map<String, Object>> byId = new ConcurrentHashMap<>();
+    private final Map<String, String> idByUsername = new ConcurrentHashMap<>();
+    private final Map<String, String> idByEmail = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+    
+    private UserDirectory() {
+    }
+    
+    public static synchronized UserDirectory getInstance() {
+        if (instance == null) {
+            instance = new UserDirectory();
+        }
+        return instance;
+    }
+    
+    /**
+     * Load every user once; later calls are no-ops until {@link #invalidate()}
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            List<Map<String, Object>> users = authDAO.getAllUsers();
+            byId.clear();
+            idByUsername.clear();
+            idByEmail.clear();
+            for (Map<String, Object> user : users) {
+                index(user);
+            }
+            // An empty result may be a database outage; try again next time
+            loaded = !users.isEmpty();
+            Log.info("📇 User directory loaded: {} users", byId.size());
+        }
+    }
+    
+    private void index(Map<String, Object> user) {
+        String id = (String) user.get("id");
+        Map<String, Object> previous = byId.put(id, Collections.unmodifiableMap(new HashMap<>(user)));
+        if (previous != null) {
+            idByUsername.remove(key(previous.get("username")));
+            idByEmail.remove(key(previous.get("email")));
+        }
+        if (user.get("username") != null) {
+            idByUsername.put(key(user.get("username")), id);
+        }
+        if (user.get("email") != null) {
+            idByEmail.put(key(user.get("email")), id);
+        }
+    }
+    
+    private static String key(Object value) {
+        return value == null ? "" : value.toString().toLowerCase(Locale.ROOT);
+    }
+    
+    public Optional<Map<String, Object>> findById(String id) {
+        ensureLoaded();
+        return Optional.ofNullable(id == null ? null : byId.get(id));
+    }
+    
+    public Optional<Map<String, Object>> findByUsername(String username) {
+        ensureLoaded();
+        String id = idByUsername.get(key(username));
+        return Optional.ofNullable(id == null ? null : byId.get(id));
+    }
+    
+    public Optional<Map<String, Object>> findByEmail(String email) {
+        ensureLoaded();
+        String id = idByEmail.get(key(email));
+        return Optional.ofNullable(id == null ? null : byId.get(id));
+    }
+    
+    /**
+     * Username or email, as accepted by login and password reset
+     */
+    public Optional<Map<String, Object>> findByIdentifier(String identifier) {
+        Optional<Map<String, Object>> user = findByUsername(identifier);
+        return user.isPresent() ? user : findByEmail(identifier);
+    }
+    
+    /**
+     * Display names for the given ids; unknown ids are left out
+     */
+    public Map<String, String> resolveNames(Collection<String> ids) {
+        ensureLoaded();
+        Map<String, String> names = new HashMap<>();
+        for (String id : ids) {
+            Map<String, Object> user = id == null ? null : byId.get(id);
+            if (user != null) {
+                names.put(id, (String) user.get("name"));
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * All users ordered by user type then name, matching AuthDAO.getAllUsers()
+     */
+    public List<Map<String, Object>> getAllUsers() {
+        ensureLoaded();
+        List<Map<String, Object>> users = new ArrayList<>(byId.values());
+        users.sort(Comparator.comparing((Map<String, Object> u) -> String.valueOf(u.get("user_type")))
+                             .thenComparing(u -> String.valueOf(u.get("name"))));
+        return users;
+    }
+    
+    /**
+     * Doctors ordered by name, optionally only those with the given specialization
+     */
+    public List<Map<String, Object>> findDoctors(String specialization) {
+        List<Map<String, Object>> doctors = new ArrayList<>();
+        for (Map<String, Object> user : getAllUsers()) {
+            if ("DOCTOR".equals(user.get("user_type"))
+                    && (specialization == null || specialization.equalsIgnoreCase((String) user.get("specialization")))) {
+                doctors.add(user);
+            }
+        }
+        return doctors;
+    }
+    
+    /**
+     * Called after SIGNUP has inserted the user
+     */
+    public void userCreated(User user, String userType) {
+        if (!loaded) {
+            return; // picked up by the initial load
+        }
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("id", user.getId());
+        entry.put("name", user.getName());
+        entry.put("email", user.getEmail());
+        entry.put("username", user.getUsername());
+        entry.put("user_type", userType);
+        entry.put("specialization", user instanceof Doctor ? ((Doctor) user).getSpecialization() : null);
+        index(entry);
+    }
+    
+    /**
+     * Called after RESET_PASSWORD; re-reads the affected row so the entry matches the table
+     */
+    public void userUpdated(String identifier) {
+        if (!loaded) {
+            return;
+        }
+        Optional<Map<String, Object>> cached = findByIdentifier(identifier);
+        if (cached.isEmpty()) {
+            invalidate();
+            return;
+        }
+        authDAO.getUserById((String) cached.get().get("id")).ifPresent(user -> {
+            Map<String, Object> entry = new HashMap<>(cached.get());
+            entry.put("name", user.getName());
+            entry.put("email", user.getEmail());
+            entry.put("username", user.getUsername());
+            index(entry);
+        });
+    }
+    
+    /**
+     * Drop everything; the next lookup reloads from the database
+     */
+    public void invalidate() {
+        loaded = false;
+    }
+}
@@ -0,0 +1,379 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.VitalSigns;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Streaming anomaly detection on incoming vital signs
+ * Server Lead responsibility: Alert doctors to abnormal readings as they arrive
+ *
+ * Every stored reading is fed in once, by VitalsIngestQueue in write order. For
+ * each patient and metric the engine keeps an exponentially weighted mean and
+ * variance plus the smoothed value at the last rate checkpoint, so a reading
+ * costs O(1) however long the patient's history is. A reading raises
+ *  - HIGH or LOW when it is outside the patient's limits,
+ *  - DEVIATION when it is more than zThreshold standard deviations from the
+ *    patient's own recent mean (after MIN_SAMPLES readings),
+ *  - RISING or FALLING when the smoothed value has moved faster than
+ *    maxRatePerHour since the checkpoint (at least RATE_INTERVAL ago).
+ * Limits default to the fixed thresholds used before and can be changed per
+ * patient with SET_ALERT_RULES. One metric and kind alerts at most once per
+ * COOLDOWN, so a device reporting every few seconds does not flood anyone.
+ *
+ * Alerts are kept (the last MAX_KEPT per patient) for GET_VITALS_ALERTS and
+ * pushed as "vitals_alerts" CHANGE_EVENTs to the doctors the patient has
+ * appointments with. Rules live in memory and reset to the defaults on restart.
+ */
+public class VitalsAlertEngine {
+    private static final int MIN_SAMPLES = 10;
+    private static final Duration RATE_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration COOLDOWN = Duration.ofMinutes(10);
+    private static final Duration DOCTORS_TTL = Duration.ofMinutes(10);
+    private static final int MAX_KEPT = 50;
+    private static final double DEFAULT_Z_THRESHOLD = 3.0;
+    private static final double DEFAULT_ALPHA = 0.1;
+    
+    /**
+     * The monitored metrics with their default limits, maximum rate of change per
+     * hour, and the smallest standard deviation used for z-scores (so a patient
+     * whose readings never vary is not alerted on the first tiny change)
+     */
+    public enum Metric {
+        PULSE("pulse", "bpm", 60, 100, 30, 2.0),
+        TEMPERATURE("temperature", "°C", 36.0, 38.0, 1.0, 0.1),
+        RESPIRATION("respiration", "breaths/min", 8, 25, 8, 1.0),
+        SYSTOLIC("systolic", "mmHg", 90, 140, 30, 3.0),
+        DIASTOLIC("diastolic", "mmHg", 60, 90, 20, 2.0);
+        
+        private final String key;
+        private final String unit;
+        private final double defaultLow;
+        private final double defaultHigh;
+        private final double defaultMaxRatePerHour;
+        private final double minStdDev;
+        
+        Metric(String key, String unit, double defaultLow, double defaultHigh,
+               double defaultMaxRatePerHour, double minStdDev) {
+            this.key = key;
+            this.unit = unit;
+            this.defaultLow = defaultLow;
+            this.defaultHigh = defaultHigh;
+            this.defaultMaxRatePerHour = defaultMaxRatePerHour;
+            this.minStdDev = minStdDev;
+        }
+        
+        public String getKey() {
+            return key;
+        }
+        
+        public String getUnit() {
+            return unit;
+        }
+        
+        /**
+         * The metric's value in a reading, or NaN if the reading has none (bad blood pressure)
+         */
+        public double valueOf(VitalSigns vitals) {
+            switch (this) {
+                case PULSE: return vitals.getPulse();
+                case TEMPERATURE: return vitals.getTemperature();
+                case RESPIRATION: return vitals.getRespiration();
+                default:
+                    String[] parts = vitals.getBloodPressure() == null ? new String[0]
+                                                                       : vitals.getBloodPressure().split("/");
+                    try {
+                        return Integer.parseInt(parts[this == SYSTOLIC ? 0 : 1].trim());
+                    } catch (RuntimeException e) {
+                        return Double.NaN;
+                    }
+            }
+        }
+    }
+    
+    private final Function<String, Collection<String>> doctorsOfPatient;
+    private final Map<String, Rules> rulesByPatient = new ConcurrentHashMap<>();
+    private final Map<String, PatientState> states = new ConcurrentHashMap<>();
+    
+    /**
+     * @param doctorsOfPatient ids of the doctors to alert about a patient (may query the database)
+     */
+    public VitalsAlertEngine(Function<String, Collection<String>> doctorsOfPatient) {
+        this.doctorsOfPatient = doctorsOfPatient;
+    }
+    
+    /**
+     * Update the patient's statistics with a stored reading and raise any alerts
+     */
+    public void onReading(VitalSigns vitals) {
+        if (vitals.getPatientId() == null || vitals.getTimestamp() == null) {
+            return;
+        }
+        Rules rules = getRules(vitals.getPatientId());
+        PatientState state = states.computeIfAbsent(vitals.getPatientId(), p -> new PatientState());
+        List<Map<String, Object>> raised = new ArrayList<>();
+        
+        synchronized (state) {
+            for (Metric metric : Metric.values()) {
+                double value = metric.valueOf(vitals);
+                if (!Double.isNaN(value)) {
+                    state.metrics[metric.ordinal()].observe(metric, value, vitals, rules, state, raised);
+                }
+            }
+            for (Map<String, Object> alert : raised) {
+                state.recent.addLast(alert);
+                if (state.recent.size() > MAX_KEPT) {
+                    state.recent.removeFirst();
+                }
+            }
+        }
+        
+        if (!raised.isEmpty()) {
+            deliver(vitals.getPatientId(), state, raised);
+        }
+    }
+    
+    /**
+     * Most recent alerts for a patient, newest first
+     */
+    public List<Map<String, Object>> getAlerts(String patientId) {
+        PatientState state = states.get(patientId);
+        List<Map<String, Object>> alerts = new ArrayList<>();
+        if (state != null) {
+            synchronized (state) {
+                state.recent.descendingIterator().forEachRemaining(a -> alerts.add(new HashMap<>(a)));
+            }
+        }
+        return alerts;
+    }
+    
+    public Rules getRules(String patientId) {
+        return rulesByPatient.getOrDefault(patientId, Rules.DEFAULTS);
+    }
+    
+    /**
+     * Replace a patient's rules; the statistics gathered so far are kept
+     */
+    public void setRules(String patientId, Rules rules) {
+        rulesByPatient.put(patientId, rules);
+    }
+    
+    private void deliver(String patientId, PatientState state, List<Map<String, Object>> alerts) {
+        for (Map<String, Object> alert : alerts) {
+            Log.info("🚨 VITAL SIGNS ALERT for patient {}: {}", patientId, alert.get("message"));
+        }
+        
+        ChangeNotifier notifier = ChangeNotifier.getInstance();
+        if (!notifier.hasSubscribers()) {
+            return;
+        }
+        String[] doctorIds = state.doctors(patientId, doctorsOfPatient);
+        for (Map<String, Object> alert : alerts) {
+            notifier.publishDetails("vitals_alerts", (String) alert.get("id"), "created", alert, null, doctorIds);
+        }
+    }
+    
+    /**
+     * Alerting rules for one patient: limits and maximum rate per metric, the
+     * z-score that counts as a deviation and the EWMA smoothing factor
+     */
+    public static final class Rules {
+        public static final Rules DEFAULTS = defaults();
+        
+        private final double[] low = new double[Metric.values().length];
+        private final double[] high = new double[Metric.values().length];
+        private final double[] maxRatePerHour = new double[Metric.values().length];
+        private double zThreshold = DEFAULT_Z_THRESHOLD;
+        private double alpha = DEFAULT_ALPHA;
+        
+        private static Rules defaults() {
+            Rules rules = new Rules();
+            for (Metric metric : Metric.values()) {
+                rules.low[metric.ordinal()] = metric.defaultLow;
+                rules.high[metric.ordinal()] = metric.defaultHigh;
+                rules.maxRatePerHour[metric.ordinal()] = metric.defaultMaxRatePerHour;
+            }
+            return rules;
+        }
+        
+        /**
+         * Rules from a SET_ALERT_RULES map: "zThreshold", "alpha" and, per metric
+         * key ("pulse", "systolic", ...), a map with any of "low", "high" and
+         * "maxRatePerHour". Anything left out keeps its default.
+         *
+         * @throws IllegalArgumentException for values out of range
+         */
+        @SuppressWarnings("unchecked")
+        public static Rules fromMap(Map<String, Object> map) {
+            Rules rules = defaults();
+            rules.zThreshold = number(map.get("zThreshold"), rules.zThreshold);
+            rules.alpha = number(map.get("alpha"), rules.alpha);
+            if (rules.zThreshold <= 0 || rules.alpha <= 0 || rules.alpha >= 1) {
+                throw new IllegalArgumentException("zThreshold must be positive and alpha between 0 and 1");
+            }
+            for (Metric metric : Metric.values()) {
+                Object entry = map.get(metric.key);
+                if (entry instanceof Map) {
+                    Map<String, Object> limits = (Map<String, Object>) entry;
+                    int i = metric.ordinal();
+                    rules.low[i] = number(limits.get("low"), rules.low[i]);
+                    rules.high[i] = number(limits.get("high"), rules.high[i]);
+                    rules.maxRatePerHour[i] = number(limits.get("maxRatePerHour"), rules.maxRatePerHour[i]);
+                    if (rules.low[i] >= rules.high[i] || rules.maxRatePerHour[i] <= 0) {
+                        throw new IllegalArgumentException("Invalid limits for " + metric.key);
+                    }
+                }
+            }
+            return rules;
+        }
+        
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("zThreshold", zThreshold);
+            map.put("alpha", alpha);
+            for (Metric metric : Metric.values()) {
+                Map<String, Object> limits = new HashMap<>();
+                limits.put("low", low[metric.ordinal()]);
+                limits.put("high", high[metric.ordinal()]);
+                limits.put("maxRatePerHour", maxRatePerHour[metric.ordinal()]);
+                map.put(metric.key, limits);
+            }
+            return map;
+        }
+        
+        private static double number(Object value, double otherwise) {
+            return value instanceof Number ? ((Number) value).doubleValue() : otherwise;
+        }
+    }
+    
+    private static final class PatientState {
+        final MetricState[] metrics = new MetricState[Metric.values().length];
+        final Deque<Map<String, Object>> recent = new ArrayDeque<>();
+        /** Last alert time per "metric:kind", for the cooldown */
+        final Map<String, LocalDateTime> lastAlerted = new HashMap<>();
+        private String[] doctorIds;
+        private LocalDateTime doctorsLoadedAt;
+        
+        PatientState() {
+            for (int i = 0; i < metrics.length; i++) {
+                metrics[i] = new MetricState();
+            }
+        }
+        
+        synchronized String[] doctors(String patientId, Function<String, Collection<String>> lookup) {
+            LocalDateTime now = LocalDateTime.now();
+            if (doctorIds == null || doctorsLoadedAt.plus(DOCTORS_TTL).isBefore(now)) {
+                doctorIds = lookup.apply(patientId).toArray(new String[0]);
+                doctorsLoadedAt = now;
+            }
+            return doctorIds;
+        }
+    }
+    
+    /**
+     * Running statistics of one metric for one patient
+     */
+    private static final class MetricState {
+        private int count = 0;
+        private double mean;
+        private double variance;
+        private double checkpointMean;
+        private LocalDateTime checkpointAt;
+        
+        void observe(Metric metric, double value, VitalSigns vitals, Rules rules, PatientState state,
+                     List<Map<String, Object>> raised) {
+            int i = metric.ordinal();
+            LocalDateTime at = vitals.getTimestamp();
+            
+            if (value > rules.high[i]) {
+                raise(metric, "HIGH", value, vitals, state, raised,
+                      "HIGH " + metric.key + ": " + format(value) + " " + metric.unit
+                    + " (limit " + format(rules.high[i]) + ")", null);
+            } else if (value < rules.low[i]) {
+                raise(metric, "LOW", value, vitals, state, raised,
+                      "LOW " + metric.key + ": " + format(value) + " " + metric.unit
+                    + " (limit " + format(rules.low[i]) + ")", null);
+            }
+            
+            if (count >= MIN_SAMPLES) {
+                double z = (value - mean) / Math.max(Math.sqrt(variance), metric.minStdDev);
+                if (Math.abs(z) >= rules.zThreshold) {
+                    raise(metric, "DEVIATION", value, vitals, state, raised,
+                          "Unusual " + metric.key + ": " + format(value) + " " + metric.unit + " vs usual "
+                        + format(mean) + String.format(" (z=%.1f)", z), Map.of("zScore", z));
+                }
+            }
+            
+            // Exponentially weighted mean and variance
+            if (count == 0) {
+                mean = value;
+                variance = 0;
+                checkpointMean = value;
+                checkpointAt = at;
+            } else {
+                double diff = value - mean;
+                double increment = rules.alpha * diff;
+                mean += increment;
+                variance = (1 - rules.alpha) * (variance + diff * increment);
+            }
+            count++;
+            
+            if (at.isBefore(checkpointAt)) {
+                checkpointMean = mean; // an older reading arrived late; start measuring again
+                checkpointAt = at;
+            } else if (Duration.between(checkpointAt, at).compareTo(RATE_INTERVAL) >= 0) {
+                double hours = Duration.between(checkpointAt, at).toSeconds() / 3600.0;
+                double rate = (mean - checkpointMean) / hours;
+                if (Math.abs(rate) > rules.maxRatePerHour[i]) {
+                    String kind = rate > 0 ? "RISING" : "FALLING";
+                    raise(metric, kind, value, vitals, state, raised,
+                          kind + " " + metric.key + ": " + String.format("%+.1f", rate) + " " + metric.unit
+                        + "/hour", Map.of("ratePerHour", rate));
+                }
+                checkpointMean = mean;
+                checkpointAt = at;
+            }
+        }
+        
+        private void raise(Metric metric, String kind, double value, VitalSigns vitals, PatientState state,
+                           List<Map<String, Object>> raised, String message, Map<String, Object> extra) {
+            String key = metric.key + ":" + kind;
+            LocalDateTime at = vitals.getTimestamp();
+            LocalDateTime last = state.lastAlerted.get(key);
+            if (last != null && at.isBefore(last.plus(COOLDOWN)) && !at.isBefore(last)) {
+                return;
+            }
+            state.lastAlerted.put(key, at);
+            
+            Map<String, Object> alert = new HashMap<>();
+            alert.put("id", UUID.randomUUID().toString().substring(0, 12));
+            alert.put("patientId", vitals.getPatientId());
+            alert.put("readingId", vitals.getId());
+            alert.put("metric", metric.key);
+            alert.put("kind", kind);
+            alert.put("value", value);
+            alert.put("usual", count > 0 ? mean : value);
+            alert.put("recordedAt", at.toString());
+            alert.put("message", message);
+            if (extra != null) {
+                alert.putAll(extra);
+            }
+            raised.add(alert);
+        }
+        
+        private static String format(double value) {
+            return value == Math.rint(value) ? String.valueOf((long) value) : String.format("%.1f", value);
+        }
+    }
+}
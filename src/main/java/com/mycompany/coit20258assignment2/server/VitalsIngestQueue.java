@@ -0,0 +1,190 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.VitalSigns;
+import com.mycompany.coit20258assignment2.server.dao.VitalSignsDAO;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces vital sign inserts into batched writes
+ * Server Lead responsibility: Keep up with remote monitoring devices
+ *
+ * Readings from RECORD_VITALS and RECORD_VITALS_BATCH are queued here and one
+ * flusher thread writes them with JDBC batches of up to MAX_BATCH rows, so many
+ * devices reporting at once cost a few round trips instead of one connection
+ * and INSERT each. The flusher takes whatever is queued and, if that is less
+ * than a full batch, lingers up to LINGER_MS for more: a reading waits at most
+ * the linger plus one batch write. Requests are answered once their readings
+ * are written, and each stored reading is then passed to the alert engine.
+ *
+ * At most CAPACITY readings may be waiting. A request that does not fit is
+ * turned away at once with a retryAfterMs hint sized from the backlog and the
+ * recent write rate, instead of the queue growing without bound.
+ */
+public class VitalsIngestQueue {
+    public static final int CAPACITY = Integer.getInteger("ths.vitals.queueCapacity", 10_000);
+    public static final int MAX_BATCH = Integer.getInteger("ths.vitals.maxBatch", 500);
+    private static final long LINGER_MS = Long.getLong("ths.vitals.lingerMs", 10L);
+    private static final long MAX_RETRY_AFTER_MS = 5_000L;
+    /** Batch write time assumed for the retry hint until one has been measured */
+    private static final long ASSUMED_BATCH_MS = 50L;
+    
+    private final VitalSignsDAO vitalSignsDAO;
+    private final Consumer<VitalSigns> onStored;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity = new Semaphore(CAPACITY);
+    private final Thread flusher;
+    /** Smoothed rows written per millisecond, for the retry hint; 0 until the first batch */
+    private volatile double rowsPerMs = 0;
+    
+    /**
+     * @param onStored called on the flusher thread for each reading once it is stored, in write order
+     */
+    public VitalsIngestQueue(VitalSignsDAO vitalSignsDAO, Consumer<VitalSigns> onStored) {
+        this.vitalSignsDAO = vitalSignsDAO;
+        this.onStored = onStored;
+        this.flusher = new Thread(this::flushLoop, "ths-vitals-flush");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+    
+    /**
+     * Queue readings for the next batches
+     *
+     * @return completes with whether each reading was stored once all are written,
+     *         or null if the queue has no room for them (see retryAfterMs)
+     */
+    public CompletableFuture<boolean[]> submit(List<VitalSigns> readings) {
+        if (readings.isEmpty()) {
+            return CompletableFuture.completedFuture(new boolean[0]);
+        }
+        if (readings.size() > CAPACITY || !capacity.tryAcquire(readings.size())) {
+            return null;
+        }
+        Submission submission = new Submission(readings.size());
+        for (int i = 0; i < readings.size(); i++) {
+            queue.add(new Pending(readings.get(i), submission, i));
+        }
+        return submission.done;
+    }
+    
+    /**
+     * How long a turned-away client should wait before trying again
+     */
+    public long retryAfterMs() {
+        int backlog = getBacklog();
+        double rate = rowsPerMs;
+        long estimate = rate > 0 ? (long) (backlog / rate)
+                                 : ASSUMED_BATCH_MS * (backlog / MAX_BATCH + 1);
+        return Math.min(Math.max(estimate, LINGER_MS), MAX_RETRY_AFTER_MS);
+    }
+    
+    /**
+     * Readings accepted but not yet written, including the batch being written
+     */
+    public int getBacklog() {
+        return CAPACITY - capacity.availablePermits();
+    }
+    
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                Pending first = queue.take();
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - batch.size());
+                
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MS);
+                while (batch.size() < MAX_BATCH) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, MAX_BATCH - batch.size());
+                }
+                
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private void write(List<Pending> batch) {
+        List<VitalSigns> readings = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            readings.add(pending.reading);
+        }
+        
+        long start = System.nanoTime();
+        boolean[] stored;
+        try {
+            stored = vitalSignsDAO.recordVitalSignsBatch(readings);
+        } catch (RuntimeException e) {
+            Log.error("❌ Vitals batch failed: {}", e.getMessage());
+            stored = new boolean[batch.size()];
+        }
+        double elapsedMs = Math.max((System.nanoTime() - start) / 1_000_000.0, 0.1);
+        double rate = batch.size() / elapsedMs;
+        rowsPerMs = rowsPerMs == 0 ? rate : 0.8 * rowsPerMs + 0.2 * rate;
+        
+        capacity.release(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            pending.submission.complete(pending.index, stored[i]);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (stored[i]) {
+                try {
+                    onStored.accept(readings.get(i));
+                } catch (RuntimeException e) {
+                    Log.error("❌ Failed to check reading {}: {}", readings.get(i).getId(), e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * The readings of one request, answered when the last of them is written
+     */
+    private static final class Submission {
+        final boolean[] stored;
+        final AtomicInteger remaining;
+        final CompletableFuture<boolean[]> done = new CompletableFuture<>();
+        
+        Submission(int size) {
+            this.stored = new boolean[size];
+            this.remaining = new AtomicInteger(size);
+        }
+        
+        void complete(int index, boolean ok) {
+            stored[index] = ok;
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(stored);
+            }
+        }
+    }
+    
+    private static final class Pending {
+        final VitalSigns reading;
+        final Submission submission;
+        final int index;
+        
+        Pending(VitalSigns reading, Submission submission, int index) {
+            this.reading = reading;
+            this.submission = submission;
+            this.index = index;
+        }
+    }
+}
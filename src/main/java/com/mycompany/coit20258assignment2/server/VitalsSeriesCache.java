@@ -0,0 +1,110 @@
+package com.mycompany.coit20258assignment2.server;
+
+import com.mycompany.coit20258assignment2.VitalSigns;
+import com.mycompany.coit20258assignment2.VitalsSeries;
+import com.mycompany.coit20258assignment2.server.dao.VitalSignsDAO;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the full vital signs history of recently viewed patients in memory
+ * Server Lead responsibility: Serve long monitoring histories without re-reading them
+ *
+ * Each history is a VitalsSeries (newest first), so a cached patient costs a few
+ * primitive columns rather than an object per reading. The first GET_VITALS or
+ * full GET_CHANGES reload for a patient reads the history once; after that, new
+ * readings are inserted as the ingestion queue stores them and requests are
+ * served from a copy of the arrays. Only the MAX_PATIENTS most recently used
+ * patients are kept.
+ *
+ * A history is loaded outside the lock, so a reading stored while it loads may
+ * or may not be in the result. While a patient's history is loading, every
+ * reading stored for them bumps the load's version, and the load is only cached
+ * if no reading arrived meanwhile; otherwise it is returned as is and the next
+ * request loads again. The version is dropped when the patient's last load
+ * finishes, so only patients being loaded are tracked.
+ */
+public class VitalsSeriesCache {
+    public static final int MAX_PATIENTS = Integer.getInteger("ths.vitals.cachedPatients", 200);
+    
+    private final VitalSignsDAO vitalSignsDAO;
+    private final Map<String, VitalsSeries> series = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VitalsSeries> eldest) {
+            return size() > MAX_PATIENTS;
+        }
+    };
+    /** Patients whose history is being loaded */
+    private final Map<String, Load> loading = new HashMap<>();
+    
+    public VitalsSeriesCache(VitalSignsDAO vitalSignsDAO) {
+        this.vitalSignsDAO = vitalSignsDAO;
+    }
+    
+    /**
+     * A patient's full history, newest first; the caller owns the returned series
+     */
+    public VitalsSeries get(String patientId) {
+        Load load;
+        long version;
+        synchronized (this) {
+            VitalsSeries cached = series.get(patientId);
+            if (cached != null) {
+                return cached.copy();
+            }
+            load = loading.computeIfAbsent(patientId, id -> new Load());
+            load.readers++;
+            version = load.version;
+        }
+        
+        VitalsSeries loaded = null;
+        try {
+            loaded = vitalSignsDAO.getVitalsSeries(patientId);
+        } finally {
+            synchronized (this) {
+                if (loaded != null && load.version == version) {
+                    series.put(patientId, loaded.copy());
+                }
+                if (--load.readers == 0) {
+                    loading.remove(patientId);
+                }
+            }
+        }
+        return loaded != null ? loaded : new VitalsSeries(patientId);
+    }
+    
+    /**
+     * Insert a reading that has just been stored into its patient's history, if cached
+     */
+    public synchronized void onStored(VitalSigns reading) {
+        Load load = loading.get(reading.getPatientId());
+        if (load != null) {
+            load.version++;
+        }
+        VitalsSeries cached = series.get(reading.getPatientId());
+        if (cached == null) {
+            return;
+        }
+        long time = VitalsSeries.epochSecond(reading.getTimestamp());
+        int low = 0;
+        int high = cached.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cached.epochSecondAt(mid) > time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        cached.insert(low, reading);
+    }
+    
+    /**
+     * The loads running for one patient, and the readings stored since the first began
+     */
+    private static final class Load {
+        int readers;
+        long version;
+    }
+}
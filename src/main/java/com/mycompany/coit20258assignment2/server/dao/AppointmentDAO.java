@@ -2,18 +2,23 @@ package com.mycompany.coit20258assignment2.server.dao;
 
 import com.mycompany.coit20258assignment2.*;
 import com.mycompany.coit20258assignment2.server.DatabaseManager;
+import com.mycompany.coit20258assignment2.util.Log;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 /**
  * Data Access Object for Appointment operations
  * Server Lead responsibility: Database operations for appointment management
  */
 public class AppointmentDAO {
+    /** Sort order of paged lists, primary key last (see KeysetPage) */
+    public static final String[] PAGE_KEYS = {"appointment_date", "appointment_time", "id"};
     private final DatabaseManager dbManager;
     
     public AppointmentDAO() {
@@ -29,7 +34,7 @@ public class AppointmentDAO {
             VALUES (?, ?, ?, ?, ?, ?)
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.createAppointment");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, appointment.getId());
@@ -42,12 +47,12 @@ public class AppointmentDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Appointment created: " + appointment.getId());
+                Log.debug("✅ Appointment created: {}", appointment.getId());
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error creating appointment: " + e.getMessage());
+            Log.error("Database error creating appointment: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -66,7 +71,7 @@ public class AppointmentDAO {
             ORDER BY appointment_date DESC, appointment_time DESC
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.getAppointmentsByPatient");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, patientId);
@@ -85,7 +90,7 @@ public class AppointmentDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting patient appointments: " + e.getMessage());
+            Log.error("Database error getting patient appointments: {}", e.getMessage());
         }
         
         return appointments;
@@ -103,7 +108,7 @@ public class AppointmentDAO {
             ORDER BY appointment_date DESC, appointment_time DESC
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.getAppointmentsByDoctor");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, doctorId);
@@ -122,7 +127,7 @@ public class AppointmentDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting doctor appointments: " + e.getMessage());
+            Log.error("Database error getting doctor appointments: {}", e.getMessage());
         }
         
         return appointments;
@@ -139,7 +144,7 @@ public class AppointmentDAO {
             ORDER BY appointment_date DESC, appointment_time DESC
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.getAllAppointments");
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -156,7 +161,200 @@ public class AppointmentDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting all appointments: " + e.getMessage());
+            Log.error("Database error getting all appointments: {}", e.getMessage());
+        }
+        
+        return appointments;
+    }
+    
+    /**
+     * Stream appointments, newest first, optionally limited to one patient or
+     * doctor, in chunks straight off the result set (see RowStreamer)
+     *
+     * @return rows delivered, or -1 on a database error
+     */
+    public int streamAppointments(String patientId, String doctorId, int chunkSize,
+                                  Predicate<List<Appointment>> onChunk) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT id, patient_id, doctor_id, appointment_date, appointment_time, status
+            FROM appointments
+            WHERE 1=1
+            """);
+        if (patientId != null) {
+            sql.append(" AND patient_id = ?");
+        }
+        if (doctorId != null) {
+            sql.append(" AND doctor_id = ?");
+        }
+        sql.append(" ORDER BY appointment_date DESC, appointment_time DESC");
+        
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.streamAppointments");
+             PreparedStatement stmt = RowStreamer.prepare(conn, sql.toString())) {
+            
+            int index = 1;
+            if (patientId != null) {
+                stmt.setString(index++, patientId);
+            }
+            if (doctorId != null) {
+                stmt.setString(index++, doctorId);
+            }
+            return RowStreamer.stream(stmt, chunkSize, rs -> new Appointment(
+                rs.getString("id"),
+                rs.getString("patient_id"),
+                rs.getString("doctor_id"),
+                rs.getDate("appointment_date").toLocalDate(),
+                rs.getTime("appointment_time").toLocalTime(),
+                AppointmentStatus.valueOf(rs.getString("status"))
+            ), onChunk);
+            
+        } catch (SQLException e) {
+            Log.error("Database error streaming appointments: {}", e.getMessage());
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * One page of appointments, newest first, optionally limited to one patient or doctor
+     */
+    public List<Appointment> getAppointmentsPage(String patientId, String doctorId, KeysetPage page) {
+        List<Appointment> appointments = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("""
+            SELECT id, patient_id, doctor_id, appointment_date, appointment_time, status
+            FROM appointments
+            WHERE
+            """).append(page.condition());
+        if (patientId != null) {
+            sql.append(" AND patient_id = ?");
+        }
+        if (doctorId != null) {
+            sql.append(" AND doctor_id = ?");
+        }
+        sql.append(page.orderAndLimit());
+        
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.getAppointmentsPage");
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            int index = page.bind(stmt, 1);
+            if (patientId != null) {
+                stmt.setString(index++, patientId);
+            }
+            if (doctorId != null) {
+                stmt.setString(index++, doctorId);
+            }
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                Appointment appointment = new Appointment(
+                    rs.getString("id"),
+                    rs.getString("patient_id"),
+                    rs.getString("doctor_id"),
+                    rs.getDate("appointment_date").toLocalDate(),
+                    rs.getTime("appointment_time").toLocalTime(),
+                    AppointmentStatus.valueOf(rs.getString("status"))
+                );
+                appointments.add(appointment);
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error getting appointment page: {}", e.getMessage());
+        }
+        
+        return appointments;
+    }
+    
+    /**
+     * Appointments inserted or updated at or after the given time, optionally
+     * limited to one patient or doctor (used by GET_CHANGES)
+     */
+    public List<Appointment> getAppointmentsChangedSince(String patientId, String doctorId, LocalDateTime since) {
+        List<Appointment> appointments = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("""
+            SELECT id, patient_id, doctor_id, appointment_date, appointment_time, status
+            FROM appointments
+            WHERE updated_at >= ?
+            """);
+        if (patientId != null) {
+            sql.append(" AND patient_id = ?");
+        }
+        if (doctorId != null) {
+            sql.append(" AND doctor_id = ?");
+        }
+        
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.getAppointmentsChangedSince");
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            int index = 1;
+            stmt.setTimestamp(index++, Timestamp.valueOf(since));
+            if (patientId != null) {
+                stmt.setString(index++, patientId);
+            }
+            if (doctorId != null) {
+                stmt.setString(index++, doctorId);
+            }
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                Appointment appointment = new Appointment(
+                    rs.getString("id"),
+                    rs.getString("patient_id"),
+                    rs.getString("doctor_id"),
+                    rs.getDate("appointment_date").toLocalDate(),
+                    rs.getTime("appointment_time").toLocalTime(),
+                    AppointmentStatus.valueOf(rs.getString("status"))
+                );
+                appointments.add(appointment);
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error getting changed appointments: {}", e.getMessage());
+        }
+        
+        return appointments;
+    }
+    
+    /**
+     * Non-cancelled appointments of the given doctors between two dates inclusive,
+     * in one query (used by the free-slot search)
+     */
+    public List<Appointment> getBookedAppointments(List<String> doctorIds, LocalDate fromDate, LocalDate toDate) {
+        List<Appointment> appointments = new ArrayList<>();
+        if (doctorIds.isEmpty()) {
+            return appointments;
+        }
+        String placeholders = String.join(", ", java.util.Collections.nCopies(doctorIds.size(), "?"));
+        String sql = """
+            SELECT id, patient_id, doctor_id, appointment_date, appointment_time, status
+            FROM appointments
+            WHERE appointment_date BETWEEN ? AND ? AND status <> 'CANCELLED'
+              AND doctor_id IN (%s)
+            ORDER BY appointment_date, appointment_time
+            """.formatted(placeholders);
+        
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.getBookedAppointments");
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setDate(1, Date.valueOf(fromDate));
+            stmt.setDate(2, Date.valueOf(toDate));
+            for (int i = 0; i < doctorIds.size(); i++) {
+                stmt.setString(3 + i, doctorIds.get(i));
+            }
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                Appointment appointment = new Appointment(
+                    rs.getString("id"),
+                    rs.getString("patient_id"),
+                    rs.getString("doctor_id"),
+                    rs.getDate("appointment_date").toLocalDate(),
+                    rs.getTime("appointment_time").toLocalTime(),
+                    AppointmentStatus.valueOf(rs.getString("status"))
+                );
+                appointments.add(appointment);
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error getting booked appointments: {}", e.getMessage());
         }
         
         return appointments;
@@ -172,7 +370,7 @@ public class AppointmentDAO {
             WHERE id = ?
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.getAppointmentById");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, appointmentId);
@@ -191,7 +389,7 @@ public class AppointmentDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting appointment: " + e.getMessage());
+            Log.error("Database error getting appointment: {}", e.getMessage());
         }
         
         return Optional.empty();
@@ -203,7 +401,7 @@ public class AppointmentDAO {
     public boolean updateAppointmentStatus(String appointmentId, AppointmentStatus newStatus) {
         String sql = "UPDATE appointments SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.updateAppointmentStatus");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, newStatus.name());
@@ -212,12 +410,12 @@ public class AppointmentDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Appointment status updated: " + appointmentId + " -> " + newStatus);
+                Log.debug("✅ Appointment status updated: {} -> {}", appointmentId, newStatus);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error updating appointment status: " + e.getMessage());
+            Log.error("Database error updating appointment status: {}", e.getMessage());
         }
         
         return false;
@@ -233,7 +431,7 @@ public class AppointmentDAO {
             WHERE id = ?
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.updateAppointment");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setDate(1, Date.valueOf(newDate));
@@ -243,12 +441,12 @@ public class AppointmentDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Appointment updated: " + appointmentId);
+                Log.debug("✅ Appointment updated: {}", appointmentId);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error updating appointment: " + e.getMessage());
+            Log.error("Database error updating appointment: {}", e.getMessage());
         }
         
         return false;
@@ -264,7 +462,7 @@ public class AppointmentDAO {
             WHERE id = ?
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.updateAppointment");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setDate(1, Date.valueOf(newDate));
@@ -275,12 +473,12 @@ public class AppointmentDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Appointment rescheduled: " + appointmentId + " -> " + newDate + " " + newTime + " [" + newStatus + "]");
+                Log.debug("✅ Appointment rescheduled: {} -> {} {} [{}]", appointmentId, newDate, newTime, newStatus);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error rescheduling appointment: " + e.getMessage());
+            Log.error("Database error rescheduling appointment: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -293,7 +491,7 @@ public class AppointmentDAO {
     public boolean deleteAppointment(String appointmentId) {
         String sql = "DELETE FROM appointments WHERE id = ?";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.deleteAppointment");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, appointmentId);
@@ -301,12 +499,12 @@ public class AppointmentDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Appointment deleted: " + appointmentId);
+                Log.debug("✅ Appointment deleted: {}", appointmentId);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error deleting appointment: " + e.getMessage());
+            Log.error("Database error deleting appointment: {}", e.getMessage());
         }
         
         return false;
@@ -322,7 +520,7 @@ public class AppointmentDAO {
             AND status NOT IN ('CANCELLED')
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.isTimeSlotAvailable");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, doctorId);
@@ -336,7 +534,7 @@ public class AppointmentDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error checking time slot: " + e.getMessage());
+            Log.error("Database error checking time slot: {}", e.getMessage());
         }
         
         return false;
@@ -354,7 +552,7 @@ public class AppointmentDAO {
             ORDER BY appointment_date, appointment_time
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AppointmentDAO.getUpcomingAppointments");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setDate(1, Date.valueOf(fromDate));
@@ -373,7 +571,7 @@ public class AppointmentDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting upcoming appointments: " + e.getMessage());
+            Log.error("Database error getting upcoming appointments: {}", e.getMessage());
         }
         
         return appointments;
@@ -3,6 +3,7 @@ package com.mycompany.coit20258assignment2.server.dao;
 import com.mycompany.coit20258assignment2.*;
 import com.mycompany.coit20258assignment2.server.DatabaseManager;
 import com.mycompany.coit20258assignment2.util.EncryptionUtil;
+import com.mycompany.coit20258assignment2.util.Log;
 import java.sql.*;
 import java.util.Optional;
 
@@ -29,7 +30,7 @@ public class AuthDAO {
             WHERE (email = ? OR username = ?)
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AuthDAO.authenticateUser");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, identifier);
@@ -50,11 +51,11 @@ public class AuthDAO {
                 String decryptedPassword = EncryptionUtil.decrypt(encryptedPassword);
                 
                 if (!decryptedPassword.equals(password)) {
-                    System.out.println("❌ Password mismatch for user: " + identifier);
+                    Log.warn("❌ Password mismatch for user: {}", identifier);
                     return Optional.empty();
                 }
                 
-                System.out.println("✅ Password verified for user: " + identifier);
+                Log.debug("✅ Password verified for user: {}", identifier);
                 
                 // Create appropriate user type
                 User user = switch (userType) {
@@ -71,7 +72,7 @@ public class AuthDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error during authentication: " + e.getMessage());
+            Log.error("Database error during authentication: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -87,7 +88,7 @@ public class AuthDAO {
             VALUES (?, ?, ?, ?, ?, ?, ?)
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AuthDAO.createUser");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             // Encrypt password before storing
@@ -104,13 +105,13 @@ public class AuthDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ User created with encrypted password: " + user.getUsername());
+                Log.info("✅ User created with encrypted password: {}", user.getUsername());
                 logUserSession(user.getId(), "ACCOUNT_CREATED");
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error creating user: " + e.getMessage());
+            Log.error("Database error creating user: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -124,7 +125,7 @@ public class AuthDAO {
     public boolean updatePassword(String userId, String newPassword) {
         String sql = "UPDATE users SET password = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AuthDAO.updatePassword");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             // Encrypt new password
@@ -136,13 +137,13 @@ public class AuthDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Password updated with encryption for user: " + userId);
+                Log.info("✅ Password updated with encryption for user: {}", userId);
                 logUserSession(userId, "PASSWORD_CHANGED");
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error updating password: " + e.getMessage());
+            Log.error("Database error updating password: {}", e.getMessage());
         }
         
         return false;
@@ -155,7 +156,7 @@ public class AuthDAO {
     public boolean resetPassword(String identifier, String newPassword) {
         String sql = "UPDATE users SET password = ?, updated_at = CURRENT_TIMESTAMP WHERE username = ? OR email = ?";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AuthDAO.resetPassword");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             // Encrypt new password
@@ -168,14 +169,14 @@ public class AuthDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Password reset successful for: " + identifier);
+                Log.info("✅ Password reset successful for: {}", identifier);
                 return true;
             } else {
-                System.out.println("❌ User not found: " + identifier);
+                Log.warn("❌ User not found: {}", identifier);
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error resetting password: " + e.getMessage());
+            Log.error("Database error resetting password: {}", e.getMessage());
         }
         
         return false;
@@ -187,7 +188,7 @@ public class AuthDAO {
     public boolean userExists(String username, String email) {
         String sql = "SELECT COUNT(*) FROM users WHERE username = ? OR email = ?";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AuthDAO.userExists");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, username);
@@ -200,7 +201,7 @@ public class AuthDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error checking user existence: " + e.getMessage());
+            Log.error("Database error checking user existence: {}", e.getMessage());
         }
         
         return false;
@@ -212,7 +213,7 @@ public class AuthDAO {
     private void logUserSession(String userId, String action) {
         String sql = "INSERT INTO session_logs (user_id, login_time, ip_address) VALUES (?, NOW(), ?)";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AuthDAO.logUserSession");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, userId);
@@ -221,7 +222,7 @@ public class AuthDAO {
             stmt.executeUpdate();
             
         } catch (SQLException e) {
-            System.err.println("Error logging session: " + e.getMessage());
+            Log.error("Error logging session: {}", e.getMessage());
         }
     }
     
@@ -234,7 +235,7 @@ public class AuthDAO {
             FROM users WHERE id = ?
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AuthDAO.getUserById");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, userId);
@@ -260,12 +261,12 @@ public class AuthDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting user: " + e.getMessage());
+            Log.error("Database error getting user: {}", e.getMessage());
         }
         
         return Optional.empty();
     }
-
+    
     /**
      * Get all users from database (for admin purposes)
      */
@@ -278,7 +279,7 @@ public class AuthDAO {
         
         java.util.List<java.util.Map<String, Object>> users = new java.util.ArrayList<>();
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("AuthDAO.getAllUsers");
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
@@ -293,10 +294,10 @@ public class AuthDAO {
                 users.add(user);
             }
             
-            System.out.println(" Retrieved " + users.size() + " users from database");
+            Log.debug(" Retrieved {} users from database", users.size());
             
         } catch (SQLException e) {
-            System.err.println("Database error getting all users: " + e.getMessage());
+            Log.error("Database error getting all users: {}", e.getMessage());
             e.printStackTrace();
         }
         
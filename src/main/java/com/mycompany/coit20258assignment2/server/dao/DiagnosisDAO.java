@@ -1,6 +1,7 @@
 package com.mycompany.coit20258assignment2.server.dao;
 
 import com.mycompany.coit20258assignment2.server.DatabaseManager;
+import com.mycompany.coit20258assignment2.util.Log;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -10,6 +11,8 @@ import java.time.LocalDateTime;
  * Handles saving diagnosis records to database
  */
 public class DiagnosisDAO {
+    /** Sort order of paged lists, primary key last (see KeysetPage) */
+    public static final String[] PAGE_KEYS = {"diagnosis_date", "created_at", "id"};
     private final DatabaseManager dbManager;
     
     public DiagnosisDAO() {
@@ -34,7 +37,7 @@ public class DiagnosisDAO {
             VALUES (?, ?, ?, ?, ?, ?)
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("DiagnosisDAO.createDiagnosis");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             // Parse timestamp to get date only
@@ -51,18 +54,16 @@ public class DiagnosisDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Diagnosis saved to database: " + id);
-                System.out.println("   Patient: " + patientId);
-                System.out.println("   Doctor: " + doctorId);
-                System.out.println("   Date: " + date);
+                Log.debug("✅ Diagnosis saved to database: {}", id, "patient", patientId, "doctor", doctorId,
+                          "date", date);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("❌ Database error creating diagnosis: " + e.getMessage());
+            Log.error("❌ Database error creating diagnosis: {}", e.getMessage());
             e.printStackTrace();
         } catch (Exception e) {
-            System.err.println("❌ Error parsing diagnosis data: " + e.getMessage());
+            Log.error("❌ Error parsing diagnosis data: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -82,7 +83,7 @@ public class DiagnosisDAO {
             VALUES (?, ?, ?, ?, ?, ?, ?, ?)
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("DiagnosisDAO.createDiagnosisExtended");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             // Parse timestamp to get date only
@@ -101,20 +102,16 @@ public class DiagnosisDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("Diagnosis saved to database: " + id);
-                System.out.println("   Patient: " + patientId);
-                System.out.println("   Doctor: " + doctorId);
-                System.out.println("   Code: " + diagnosisCode);
-                System.out.println("   Severity: " + severity);
-                System.out.println("   Date: " + date);
+                Log.debug("Diagnosis saved to database: {}", id, "patient", patientId, "doctor", doctorId,
+                          "code", diagnosisCode, "severity", severity, "date", date);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error creating extended diagnosis: " + e.getMessage());
+            Log.error("Database error creating extended diagnosis: {}", e.getMessage());
             e.printStackTrace();
         } catch (Exception e) {
-            System.err.println("Error parsing diagnosis data: " + e.getMessage());
+            Log.error("Error parsing diagnosis data: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -137,7 +134,7 @@ public class DiagnosisDAO {
         
         java.util.List<java.util.Map<String, Object>> diagnoses = new java.util.ArrayList<>();
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("DiagnosisDAO.getDiagnosesByPatient");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, patientId);
@@ -163,10 +160,10 @@ public class DiagnosisDAO {
                 diagnoses.add(diagnosis);
             }
             
-            System.out.println("✅ Retrieved " + diagnoses.size() + " diagnoses for patient: " + patientId);
+            Log.debug("✅ Retrieved {} diagnoses for patient: {}", diagnoses.size(), patientId);
             
         } catch (SQLException e) {
-            System.err.println("❌ Database error retrieving diagnoses: " + e.getMessage());
+            Log.error("❌ Database error retrieving diagnoses: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -188,7 +185,7 @@ public class DiagnosisDAO {
         
         java.util.List<java.util.Map<String, Object>> diagnoses = new java.util.ArrayList<>();
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("DiagnosisDAO.getDiagnosesByDoctor");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, doctorId);
@@ -214,10 +211,72 @@ public class DiagnosisDAO {
                 diagnoses.add(diagnosis);
             }
             
-            System.out.println("✅ Retrieved " + diagnoses.size() + " diagnoses for doctor: " + doctorId);
+            Log.debug("✅ Retrieved {} diagnoses for doctor: {}", diagnoses.size(), doctorId);
             
         } catch (SQLException e) {
-            System.err.println("❌ Database error retrieving diagnoses: " + e.getMessage());
+            Log.error("❌ Database error retrieving diagnoses: {}", e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return diagnoses;
+    }
+    
+    /**
+     * One page of diagnoses, newest first, for a patient or a doctor
+     */
+    public java.util.List<java.util.Map<String, Object>> getDiagnosesPage(String patientId, String doctorId,
+                                                                         KeysetPage page) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT id, patient_id, doctor_id, appointment_id,
+                   icd_code, diagnosis_description, severity,
+                   notes, diagnosis_date, created_at
+            FROM diagnoses
+            WHERE
+            """).append(page.condition());
+        if (patientId != null) {
+            sql.append(" AND patient_id = ?");
+        }
+        if (doctorId != null) {
+            sql.append(" AND doctor_id = ?");
+        }
+        sql.append(page.orderAndLimit());
+        
+        java.util.List<java.util.Map<String, Object>> diagnoses = new java.util.ArrayList<>();
+        
+        try (Connection conn = dbManager.getConnection("DiagnosisDAO.getDiagnosesPage");
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            int index = page.bind(stmt, 1);
+            if (patientId != null) {
+                stmt.setString(index++, patientId);
+            }
+            if (doctorId != null) {
+                stmt.setString(index++, doctorId);
+            }
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                java.util.Map<String, Object> diagnosis = new java.util.HashMap<>();
+                diagnosis.put("id", rs.getString("id"));
+                diagnosis.put("patientId", rs.getString("patient_id"));
+                diagnosis.put("doctorId", rs.getString("doctor_id"));
+                diagnosis.put("appointmentId", rs.getString("appointment_id"));
+                diagnosis.put("diagnosisCode", rs.getString("icd_code"));
+                diagnosis.put("diagnosisDescription", rs.getString("diagnosis_description"));
+                diagnosis.put("severity", rs.getString("severity"));
+                diagnosis.put("notes", rs.getString("notes"));
+                
+                Date date = rs.getDate("diagnosis_date");
+                diagnosis.put("diagnosisDate", date != null ? date.toLocalDate().toString() : null);
+                
+                Timestamp created = rs.getTimestamp("created_at");
+                diagnosis.put("createdAt", created != null ? created.toLocalDateTime().toString() : null);
+                
+                diagnoses.add(diagnosis);
+            }
+            
+        } catch (SQLException e) {
+            Log.error("❌ Database error retrieving diagnosis page: {}", e.getMessage());
             e.printStackTrace();
         }
         
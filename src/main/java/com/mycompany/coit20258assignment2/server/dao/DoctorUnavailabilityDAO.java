@@ -1,6 +1,7 @@
 package com.mycompany.coit20258assignment2.server.dao;
 
 import com.mycompany.coit20258assignment2.server.DatabaseManager;
+import com.mycompany.coit20258assignment2.util.Log;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -30,7 +31,7 @@ public class DoctorUnavailabilityDAO {
             VALUES (?, ?, ?, ?, ?, ?, ?)
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("DoctorUnavailabilityDAO.createUnavailability");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, id);
@@ -51,18 +52,16 @@ public class DoctorUnavailabilityDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Unavailability created: " + id);
-                System.out.println("   Doctor: " + doctorId);
-                System.out.println("   Period: " + startDate + " to " + endDate);
-                System.out.println("   Reason: " + reason);
+                Log.debug("✅ Unavailability created: {}", id, "doctor", doctorId, "period",
+                          startDate + " to " + endDate, "reason", reason);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error creating unavailability: " + e.getMessage());
+            Log.error("Database error creating unavailability: {}", e.getMessage());
             e.printStackTrace();
         } catch (Exception e) {
-            System.err.println("Error parsing unavailability data: " + e.getMessage());
+            Log.error("Error parsing unavailability data: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -82,7 +81,7 @@ public class DoctorUnavailabilityDAO {
         
         List<Map<String, Object>> result = new ArrayList<>();
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("DoctorUnavailabilityDAO.getUnavailabilitiesByDoctor");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, doctorId);
@@ -111,10 +110,10 @@ public class DoctorUnavailabilityDAO {
                 }
             }
             
-            System.out.println("✅ Retrieved " + result.size() + " unavailability periods for doctor: " + doctorId);
+            Log.debug("✅ Retrieved {} unavailability periods for doctor: {}", result.size(), doctorId);
             
         } catch (SQLException e) {
-            System.err.println("Database error getting unavailabilities: " + e.getMessage());
+            Log.error("Database error getting unavailabilities: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -133,7 +132,7 @@ public class DoctorUnavailabilityDAO {
         
         List<Map<String, Object>> result = new ArrayList<>();
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("DoctorUnavailabilityDAO.getAllUnavailabilities");
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
@@ -158,10 +157,10 @@ public class DoctorUnavailabilityDAO {
                 result.add(unavailability);
             }
             
-            System.out.println("✅ Retrieved " + result.size() + " total unavailability periods");
+            Log.debug("✅ Retrieved {} total unavailability periods", result.size());
             
         } catch (SQLException e) {
-            System.err.println("Database error getting all unavailabilities: " + e.getMessage());
+            Log.error("Database error getting all unavailabilities: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -174,7 +173,7 @@ public class DoctorUnavailabilityDAO {
     public boolean deleteUnavailability(String id) {
         String sql = "DELETE FROM doctor_unavailability WHERE id = ?";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("DoctorUnavailabilityDAO.deleteUnavailability");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, id);
@@ -182,15 +181,15 @@ public class DoctorUnavailabilityDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Unavailability deleted: " + id);
+                Log.debug("✅ Unavailability deleted: {}", id);
                 return true;
             } else {
-                System.out.println("⚠️ Unavailability not found: " + id);
+                Log.warn("⚠️ Unavailability not found: {}", id);
                 return false;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error deleting unavailability: " + e.getMessage());
+            Log.error("Database error deleting unavailability: {}", e.getMessage());
             e.printStackTrace();
         }
         
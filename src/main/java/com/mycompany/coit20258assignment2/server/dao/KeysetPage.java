@@ -0,0 +1,92 @@
+package com.mycompany.coit20258assignment2.server.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a newest-first list, addressed by a keyset cursor
+ *
+ * The key columns are the list's sort order with the primary key last, e.g.
+ * (appointment_date, appointment_time, id). A page continues strictly after
+ * the key of the last row the client saw, so the database seeks straight to it
+ * instead of counting past an OFFSET, and rows inserted meanwhile do not shift
+ * later pages. The cursor is the last row's key values joined with '|'; it is
+ * opaque to clients.
+ */
+public class KeysetPage {
+    public static final int MAX_PAGE_SIZE = 500;
+    
+    private final String[] keyColumns;
+    private final String[] after;
+    private final int pageSize;
+    
+    /**
+     * @param cursor nextCursor from the previous page, or null for the first page
+     */
+    public KeysetPage(String[] keyColumns, String cursor, int pageSize) {
+        this.keyColumns = keyColumns;
+        this.pageSize = Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+        String[] values = cursor == null || cursor.isEmpty() ? null : cursor.split("\\|", keyColumns.length);
+        if (values != null && values.length != keyColumns.length) {
+            throw new IllegalArgumentException("Malformed page cursor: " + cursor);
+        }
+        this.after = values;
+    }
+    
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    /**
+     * Condition to AND into the WHERE clause ("1=1" on the first page)
+     */
+    public String condition() {
+        if (after == null) {
+            return "1=1";
+        }
+        String placeholders = String.join(", ", java.util.Collections.nCopies(keyColumns.length, "?"));
+        return "(" + String.join(", ", keyColumns) + ") < (" + placeholders + ")";
+    }
+    
+    /**
+     * ORDER BY and LIMIT to append; one extra row is fetched to tell whether another page follows
+     */
+    public String orderAndLimit() {
+        List<String> order = new ArrayList<>();
+        for (String column : keyColumns) {
+            order.add(column + " DESC");
+        }
+        return " ORDER BY " + String.join(", ", order) + " LIMIT " + (pageSize + 1);
+    }
+    
+    /**
+     * Bind the cursor values for {@link #condition()} starting at index; returns the next free index
+     */
+    public int bind(PreparedStatement stmt, int index) throws SQLException {
+        if (after != null) {
+            for (String value : after) {
+                stmt.setString(index++, value);
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * Drop the look-ahead row from a fetched page and return the cursor for the
+     * next page, or null if this was the last one
+     */
+    public <T> String finish(List<T> rows, Function<T, List<Object>> keyOf) {
+        if (rows.size() <= pageSize) {
+            return null;
+        }
+        rows.subList(pageSize, rows.size()).clear();
+        List<String> values = new ArrayList<>();
+        for (Object value : keyOf.apply(rows.get(rows.size() - 1))) {
+            values.add(String.valueOf(value));
+        }
+        return String.join("|", values);
+    }
+}
@@ -2,8 +2,10 @@ package com.mycompany.coit20258assignment2.server.dao;
 
 import com.mycompany.coit20258assignment2.*;
 import com.mycompany.coit20258assignment2.server.DatabaseManager;
+import com.mycompany.coit20258assignment2.util.Log;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -13,6 +15,8 @@ import java.util.Optional;
  * Server Lead responsibility: Database operations for prescription management
  */
 public class PrescriptionDAO {
+    /** Sort order of paged lists, primary key last (see KeysetPage) */
+    public static final String[] PAGE_KEYS = {"prescribed_date", "id"};
     private final DatabaseManager dbManager;
     
     public PrescriptionDAO() {
@@ -30,7 +34,7 @@ public class PrescriptionDAO {
             VALUES (?, ?, ?, ?, ?, 'As prescribed', ?, ?, 'Follow doctor instructions')
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.createPrescription");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, prescription.getId());
@@ -44,12 +48,12 @@ public class PrescriptionDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Prescription created: " + prescription.getId());
+                Log.debug("✅ Prescription created: {}", prescription.getId());
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error creating prescription: " + e.getMessage());
+            Log.error("Database error creating prescription: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -69,7 +73,7 @@ public class PrescriptionDAO {
             ORDER BY prescribed_date DESC
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.getPrescriptionsByPatient");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, patientId);
@@ -81,7 +85,92 @@ public class PrescriptionDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting patient prescriptions: " + e.getMessage());
+            Log.error("Database error getting patient prescriptions: {}", e.getMessage());
+        }
+        
+        return prescriptions;
+    }
+    
+    /**
+     * One page of prescriptions, newest first, optionally limited to one patient or doctor
+     */
+    public List<Prescription> getPrescriptionsPage(String patientId, String doctorId, KeysetPage page) {
+        List<Prescription> prescriptions = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("""
+            SELECT id, patient_id, doctor_id, medication_name, dosage, frequency,
+                   prescribed_date, status, instructions
+            FROM prescriptions
+            WHERE
+            """).append(page.condition());
+        if (patientId != null) {
+            sql.append(" AND patient_id = ?");
+        }
+        if (doctorId != null) {
+            sql.append(" AND doctor_id = ?");
+        }
+        sql.append(page.orderAndLimit());
+        
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.getPrescriptionsPage");
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            int index = page.bind(stmt, 1);
+            if (patientId != null) {
+                stmt.setString(index++, patientId);
+            }
+            if (doctorId != null) {
+                stmt.setString(index++, doctorId);
+            }
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                prescriptions.add(createPrescriptionFromResultSet(rs));
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error getting prescription page: {}", e.getMessage());
+        }
+        
+        return prescriptions;
+    }
+    
+    /**
+     * Prescriptions inserted or updated at or after the given time, optionally
+     * limited to one patient or doctor (used by GET_CHANGES)
+     */
+    public List<Prescription> getPrescriptionsChangedSince(String patientId, String doctorId, LocalDateTime since) {
+        List<Prescription> prescriptions = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("""
+            SELECT id, patient_id, doctor_id, medication_name, dosage, frequency,
+                   prescribed_date, status, instructions
+            FROM prescriptions
+            WHERE updated_at >= ?
+            """);
+        if (patientId != null) {
+            sql.append(" AND patient_id = ?");
+        }
+        if (doctorId != null) {
+            sql.append(" AND doctor_id = ?");
+        }
+        
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.getPrescriptionsChangedSince");
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            int index = 1;
+            stmt.setTimestamp(index++, Timestamp.valueOf(since));
+            if (patientId != null) {
+                stmt.setString(index++, patientId);
+            }
+            if (doctorId != null) {
+                stmt.setString(index++, doctorId);
+            }
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                prescriptions.add(createPrescriptionFromResultSet(rs));
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error getting changed prescriptions: {}", e.getMessage());
         }
         
         return prescriptions;
@@ -100,7 +189,7 @@ public class PrescriptionDAO {
             ORDER BY prescribed_date DESC
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.getPrescriptionsByDoctor");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, doctorId);
@@ -112,7 +201,7 @@ public class PrescriptionDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting doctor prescriptions: " + e.getMessage());
+            Log.error("Database error getting doctor prescriptions: {}", e.getMessage());
         }
         
         return prescriptions;
@@ -129,7 +218,7 @@ public class PrescriptionDAO {
             WHERE id = ?
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.getPrescriptionById");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, prescriptionId);
@@ -141,7 +230,7 @@ public class PrescriptionDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting prescription: " + e.getMessage());
+            Log.error("Database error getting prescription: {}", e.getMessage());
         }
         
         return Optional.empty();
@@ -153,7 +242,7 @@ public class PrescriptionDAO {
     public boolean updatePrescriptionStatus(String prescriptionId, PrescriptionStatus newStatus) {
         String sql = "UPDATE prescriptions SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.updatePrescriptionStatus");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, newStatus.name());
@@ -162,12 +251,12 @@ public class PrescriptionDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Prescription status updated: " + prescriptionId + " -> " + newStatus);
+                Log.debug("✅ Prescription status updated: {} -> {}", prescriptionId, newStatus);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error updating prescription status: " + e.getMessage());
+            Log.error("Database error updating prescription status: {}", e.getMessage());
         }
         
         return false;
@@ -184,7 +273,7 @@ public class PrescriptionDAO {
             WHERE id = ? AND status = 'ACTIVE'
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.requestRefill");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, prescriptionId);
@@ -192,15 +281,15 @@ public class PrescriptionDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Refill requested for prescription: " + prescriptionId);
+                Log.debug("✅ Refill requested for prescription: {}", prescriptionId);
                 return true;
             } else {
-                System.out.println("⚠️ Prescription not found or not active: " + prescriptionId);
+                Log.warn("⚠️ Prescription not found or not active: {}", prescriptionId);
                 return false;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error requesting refill: " + e.getMessage());
+            Log.error("Database error requesting refill: {}", e.getMessage());
         }
         
         return false;
@@ -218,7 +307,7 @@ public class PrescriptionDAO {
             WHERE id = ? AND (status = 'PENDING' OR status = 'ACTIVE')
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.approveRefill");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, prescriptionId);
@@ -226,15 +315,15 @@ public class PrescriptionDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Refill approved for prescription: " + prescriptionId);
+                Log.debug("✅ Refill approved for prescription: {}", prescriptionId);
                 return true;
             } else {
-                System.out.println("⚠️ Prescription not found: " + prescriptionId);
+                Log.warn("⚠️ Prescription not found: {}", prescriptionId);
                 return false;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error approving refill: " + e.getMessage());
+            Log.error("Database error approving refill: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -253,7 +342,7 @@ public class PrescriptionDAO {
             WHERE id = ? AND (status = 'PENDING' OR status = 'ACTIVE')
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.rejectRefill");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, prescriptionId);
@@ -261,15 +350,15 @@ public class PrescriptionDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Refill rejected for prescription: " + prescriptionId);
+                Log.debug("✅ Refill rejected for prescription: {}", prescriptionId);
                 return true;
             } else {
-                System.out.println("⚠️ Prescription not found: " + prescriptionId);
+                Log.warn("⚠️ Prescription not found: {}", prescriptionId);
                 return false;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error rejecting refill: " + e.getMessage());
+            Log.error("Database error rejecting refill: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -289,7 +378,7 @@ public class PrescriptionDAO {
             ORDER BY prescribed_date DESC
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.getActivePrescriptions");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, patientId);
@@ -301,7 +390,7 @@ public class PrescriptionDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting active prescriptions: " + e.getMessage());
+            Log.error("Database error getting active prescriptions: {}", e.getMessage());
         }
         
         return prescriptions;
@@ -322,7 +411,7 @@ public class PrescriptionDAO {
             ORDER BY prescribed_date
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.getPrescriptionsNeedingRenewal");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, patientId);
@@ -335,7 +424,7 @@ public class PrescriptionDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting prescriptions needing renewal: " + e.getMessage());
+            Log.error("Database error getting prescriptions needing renewal: {}", e.getMessage());
         }
         
         return prescriptions;
@@ -352,7 +441,7 @@ public class PrescriptionDAO {
             WHERE id = ?
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.updatePrescription");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, prescription.getMedication());
@@ -363,12 +452,12 @@ public class PrescriptionDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Prescription updated: " + prescription.getId());
+                Log.debug("✅ Prescription updated: {}", prescription.getId());
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error updating prescription: " + e.getMessage());
+            Log.error("Database error updating prescription: {}", e.getMessage());
         }
         
         return false;
@@ -380,7 +469,7 @@ public class PrescriptionDAO {
     public boolean deletePrescription(String prescriptionId) {
         String sql = "DELETE FROM prescriptions WHERE id = ?";
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("PrescriptionDAO.deletePrescription");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, prescriptionId);
@@ -388,12 +477,12 @@ public class PrescriptionDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("✅ Prescription deleted: " + prescriptionId);
+                Log.debug("✅ Prescription deleted: {}", prescriptionId);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error deleting prescription: " + e.getMessage());
+            Log.error("Database error deleting prescription: {}", e.getMessage());
         }
         
         return false;
@@ -1,6 +1,7 @@
 package com.mycompany.coit20258assignment2.server.dao;
 
 import com.mycompany.coit20258assignment2.server.DatabaseManager;
+import com.mycompany.coit20258assignment2.util.Log;
 import java.sql.*;
 import java.time.LocalDate;
 
@@ -9,6 +10,8 @@ import java.time.LocalDate;
  * Handles saving referral records to database
  */
 public class ReferralDAO {
+    /** Sort order of paged lists, primary key last (see KeysetPage) */
+    public static final String[] PAGE_KEYS = {"referral_date", "id"};
     private final DatabaseManager dbManager;
     
     public ReferralDAO() {
@@ -39,7 +42,7 @@ public class ReferralDAO {
             VALUES (?, ?, ?, ?, ?, ?)
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("ReferralDAO.createReferral");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             LocalDate date = LocalDate.parse(referralDate);
@@ -54,19 +57,16 @@ public class ReferralDAO {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                System.out.println("Referral saved to database: " + id);
-                System.out.println("   Patient: " + patientId);
-                System.out.println("   Referring Doctor: " + doctorId);
-                System.out.println("   Specialty Required: " + specialty);
-                System.out.println("   Date: " + date);
+                Log.debug("Referral saved to database: {}", id, "patient", patientId, "referringDoctor",
+                          doctorId, "specialtyRequired", specialty, "date", date);
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error creating referral: " + e.getMessage());
+            Log.error("Database error creating referral: {}", e.getMessage());
             e.printStackTrace();
         } catch (Exception e) {
-            System.err.println("Error parsing referral data: " + e.getMessage());
+            Log.error("Error parsing referral data: {}", e.getMessage());
             e.printStackTrace();
         }
         
@@ -80,6 +80,14 @@ public class ReferralDAO {
      * @return List of referral data as maps
      */
     public java.util.List<java.util.Map<String, Object>> getReferrals(String patientId, String doctorId) {
+        return getReferrals(patientId, doctorId, null);
+    }
+    
+    /**
+     * Get referrals, one page at a time when a page is given (newest first)
+     */
+    public java.util.List<java.util.Map<String, Object>> getReferrals(String patientId, String doctorId,
+                                                                     KeysetPage page) {
         StringBuilder sql = new StringBuilder("""
             SELECT id, patient_id, referring_doctor_id, referred_to_doctor_id,
                    specialty_required, reason, urgency, status, referral_date,
@@ -96,11 +104,15 @@ public class ReferralDAO {
             sql.append(" AND referring_doctor_id = ?");
         }
         
-        sql.append(" ORDER BY referral_date DESC");
+        if (page != null) {
+            sql.append(" AND ").append(page.condition()).append(page.orderAndLimit());
+        } else {
+            sql.append(" ORDER BY referral_date DESC");
+        }
         
         java.util.List<java.util.Map<String, Object>> referrals = new java.util.ArrayList<>();
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("ReferralDAO.getReferrals");
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
             
             int paramIndex = 1;
@@ -110,6 +122,9 @@ public class ReferralDAO {
             if (doctorId != null && !doctorId.isEmpty()) {
                 stmt.setString(paramIndex++, doctorId);
             }
+            if (page != null) {
+                page.bind(stmt, paramIndex);
+            }
             
             ResultSet rs = stmt.executeQuery();
             
@@ -129,10 +144,10 @@ public class ReferralDAO {
                 referrals.add(referral);
             }
             
-            System.out.println("✅ Retrieved " + referrals.size() + " referrals from database");
+            Log.debug("✅ Retrieved {} referrals from database", referrals.size());
             
         } catch (SQLException e) {
-            System.err.println("Database error getting referrals: " + e.getMessage());
+            Log.error("Database error getting referrals: {}", e.getMessage());
             e.printStackTrace();
         }
         
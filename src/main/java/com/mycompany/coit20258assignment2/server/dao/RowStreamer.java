@@ -0,0 +1,78 @@
+package com.mycompany.coit20258assignment2.server.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Reads a query's rows in fixed-size chunks without holding the whole result
+ *
+ * The statement is forward-only, read-only with a fetch size of
+ * Integer.MIN_VALUE, which makes MySQL Connector/J stream rows off the socket
+ * one at a time instead of buffering the full result set. Each chunk is handed
+ * to the consumer as soon as it fills, so only one chunk is in memory at once.
+ * While a streaming result is open its connection can run nothing else, and it
+ * stays borrowed from the pool until the last chunk has been consumed.
+ */
+public final class RowStreamer {
+    public static final int DEFAULT_CHUNK_SIZE = 200;
+    public static final int MAX_CHUNK_SIZE = 1000;
+    
+    /**
+     * Maps the current row of a result set
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+    
+    private RowStreamer() {}
+    
+    /**
+     * Prepare a statement that streams its result set
+     */
+    public static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        return stmt;
+    }
+    
+    public static int clampChunkSize(int chunkSize) {
+        return chunkSize <= 0 ? DEFAULT_CHUNK_SIZE : Math.min(chunkSize, MAX_CHUNK_SIZE);
+    }
+    
+    /**
+     * Run the prepared query and pass its rows to onChunk in chunks of up to
+     * chunkSize; the last chunk may be short and an empty result sends none.
+     * onChunk returns false to stop early (e.g. the client went away).
+     *
+     * @return rows delivered
+     */
+    public static <T> int stream(PreparedStatement stmt, int chunkSize, RowMapper<T> mapper,
+                                 Predicate<List<T>> onChunk) throws SQLException {
+        int delivered = 0;
+        List<T> chunk = new ArrayList<>(chunkSize);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                chunk.add(mapper.map(rs));
+                if (chunk.size() == chunkSize) {
+                    delivered += chunk.size();
+                    if (!onChunk.test(chunk)) {
+                        stmt.cancel(); // otherwise closing the result set drains every remaining row
+                        return delivered;
+                    }
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            delivered += chunk.size();
+            onChunk.test(chunk);
+        }
+        return delivered;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mycompany.coit20258assignment2.server.dao;
+
+import com.mycompany.coit20258assignment2.server.DatabaseManager;
+import com.mycompany.coit20258assignment2.util.Log;
+import java.sql.*;
+import java.util.Optional;
+
+/**
+ * Data Access Object for the system_settings table
+ * Reads server configuration values stored by key
+ */
+public class SystemSettingsDAO {
+    private final DatabaseManager dbManager;
+    
+    public SystemSettingsDAO() {
+        this.dbManager = DatabaseManager.getInstance();
+    }
+    
+    /**
+     * The value stored under a key; empty if there is none or the database is unreachable
+     */
+    public Optional<String> getSetting(String key) {
+        String sql = "SELECT setting_value FROM system_settings WHERE setting_key = ?";
+        
+        try (Connection conn = dbManager.getConnection("SystemSettingsDAO.getSetting");
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.ofNullable(rs.getString("setting_value"));
+                }
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error reading setting {}: {}", key, e.getMessage());
+        }
+        return Optional.empty();
+    }
+    
+    /**
+     * A whole-number setting, or defaultValue if it is missing or not a number
+     */
+    public int getIntSetting(String key, int defaultValue) {
+        Optional<String> value = getSetting(key);
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.get().trim());
+        } catch (NumberFormatException e) {
+            Log.warn("⚠️ Setting {} is not a number: {}", key, value.get());
+            return defaultValue;
+        }
+    }
+}
@@ -2,11 +2,16 @@ package com.mycompany.coit20258assignment2.server.dao;
 
 import com.mycompany.coit20258assignment2.*;
 import com.mycompany.coit20258assignment2.server.DatabaseManager;
+import com.mycompany.coit20258assignment2.util.Log;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 /**
  * Data Access Object for VitalSigns operations
@@ -14,6 +19,8 @@ import java.util.Optional;
  * NEW FEATURE: Remote Vital Signs Monitoring
  */
 public class VitalSignsDAO {
+    /** Sort order of paged lists, primary key last (see KeysetPage) */
+    public static final String[] PAGE_KEYS = {"recorded_date", "recorded_time", "id"};
     private final DatabaseManager dbManager;
     
     public VitalSignsDAO() {
@@ -21,64 +28,199 @@ public class VitalSignsDAO {
     }
     
     /**
-     * Record new vital signs
+     * Record new vital signs (a batch of one, so the rollups are updated too)
      */
     public boolean recordVitalSigns(VitalSigns vitals) {
-        // Validate temperature range (database column is DECIMAL(4,2) - max 99.99)
-        if (vitals.getTemperature() < 0 || vitals.getTemperature() > 99.99) {
-            System.err.println("❌ Invalid temperature value: " + vitals.getTemperature() + "°C (must be 0-99.99)");
-            return false;
+        return recordVitalSignsBatch(List.of(vitals))[0];
+    }
+    
+    /**
+     * Record many readings with one JDBC batch in a single transaction (the
+     * driver sends it as multi-row INSERTs), folding them into the hourly, daily
+     * and weekly rollups in the same transaction. Readings that fail validation
+     * are skipped. If the batch fails (a duplicate id, an unknown patient, a
+     * deadlock) it is rolled back and each reading is retried in its own
+     * transaction, so only the readings that fail on their own are not stored.
+     *
+     * @return for each reading, whether it was stored
+     */
+    public boolean[] recordVitalSignsBatch(List<VitalSigns> batch) {
+        boolean[] stored = new boolean[batch.size()];
+        List<Integer> valid = new ArrayList<>();
+        List<int[]> pressures = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            VitalSigns vitals = batch.get(i);
+            if (vitals.getTemperature() < 0 || vitals.getTemperature() > 99.99) {
+                Log.warn("❌ Invalid temperature value: {}°C (must be 0-99.99)", vitals.getTemperature());
+                continue;
+            }
+            try {
+                pressures.add(parseBloodPressure(vitals.getBloodPressure()));
+            } catch (RuntimeException e) {
+                Log.warn("❌ Invalid blood pressure for {}: {}", vitals.getId(), vitals.getBloodPressure());
+                continue;
+            }
+            valid.add(i);
+        }
+        if (valid.isEmpty()) {
+            return stored;
         }
         
+        try (Connection conn = dbManager.getConnection("VitalSignsDAO.recordVitalSignsBatch")) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                List<VitalSigns> readings = new ArrayList<>();
+                for (int i : valid) {
+                    readings.add(batch.get(i));
+                }
+                try {
+                    insertAndCommit(conn, readings, pressures);
+                    for (int i : valid) {
+                        stored[i] = true;
+                    }
+                    Log.debug("✅ Vital signs recorded: {} in one batch", valid.size());
+                } catch (SQLException e) {
+                    Log.warn("⚠️ Vitals batch of {} failed, storing readings one by one: {}",
+                             valid.size(), e.getMessage());
+                    for (int k = 0; k < valid.size(); k++) {
+                        try {
+                            insertAndCommit(conn, List.of(readings.get(k)), List.of(pressures.get(k)));
+                            stored[valid.get(k)] = true;
+                        } catch (SQLException rowError) {
+                            Log.error("Database error recording vital signs {}: {}",
+                                      readings.get(k).getId(), rowError.getMessage());
+                        }
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error recording vital signs batch: {}", e.getMessage());
+        }
+        
+        return stored;
+    }
+    
+    /**
+     * Insert readings and update their rollups as one transaction; rolled back on failure
+     */
+    private static void insertAndCommit(Connection conn, List<VitalSigns> readings, List<int[]> pressures)
+            throws SQLException {
         String sql = """
-            INSERT INTO vital_signs 
-            (id, patient_id, pulse_rate, body_temperature, respiration_rate, 
-             blood_pressure_systolic, blood_pressure_diastolic, 
-             recorded_date, recorded_time, notes) 
+            INSERT INTO vital_signs
+            (id, patient_id, pulse_rate, body_temperature, respiration_rate,
+             blood_pressure_systolic, blood_pressure_diastolic,
+             recorded_date, recorded_time, notes)
             VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 'Recorded via telehealth')
             """;
         
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            // Parse blood pressure "120/80" format
-            String[] bpParts = vitals.getBloodPressure().split("/");
-            int systolic = Integer.parseInt(bpParts[0].trim());
-            int diastolic = Integer.parseInt(bpParts[1].trim());
-            
-            LocalDateTime timestamp = vitals.getTimestamp();
-            
-            stmt.setString(1, vitals.getId());
-            stmt.setString(2, vitals.getPatientId());
-            stmt.setInt(3, vitals.getPulse());               // pulse_rate
-            stmt.setDouble(4, vitals.getTemperature());      // body_temperature
-            stmt.setInt(5, vitals.getRespiration());         // respiration_rate
-            stmt.setInt(6, systolic);                        // blood_pressure_systolic
-            stmt.setInt(7, diastolic);                       // blood_pressure_diastolic
-            stmt.setDate(8, Date.valueOf(timestamp.toLocalDate()));      // recorded_date
-            stmt.setTime(9, Time.valueOf(timestamp.toLocalTime()));      // recorded_time
-            
-            int rowsAffected = stmt.executeUpdate();
-            
-            if (rowsAffected > 0) {
-                System.out.println("✅ Vital signs recorded: " + vitals.getId());
-                checkVitalSignsAlerts(systolic, diastolic, vitals);
-                return true;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < readings.size(); i++) {
+                bind(stmt, readings.get(i), pressures.get(i)[0], pressures.get(i)[1]);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            updateRollups(conn, readings, pressures);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+    
+    /**
+     * Fold newly inserted readings into their rollup buckets: the readings are
+     * first combined per bucket in memory, then each bucket is upserted once
+     */
+    private static void updateRollups(Connection conn, List<VitalSigns> readings, List<int[]> pressures) throws SQLException {
+        Map<List<Object>, double[]> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < readings.size(); i++) {
+            VitalSigns vitals = readings.get(i);
+            double[] values = VitalsRollup.valuesOf(vitals, pressures.get(i)[0], pressures.get(i)[1]);
+            for (VitalsRollup.Granularity granularity : VitalsRollup.Granularity.values()) {
+                LocalDateTime start = granularity.bucketStart(vitals.getTimestamp());
+                for (int m = 0; m < values.length; m++) {
+                    double value = values[m];
+                    double[] bucket = buckets.computeIfAbsent(
+                        List.of(vitals.getPatientId(), granularity.name(), VitalsRollup.METRICS[m], start),
+                        k -> new double[] {value, value, 0, 0});
+                    bucket[0] = Math.min(bucket[0], value);
+                    bucket[1] = Math.max(bucket[1], value);
+                    bucket[2] += value;
+                    bucket[3]++;
+                }
             }
-            
-        } catch (SQLException | NumberFormatException e) {
-            System.err.println("Database error recording vital signs: " + e.getMessage());
-            e.printStackTrace();
         }
         
-        return false;
+        String sql = """
+            INSERT INTO vital_signs_rollups
+            (patient_id, granularity, metric, bucket_start, min_value, max_value, sum_value, sample_count)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                min_value = LEAST(min_value, VALUES(min_value)),
+                max_value = GREATEST(max_value, VALUES(max_value)),
+                sum_value = sum_value + VALUES(sum_value),
+                sample_count = sample_count + VALUES(sample_count)
+            """;
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<List<Object>, double[]> entry : buckets.entrySet()) {
+                List<Object> key = entry.getKey();
+                double[] bucket = entry.getValue();
+                stmt.setString(1, (String) key.get(0));
+                stmt.setString(2, (String) key.get(1));
+                stmt.setString(3, (String) key.get(2));
+                stmt.setTimestamp(4, Timestamp.valueOf((LocalDateTime) key.get(3)));
+                stmt.setDouble(5, bucket[0]);
+                stmt.setDouble(6, bucket[1]);
+                stmt.setDouble(7, bucket[2]);
+                stmt.setInt(8, (int) bucket[3]);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
     }
     
     /**
-     * Get all vital signs for a patient
+     * Parse blood pressure "120/80" format into {systolic, diastolic}
+     */
+    private static int[] parseBloodPressure(String bloodPressure) {
+        String[] bpParts = bloodPressure.split("/");
+        return new int[] {Integer.parseInt(bpParts[0].trim()), Integer.parseInt(bpParts[1].trim())};
+    }
+    
+    private static void bind(PreparedStatement stmt, VitalSigns vitals, int systolic, int diastolic) throws SQLException {
+        LocalDateTime timestamp = vitals.getTimestamp();
+        stmt.setString(1, vitals.getId());
+        stmt.setString(2, vitals.getPatientId());
+        stmt.setInt(3, vitals.getPulse());               // pulse_rate
+        stmt.setDouble(4, vitals.getTemperature());      // body_temperature
+        stmt.setInt(5, vitals.getRespiration());         // respiration_rate
+        stmt.setInt(6, systolic);                        // blood_pressure_systolic
+        stmt.setInt(7, diastolic);                       // blood_pressure_diastolic
+        stmt.setDate(8, Date.valueOf(timestamp.toLocalDate()));      // recorded_date
+        stmt.setTime(9, Time.valueOf(timestamp.toLocalTime()));      // recorded_time
+    }
+    
+    /**
+     * Get all vital signs for a patient, newest first (as a VitalsSeries)
      */
     public List<VitalSigns> getVitalSignsByPatient(String patientId) {
-        List<VitalSigns> vitalsList = new ArrayList<>();
+        VitalsSeries series = getVitalsSeries(patientId);
+        return series != null ? series : new ArrayList<>();
+    }
+    
+    /**
+     * All of a patient's vital signs, newest first, read straight into columns
+     * without building a VitalSigns per row
+     *
+     * @return the series, or null on a database error
+     */
+    public VitalsSeries getVitalsSeries(String patientId) {
+        VitalsSeries series = new VitalsSeries(patientId);
         String sql = """
             SELECT id, patient_id, blood_pressure_systolic, blood_pressure_diastolic, 
                    pulse_rate, body_temperature, respiration_rate, 
@@ -88,19 +230,111 @@ public class VitalSignsDAO {
             ORDER BY recorded_date DESC, recorded_time DESC
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("VitalSignsDAO.getVitalsSeries");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, patientId);
             ResultSet rs = stmt.executeQuery();
             
             while (rs.next()) {
-                VitalSigns vitals = createVitalSignsFromResultSet(rs);
-                vitalsList.add(vitals);
+                appendRow(series, rs);
+            }
+            return series;
+            
+        } catch (SQLException e) {
+            Log.error("Database error getting patient vital signs: {}", e.getMessage());
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Stream a patient's vital signs, newest first, in chunks straight off the
+     * result set (see RowStreamer)
+     *
+     * @return rows delivered, or -1 on a database error
+     */
+    public int streamVitalSignsByPatient(String patientId, int chunkSize, Predicate<List<VitalSigns>> onChunk) {
+        String sql = """
+            SELECT id, patient_id, blood_pressure_systolic, blood_pressure_diastolic,
+                   pulse_rate, body_temperature, respiration_rate,
+                   recorded_date, recorded_time
+            FROM vital_signs
+            WHERE patient_id = ?
+            ORDER BY recorded_date DESC, recorded_time DESC
+            """;
+        
+        try (Connection conn = dbManager.getConnection("VitalSignsDAO.streamVitalSignsByPatient");
+             PreparedStatement stmt = RowStreamer.prepare(conn, sql)) {
+            
+            stmt.setString(1, patientId);
+            return RowStreamer.stream(stmt, chunkSize, this::createVitalSignsFromResultSet, onChunk);
+            
+        } catch (SQLException e) {
+            Log.error("Database error streaming vital signs: {}", e.getMessage());
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * One page of a patient's vital signs, newest first
+     */
+    public List<VitalSigns> getVitalSignsPage(String patientId, KeysetPage page) {
+        VitalsSeries vitalsList = new VitalsSeries(patientId, page.getPageSize() + 1);
+        String sql = """
+            SELECT id, patient_id, blood_pressure_systolic, blood_pressure_diastolic,
+                   pulse_rate, body_temperature, respiration_rate,
+                   recorded_date, recorded_time
+            FROM vital_signs
+            WHERE patient_id = ? AND
+            """ + page.condition() + page.orderAndLimit();
+        
+        try (Connection conn = dbManager.getConnection("VitalSignsDAO.getVitalSignsPage");
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, patientId);
+            page.bind(stmt, 2);
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                appendRow(vitalsList, rs);
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting patient vital signs: " + e.getMessage());
+            Log.error("Database error getting vital signs page: {}", e.getMessage());
+        }
+        
+        return vitalsList;
+    }
+    
+    /**
+     * Vital signs recorded at or after the given time (used by GET_CHANGES).
+     * Readings are never edited, so created_at is their only version.
+     */
+    public List<VitalSigns> getVitalSignsRecordedSince(String patientId, LocalDateTime since) {
+        VitalsSeries vitalsList = new VitalsSeries(patientId);
+        String sql = """
+            SELECT id, patient_id, blood_pressure_systolic, blood_pressure_diastolic,
+                   pulse_rate, body_temperature, respiration_rate,
+                   recorded_date, recorded_time
+            FROM vital_signs
+            WHERE patient_id = ? AND created_at >= ?
+            """;
+        
+        try (Connection conn = dbManager.getConnection("VitalSignsDAO.getVitalSignsRecordedSince");
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, patientId);
+            stmt.setTimestamp(2, Timestamp.valueOf(since));
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                appendRow(vitalsList, rs);
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error getting new vital signs: {}", e.getMessage());
         }
         
         return vitalsList;
@@ -120,7 +354,7 @@ public class VitalSignsDAO {
             LIMIT 1
             """;
         
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getConnection("VitalSignsDAO.getLatestVitalSigns");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, patientId);
@@ -132,68 +366,109 @@ public class VitalSignsDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Database error getting latest vital signs: " + e.getMessage());
+            Log.error("Database error getting latest vital signs: {}", e.getMessage());
         }
         
         return Optional.empty();
     }
     
+    /**
+     * Rollup buckets of a patient from the given bucket start on, oldest first;
+     * reads one row per bucket and metric whatever the number of readings
+     */
+    public List<VitalsRollup> getVitalsRollups(String patientId, VitalsRollup.Granularity granularity, LocalDateTime from) {
+        List<VitalsRollup> rollups = new ArrayList<>();
+        String sql = """
+            SELECT metric, bucket_start, min_value, max_value, sum_value, sample_count
+            FROM vital_signs_rollups
+            WHERE patient_id = ? AND granularity = ? AND bucket_start >= ?
+            ORDER BY bucket_start
+            """;
+        
+        try (Connection conn = dbManager.getConnection("VitalSignsDAO.getVitalsRollups");
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, patientId);
+            stmt.setString(2, granularity.name());
+            stmt.setTimestamp(3, Timestamp.valueOf(from));
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                rollups.add(new VitalsRollup(
+                    rs.getString("metric"),
+                    rs.getTimestamp("bucket_start").toLocalDateTime(),
+                    rs.getDouble("min_value"),
+                    rs.getDouble("max_value"),
+                    rs.getDouble("sum_value"),
+                    rs.getInt("sample_count")
+                ));
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Database error getting vital signs rollups: {}", e.getMessage());
+        }
+        
+        return rollups;
+    }
+    
     /**
      * Get vital signs trend analysis
      * NEW FEATURE: Analyzes trends in patient vital signs
+     * Summarises the daily rollups of the last daysBack days.
      */
     public String analyzeVitalSignsTrend(String patientId, int daysBack) {
-        List<VitalSigns> vitalsList = getVitalSignsByPatient(patientId);
+        VitalsRollup.Granularity day = VitalsRollup.Granularity.DAY;
+        return describeTrend(daysBack, getVitalsRollups(patientId, day, day.bucketStart(LocalDateTime.now().minusDays(daysBack))));
+    }
+    
+    /**
+     * Human-readable summary of a window's rollups
+     */
+    public static String describeTrend(int daysBack, List<VitalsRollup> rollups) {
+        Map<String, double[]> totals = new HashMap<>();
+        for (VitalsRollup rollup : rollups) {
+            double[] total = totals.computeIfAbsent(rollup.getMetric(), m -> new double[2]);
+            total[0] += rollup.getSum();
+            total[1] += rollup.getCount();
+        }
         
-        if (vitalsList.isEmpty()) {
+        if (totals.isEmpty()) {
             return "No vital signs data available for analysis.";
         }
         
         StringBuilder analysis = new StringBuilder();
         analysis.append("Vital Signs Trend Analysis (Last ").append(daysBack).append(" days):\n");
-        analysis.append("Total readings: ").append(vitalsList.size()).append("\n\n");
-        
-        // Calculate averages
-        double avgHeartRate = vitalsList.stream().mapToInt(VitalSigns::getPulse).average().orElse(0);
-        double avgTemp = vitalsList.stream().mapToDouble(VitalSigns::getTemperature).average().orElse(0);
-        double avgResp = vitalsList.stream().mapToInt(VitalSigns::getRespiration).average().orElse(0);
+        analysis.append("Total readings: ").append((long) totals.getOrDefault("pulse", new double[2])[1]).append("\n\n");
         
-        analysis.append(String.format("Average Heart Rate: %.0f bpm\n", avgHeartRate));
-        analysis.append(String.format("Average Temperature: %.1f°C\n", avgTemp));
-        analysis.append(String.format("Average Respiration: %.0f breaths/min\n", avgResp));
+        analysis.append(String.format("Average Heart Rate: %.0f bpm\n", average(totals, "pulse")));
+        analysis.append(String.format("Average Temperature: %.1f°C\n", average(totals, "temperature")));
+        analysis.append(String.format("Average Respiration: %.0f breaths/min\n", average(totals, "respiration")));
+        analysis.append(String.format("Average Blood Pressure: %.0f/%.0f mmHg\n",
+            average(totals, "systolic"), average(totals, "diastolic")));
         
         return analysis.toString();
     }
     
+    private static double average(Map<String, double[]> totals, String metric) {
+        double[] total = totals.get(metric);
+        return total == null || total[1] == 0 ? 0 : total[0] / total[1];
+    }
+    
     /**
-     * Check for abnormal vital signs and create alerts
-     * NEW FEATURE: Automatic alert system for abnormal readings
+     * Helper method to append the current row to a series, column by column
      */
-    private void checkVitalSignsAlerts(int systolic, int diastolic, VitalSigns vitals) {
-        List<String> alerts = new ArrayList<>();
-        
-        if (systolic > 140 || diastolic > 90) {
-            alerts.add("⚠️ HIGH BLOOD PRESSURE: " + vitals.getBloodPressure());
-        } else if (systolic < 90 || diastolic < 60) {
-            alerts.add("⚠️ LOW BLOOD PRESSURE: " + vitals.getBloodPressure());
-        }
-        
-        if (vitals.getPulse() > 100) {
-            alerts.add("⚠️ HIGH HEART RATE: " + vitals.getPulse() + " bpm");
-        } else if (vitals.getPulse() < 60) {
-            alerts.add("⚠️ LOW HEART RATE: " + vitals.getPulse() + " bpm");
-        }
-        
-        if (vitals.getTemperature() > 38.0) {
-            alerts.add("⚠️ HIGH TEMPERATURE: " + vitals.getTemperature() + "°C");
-        } else if (vitals.getTemperature() < 36.0) {
-            alerts.add("⚠️ LOW TEMPERATURE: " + vitals.getTemperature() + "°C");
-        }
-        
-        if (!alerts.isEmpty()) {
-            System.out.println("🚨 VITAL SIGNS ALERTS for patient " + vitals.getPatientId() + ":");
-            alerts.forEach(System.out::println);
-        }
+    private static void appendRow(VitalsSeries series, ResultSet rs) throws SQLException {
+        long epochSecond = rs.getDate("recorded_date").toLocalDate().toEpochDay() * 86_400L
+                         + rs.getTime("recorded_time").toLocalTime().toSecondOfDay();
+        series.appendRaw(
+            rs.getString("id"),
+            epochSecond,
+            rs.getInt("pulse_rate"),
+            (int) Math.round(rs.getDouble("body_temperature") * 100),
+            rs.getInt("respiration_rate"),
+            rs.getInt("blood_pressure_systolic"),
+            rs.getInt("blood_pressure_diastolic")
+        );
     }
     
     /**
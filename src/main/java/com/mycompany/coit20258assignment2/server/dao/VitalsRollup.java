@@ -0,0 +1,97 @@
+package com.mycompany.coit20258assignment2.server.dao;
+
+import com.mycompany.coit20258assignment2.VitalSigns;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One bucket of the vital_signs_rollups table: min, max, sum and count of one
+ * metric for one patient over an hour, a day or a week (weeks start on Monday)
+ *
+ * Rollups are kept in step with vital_signs by VitalSignsDAO, in the same
+ * transaction as the readings, so a trend over any window reads one row per
+ * bucket and metric instead of every reading.
+ */
+public class VitalsRollup {
+    /** Metric names, in the order trends list them */
+    public static final String[] METRICS = {"pulse", "temperature", "respiration", "systolic", "diastolic"};
+    
+    public enum Granularity {
+        HOUR, DAY, WEEK;
+        
+        /**
+         * Start of the bucket a reading taken at the given time belongs to
+         */
+        public LocalDateTime bucketStart(LocalDateTime time) {
+            switch (this) {
+                case HOUR:
+                    return time.truncatedTo(ChronoUnit.HOURS);
+                case DAY:
+                    return time.truncatedTo(ChronoUnit.DAYS);
+                default:
+                    return time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            }
+        }
+        
+        /**
+         * Finest granularity that keeps a window of the given length to a few hundred buckets
+         */
+        public static Granularity forWindow(int daysBack) {
+            if (daysBack <= 7) {
+                return HOUR;
+            }
+            return daysBack <= 180 ? DAY : WEEK;
+        }
+    }
+    
+    private final String metric;
+    private final LocalDateTime bucketStart;
+    private final double min;
+    private final double max;
+    private final double sum;
+    private final int count;
+    
+    public VitalsRollup(String metric, LocalDateTime bucketStart, double min, double max, double sum, int count) {
+        this.metric = metric;
+        this.bucketStart = bucketStart;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+    }
+    
+    /**
+     * The value of each metric in a reading, in METRICS order
+     */
+    static double[] valuesOf(VitalSigns vitals, int systolic, int diastolic) {
+        return new double[] {vitals.getPulse(), vitals.getTemperature(), vitals.getRespiration(), systolic, diastolic};
+    }
+    
+    public String getMetric() { return metric; }
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    public double getSum() { return sum; }
+    public int getCount() { return count; }
+    
+    public double getAverage() {
+        return count == 0 ? 0 : sum / count;
+    }
+    
+    /**
+     * Wire form of one point of a trend series
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> point = new HashMap<>();
+        point.put("start", bucketStart);
+        point.put("min", min);
+        point.put("max", max);
+        point.put("avg", getAverage());
+        point.put("count", count);
+        return point;
+    }
+}
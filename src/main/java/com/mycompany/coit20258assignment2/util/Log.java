@@ -0,0 +1,272 @@
+package com.mycompany.coit20258assignment2.util;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger for the server's request path.
+ *
+ * System.out is a synchronized PrintStream, so every println on a handler
+ * thread used to queue behind every other one. A call here only checks the
+ * level, claims a slot in a fixed ring buffer with one compare-and-set, and
+ * copies its arguments into the slot's preallocated array. Formatting and
+ * writing happen on one background thread, which drains the ring about every
+ * millisecond while events arrive and prints each batch with a single write.
+ * After IDLE_ROUNDS empty checks it sleeps until the next event wakes it, so an
+ * idle server does not wake it a thousand times a second.
+ *
+ * Messages may contain {} placeholders, filled from the arguments in order.
+ * Arguments left over after the placeholders are key/value pairs, written
+ * after the message as key=value:
+ *
+ *   Log.debug("Appointment created: {}", id);
+ *   Log.info("request", "id", requestId, "type", type, "durationUs", micros);
+ *
+ * If the ring is full the event is dropped, not waited for, and the writer
+ * reports how many were lost. The threshold comes from ths.log.level (TRACE,
+ * DEBUG, INFO, WARN, ERROR or OFF; default INFO) and the ring size from
+ * ths.log.bufferSize. WARN and ERROR go to standard error, the rest to
+ * standard output.
+ */
+public final class Log {
+    
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+    
+    /** Most arguments kept per event; extra ones are ignored */
+    public static final int MAX_ARGS = 16;
+    private static final int CAPACITY = Integer.highestOneBit(
+        Math.max(Integer.getInteger("ths.log.bufferSize", 16_384), 64));
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    /** Empty drains before the writer sleeps until woken */
+    private static final int IDLE_ROUNDS = 100;
+    
+    private static volatile Level threshold = parseLevel(System.getProperty("ths.log.level", "INFO"));
+    
+    private static final Slot[] ring = new Slot[CAPACITY];
+    private static final AtomicLong claimed = new AtomicLong();
+    /** Next sequence the writer will print; only the writer (or flush) advances it */
+    private static volatile long consumed = 0;
+    private static final LongAdder dropped = new LongAdder();
+    private static long droppedReported = 0;
+    private static final Thread writer;
+    /** Set while the writer sleeps until unparked; the next event wakes it */
+    private static volatile boolean writerAsleep = false;
+    
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Slot();
+        }
+        writer = new Thread(Log::writeLoop, "ths-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "ths-log-flush"));
+    }
+    
+    private Log() {}
+    
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0 && level != Level.OFF;
+    }
+    
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+    
+    /**
+     * True for about one call in oneIn, to sample frequent events
+     */
+    public static boolean sampled(int oneIn) {
+        return oneIn <= 1 || ThreadLocalRandom.current().nextInt(oneIn) == 0;
+    }
+    
+    public static void trace(String message, Object... args) {
+        log(Level.TRACE, message, args);
+    }
+    
+    public static void debug(String message, Object... args) {
+        log(Level.DEBUG, message, args);
+    }
+    
+    public static void info(String message, Object... args) {
+        log(Level.INFO, message, args);
+    }
+    
+    public static void warn(String message, Object... args) {
+        log(Level.WARN, message, args);
+    }
+    
+    public static void error(String message, Object... args) {
+        log(Level.ERROR, message, args);
+    }
+    
+    public static void log(Level level, String message, Object... args) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+        
+        Slot slot = ring[(int) (seq & MASK)];
+        slot.level = level;
+        slot.timeMillis = System.currentTimeMillis();
+        slot.thread = Thread.currentThread().getName();
+        slot.message = message;
+        int count = Math.min(args.length, MAX_ARGS);
+        System.arraycopy(args, 0, slot.args, 0, count);
+        slot.argCount = count;
+        slot.published = seq;
+        if (writerAsleep) {
+            LockSupport.unpark(writer);
+        }
+    }
+    
+    /**
+     * Print everything logged so far (e.g. before the process exits)
+     */
+    public static synchronized void flush() {
+        drain();
+    }
+    
+    private static void writeLoop() {
+        int idleRounds = 0;
+        while (true) {
+            if (flushIfPending()) {
+                idleRounds = 0;
+            } else if (++idleRounds < IDLE_ROUNDS) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else {
+                // Publishers check the flag after publishing, so recheck after setting it
+                writerAsleep = true;
+                if (claimed.get() == consumed) {
+                    LockSupport.park();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerAsleep = false;
+                idleRounds = 0;
+            }
+        }
+    }
+    
+    private static synchronized boolean flushIfPending() {
+        return drain();
+    }
+    
+    /**
+     * Format and print the published events in order; false if there were none
+     */
+    private static boolean drain() {
+        StringBuilder out = null;
+        StringBuilder err = null;
+        long seq = consumed;
+        while (true) {
+            Slot slot = ring[(int) (seq & MASK)];
+            if (slot.published != seq) {
+                break;
+            }
+            boolean toErr = slot.level.compareTo(Level.WARN) >= 0;
+            StringBuilder target;
+            if (toErr) {
+                target = err != null ? err : (err = new StringBuilder(1024));
+            } else {
+                target = out != null ? out : (out = new StringBuilder(4096));
+            }
+            format(slot, target);
+            java.util.Arrays.fill(slot.args, 0, slot.argCount, null);
+            slot.message = null;
+            seq++;
+            consumed = seq;
+        }
+        
+        long lost = dropped.sum();
+        if (lost != droppedReported) {
+            err = err != null ? err : new StringBuilder(128);
+            err.append(LocalDateTime.now()).append(" WARN  [ths-log-writer] Log buffer full, ")
+               .append(lost - droppedReported).append(" event(s) dropped\n");
+            droppedReported = lost;
+        }
+        
+        write(System.out, out);
+        write(System.err, err);
+        return out != null || err != null;
+    }
+    
+    private static void write(PrintStream stream, StringBuilder text) {
+        if (text != null) {
+            stream.print(text);
+            stream.flush();
+        }
+    }
+    
+    private static void format(Slot slot, StringBuilder out) {
+        out.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(slot.timeMillis), ZoneId.systemDefault()))
+           .append(' ').append(slot.level);
+        for (int pad = slot.level.name().length(); pad < 5; pad++) {
+            out.append(' ');
+        }
+        out.append(" [").append(slot.thread).append("] ");
+        
+        String message = slot.message;
+        int arg = 0;
+        int from = 0;
+        int at;
+        while ((at = message.indexOf("{}", from)) >= 0 && arg < slot.argCount) {
+            out.append(message, from, at).append(slot.args[arg++]);
+            from = at + 2;
+        }
+        out.append(message, from, message.length());
+        
+        for (; arg + 1 < slot.argCount; arg += 2) {
+            out.append(' ').append(slot.args[arg]).append('=');
+            appendValue(out, slot.args[arg + 1]);
+        }
+        if (arg < slot.argCount) {
+            out.append(' ');
+            appendValue(out, slot.args[arg]);
+        }
+        out.append('\n');
+    }
+    
+    private static void appendValue(StringBuilder out, Object value) {
+        String text = String.valueOf(value);
+        if (text.isEmpty() || text.indexOf(' ') >= 0 || text.indexOf('=') >= 0 || text.indexOf('"') >= 0) {
+            out.append('"').append(text.replace("\"", "\\\"")).append('"');
+        } else {
+            out.append(text);
+        }
+    }
+    
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+    
+    /**
+     * One preallocated event; published is set last so the writer sees a complete event
+     */
+    private static final class Slot {
+        volatile long published = -1;
+        Level level;
+        long timeMillis;
+        String thread;
+        String message;
+        final Object[] args = new Object[MAX_ARGS];
+        int argCount;
+    }
+}
@@ -3,6 +3,7 @@ module com.mycompany.coit20258assignment2 {
     requires javafx.fxml;
     requires java.sql;
     requires java.desktop;
+    requires jdk.httpserver;
 
     // Controllers need reflective access for @FXML injection
     opens com.mycompany.coit20258assignment2 to javafx.fxml;